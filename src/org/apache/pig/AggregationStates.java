@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pig;
+
+import org.apache.pig.backend.executionengine.ExecException;
+import org.apache.pig.classification.InterfaceAudience;
+import org.apache.pig.classification.InterfaceStability;
+import org.apache.pig.data.Tuple;
+
+/**
+ * The mutable intermediate states of an {@link Algebraic} function for a
+ * number of groups, created by an {@link IncrementalIntermediate}. Groups are
+ * numbered densely from 0, in the order they are first merged into. The
+ * states are expected to be held in arrays indexed by group, rather than in
+ * an object per group, to keep their memory footprint small.
+ * @since Pig 0.18
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public abstract class AggregationStates {
+    /**
+     * Merges a tuple into the state of a group.
+     * @param group the number of the group, which is either a group already
+     * merged into or the number of groups merged into so far
+     * @param input a tuple as returned by the Initial or the Intermediate
+     * function of the algebraic function
+     */
+    public abstract void merge(int group, Tuple input) throws ExecException;
+
+    /**
+     * @param group the number of a group merged into
+     * @return the tuple the Intermediate function would return for a bag of
+     * all the tuples merged into the group
+     */
+    public abstract Tuple getResult(int group) throws ExecException;
+
+    /**
+     * Discards the states of all the groups.
+     */
+    public abstract void clear();
+
+    /**
+     * @return the estimated number of bytes used by the state of a group
+     */
+    public abstract int getStateSize();
+}
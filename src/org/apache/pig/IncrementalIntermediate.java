@@ -0,0 +1,39 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pig;
+
+import org.apache.pig.classification.InterfaceAudience;
+import org.apache.pig.classification.InterfaceStability;
+
+/**
+ * An interface that the Intermediate function of an {@link Algebraic} function
+ * can implement when it can merge the tuples it is given one at a time into a
+ * state per group. Map side partial aggregation then keeps a state per group
+ * in a hash table and updates it with every input tuple, instead of buffering
+ * the tuples of each group to pass them to the function in bags.
+ * @since Pig 0.18
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+public interface IncrementalIntermediate {
+    /**
+     * @return new states, with no group, that give the same results as this
+     * function
+     */
+    public AggregationStates newStates();
+}
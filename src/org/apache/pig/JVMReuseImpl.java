@@ -28,7 +28,11 @@ import org.apache.pig.backend.hadoop.executionengine.mapReduceLayer.PigGenericMa
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.PhysicalOperator;
 import org.apache.pig.classification.InterfaceAudience;
 import org.apache.pig.classification.InterfaceStability;
+import org.apache.pig.data.DirectBufferPool;
+import org.apache.pig.data.SpillStreams;
+import org.apache.pig.data.TupleSorter;
 import org.apache.pig.impl.PigContext;
+import org.apache.pig.impl.io.NullableTuple;
 import org.apache.pig.impl.util.SpillableMemoryManager;
 import org.apache.pig.tools.pigstats.PigStatusReporter;
 
@@ -49,6 +53,10 @@ public class JVMReuseImpl {
         PigStatusReporter.staticDataCleanup();
         PigCombiner.Combine.staticDataCleanup();
         DistinctCombiner.Combine.staticDataCleanup();
+        SpillStreams.staticDataCleanup();
+        TupleSorter.staticDataCleanup();
+        DirectBufferPool.staticDataCleanup();
+        NullableTuple.staticDataCleanup();
 
         String className = null;
         String msg = null;
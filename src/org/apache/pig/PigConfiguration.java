@@ -57,6 +57,22 @@ public class PigConfiguration {
     public static final String PIG_INTERSTORAGE_SYNCMARKER_INTERVAL = "pig.interstorage.syncmarker.interval";
     public static final long PIG_INTERSTORAGE_SYNCMARKER_INTERVAL_DEFAULT = 2000;
 
+    /**
+     * Boolean value used to enable dictionary encoding of the chararrays and variable length
+     * encoding of the integers and longs written in the binary files produced by Pig between
+     * jobs. The dictionary is restarted at every sync marker, so a larger
+     * {@link #PIG_INTERSTORAGE_SYNCMARKER_INTERVAL} makes it more effective. False by default.
+     * Files are read back regardless of this setting.
+     */
+    public static final String PIG_INTERSTORAGE_DICTIONARY_ENCODING = "pig.interstorage.dictionary.encoding";
+
+    /**
+     * Boolean value used to enable the lazy deserialization of the tuples handed to reducers,
+     * which only deserializes the fields accessed by the reduce plan and writes the other ones
+     * by copying their serialized form. False by default.
+     */
+    public static final String PIG_LAZY_TUPLE_DESERIALIZATION = "pig.lazy.tuple.deserialization";
+
 
     /**
      * Boolean value used to enable or disable fetching without a mapreduce job for DUMP. True by default
@@ -113,6 +129,39 @@ public class PigConfiguration {
      */
     public static final String PIG_EXEC_MAP_PARTAGG_MINREDUCTION = "pig.exec.mapPartAgg.minReduction";
 
+    /**
+     * Boolean value to enable or disable the hash table of aggregation states in map side
+     * partial aggregation. When all the algebraic functions of the aggregation can update their
+     * intermediate state with one tuple at a time, as SUM, COUNT, MIN, MAX and AVG do, a single
+     * state per group is kept and updated with each input tuple instead of buffering the tuples.
+     * Enabled by default.
+     */
+    public static final String PIG_EXEC_MAP_PARTAGG_HASH = "pig.exec.mapPartAgg.hash";
+
+    /**
+     * Number of tuples moved at once between the operators which support batches, such as
+     * FILTER and FOREACH when their expressions only use projections, constants, arithmetic,
+     * comparisons, boolean operators and numeric casts. Their expressions are then evaluated
+     * a column at a time over the whole batch. 0, the default, or 1 disables batch execution.
+     */
+    public static final String PIG_EXEC_BATCH_SIZE = "pig.exec.batch.size";
+
+    /**
+     * Boolean value to enable or disable compiling the expression plans of FILTER and FOREACH
+     * into generated classes when all their operators are supported, instead of interpreting
+     * them. Disabled by default. Batch execution takes precedence when both are enabled.
+     */
+    public static final String PIG_EXEC_CODEGEN = "pig.exec.codegen";
+
+    /**
+     * Boolean value to enable or disable changing the order of the operands of the ANDs and ORs
+     * of FILTER conditions as they run, so that the cheap and selective operands are evaluated
+     * first, based on the time and selectivity measured for each of them. Disabled by default,
+     * as an operand could then be evaluated on tuples that an operand before it in the script
+     * excluded.
+     */
+    public static final String PIG_EXEC_FILTER_REORDER = "pig.exec.filter.reorder";
+
     /**
      * Boolean value to enable or disable use of combiners in MapReduce jobs. Enabled by default
      */
@@ -151,6 +200,28 @@ public class PigConfiguration {
      */
     public static final String PIG_SKEWEDJOIN_REDUCE_MEM = "pig.skewedjoin.reduce.mem";
 
+    /**
+     * Boolean value to enable or disable running two-way hash joins of MapReduce jobs as skewed
+     * joins, which spread the heavy hitters among the join keys of their left input over several
+     * reducers. The keys are counted on rows read from splits spread over the left input when the
+     * join job is launched, instead of in a sampling job. This requires the left input to be loaded
+     * in the join job with at most FOREACH and FILTER without UDFs in between, otherwise the join
+     * partitions all the keys as a hash join does. GROUP BY is not covered. Disabled by default.
+     */
+    public static final String PIG_SKEWEDJOIN_AUTO = "pig.skewedjoin.auto";
+
+    /**
+     * Number of rows of the left input whose join keys are counted by pig.skewedjoin.auto.
+     * Default is 100000.
+     */
+    public static final String PIG_SKEWEDJOIN_AUTO_SAMPLE_SIZE = "pig.skewedjoin.auto.sample.size";
+
+    /**
+     * Minimum fraction of the rows of the left input with the same join key for the key to be
+     * spread over several reducers by pig.skewedjoin.auto. Default is 0.01.
+     */
+    public static final String PIG_SKEWEDJOIN_AUTO_THRESHOLD = "pig.skewedjoin.auto.threshold";
+
     /**
      * Bloom join has two different kind of implementations.
      * <ul>
@@ -213,6 +284,78 @@ public class PigConfiguration {
      */
     public static final String PIG_JOIN_REPLICATED_MAX_BYTES = "pig.join.replicated.max.bytes";
 
+    /**
+     * Boolean value to load the replicated inputs of a fragment-replicated join into
+     * hash tables which keep the keys and the rows serialized in large byte arrays,
+     * and deserialize the fields of the matching rows as they are accessed. These use
+     * several times less memory than maps of tuples, so larger inputs can be replicated
+     * along with a higher {@link #PIG_JOIN_REPLICATED_MAX_BYTES}. Disabled by default.
+     */
+    public static final String PIG_JOIN_REPLICATED_COMPACT = "pig.join.replicated.compact";
+
+    /**
+     * Boolean value to let a fragment-replicated join degrade to a hybrid hash join when
+     * its replicated inputs do not fit in memory, rather than fail. Partitions of the
+     * replicated inputs and of the fragment are then spilled to local disk and joined at
+     * the end of the task, and {@link #PIG_JOIN_REPLICATED_MAX_BYTES} only logs a warning.
+     * The task fails if a spilled partition does not fit in memory either. Only applies to
+     * mapreduce mode. Disabled by default.
+     */
+    public static final String PIG_JOIN_REPLICATED_HYBRID = "pig.join.replicated.hybrid";
+
+    /**
+     * Fraction of the heap the replicated inputs of a fragment-replicated join can use
+     * before partitions of the join are spilled, when {@link #PIG_JOIN_REPLICATED_HYBRID}
+     * is set. Default is 0.5.
+     */
+    public static final String PIG_JOIN_REPLICATED_HYBRID_MEMUSAGE = "pig.join.replicated.hybrid.memusage";
+
+    /**
+     * Boolean value to run two-way CROSS operators of MapReduce jobs by replicating the smaller
+     * input to the map tasks of the larger one, instead of replicating both inputs to a grid of
+     * reducers. The input sizes are estimated as for {@link #PIG_JOIN_AUTO}, and the smaller one
+     * must be at most {@link #PIG_CROSS_REPLICATED_MAX_BYTES}. If the size of an input is not
+     * known, the CROSS is not replicated. Disabled by default.
+     */
+    public static final String PIG_CROSS_REPLICATED = "pig.cross.replicated";
+
+    /**
+     * Maximum estimated size in bytes of the smaller input of a CROSS for it to be replicated,
+     * when {@link #PIG_CROSS_REPLICATED} is set. Default is 1000000000.
+     */
+    public static final String PIG_CROSS_REPLICATED_MAX_BYTES = "pig.cross.replicated.max.bytes";
+
+    /**
+     * Fraction of the heap a block of the replicated input of a CROSS can use, when
+     * {@link #PIG_CROSS_REPLICATED} is set. Larger inputs are crossed one block at a time with
+     * the tuples of the other input, which are spilled to local disk. Default is 0.3.
+     */
+    public static final String PIG_CROSS_REPLICATED_MEMUSAGE = "pig.cross.replicated.memusage";
+
+    /**
+     * Boolean value to choose the strategy of the joins without a USING clause from the estimated
+     * sizes of their inputs, before the plan is compiled: replicated if the inputs other than the
+     * first, or the first of a two-way inner join, are at most {@link #PIG_JOIN_AUTO_REPLICATED_MAX_BYTES},
+     * merge if both inputs are loaded sorted on the join keys, skewed if the average key of an input
+     * is larger than pig.exec.reducers.bytes.per.reducer, and hash otherwise. The choices are
+     * listed in the output of explain. Disabled by default.
+     */
+    public static final String PIG_JOIN_AUTO = "pig.join.auto";
+
+    /**
+     * Maximum estimated size in bytes of the replicated inputs of a join for it to be replicated,
+     * when {@link #PIG_JOIN_AUTO} is set. Default is 100000000.
+     */
+    public static final String PIG_JOIN_AUTO_REPLICATED_MAX_BYTES = "pig.join.auto.replicated.max.bytes";
+
+    /**
+     * Boolean value to reorder the inner joins without a USING clause from the estimated number of
+     * records of their inputs, so that chains of joins start with the inputs giving the smallest
+     * intermediate results and the largest input of each join is the last one. A FOREACH keeps
+     * the columns in the order of the script. Disabled by default.
+     */
+    public static final String PIG_JOIN_REORDER = "pig.join.reorder";
+
     // Pig cached bag type settings
     /**
      * Configurations for specifying alternate implementations for cached bags. Rarely used
@@ -221,9 +364,34 @@ public class PigConfiguration {
     public static final String PIG_CACHEDBAG_DISTINCT_TYPE = "pig.cachedbag.distinct.type";
     public static final String PIG_CACHEDBAG_SORT_TYPE = "pig.cachedbag.sort.type";
 
+    /**
+     * Size in bytes of the direct buffers used by cached bags when
+     * {@link #PIG_CACHEDBAG_TYPE} is set to offheap. Default is 1048576 (1MB).
+     */
+    public static final String PIG_CACHEDBAG_OFFHEAP_BUFFER_SIZE = "pig.cachedbag.offheap.buffer.size";
+
+    /**
+     * Number of threads used by sorted bags to sort tuples in memory and to prefetch
+     * spill files while merging them. Default is 1, which sorts on the calling thread
+     */
+    public static final String PIG_SORT_THREADS = "pig.sort.threads";
+
+    /**
+     * If set to true, order by jobs on multiple columns write their sort keys as normalized
+     * byte strings which are sorted with a plain byte comparison. Only used in mapreduce mode
+     * and if all of the sort columns have simple types or tuples of them. Default is false
+     */
+    public static final String PIG_SORT_NORMALIZED_KEYS = "pig.sort.normalized.keys";
+
     // Pig reducer parallelism estimation settings
     public static final String PIG_EXEC_REDUCER_ESTIMATOR = "pig.exec.reducer.estimator";
     public static final String PIG_EXEC_REDUCER_ESTIMATOR_CONSTRUCTOR_ARG_KEY =  "pig.exec.reducer.estimator.arg";
+    /**
+     * Local directory where {@link org.apache.pig.backend.hadoop.executionengine.mapReduceLayer.HistoryReducerEstimator}
+     * and {@link org.apache.pig.backend.hadoop.executionengine.tez.plan.optimizer.HistoryTezParallelismEstimator}
+     * keep the statistics of the previous runs of each script. Default is ${user.home}/.pig/stats.
+     */
+    public static final String PIG_STATS_HISTORY_DIR = "pig.stats.history.dir";
     /**
      * This key is used to configure auto parallelism in tez. Default is true.
      */
@@ -262,6 +430,25 @@ public class PigConfiguration {
     public static final String PIG_UDF_PROFILE = "pig.udf.profile";
     public static final String PIG_UDF_PROFILE_FREQUENCY = "pig.udf.profile.frequency";
 
+    // Pig UDF result cache settings
+    /**
+     * Controls whether the results of the UDFs not annotated with
+     * {@link org.apache.pig.builtin.Nondeterministic} are cached by input, so
+     * that a UDF is called once for the inputs seen repeatedly. Default is false.
+     */
+    public static final String PIG_UDF_CACHE = "pig.udf.cache";
+    /**
+     * Comma separated class names of the UDFs whose results are cached even if
+     * pig.udf.cache is false.
+     */
+    public static final String PIG_UDF_CACHE_FUNCTIONS = "pig.udf.cache.functions";
+    /**
+     * Maximum estimated memory size of the results cached for a UDF call, in
+     * bytes. Default is 8388608 (8MB).
+     */
+    public static final String PIG_UDF_CACHE_SIZE = "pig.udf.cache.size";
+    public static final long PIG_UDF_CACHE_SIZE_DEFAULT = 8L * 1024 * 1024;
+
     // Pig schema tuple settings
     /**
      * This key must be set to true by the user for code generation to be used.
@@ -280,6 +467,20 @@ public class PigConfiguration {
 
     public static final String PIG_SCHEMA_TUPLE_ALLOW_FORCE = "pig.schematuple.force";
 
+    /**
+     * SchemaTuple classes are generated directly as bytecode. Set this key to true to
+     * fall back to generating java source and compiling it with the system java compiler.
+     */
+    public static final String PIG_SCHEMA_TUPLE_USE_JAVAC = "pig.schematuple.javac";
+
+    /**
+     * Local directory in which generated SchemaTuple classes are cached, keyed by a
+     * fingerprint of the Schema they were generated for. Runs of the same script can
+     * then reuse the classes instead of generating them again. Not set by default,
+     * which disables the cache.
+     */
+    public static final String PIG_SCHEMA_TUPLE_CACHE_DIR = "pig.schematuple.cache.dir";
+
 
     // Pig Streaming settings
     /**
@@ -367,6 +568,19 @@ public class PigConfiguration {
      */
     public static final String PIG_RANDOM_SAMPLER_SAMPLE_SIZE = "pig.random.sampler.sample.size";
 
+    /**
+     * Boolean value to enable or disable finding the quantiles of order-by from quantile sketches
+     * of the sort key, built by the MapReduce job which stores its input, instead of running a
+     * sampling job. Not used for order-by with a user defined comparator. Disabled by default.
+     */
+    public static final String PIG_ORDER_SKETCH = "pig.order.sketch";
+
+    /**
+     * Capacity of the quantile sketches of pig.order.sketch, for which the quantiles are within
+     * about 1.7 / size of the rows. Default is 1024.
+     */
+    public static final String PIG_ORDER_SKETCH_SIZE = "pig.order.sketch.size";
+
 
     //Pig miscellaneous settings
     /**
@@ -498,6 +712,36 @@ public class PigConfiguration {
      */
     public static final String PIG_SPILL_UNUSED_MEMORY_THRESHOLD_SIZE = "pig.spill.unused.memory.threshold.size";
 
+    /**
+     * Spillable objects smaller than this size in bytes are not spilled. Default is 5000000
+     */
+    public static final String PIG_SPILL_SIZE_THRESHOLD = "pig.spill.size.threshold";
+
+    /**
+     * If set to true, bags, partial aggregation and replicated join reserve the memory they use
+     * against a per task budget and spills are triggered synchronously when the budget is exceeded,
+     * instead of reacting to GC memory threshold notifications. Default is false
+     */
+    public static final String PIG_SPILL_MEMORY_BUDGET_ENABLED = "pig.spill.memory.budget.enabled";
+
+    /**
+     * Fraction of the maximum heap size used as memory budget when
+     * {@link PigConfiguration#PIG_SPILL_MEMORY_BUDGET_ENABLED} is set. Default is 0.6
+     */
+    public static final String PIG_SPILL_MEMORY_BUDGET_FRACTION = "pig.spill.memory.budget.fraction";
+
+    /**
+     * Compression codec used for bag spill files, either a codec name known to
+     * hadoop (e.g. default, gzip, lz4, snappy) or a codec class name. Default is no compression
+     */
+    public static final String PIG_SPILL_COMPRESSION_CODEC = "pig.spill.compression.codec";
+
+    /**
+     * If set to true, bag spill files are written (and compressed) by a background thread
+     * while the spilling thread keeps serializing tuples. Default is false
+     */
+    public static final String PIG_SPILL_ASYNC_WRITE = "pig.spill.async.write";
+
     /**
      * Log tracing id that can be used by upstream clients for tracking respective logs
      */
@@ -525,6 +769,15 @@ public class PigConfiguration {
 
     public static final String PIG_STORE_SCHEMA_DISAMBIGUATE_DEFAULT = "true";
 
+    /**
+     * If set to true, the row count, size and per column number of distinct
+     * values and range of the outputs of StoreFuncs implementing
+     * {@link org.apache.pig.StoreMetadata} are collected while they are
+     * stored, and passed to {@link org.apache.pig.StoreMetadata#storeStatistics}
+     * when the job is committed. Only supported in mapreduce mode. Default is false.
+     */
+    public static final String PIG_STORE_STATISTICS = "pig.store.statistics";
+
     public static final String PIG_PRINT_EXEC_PLAN = "pig.print.exec.plan";
 
 }
@@ -58,5 +58,11 @@ public class PigConstants {
     public static final String TIME_UDFS_INVOCATION_COUNTER = "approx_invocations";
     public static final String TIME_UDFS_ELAPSED_TIME_COUNTER = "approx_microsecs";
 
+    /**
+     * Counter names used by pig.udf.cache
+     */
+    public static final String UDF_CACHE_HIT_COUNTER = "cache_hits";
+    public static final String UDF_CACHE_MISS_COUNTER = "cache_misses";
+
     public static final String TASK_INDEX = "mapreduce.task.index";
 }
\ No newline at end of file
@@ -22,6 +22,7 @@ import java.util.Arrays;
 
 import org.apache.pig.classification.InterfaceAudience;
 import org.apache.pig.classification.InterfaceStability;
+import org.codehaus.jackson.annotate.JsonIgnore;
 
 /**
  * An class that represents statistics about data to be loaded or stored.  It is marked unstable
@@ -91,6 +92,11 @@ public class ResourceStatistics implements Cloneable {
          */
         private Object[] valueHistogram = new Object[0];
 
+        // the smallest and largest values of the field, if it has a
+        // simple type
+        private Object minValue;
+        private Object maxValue;
+
         
         public int getVersion() {
             return version;
@@ -143,6 +149,24 @@ public class ResourceStatistics implements Cloneable {
         }
 
         
+        public Object getMinValue() {
+            return minValue;
+        }
+
+        public ResourceFieldStatistics setMinValue(Object minValue) {
+            this.minValue = minValue;
+            return this;
+        }
+
+        public Object getMaxValue() {
+            return maxValue;
+        }
+
+        public ResourceFieldStatistics setMaxValue(Object maxValue) {
+            this.maxValue = maxValue;
+            return this;
+        }
+
         /*
          * equals() and hashCode() overridden mostly for ease of testing
          * you shouldn't encounter a situation in which you need to .equals()
@@ -158,6 +182,8 @@ public class ResourceStatistics implements Cloneable {
                     Arrays.equals(mostCommonValuesFreq, other.mostCommonValuesFreq) &&
                     Arrays.equals(valueHistogram, other.valueHistogram) &&
                     this.numDistinctValues.equals(other.numDistinctValues) &&
+                    (minValue == null ? other.minValue == null : minValue.equals(other.minValue)) &&
+                    (maxValue == null ? other.maxValue == null : maxValue.equals(other.maxValue)) &&
                     this.version == other.version
                     );
         }
@@ -186,6 +212,8 @@ public class ResourceStatistics implements Cloneable {
             for (Float f : mostCommonValuesFreq) sb.append('['+f.toString()+']');
             sb.append("\n");
             sb.append("numDistVals: "+numDistinctValues);
+            sb.append("minVal: "+minValue);
+            sb.append("maxVal: "+maxValue);
             sb.append("valHistogram: \n");
             for (Object o : valueHistogram) sb.append('['+o.toString()+']');
             sb.append("\n");
@@ -193,8 +221,9 @@ public class ResourceStatistics implements Cloneable {
         }
     }
     
+    @JsonIgnore
     public Long getmBytes() {
-        return this.bytes / 1024 / 1024;
+        return this.bytes == null ? null : this.bytes / 1024 / 1024;
     }
 
     /**
@@ -238,7 +267,7 @@ public class ResourceStatistics implements Cloneable {
      * totalbytes/totalrecords. Will return null if can't be computed.
      */
     public Long getAvgRecordSize() {
-        if (avgRecordSize == null && (bytes != null && numRecords != null))
+        if (avgRecordSize == null && (bytes != null && numRecords != null && numRecords > 0))
             return bytes / numRecords;
         else 
             return avgRecordSize;
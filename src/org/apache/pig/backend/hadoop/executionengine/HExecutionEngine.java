@@ -22,7 +22,9 @@ import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.net.URL;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
@@ -33,6 +35,7 @@ import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.hdfs.DistributedFileSystem;
 import org.apache.hadoop.mapred.JobConf;
+import org.apache.pig.PigConfiguration;
 import org.apache.pig.PigException;
 import org.apache.pig.backend.BackendException;
 import org.apache.pig.backend.datastorage.DataStorage;
@@ -58,6 +61,7 @@ import org.apache.pig.impl.plan.VisitorException;
 import org.apache.pig.impl.streaming.ExecutableManager;
 import org.apache.pig.impl.util.Utils;
 import org.apache.pig.newplan.Operator;
+import org.apache.pig.newplan.logical.optimizer.JoinStrategySelector;
 import org.apache.pig.newplan.logical.relational.LOForEach;
 import org.apache.pig.newplan.logical.relational.LogToPhyTranslationVisitor;
 import org.apache.pig.newplan.logical.relational.LogicalPlan;
@@ -87,6 +91,8 @@ public abstract class HExecutionEngine implements ExecutionEngine {
     // val: the operator key for the root of the phyisical plan
     protected Map<OperatorKey, OperatorKey> logicalToPhysicalKeys;
     protected Map<Operator, PhysicalOperator> newLogToPhyMap;
+    // the strategies chosen for the joins of the last plan compiled
+    protected List<String> joinStrategies = Collections.emptyList();
 
     public HExecutionEngine(PigContext pigContext) {
         this.pigContext = pigContext;
@@ -239,6 +245,12 @@ public abstract class HExecutionEngine implements ExecutionEngine {
             throw new FrontendException(msg, errCode, PigException.BUG);
         }
 
+        joinStrategies = Collections.emptyList();
+        if (properties != null && !pigContext.inIllustrator && Boolean.parseBoolean(
+                properties.getProperty(PigConfiguration.PIG_JOIN_AUTO, "false"))) {
+            joinStrategies = new JoinStrategySelector(plan, properties).selectStrategies();
+        }
+
         // translate new logical plan to physical plan
         LogToPhyTranslationVisitor translator = new LogToPhyTranslationVisitor(plan);
 
@@ -315,6 +327,15 @@ public abstract class HExecutionEngine implements ExecutionEngine {
             }
 
             PhysicalPlan pp = compile(lp, pc.getProperties());
+            if (format.equals("text") && !joinStrategies.isEmpty()) {
+                pps.println("#--------------------------------------------------");
+                pps.println("# Join Strategies");
+                pps.println("#--------------------------------------------------");
+                for (String strategy : joinStrategies) {
+                    pps.println(strategy);
+                }
+                pps.println("");
+            }
             pp.explain(pps, format, verbose);
 
             MapRedUtil.checkLeafIsStore(pp, pigContext);
@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pig.backend.hadoop.executionengine.mapReduceLayer;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators.POLoad;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.util.PlanHelper;
+import org.apache.pig.tools.pigstats.RuntimeStatsStore;
+
+/**
+ * Estimates the number of reducers from the bytes the same job shuffled on
+ * the previous run of the script, scaled by how much its input grew or shrank
+ * since. Unlike {@link InputSizeReducerEstimator}, this accounts for the
+ * selectivity of filters, the growth from flattens and the reduction from
+ * combiners. The statistics of each job are recorded in a
+ * {@link RuntimeStatsStore} when it succeeds, and jobs which have not run yet
+ * are estimated by {@link InputSizeReducerEstimator}.
+ * <p>
+ * The same properties as {@link InputSizeReducerEstimator} apply:
+ * pig.exec.reducers.bytes.per.reducer and pig.exec.reducers.max.
+ */
+public class HistoryReducerEstimator implements PigReducerEstimator {
+    private static final Log log = LogFactory.getLog(HistoryReducerEstimator.class);
+
+    @Override
+    public int estimateNumberOfReducers(Job job, MapReduceOper mapReduceOper) throws IOException {
+        Configuration conf = job.getConfiguration();
+        long bytesPerReducer = conf.getLong(BYTES_PER_REDUCER_PARAM, DEFAULT_BYTES_PER_REDUCER);
+        int maxReducers = conf.getInt(MAX_REDUCER_COUNT_PARAM, DEFAULT_MAX_REDUCER_COUNT_PARAM);
+
+        List<POLoad> poLoads = PlanHelper.getPhysicalOperators(mapReduceOper.mapPlan, POLoad.class);
+        long inputBytes = InputSizeReducerEstimator.getTotalInputFileSize(conf, poLoads, job);
+
+        String scriptSignature = conf.get(RuntimeStatsStore.SCRIPT_SIGNATURE);
+        if (scriptSignature != null) {
+            String signature = RuntimeStatsStore.getSignature(Arrays.asList(
+                    mapReduceOper.mapPlan, mapReduceOper.combinePlan, mapReduceOper.reducePlan));
+            mapReduceOper.statsSignature = signature;
+            mapReduceOper.statsInputBytes = inputBytes;
+            Map<String, Long> stats = new RuntimeStatsStore(conf).get(scriptSignature, signature);
+            int reducers = estimate(stats, inputBytes, bytesPerReducer, maxReducers);
+            if (reducers > 0) {
+                log.info("Estimated " + reducers + " reducers from the statistics " + stats
+                        + " of the previous run of job " + signature);
+                return reducers;
+            }
+        }
+        return new InputSizeReducerEstimator().estimateNumberOfReducers(job, mapReduceOper);
+    }
+
+    /**
+     * @param stats the statistics of the previous run, or null
+     * @param inputBytes the size of the input of this run, or -1 if unknown
+     * @return the parallelism which would have had bytesPerReducer bytes
+     *  shuffled to each task on the previous run, scaled by the input size, or
+     *  -1 if the shuffled bytes are not known
+     */
+    public static int estimate(Map<String, Long> stats, long inputBytes,
+            long bytesPerReducer, int maxReducers) {
+        if (stats == null || stats.get(RuntimeStatsStore.SHUFFLE_BYTES) == null) {
+            return -1;
+        }
+        double shuffleBytes = stats.get(RuntimeStatsStore.SHUFFLE_BYTES);
+        Long previousInputBytes = stats.get(RuntimeStatsStore.INPUT_BYTES);
+        if (inputBytes > 0 && previousInputBytes != null && previousInputBytes > 0) {
+            shuffleBytes = shuffleBytes * inputBytes / previousInputBytes;
+        }
+        int reducers = (int) Math.ceil(shuffleBytes / bytesPerReducer);
+        reducers = Math.max(1, reducers);
+        reducers = Math.min(maxReducers, reducers);
+        return reducers;
+    }
+}
@@ -24,6 +24,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.Serializable;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
@@ -70,6 +71,7 @@ import org.apache.pig.OverwritableStoreFunc;
 import org.apache.pig.PigConfiguration;
 import org.apache.pig.PigException;
 import org.apache.pig.StoreFuncInterface;
+import org.apache.pig.StoreMetadata;
 import org.apache.pig.backend.executionengine.ExecException;
 import org.apache.pig.backend.hadoop.DateTimeWritable;
 import org.apache.pig.backend.hadoop.HDataType;
@@ -88,14 +90,19 @@ import org.apache.pig.backend.hadoop.executionengine.physicalLayer.plans.Physica
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.plans.UdfCacheShipFilesVisitor;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators.POFRJoin;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators.POLoad;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators.POLocalRearrange;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators.POMergeCogroup;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators.POMergeJoin;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators.POPackage;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators.POPartitionRearrange;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators.POReplicatedCross;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators.POStore;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.util.PlanHelper;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.util.SkewedKeyDetector;
 import org.apache.pig.backend.hadoop.executionengine.util.MapRedUtil;
 import org.apache.pig.data.BagFactory;
 import org.apache.pig.data.DataType;
+import org.apache.pig.data.NormalizedKeyEncoder;
 import org.apache.pig.data.SchemaTupleFrontend;
 import org.apache.pig.data.Tuple;
 import org.apache.pig.data.TupleFactory;
@@ -113,12 +120,14 @@ import org.apache.pig.impl.io.NullableDoubleWritable;
 import org.apache.pig.impl.io.NullableFloatWritable;
 import org.apache.pig.impl.io.NullableIntWritable;
 import org.apache.pig.impl.io.NullableLongWritable;
+import org.apache.pig.impl.io.NullableNormalizedTuple;
 import org.apache.pig.impl.io.NullablePartitionWritable;
 import org.apache.pig.impl.io.NullableText;
 import org.apache.pig.impl.io.NullableTuple;
 import org.apache.pig.impl.io.PigNullableWritable;
 import org.apache.pig.impl.plan.DepthFirstWalker;
 import org.apache.pig.impl.plan.OperatorKey;
+import org.apache.pig.impl.plan.PlanException;
 import org.apache.pig.impl.plan.VisitorException;
 import org.apache.pig.impl.util.JarManager;
 import org.apache.pig.impl.util.ObjectSerializer;
@@ -694,6 +703,16 @@ public class JobControlCompiler{
                 }
             }
 
+            Map<Tuple, Double> skewedKeys = null;
+            if (mro.getSkewedJoinRearrange() != null) {
+                // the loads are still in the map plan, and the inputs exist
+                skewedKeys = new SkewedKeyDetector(conf).detect(mro.mapPlan, mro.getSkewedJoinRearrange());
+                if (skewedKeys.isEmpty()) {
+                    log.info("No skewed keys found, running the skewed join as a hash join");
+                    removeSkewedJoin(mro);
+                }
+            }
+
             if(lds!=null && lds.size()>0){
                 for (POLoad ld : lds) {
                     //Store the target operators for tuples read
@@ -772,6 +791,11 @@ public class JobControlCompiler{
             LinkedList<POStore> mapStores = PlanHelper.getPhysicalOperators(mro.mapPlan, POStore.class);
             LinkedList<POStore> reduceStores = PlanHelper.getPhysicalOperators(mro.reducePlan, POStore.class);
 
+            if (conf.getBoolean(PigConfiguration.PIG_STORE_STATISTICS, false)) {
+                setStatsDirs(mapStores);
+                setStatsDirs(reduceStores);
+            }
+
             for (POStore st : mapStores) {
                 storeLocations.add(st);
                 StoreFuncInterface sFunc = st.getStoreFunc();
@@ -931,9 +955,17 @@ public class JobControlCompiler{
 
             if(mro.isGlobalSort() || mro.isLimitAfterSort()){
                 if (mro.isGlobalSort()) {
-                    String symlink = addSingleFileToDistributedCache(
-                            pigContext, conf, mro.getQuantFile(), "pigsample");
-                    conf.set("pig.quantilesFile", symlink);
+                    if (mro.getSortKeySketch() != null) {
+                        // the previous job built sketches of the sort key,
+                        // so the quantiles are passed in the conf instead
+                        // of sampled
+                        conf.set(WeightedRangePartitioner.QUANTILES, ObjectSerializer.serialize((Serializable)
+                                mro.getSortKeySketch().getQuantiles(conf, conf.getInt(MRConfiguration.REDUCE_TASKS, 1))));
+                    } else {
+                        String symlink = addSingleFileToDistributedCache(
+                                pigContext, conf, mro.getQuantFile(), "pigsample");
+                        conf.set("pig.quantilesFile", symlink);
+                    }
                     nwJob.setPartitionerClass(WeightedRangePartitioner.class);
                 }
 
@@ -960,13 +992,28 @@ public class JobControlCompiler{
                 } else {
                     conf.set("pig.sortOrder",
                             ObjectSerializer.serialize(mro.getSortOrder()));
+                    if (useNormalizedKeys(mro, pack, conf)) {
+                        nwJob.setMapperClass(PigMapReduce.MapWithNormalizedKey.class);
+                        nwJob.setMapOutputKeyClass(NullableNormalizedTuple.class);
+                        nwJob.setSortComparatorClass(PigNormalizedKeyComparator.class);
+                        conf.set("pig.normalizedkeys", "true");
+                    }
                 }
             }
 
+            if (skewedKeys != null) {
+                // the skewed keys were found above, so the distribution is
+                // passed in the conf instead of sampled. It is also set when
+                // there are none, for the IsFirstReduceOfKey of outer joins
+                conf.set(MapRedUtil.KEY_DIST, ObjectSerializer.serialize((Serializable) MapRedUtil.getKeyDistribution(
+                        skewedKeys, conf.getInt(MRConfiguration.REDUCE_TASKS, 1))));
+            }
             if (mro.isSkewedJoin()) {
-                String symlink = addSingleFileToDistributedCache(pigContext,
-                        conf, mro.getSkewedJoinPartitionFile(), "pigdistkey");
-                conf.set("pig.keyDistFile", symlink);
+                if (skewedKeys == null) {
+                    String symlink = addSingleFileToDistributedCache(pigContext,
+                            conf, mro.getSkewedJoinPartitionFile(), "pigdistkey");
+                    conf.set("pig.keyDistFile", symlink);
+                }
                 nwJob.setPartitionerClass(SkewedPartitioner.class);
                 nwJob.setMapperClass(PigMapReduce.MapWithPartitionIndex.class);
                 nwJob.setMapOutputKeyClass(NullablePartitionWritable.class);
@@ -1058,6 +1105,20 @@ public class JobControlCompiler{
         }
     }
 
+    /**
+     * Have the stores of user outputs whose StoreFunc implements
+     * {@link StoreMetadata} collect the statistics of the tuples they store in
+     * a temporary directory, which {@link PigOutputCommitter} merges when the
+     * job is committed.
+     */
+    private void setStatsDirs(List<POStore> stores) throws IOException {
+        for (POStore st : stores) {
+            if (!st.isTmpStore() && st.getStoreFunc() instanceof StoreMetadata) {
+                st.setStatsDir(FileLocalizer.getTemporaryPath(pigContext).toString());
+            }
+        }
+    }
+
     /**
      * Adjust the number of reducers based on the default_parallel, requested parallel and estimated
      * parallel. For sampler jobs, we also adjust the next job in advance to get its runtime parallel as
@@ -1093,6 +1154,10 @@ public class JobControlCompiler{
         conf.setInt(PigImplConstants.REDUCER_DEFAULT_PARALLELISM, pigContext.defaultParallel);
         conf.setInt(PigImplConstants.REDUCER_REQUESTED_PARALLELISM, mro.requestedParallelism);
         conf.setInt(PigImplConstants.REDUCER_ESTIMATED_PARALLELISM, mro.estimatedParallelism);
+        if (mro.statsSignature != null) {
+            conf.set(PigImplConstants.STATS_HISTORY_SIGNATURE, mro.statsSignature);
+            conf.setLong(PigImplConstants.STATS_HISTORY_INPUT_BYTES, mro.statsInputBytes);
+        }
 
         // this is for backward compatibility, and we encourage to use runtimeParallelism at runtime
         mro.requestedParallelism = jobParallelism;
@@ -1378,6 +1443,46 @@ public class JobControlCompiler{
         }
     }
 
+    /**
+     * Turns a skewed join whose keys are found at launch back into a hash
+     * join, by replacing the partition rearrange of its second input with a
+     * local rearrange of the same key. The join is then partitioned on the
+     * key like a plain join.
+     */
+    private void removeSkewedJoin(MapReduceOper mro) throws PlanException, VisitorException {
+        for (POPartitionRearrange pr : PlanHelper.getPhysicalOperators(mro.mapPlan, POPartitionRearrange.class)) {
+            POLocalRearrange lr = new POLocalRearrange(pr);
+            lr.setResultType(DataType.TUPLE);
+            mro.mapPlan.replace(pr, lr);
+        }
+        mro.setSkewedJoinRearrange(null);
+    }
+
+    /**
+     * Check whether the sort keys of an order by job can be sorted as
+     * normalized keys: normalized keys have to be enabled, the key has to be
+     * a tuple and all of its fields have to be of a type supported by
+     * {@link NormalizedKeyEncoder}.
+     */
+    private boolean useNormalizedKeys(MapReduceOper mro, POPackage pack, Configuration conf) {
+        if (!conf.getBoolean(PigConfiguration.PIG_SORT_NORMALIZED_KEYS, false)
+                || pack == null || pack.getPkgr().getKeyType() != DataType.TUPLE
+                || mro.getUseSecondaryKey() || mro.isSkewedJoin()
+                || mro.mapPlan.getLeaves().size() != 1
+                || !(mro.mapPlan.getLeaves().get(0) instanceof POLocalRearrange)) {
+            return false;
+        }
+        POLocalRearrange lr = (POLocalRearrange) mro.mapPlan.getLeaves().get(0);
+        for (PhysicalPlan keyPlan : lr.getPlans()) {
+            if (keyPlan.getLeaves().size() != 1 || !NormalizedKeyEncoder.isSupportedType(
+                    keyPlan.getLeaves().get(0).getResultType())) {
+                return false;
+            }
+        }
+        log.info("Using normalized sort keys");
+        return true;
+    }
+
     private void selectComparator(
             MapReduceOper mro,
             byte keyType,
@@ -1896,7 +2001,13 @@ public class JobControlCompiler{
 
                 join.setReplFiles(newReplFiles);
 
-                if (sizeOfReplicatedInputs > maxSize) {
+                // a replicated cross is crossed block by block
+                boolean spills = join instanceof POReplicatedCross || join.isHybrid();
+                if (sizeOfReplicatedInputs > maxSize && spills) {
+                    log.warn("Replicated input files size: " + sizeOfReplicatedInputs + " exceeds "
+                            + PigConfiguration.PIG_JOIN_REPLICATED_MAX_BYTES + ": " + maxSize
+                            + ". The join spills to disk if they do not fit in memory.");
+                } else if (sizeOfReplicatedInputs > maxSize) {
                     throw new VisitorException("Replicated input files size: "
                             + sizeOfReplicatedInputs + " exceeds " +
                             PigConfiguration.PIG_JOIN_REPLICATED_MAX_BYTES + ": " + maxSize);
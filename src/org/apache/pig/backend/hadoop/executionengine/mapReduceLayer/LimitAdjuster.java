@@ -136,6 +136,9 @@ public class LimitAdjuster extends MROpPlanVisitor {
             st.setIsTmpStore(oldIsTmpStore);
             st.setSchema(((POStore)mpLeaf).getSchema());
             st.setSignature(((POStore)mpLeaf).getSignature());
+            // the sketch of a sort key is built on the limited output
+            st.setSortKeySketch(((POStore)mpLeaf).getSortKeySketch());
+            storeOp.setSortKeySketch(null);
             st.copyAliasFrom(mpLeaf);
 
             limitAdjustMROp.reducePlan.addAsLeaf(st);
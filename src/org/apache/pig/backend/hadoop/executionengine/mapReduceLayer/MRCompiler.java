@@ -85,6 +85,7 @@ import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOpe
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators.Packager;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators.Packager.PackageType;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.util.PlanHelper;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.util.SortKeySketch;
 import org.apache.pig.backend.hadoop.executionengine.shims.HadoopShims;
 import org.apache.pig.backend.hadoop.executionengine.util.MapRedUtil;
 import org.apache.pig.data.DataType;
@@ -1162,6 +1163,8 @@ public class MRCompiler extends PhyPlanVisitor {
                 replFiles[i] = getTempFileSpec();
             }
             op.setReplFiles(replFiles);
+            op.setHybrid(Boolean.valueOf(pigContext.getProperties().getProperty(
+                    PigConfiguration.PIG_JOIN_REPLICATED_HYBRID, "false")));
 
 
             curMROp = phyToMROpMap.get(op.getInputs().get(op.getFragment()));
@@ -1814,40 +1817,57 @@ public class MRCompiler extends PhyPlanVisitor {
                 throw new VisitorException("POSkewedJoin operator has " + compiledInputs.length + " inputs. It should have 2.", errCode);
             }
 
-            //change plan to store the first join input into a temp file
-            FileSpec fSpec = getTempFileSpec();
-            MapReduceOper mro = compiledInputs[0];
-            POStore str = getStore();
-            str.setSFile(fSpec);
-            if (!mro.isMapDone()) {
-                mro.mapPlan.addAsLeaf(str);
-                mro.setMapDoneSingle(true);
-            } else if (mro.isMapDone() && !mro.isReduceDone()) {
-                mro.reducePlan.addAsLeaf(str);
-                mro.setReduceDone(true);
-            } else {
-                int errCode = 2022;
-                String msg = "Both map and reduce phases have been done. This is unexpected while compiling.";
-                throw new PlanException(msg, errCode, PigException.BUG);
-            }
-
-            FileSpec partitionFile = getTempFileSpec();
+            FileSpec partitionFile = null;
             int rp = op.getRequestedParallelism();
+            MapReduceOper[] joinInputs;
+            if (!op.isDetectKeysAtLaunch()) {
+                //change plan to store the first join input into a temp file
+                FileSpec fSpec = getTempFileSpec();
+                MapReduceOper mro = compiledInputs[0];
+                POStore str = getStore();
+                str.setSFile(fSpec);
+                if (!mro.isMapDone()) {
+                    mro.mapPlan.addAsLeaf(str);
+                    mro.setMapDoneSingle(true);
+                } else if (mro.isMapDone() && !mro.isReduceDone()) {
+                    mro.reducePlan.addAsLeaf(str);
+                    mro.setReduceDone(true);
+                } else {
+                    int errCode = 2022;
+                    String msg = "Both map and reduce phases have been done. This is unexpected while compiling.";
+                    throw new PlanException(msg, errCode, PigException.BUG);
+                }
+
+                partitionFile = getTempFileSpec();
 
-            Pair<MapReduceOper, Integer> sampleJobPair = getSkewedJoinSampleJob(op, mro, fSpec, partitionFile, rp);
-            rp = sampleJobPair.second;
+                Pair<MapReduceOper, Integer> sampleJobPair = getSkewedJoinSampleJob(op, mro, fSpec, partitionFile, rp);
+                rp = sampleJobPair.second;
 
-            // set parallelism of SkewedJoin as the value calculated by sampling job
-            // if "parallel" is specified in join statement, "rp" is equal to that number
-            // if not specified, use the value that sampling process calculated
-            // based on default.
-            op.setRequestedParallelism(rp);
+                // set parallelism of SkewedJoin as the value calculated by sampling job
+                // if "parallel" is specified in join statement, "rp" is equal to that number
+                // if not specified, use the value that sampling process calculated
+                // based on default.
+                op.setRequestedParallelism(rp);
 
-            // load the temp file for first table as input of join
-            MapReduceOper[] joinInputs = new MapReduceOper[] {startNew(fSpec, sampleJobPair.first), compiledInputs[1]};
+                // load the temp file for first table as input of join
+                joinInputs = new MapReduceOper[] {startNew(fSpec, sampleJobPair.first), compiledInputs[1]};
+            } else {
+                // the skewed keys are found when the job is launched, the
+                // first input is joined as is
+                joinInputs = new MapReduceOper[] {compiledInputs[0], compiledInputs[1]};
+            }
             MapReduceOper[] rearrangeOutputs = new MapReduceOper[2];
 
             compiledInputs = new MapReduceOper[] {joinInputs[0]};
+            // if the map for current input is already closed, then start a new job
+            if (compiledInputs[0].isMapDone() && !compiledInputs[0].isReduceDone()) {
+                FileSpec f = getTempFileSpec();
+                POStore s = getStore();
+                s.setSFile(f);
+                compiledInputs[0].reducePlan.addAsLeaf(s);
+                compiledInputs[0].setReduceDone(true);
+                compiledInputs[0] = startNew(f, compiledInputs[0]);
+            }
             // run POLocalRearrange for first join table
             POLocalRearrange lr = new POLocalRearrange(new OperatorKey(scope,nig.getNextNodeId(scope)), rp);
             try {
@@ -1875,6 +1895,7 @@ public class MRCompiler extends PhyPlanVisitor {
             if(lr.getRequestedParallelism() > curMROp.requestedParallelism)
                 curMROp.requestedParallelism = lr.getRequestedParallelism();
             rearrangeOutputs[0] = curMROp;
+            POLocalRearrange firstLr = lr;
 
             compiledInputs = new MapReduceOper[] {joinInputs[1]};
             // if the map for current input is already closed, then start a new job
@@ -1963,7 +1984,11 @@ public class MRCompiler extends PhyPlanVisitor {
 
             fe.visit(this);
 
-            curMROp.setSkewedJoinPartitionFile(partitionFile.getFileName());
+            if (partitionFile != null) {
+                curMROp.setSkewedJoinPartitionFile(partitionFile.getFileName());
+            } else {
+                curMROp.setSkewedJoinRearrange(firstLr);
+            }
             phyToMROpMap.put(op, curMROp);
         }catch(PlanException e) {
             int errCode = 2034;
@@ -1982,13 +2007,21 @@ public class MRCompiler extends PhyPlanVisitor {
         try{
             FileSpec fSpec = getTempFileSpec();
             MapReduceOper mro = endSingleInputPlanWithStr(fSpec);
-            FileSpec quantFile = getTempFileSpec();
             int rp = op.getRequestedParallelism();
             Pair<POProject, Byte>[] fields = getSortCols(op.getSortPlans());
-            Pair<MapReduceOper, Integer> quantJobParallelismPair =
-                getQuantileJob(op, mro, fSpec, quantFile, rp);
-            curMROp = getSortJob(op, quantJobParallelismPair.first, fSpec, quantFile,
-                    quantJobParallelismPair.second, fields);
+            SortKeySketch sortKeySketch = getSortKeySketch(op, mro, fSpec);
+            if (sortKeySketch != null) {
+                // the job which stores the input builds sketches of the
+                // sort key, from which the quantiles are found
+                curMROp = getSortJob(op, mro, fSpec, null, rp, fields);
+                curMROp.setSortKeySketch(sortKeySketch);
+            } else {
+                FileSpec quantFile = getTempFileSpec();
+                Pair<MapReduceOper, Integer> quantJobParallelismPair =
+                    getQuantileJob(op, mro, fSpec, quantFile, rp);
+                curMROp = getSortJob(op, quantJobParallelismPair.first, fSpec, quantFile,
+                        quantJobParallelismPair.second, fields);
+            }
 
             if(op.isUDFComparatorUsed){
                 curMROp.UDFs.add(op.getMSortFunc().getFuncSpec().toString());
@@ -2090,7 +2123,9 @@ public class MRCompiler extends PhyPlanVisitor {
             int rp,
             Pair<POProject, Byte>[] fields) throws PlanException{
         MapReduceOper mro = startNew(lFile, quantJob);
-        mro.setQuantFile(quantFile.getFileName());
+        if (quantFile != null) {
+            mro.setQuantFile(quantFile.getFileName());
+        }
         mro.setGlobalSort(true);
         mro.requestedParallelism = rp;
 
@@ -2248,6 +2283,67 @@ public class MRCompiler extends PhyPlanVisitor {
         return mro;
     }
 
+    /**
+     * Has the store of the input of a sort build sketches of the sort key,
+     * with {@link PigConfiguration#PIG_ORDER_SKETCH}. The sort keys must be
+     * columns of the input, and the input must not be a plain load, whose
+     * sampling job is made to read the original input by
+     * {@link SampleOptimizer} instead.
+     *
+     * @return the sort key whose sketches are built, or null if the sort
+     *  needs a sampling job
+     */
+    private SortKeySketch getSortKeySketch(POSort sort, MapReduceOper prevJob, FileSpec lFile)
+            throws IOException {
+        if (pigContext.inIllustrator || sort.isUDFComparatorUsed
+                || !Boolean.parseBoolean(pigContext.getProperties().getProperty(
+                        PigConfiguration.PIG_ORDER_SKETCH, "false"))) {
+            return null;
+        }
+        if (prevJob.reducePlan.isEmpty() && prevJob.mapPlan.size() == 2
+                && MRPlan.getPredecessors(prevJob) == null) {
+            return null;
+        }
+        int[] keyColumns = null;
+        List<PhysicalPlan> sortPlans = sort.getSortPlans();
+        PhysicalOperator leaf = sortPlans.get(0).getLeaves().get(0);
+        if (!(sortPlans.size() == 1 && leaf instanceof POProject && ((POProject) leaf).isStar())) {
+            keyColumns = new int[sortPlans.size()];
+            for (int i = 0; i < sortPlans.size(); i++) {
+                leaf = sortPlans.get(i).getLeaves().get(0);
+                if (sortPlans.get(i).size() != 1 || !(leaf instanceof POProject)) {
+                    return null;
+                }
+                POProject prj = (POProject) leaf;
+                if (prj.isStar() || prj.isProjectToEnd() || prj.getColumns().size() != 1) {
+                    return null;
+                }
+                keyColumns[i] = prj.getColumn();
+            }
+        }
+        POStore store = null;
+        for (PhysicalOperator op : prevJob.isReduceDone() ? prevJob.reducePlan.getLeaves()
+                : prevJob.mapPlan.getLeaves()) {
+            if (op instanceof POStore && ((POStore) op).getSFile() == lFile) {
+                store = (POStore) op;
+            }
+        }
+        if (store == null) {
+            return null;
+        }
+        List<Boolean> ascCols = sort.getMAscCols();
+        boolean[] asc = new boolean[ascCols.size()];
+        for (int i = 0; i < ascCols.size(); i++) {
+            asc[i] = ascCols.get(i);
+        }
+        int size = Integer.parseInt(pigContext.getProperties().getProperty(
+                PigConfiguration.PIG_ORDER_SKETCH_SIZE, String.valueOf(SortKeySketch.DEFAULT_SIZE)));
+        SortKeySketch sortKeySketch = new SortKeySketch(
+                FileLocalizer.getTemporaryPath(pigContext).toString(), keyColumns, asc, size);
+        store.setSortKeySketch(sortKeySketch);
+        return sortKeySketch;
+    }
+
     private Pair<MapReduceOper,Integer> getQuantileJob(
             POSort inpSort,
             MapReduceOper prevJob,
@@ -28,9 +28,11 @@ import org.apache.pig.backend.hadoop.executionengine.mapReduceLayer.plans.MROpPl
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.PhysicalOperator;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.plans.PhysicalPlan;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators.POCounter;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators.POLocalRearrange;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators.PORank;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators.POStore;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators.POUnion;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.util.SortKeySketch;
 import org.apache.pig.impl.plan.NodeIdGenerator;
 import org.apache.pig.impl.plan.Operator;
 import org.apache.pig.impl.plan.OperatorKey;
@@ -106,6 +108,10 @@ public class MapReduceOper extends Operator<MROpPlanVisitor> {
     
     //The quantiles file name if globalSort is true
     String quantFile;
+
+    // The sketches of the sort key built by the previous job, from which
+    // the quantiles are found instead of the quantiles file
+    private SortKeySketch sortKeySketch;
     
     //The sort order of the columns;
     //asc is true and desc is false
@@ -132,6 +138,11 @@ public class MapReduceOper extends Operator<MROpPlanVisitor> {
     
     // calculated at runtime 
     int runtimeParallelism = -1;
+
+    // Signature and input size under which the statistics of the job are
+    // recorded by HistoryReducerEstimator
+    String statsSignature = null;
+    long statsInputBytes = -1;
     
     /* Name of the Custom Partitioner used */ 
     String customPartitioner = null;
@@ -153,6 +164,10 @@ public class MapReduceOper extends Operator<MROpPlanVisitor> {
     // Name of the partition file generated by sampling process,
     // Used by Skewed Join
 	private String skewedJoinPartitionFile;
+
+    // The local rearrange of the first input of a Skewed Join whose skewed
+    // keys are found when the job is launched, instead of a partition file
+    private POLocalRearrange skewedJoinRearrange;
 	
 	// Flag to communicate from MRCompiler to JobControlCompiler what kind of
 	// comparator is used by Hadoop for sorting for this MROper. 
@@ -309,7 +324,7 @@ public class MapReduceOper extends Operator<MROpPlanVisitor> {
     }
     
     public boolean isSkewedJoin() {
-    	return (skewedJoinPartitionFile != null);
+    	return (skewedJoinPartitionFile != null || skewedJoinRearrange != null);
     }
     
     public void setSkewedJoinPartitionFile(String file) {    	
@@ -320,6 +335,18 @@ public class MapReduceOper extends Operator<MROpPlanVisitor> {
     	return skewedJoinPartitionFile;
     }
 
+    public void setSkewedJoinRearrange(POLocalRearrange lr) {
+        skewedJoinRearrange = lr;
+    }
+
+    /**
+     * @return the local rearrange of the first input of the Skewed Join, if
+     *  its skewed keys are found when the job is launched, or else null
+     */
+    public POLocalRearrange getSkewedJoinRearrange() {
+        return skewedJoinRearrange;
+    }
+
 	public void setSkewedJoin(boolean skJoin) {
 		this.skewedJoin = skJoin;
 	}
@@ -404,6 +431,14 @@ public class MapReduceOper extends Operator<MROpPlanVisitor> {
         this.quantFile = quantFile;
     }
 
+    public SortKeySketch getSortKeySketch() {
+        return sortKeySketch;
+    }
+
+    public void setSortKeySketch(SortKeySketch sortKeySketch) {
+        this.sortKeySketch = sortKeySketch;
+    }
+
     public void setSortOrder(boolean[] sortOrder) {
         if(null == sortOrder) return;
         this.sortOrder = new boolean[sortOrder.length];
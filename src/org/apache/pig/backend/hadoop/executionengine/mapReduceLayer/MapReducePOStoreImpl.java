@@ -27,7 +27,11 @@ import org.apache.hadoop.mapreduce.TaskInputOutputContext;
 import org.apache.pig.StoreFuncInterface;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators.POStore;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators.POStoreImpl;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.util.SortKeySketch;
 import org.apache.pig.backend.hadoop.executionengine.shims.HadoopShims;
+import org.apache.pig.data.Tuple;
+import org.apache.pig.impl.util.QuantileSketch;
+import org.apache.pig.impl.util.StatisticsCollector;
 import org.apache.pig.tools.pigstats.PigStatsUtil;
 import org.apache.pig.tools.pigstats.PigStatusReporter;
 /**
@@ -111,6 +115,23 @@ public class MapReducePOStoreImpl extends POStoreImpl {
         }
     }
 
+    /**
+     * Writes the statistics collected by the store, to be merged when the job
+     * is committed.
+     */
+    public void storeStatistics(String statsDir, StatisticsCollector stats) throws IOException {
+        PigOutputCommitter.writeStatistics(statsDir, stats, context);
+    }
+
+    /**
+     * Writes the sketch of the sort key built by the store, to be merged when
+     * the ORDER BY job is compiled.
+     */
+    public void storeSortKeySketch(SortKeySketch sortKeySketch, QuantileSketch<Tuple> sketch)
+            throws IOException {
+        sortKeySketch.write(sketch, context);
+    }
+
     public void incrRecordCounter(String name, long incr) {
         reporter.incrCounter(PigStatsUtil.MULTI_STORE_COUNTER_GROUP, name, incr);
     }
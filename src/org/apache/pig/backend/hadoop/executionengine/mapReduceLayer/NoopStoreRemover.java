@@ -169,7 +169,11 @@ class NoopStoreRemover extends MROpPlanVisitor {
                     if (op instanceof POStore) {
                         POStore store = (POStore)op;
 
-                        if (store.isTmpStore()) { 
+                        if (store.getSortKeySketch() != null) {
+                            // kept for the sketch of the sort key it
+                            // builds from the tuples as they are sorted
+                            continue;
+                        } else if (store.isTmpStore()) {
                             // tmp store means introduced by the
                             // MRCompiler. User didn't ask for
                             // those. There can be at most one per
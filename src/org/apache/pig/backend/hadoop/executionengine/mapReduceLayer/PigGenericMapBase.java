@@ -37,6 +37,7 @@ import org.apache.pig.backend.executionengine.ExecException;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.POStatus;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.PhysicalOperator;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.Result;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.TupleBatch;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.plans.PhysicalPlan;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators.POStore;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.util.PlanHelper;
@@ -90,6 +91,9 @@ public abstract class PigGenericMapBase extends Mapper<Text, Tuple, PigNullableW
 
     private PhysicalOperator leaf;
 
+    // input tuples not run through the pipeline yet, when the roots process batches
+    private TupleBatch mapBatch = null;
+
     private volatile boolean initialized = false;
 
     /**
@@ -112,6 +116,10 @@ public abstract class PigGenericMapBase extends Mapper<Text, Tuple, PigNullableW
             return;
         }
 
+        if (mapBatch != null && mapBatch.size() > 0) {
+            runBatch();
+        }
+
         if(PigMapReduce.sJobConfInternal.get().get(JobControlCompiler.END_OF_INP_IN_MAP, "false").equals("true") && !mp.isEmpty()) {
             // If there is a stream in the pipeline or if this map job belongs to merge-join we could
             // potentially have more to process - so lets
@@ -210,6 +218,13 @@ public abstract class PigGenericMapBase extends Mapper<Text, Tuple, PigNullableW
             }
             roots = targetOpsAsList.toArray(new PhysicalOperator[1]);
             leaf = mp.getLeaves().get(0);
+
+            int batchSize = TupleBatch.getConfiguredSize();
+            boolean batchRoots = batchSize > 0 && !inIllustrator;
+            for (PhysicalOperator root : roots) {
+                batchRoots = batchRoots && root != null && root.supportsBatch();
+            }
+            mapBatch = batchRoots ? new TupleBatch(batchSize) : null;
         }
 
         PigStatusReporter pigStatusReporter = PigStatusReporter.getInstance();
@@ -262,6 +277,16 @@ public abstract class PigGenericMapBase extends Mapper<Text, Tuple, PigNullableW
             return;
         }
 
+        if (mapBatch != null) {
+            // the tuple outlives this call, so it must not share its fields
+            // with a tuple the loader may reuse
+            mapBatch.add(tf.newTuple(inpTuple.getAll()));
+            if (mapBatch.isFull()) {
+                runBatch();
+            }
+            return;
+        }
+
         for (PhysicalOperator root : roots) {
             if (inIllustrator) {
                 if (root != null) {
@@ -275,6 +300,18 @@ public abstract class PigGenericMapBase extends Mapper<Text, Tuple, PigNullableW
         runPipeline(leaf);
     }
 
+    /**
+     * Runs the pipeline over the input tuples collected in the batch, which
+     * is attached to all the roots at once.
+     */
+    private void runBatch() throws IOException, InterruptedException {
+        for (PhysicalOperator root : roots) {
+            root.attachInputBatch(mapBatch);
+        }
+        runPipeline(leaf);
+        mapBatch.clear();
+    }
+
     protected void runPipeline(PhysicalOperator leaf) throws IOException, InterruptedException {
         while(true){
             Result res = leaf.getNextTuple();
@@ -30,6 +30,7 @@ import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.mapred.jobcontrol.Job;
 import org.apache.hadoop.mapreduce.JobContext;
 import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.pig.PigConfiguration;
 import org.apache.pig.PigConstants;
 import org.apache.pig.PigException;
 import org.apache.pig.backend.executionengine.ExecException;
@@ -45,9 +46,11 @@ import org.apache.pig.backend.hadoop.executionengine.physicalLayer.util.PlanHelp
 import org.apache.pig.backend.hadoop.executionengine.util.MapRedUtil;
 import org.apache.pig.data.DataBag;
 import org.apache.pig.data.DataType;
+import org.apache.pig.data.NormalizedKeyEncoder;
 import org.apache.pig.data.SchemaTupleBackend;
 import org.apache.pig.data.Tuple;
 import org.apache.pig.impl.PigContext;
+import org.apache.pig.impl.io.NullableNormalizedTuple;
 import org.apache.pig.impl.io.NullablePartitionWritable;
 import org.apache.pig.impl.io.NullableTuple;
 import org.apache.pig.impl.io.PigNullableWritable;
@@ -166,6 +169,49 @@ public class PigGenericMapReduce {
         }
     }
 
+    /**
+     * This "specialized" map class is ONLY to be used in pig queries with
+     * order by on tuple keys when normalized sort keys are enabled. The key
+     * is written together with its normalized encoding, which is then
+     * compared by {@link PigNormalizedKeyComparator}.
+     */
+    public static class MapWithNormalizedKey extends PigMapBase {
+
+        private NormalizedKeyEncoder encoder;
+
+        @Override
+        public void setup(Context context) throws IOException, InterruptedException {
+            super.setup(context);
+            encoder = new NormalizedKeyEncoder((boolean[]) ObjectSerializer.deserialize(
+                    context.getConfiguration().get("pig.sortOrder")));
+        }
+
+        @Override
+        public void collect(Context oc, Tuple tuple)
+                throws InterruptedException, IOException {
+
+            Byte index = (Byte)tuple.get(0);
+            Tuple keyTuple = (Tuple)tuple.get(1);
+            NullableNormalizedTuple key;
+            if (keyTuple == null) {
+                key = new NullableNormalizedTuple();
+                key.setNull(true);
+            } else {
+                key = new NullableNormalizedTuple(keyTuple, encoder);
+            }
+            NullableTuple val = new NullableTuple((Tuple)tuple.get(2));
+
+            // Both the key and the value need the index.  The key needs it so
+            // that it can be sorted on the index in addition to the key
+            // value.  The value needs it so that POPackage can properly
+            // assign the tuple to its slot in the projection.
+            key.setIndex(index);
+            val.setIndex(index);
+
+            oc.write(key, val);
+        }
+    }
+
     /**
      * Used by Skewed Join
      */
@@ -312,6 +358,7 @@ public class PigGenericMapReduce {
                 pack = getPack(context);
             Configuration jConf = context.getConfiguration();
             SpillableMemoryManager.getInstance().configure(jConf);
+            NullableTuple.setLazyDeserialization(jConf.getBoolean(PigConfiguration.PIG_LAZY_TUPLE_DESERIALIZATION, false));
             context.getConfiguration().set(PigConstants.TASK_INDEX, Integer.toString(context.getTaskAttemptID().getTaskID().getId()));
             sJobContext = context;
             sJobConfInternal.set(context.getConfiguration());
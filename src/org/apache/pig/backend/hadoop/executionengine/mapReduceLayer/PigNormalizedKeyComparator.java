@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pig.backend.hadoop.executionengine.mapReduceLayer;
+
+import java.io.IOException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configurable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.pig.impl.io.NullableNormalizedTuple;
+import org.apache.pig.impl.util.ObjectSerializer;
+
+/**
+ * Sort comparator for tuple keys serialized as {@link NullableNormalizedTuple}.
+ * Keys are ordered like {@link PigTupleSortComparator} orders them, but
+ * comparing two keys is a plain unsigned comparison of their normalized
+ * bytes.
+ */
+public class PigNormalizedKeyComparator extends WritableComparator implements Configurable {
+
+    private final Log mLog = LogFactory.getLog(getClass());
+    private boolean[] mAsc;
+    private boolean mWholeTuple;
+
+    public PigNormalizedKeyComparator() {
+        super(NullableNormalizedTuple.class);
+    }
+
+    @Override
+    public void setConf(Configuration conf) {
+        try {
+            mAsc = (boolean[]) ObjectSerializer.deserialize(conf.get("pig.sortOrder"));
+        } catch (IOException ioe) {
+            mLog.error("Unable to deserialize pig.sortOrder " + ioe.getMessage());
+            throw new RuntimeException(ioe);
+        }
+        if (mAsc == null) {
+            mAsc = new boolean[1];
+            mAsc[0] = true;
+        }
+        mWholeTuple = (mAsc.length == 1);
+    }
+
+    @Override
+    public Configuration getConf() {
+        return null;
+    }
+
+    /**
+     * Compare two NullableNormalizedTuples as raw bytes. The normalized keys
+     * are compared as unsigned bytes. If both are null, then the indices are
+     * compared. Otherwise the null one is defined to be less.
+     */
+    @Override
+    public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+        int rc = 0;
+        if (b1[s1] == 0 && b2[s2] == 0) {
+            int n1, n2;
+            try {
+                n1 = readVInt(b1, s1 + 1);
+                n2 = readVInt(b2, s2 + 1);
+            } catch (IOException ioe) {
+                throw new RuntimeException("Unable to read normalized key length", ioe);
+            }
+            // skip mNull and the key length
+            int k1 = s1 + 1 + WritableUtils.decodeVIntSize(b1[s1 + 1]);
+            int k2 = s2 + 1 + WritableUtils.decodeVIntSize(b2[s2 + 1]);
+            // the first byte of the keys tells whether there are null fields
+            rc = compareBytes(b1, k1 + 1, n1 - 1, b2, k2 + 1, n2 - 1);
+            // handle PIG-927. If tuples are equal but any field inside tuple is null,
+            // then we do not merge keys if indices are not same
+            if (rc == 0 && b1[k1] != 0) {
+                rc = b1[s1 + l1 - 1] - b2[s2 + l2 - 1];
+            }
+        } else {
+            // Two nulls are equal if indices are same
+            if (b1[s1] != 0 && b2[s2] != 0) {
+                rc = b1[s1 + 1] - b2[s2 + 1];
+            }
+            else if (b1[s1] != 0)
+                rc = -1;
+            else
+                rc = 1;
+            if (mWholeTuple && !mAsc[0])
+                rc *= -1;
+        }
+        return rc;
+    }
+
+    @SuppressWarnings("rawtypes")
+    @Override
+    public int compare(WritableComparable o1, WritableComparable o2) {
+        NullableNormalizedTuple nt1 = (NullableNormalizedTuple) o1;
+        NullableNormalizedTuple nt2 = (NullableNormalizedTuple) o2;
+        int rc = 0;
+
+        // If either are null, handle differently.
+        if (!nt1.isNull() && !nt2.isNull()) {
+            byte[] k1 = nt1.getNormalizedKey();
+            byte[] k2 = nt2.getNormalizedKey();
+            rc = compareBytes(k1, 1, k1.length - 1, k2, 1, k2.length - 1);
+            if (rc == 0 && k1[0] != 0) {
+                rc = nt1.getIndex() - nt2.getIndex();
+            }
+        } else {
+            // Two nulls are equal if indices are same
+            if (nt1.isNull() && nt2.isNull()) {
+                rc = nt1.getIndex() - nt2.getIndex();
+            }
+            else if (nt1.isNull())
+                rc = -1;
+            else
+                rc = 1;
+            if (mWholeTuple && !mAsc[0])
+                rc *= -1;
+        }
+        return rc;
+    }
+}
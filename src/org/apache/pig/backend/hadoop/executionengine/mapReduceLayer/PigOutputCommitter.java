@@ -21,7 +21,11 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.JobContext;
 import org.apache.hadoop.mapreduce.JobStatus.State;
@@ -35,6 +39,8 @@ import org.apache.pig.backend.hadoop.executionengine.shims.HadoopShims;
 import org.apache.pig.backend.hadoop.executionengine.util.MapRedUtil;
 import org.apache.pig.impl.logicalLayer.schema.Schema;
 import org.apache.pig.impl.util.Pair;
+import org.apache.pig.impl.util.StatisticsCollector;
+import org.apache.pig.tools.pigstats.JobStats;
 import org.apache.pig.PigConfiguration;
 
 /**
@@ -43,6 +49,8 @@ import org.apache.pig.PigConfiguration;
  * StoreFunc(s)' OutputFormat(s).
  */
 public class PigOutputCommitter extends OutputCommitter {
+
+    private static final Log LOG = LogFactory.getLog(PigOutputCommitter.class);
     
     /**
      * OutputCommitter(s) of Store(s) in the map
@@ -147,6 +155,60 @@ public class PigOutputCommitter extends OutputCommitter {
         }
     }
 
+    /**
+     * Writes the statistics collected by a task in the directory of the
+     * store, to be merged by {@link #storeStatistics} when the job is
+     * committed.
+     */
+    static public void writeStatistics(String statsDir, StatisticsCollector stats,
+            TaskAttemptContext context) throws IOException {
+        MapRedUtil.writeTaskSideFile(statsDir, stats, context);
+    }
+
+    /**
+     * @return the directories where the tasks running the store write side
+     * files with {@link MapRedUtil#writeTaskSideFile}
+     */
+    private static List<String> getSideFileDirs(POStore store) {
+        List<String> dirs = new ArrayList<String>();
+        if (store.getStatsDir() != null) {
+            dirs.add(store.getStatsDir());
+        }
+        if (store.getSortKeySketch() != null) {
+            dirs.add(store.getSortKeySketch().getDir());
+        }
+        return dirs;
+    }
+
+    /**
+     * Merges the statistics written by the tasks which ran the store, and
+     * passes them to its StoreFunc. The statistics are only advisory, so
+     * failures are logged rather than failing the job.
+     */
+    static public void storeStatistics(POStore store, Configuration conf) {
+        if (store.getStatsDir() == null) {
+            return;
+        }
+        try {
+            Path statsDir = new Path(store.getStatsDir());
+            FileSystem fs = statsDir.getFileSystem(conf);
+            if (!fs.exists(statsDir)) {
+                return;
+            }
+            StatisticsCollector stats = new StatisticsCollector();
+            for (StatisticsCollector taskStats : MapRedUtil.<StatisticsCollector>readTaskSideFiles(
+                    store.getStatsDir(), conf)) {
+                stats.merge(taskStats);
+            }
+            fs.delete(statsDir, true);
+            long bytes = JobStats.getOutputSize(store, conf);
+            ((StoreMetadata) store.getStoreFunc()).storeStatistics(
+                    stats.toResourceStatistics(bytes), store.getSFile().getFileName(), new Job(conf));
+        } catch (Exception e) {
+            LOG.warn("Unable to store the statistics of " + store.getSFile().getFileName(), e);
+        }
+    }
+
     public boolean isRecoverySupported() {
         if (!recoverySupported)
             return false;
@@ -243,6 +305,7 @@ public class PigOutputCommitter extends OutputCommitter {
                     throw new IOException(e);
                 }
                 storeCleanup(mapCommitter.second, updatedContext.getConfiguration());
+                storeStatistics(mapCommitter.second, updatedContext.getConfiguration());
             }
         }
         for (Pair<OutputCommitter, POStore> reduceCommitter :
@@ -257,6 +320,7 @@ public class PigOutputCommitter extends OutputCommitter {
                     throw new IOException(e);
                 }
                 storeCleanup(reduceCommitter.second, updatedContext.getConfiguration());
+                storeStatistics(reduceCommitter.second, updatedContext.getConfiguration());
             }
         }
     }
@@ -301,6 +365,9 @@ public class PigOutputCommitter extends OutputCommitter {
                     TaskAttemptContext updatedContext = setUpContext(context, 
                             mapCommitter.second);
                     mapCommitter.first.abortTask(updatedContext);
+                    for (String dir : getSideFileDirs(mapCommitter.second)) {
+                        MapRedUtil.abortTaskSideFile(dir, updatedContext);
+                    }
                 }
             } 
         } else {
@@ -310,6 +377,9 @@ public class PigOutputCommitter extends OutputCommitter {
                     TaskAttemptContext updatedContext = setUpContext(context, 
                             reduceCommitter.second);
                     reduceCommitter.first.abortTask(updatedContext);
+                    for (String dir : getSideFileDirs(reduceCommitter.second)) {
+                        MapRedUtil.abortTaskSideFile(dir, updatedContext);
+                    }
                 }
             } 
         }
@@ -324,6 +394,9 @@ public class PigOutputCommitter extends OutputCommitter {
                     TaskAttemptContext updatedContext = setUpContext(context, 
                             mapCommitter.second);
                     mapCommitter.first.commitTask(updatedContext);
+                    for (String dir : getSideFileDirs(mapCommitter.second)) {
+                        MapRedUtil.commitTaskSideFile(dir, updatedContext);
+                    }
                 }
             } 
         } else {
@@ -333,6 +406,9 @@ public class PigOutputCommitter extends OutputCommitter {
                     TaskAttemptContext updatedContext = setUpContext(context, 
                             reduceCommitter.second);
                     reduceCommitter.first.commitTask(updatedContext);
+                    for (String dir : getSideFileDirs(reduceCommitter.second)) {
+                        MapRedUtil.commitTaskSideFile(dir, updatedContext);
+                    }
                 }
             } 
         }
@@ -350,6 +426,9 @@ public class PigOutputCommitter extends OutputCommitter {
                             mapCommitter.second);
                     needCommit = needCommit || 
                     mapCommitter.first.needsTaskCommit(updatedContext);
+                    for (String dir : getSideFileDirs(mapCommitter.second)) {
+                        needCommit = needCommit || MapRedUtil.hasTaskSideFile(dir, updatedContext);
+                    }
                 }
             } 
             return needCommit;
@@ -361,6 +440,9 @@ public class PigOutputCommitter extends OutputCommitter {
                             reduceCommitter.second);
                     needCommit = needCommit || 
                     reduceCommitter.first.needsTaskCommit(updatedContext);
+                    for (String dir : getSideFileDirs(reduceCommitter.second)) {
+                        needCommit = needCommit || MapRedUtil.hasTaskSideFile(dir, updatedContext);
+                    }
                 }
             } 
             return needCommit;
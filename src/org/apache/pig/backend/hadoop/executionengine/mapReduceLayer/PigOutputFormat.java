@@ -35,12 +35,15 @@ import org.apache.pig.StoreFuncInterface;
 import org.apache.pig.backend.hadoop.datastorage.ConfigurationUtil;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators.POStore;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators.StoreFuncDecorator;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.util.SortKeySketch;
 import org.apache.pig.backend.hadoop.executionengine.shims.HadoopShims;
 import org.apache.pig.backend.hadoop.executionengine.util.MapRedUtil;
 import org.apache.pig.data.NonWritableTuple;
 import org.apache.pig.data.Tuple;
 import org.apache.pig.impl.PigContext;
 import org.apache.pig.impl.util.ObjectSerializer;
+import org.apache.pig.impl.util.QuantileSketch;
+import org.apache.pig.impl.util.StatisticsCollector;
 
 /**
  * The better half of PigInputFormat which is responsible
@@ -83,7 +86,16 @@ public class PigOutputFormat extends OutputFormat<WritableComparable, Tuple> {
             // to have the output location - now call checkOutputSpecs()
             RecordWriter writer = sFunc.getOutputFormat().getRecordWriter(
                     taskattemptcontext);
-            return new PigRecordWriter(writer, decorator, Mode.SINGLE_STORE);
+            PigRecordWriter pigWriter = new PigRecordWriter(writer, decorator, Mode.SINGLE_STORE);
+            if (store.getStatsDir() != null) {
+                pigWriter.statsDir = store.getStatsDir();
+                pigWriter.statsCollector = new StatisticsCollector();
+            }
+            if (store.getSortKeySketch() != null) {
+                pigWriter.sortKeySketch = store.getSortKeySketch();
+                pigWriter.keySketch = pigWriter.sortKeySketch.newSketch();
+            }
+            return pigWriter;
         } else {
            // multi store case - in this case, all writing is done through
            // MapReducePOStoreImpl - set up a dummy RecordWriter
@@ -119,6 +131,18 @@ public class PigOutputFormat extends OutputFormat<WritableComparable, Tuple> {
          */
         private Mode mode;
 
+        /**
+         * The statistics of the tuples written, if they are collected
+         */
+        private String statsDir;
+        private StatisticsCollector statsCollector;
+
+        /**
+         * The sketch of the sort key of the tuples written, if it is built
+         */
+        private SortKeySketch sortKeySketch;
+        private QuantileSketch<Tuple> keySketch;
+
         public PigRecordWriter(RecordWriter wrappedWriter, StoreFuncDecorator storeDecorator,
                 Mode mode)
                 throws IOException {
@@ -144,6 +168,12 @@ public class PigOutputFormat extends OutputFormat<WritableComparable, Tuple> {
             if(mode == Mode.SINGLE_STORE) {
                 if (!(value instanceof NonWritableTuple)) {
                     storeDecorator.putNext(value);
+                    if (statsCollector != null) {
+                        statsCollector.add(value);
+                    }
+                    if (keySketch != null) {
+                        keySketch.add(sortKeySketch.getKey(value));
+                    }
                 }
             } else {
                 throw new IOException("Internal Error: Unexpected code path");
@@ -155,6 +185,14 @@ public class PigOutputFormat extends OutputFormat<WritableComparable, Tuple> {
         IOException, InterruptedException {
             if(mode == Mode.SINGLE_STORE) {
                 wrappedWriter.close(taskattemptcontext);
+                if (statsCollector != null) {
+                    PigOutputCommitter.writeStatistics(statsDir, statsCollector, taskattemptcontext);
+                    statsCollector = null;
+                }
+                if (keySketch != null) {
+                    sortKeySketch.write(keySketch, taskattemptcontext);
+                    keySketch = null;
+                }
             }
         }
 
@@ -122,16 +122,9 @@ public class SkewedPartitioner extends Partitioner<PigNullableWritable, Writable
     }
 
     protected void init() {
-        String keyDistFile = conf.get("pig.keyDistFile", "");
-        if (keyDistFile.length() == 0) {
-            throw new RuntimeException(this.getClass().getSimpleName() +
-                    " used but no key distribution found");
-        }
-
         try {
             Integer [] redCnt = new Integer[1]; 
-            reducerMap = MapRedUtil.loadPartitionFileFromLocalCache(
-                    keyDistFile, redCnt, DataType.TUPLE, conf);
+            reducerMap = MapRedUtil.loadPartitionFile(conf, redCnt, DataType.TUPLE);
             // check if the partition file is empty
             totalReducers = (redCnt[0] == null) ? -1 : redCnt[0];
         } catch (Exception e) {
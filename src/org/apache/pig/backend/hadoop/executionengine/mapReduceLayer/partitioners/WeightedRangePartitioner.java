@@ -17,6 +17,7 @@
  */
 package org.apache.pig.backend.hadoop.executionengine.mapReduceLayer.partitioners;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -35,6 +36,7 @@ import org.apache.pig.backend.hadoop.executionengine.mapReduceLayer.PigMapReduce
 import org.apache.pig.backend.hadoop.executionengine.util.MapRedUtil;
 import org.apache.pig.data.DataBag;
 import org.apache.pig.data.InternalMap;
+import org.apache.pig.data.NormalizedKeyEncoder;
 import org.apache.pig.data.Tuple;
 import org.apache.pig.impl.PigImplConstants;
 import org.apache.pig.impl.builtin.FindQuantiles;
@@ -47,15 +49,23 @@ import org.apache.pig.impl.io.NullableDoubleWritable;
 import org.apache.pig.impl.io.NullableFloatWritable;
 import org.apache.pig.impl.io.NullableIntWritable;
 import org.apache.pig.impl.io.NullableLongWritable;
+import org.apache.pig.impl.io.NullableNormalizedTuple;
 import org.apache.pig.impl.io.NullableText;
 import org.apache.pig.impl.io.NullableTuple;
 import org.apache.pig.impl.io.PigNullableWritable;
 import org.apache.pig.impl.io.ReadToEndLoader;
+import org.apache.pig.impl.util.ObjectSerializer;
 import org.apache.pig.impl.util.Utils;
 
 public class WeightedRangePartitioner extends Partitioner<PigNullableWritable, Writable>
                                       implements Configurable {
 
+    /**
+     * The quantiles of an order-by, when they are set in the job
+     * configuration instead of in the file of pig.quantilesFile.
+     */
+    public static final String QUANTILES = "pig.quantiles";
+
     protected Map<PigNullableWritable, DiscreteProbabilitySampleGenerator> weightedParts =
             new HashMap<PigNullableWritable, DiscreteProbabilitySampleGenerator>();
     protected PigNullableWritable[] quantiles;
@@ -64,6 +74,8 @@ public class WeightedRangePartitioner extends Partitioner<PigNullableWritable, W
 
     protected boolean inited = false;
 
+    private NormalizedKeyEncoder normalizedKeyEncoder = null;
+
     @SuppressWarnings("unchecked")
     @Override
     public int getPartition(PigNullableWritable key, Writable value,
@@ -91,39 +103,19 @@ public class WeightedRangePartitioner extends Partitioner<PigNullableWritable, W
     public void init() {
         weightedParts = new HashMap<PigNullableWritable, DiscreteProbabilitySampleGenerator>();
 
+        String quantiles = job.get(QUANTILES);
         String quantilesFile = job.get("pig.quantilesFile", "");
-        if (quantilesFile.length() == 0) {
+        if (quantiles == null && quantilesFile.length() == 0) {
             throw new RuntimeException(this.getClass().getSimpleName()
                     + " used but no quantiles found");
         }
 
         try{
-            // use local file system to get the quantilesFile
             Map<String, Object> quantileMap = null;
-            Configuration conf;
-            if (job.getBoolean(PigImplConstants.PIG_EXECTYPE_MODE_LOCAL, false)) {
-                conf = new Configuration(false);
+            if (quantiles != null) {
+                quantileMap = (Map<String, Object>) ObjectSerializer.deserialize(quantiles);
             } else {
-                conf = new Configuration(job);
-            }
-            if (job.get("fs.file.impl") != null) {
-                conf.set("fs.file.impl", job.get("fs.file.impl"));
-            }
-            if (job.get("fs.hdfs.impl") != null) {
-                conf.set("fs.hdfs.impl", job.get("fs.hdfs.impl"));
-            }
-
-            MapRedUtil.copyTmpFileConfigurationValues(job, conf);
-            conf.set(MapRedUtil.FILE_SYSTEM_NAME, "file:///");
-
-            ReadToEndLoader loader = new ReadToEndLoader(Utils.getTmpFileStorageObject(conf),
-                    conf, quantilesFile, 0);
-            Tuple t = loader.getNext();
-            if (t != null) {
-                // the Quantiles file has a tuple as under:
-                // (numQuantiles, bag of samples)
-                // numQuantiles here is the reduce parallelism
-                quantileMap = (Map<String, Object>) t.get(0);
+                quantileMap = loadQuantilesFile(quantilesFile);
             }
 
             if (quantileMap!=null) {
@@ -151,6 +143,40 @@ public class WeightedRangePartitioner extends Partitioner<PigNullableWritable, W
         inited = true;
     }
 
+    /**
+     * Loads the quantiles from the quantiles file, using the local file system
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> loadQuantilesFile(String quantilesFile) throws IOException {
+        Configuration conf;
+        if (job.getBoolean(PigImplConstants.PIG_EXECTYPE_MODE_LOCAL, false)) {
+            conf = new Configuration(false);
+        } else {
+            conf = new Configuration(job);
+        }
+        if (job.get("fs.file.impl") != null) {
+            conf.set("fs.file.impl", job.get("fs.file.impl"));
+        }
+        if (job.get("fs.hdfs.impl") != null) {
+            conf.set("fs.hdfs.impl", job.get("fs.hdfs.impl"));
+        }
+
+        MapRedUtil.copyTmpFileConfigurationValues(job, conf);
+        conf.set(MapRedUtil.FILE_SYSTEM_NAME, "file:///");
+
+        Map<String, Object> quantileMap = null;
+        ReadToEndLoader loader = new ReadToEndLoader(Utils.getTmpFileStorageObject(conf),
+                conf, quantilesFile, 0);
+        Tuple t = loader.getNext();
+        if (t != null) {
+            // the Quantiles file has a tuple as under:
+            // (numQuantiles, bag of samples)
+            // numQuantiles here is the reduce parallelism
+            quantileMap = (Map<String, Object>) t.get(0);
+        }
+        return quantileMap;
+    }
+
     @Override
     public void setConf(Configuration configuration) {
         job = configuration;
@@ -174,7 +200,13 @@ public class WeightedRangePartitioner extends Partitioner<PigNullableWritable, W
             // user comparators work with tuples - so if user comparator
             // is being used OR if there are more than 1 sort cols, use
             // NullableTuple
-            if ("true".equals(job.get("pig.usercomparator")) || t.size() > 1) {
+            if ("true".equals(job.get("pig.normalizedkeys"))) {
+                if (normalizedKeyEncoder == null) {
+                    normalizedKeyEncoder = new NormalizedKeyEncoder(
+                            (boolean[]) ObjectSerializer.deserialize(job.get("pig.sortOrder")));
+                }
+                return new NullableNormalizedTuple(t, normalizedKeyEncoder);
+            } else if ("true".equals(job.get("pig.usercomparator")) || t.size() > 1) {
                 return new NullableTuple(t);
             } else {
                 Object o = t.get(0);
@@ -194,7 +226,9 @@ public class WeightedRangePartitioner extends Partitioner<PigNullableWritable, W
     protected void convertToArray(DataBag quantilesListAsBag) {
         ArrayList<PigNullableWritable> quantilesList = getList(quantilesListAsBag);
 
-        if ("true".equals(job.get("pig.usercomparator")) ||
+        if (quantilesList.get(0).getClass().equals(NullableNormalizedTuple.class)) {
+            quantiles = quantilesList.toArray(new NullableNormalizedTuple[0]);
+        } else if ("true".equals(job.get("pig.usercomparator")) ||
                 quantilesList.get(0).getClass().equals(NullableTuple.class)) {
             quantiles = quantilesList.toArray(new NullableTuple[0]);
         } else if (quantilesList.get(0).getClass().equals(NullableBytesWritable.class)) {
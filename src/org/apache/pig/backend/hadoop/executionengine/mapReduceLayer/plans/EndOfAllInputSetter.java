@@ -22,6 +22,7 @@ import org.apache.pig.backend.hadoop.executionengine.physicalLayer.PhysicalOpera
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.plans.PhyPlanVisitor;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.plans.PhysicalPlan;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators.POCollectedGroup;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators.POFRJoin;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators.POForEach;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators.POLocalRearrange;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators.POMergeCogroup;
@@ -29,6 +30,7 @@ import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOpe
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators.POPackage;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators.POPartialAgg;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators.POPoissonSample;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators.POReplicatedCross;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators.POReservoirSample;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators.POStream;
 import org.apache.pig.backend.hadoop.executionengine.tez.plan.operator.BloomPackager;
@@ -88,6 +90,15 @@ public class EndOfAllInputSetter extends MROpPlanVisitor {
             endOfAllInputFlag = true;
         }
 
+        @Override
+        public void visitFRJoin(POFRJoin join) throws VisitorException {
+            // the spilled partitions of a hybrid join, and the spilled
+            // fragment of a replicated cross, are joined at the end
+            if (join.isHybrid() || join instanceof POReplicatedCross) {
+                endOfAllInputFlag = true;
+            }
+        }
+
         @Override
         public void visitCollectedGroup(POCollectedGroup mg) throws VisitorException {
             // map side group present
@@ -118,6 +129,9 @@ public class EndOfAllInputSetter extends MROpPlanVisitor {
         @Override
         public void visitPOForEach(POForEach foreach) throws VisitorException {
             try {
+                // async UDFs are only called ahead of the output where the
+                // inputs left in flight are processed at the end
+                foreach.setAsyncExec(foreach.canExecAsync());
                 if (foreach.needEndOfAllInputProcessing()) {
                     endOfAllInputFlag = true;
                 }
@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pig.backend.hadoop.executionengine.physicalLayer;
+
+import org.apache.pig.data.DataType;
+
+/**
+ * The values of an expression for the tuples of a {@link TupleBatch}, at the
+ * same positions as the tuples. Integers, longs and booleans are held in a
+ * long array, floats and doubles in a double array, so that arithmetic and
+ * comparisons run on primitives. Values of the other types, and values taken
+ * as is from the input tuples, are held as objects; they are only unboxed when
+ * read as primitives, which fails as casting them in row mode would.
+ * <p>
+ * Only the positions of the rows an expression has been evaluated for are
+ * meaningful.
+ */
+public class ColumnVector {
+    private byte type = DataType.UNKNOWN;
+    private long[] longs;
+    private double[] doubles;
+    private Object[] objects;
+    private boolean[] isNull;
+
+    /**
+     * Prepares the vector to hold values of the given type for a batch of
+     * the given capacity, reusing its arrays when they are large enough.
+     */
+    public void reset(byte type, int capacity) {
+        this.type = type;
+        if (isNull == null || isNull.length < capacity) {
+            isNull = new boolean[capacity];
+            objects = new Object[capacity];
+            longs = null;
+            doubles = null;
+        }
+        if (isLongType(type) && longs == null) {
+            longs = new long[isNull.length];
+        } else if (isDoubleType(type) && doubles == null) {
+            doubles = new double[isNull.length];
+        }
+    }
+
+    private static boolean isLongType(byte type) {
+        return type == DataType.INTEGER || type == DataType.LONG || type == DataType.BOOLEAN;
+    }
+
+    private static boolean isDoubleType(byte type) {
+        return type == DataType.FLOAT || type == DataType.DOUBLE;
+    }
+
+    public byte getType() {
+        return type;
+    }
+
+    public boolean isNull(int row) {
+        return isNull[row];
+    }
+
+    public void setNull(int row) {
+        isNull[row] = true;
+        objects[row] = null;
+    }
+
+    /**
+     * Sets a value of the type of the vector, or null.
+     */
+    public void set(int row, Object value) {
+        isNull[row] = value == null;
+        objects[row] = value;
+    }
+
+    public void setLong(int row, long value) {
+        isNull[row] = false;
+        objects[row] = null;
+        longs[row] = value;
+    }
+
+    public void setDouble(int row, double value) {
+        isNull[row] = false;
+        objects[row] = null;
+        doubles[row] = value;
+    }
+
+    public void setBoolean(int row, boolean value) {
+        setLong(row, value ? 1L : 0L);
+    }
+
+    /**
+     * @return the value of an integer, long or boolean vector, as a long
+     */
+    public long getLong(int row) {
+        Object o = objects[row];
+        if (o == null) {
+            return longs[row];
+        }
+        switch (type) {
+        case DataType.INTEGER:
+            return (Integer) o;
+        case DataType.BOOLEAN:
+            return (Boolean) o ? 1L : 0L;
+        default:
+            return (Long) o;
+        }
+    }
+
+    /**
+     * @return the value of a float or double vector, as a double
+     */
+    public double getDouble(int row) {
+        Object o = objects[row];
+        if (o == null) {
+            return doubles[row];
+        }
+        return type == DataType.FLOAT ? (Float) o : (Double) o;
+    }
+
+    public boolean getBoolean(int row) {
+        return getLong(row) != 0L;
+    }
+
+    /**
+     * @return the value at the given row, boxed to the type of the vector if it
+     *  is held as a primitive
+     */
+    public Object getObject(int row) {
+        if (isNull[row]) {
+            return null;
+        }
+        Object o = objects[row];
+        if (o != null) {
+            return o;
+        }
+        switch (type) {
+        case DataType.INTEGER:
+            return Integer.valueOf((int) longs[row]);
+        case DataType.LONG:
+            return Long.valueOf(longs[row]);
+        case DataType.BOOLEAN:
+            return Boolean.valueOf(longs[row] != 0L);
+        case DataType.FLOAT:
+            return Float.valueOf((float) doubles[row]);
+        case DataType.DOUBLE:
+            return Double.valueOf(doubles[row]);
+        default:
+            return null;
+        }
+    }
+}
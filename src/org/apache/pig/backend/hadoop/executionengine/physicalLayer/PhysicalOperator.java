@@ -93,6 +93,10 @@ public abstract class PhysicalOperator extends Operator<PhyPlanVisitor> implemen
     // If inputAttached is true, input is set to the input tuple
     protected Tuple input = null;
 
+    // If inputAttached is true, the input tuples may be attached as a batch instead
+    private transient TupleBatch inputBatch = null;
+    private transient int inputBatchPosition;
+
     // The result of performing the operation along with the output
     protected Result res = null;
 
@@ -259,12 +263,29 @@ public abstract class PhysicalOperator extends Operator<PhyPlanVisitor> implemen
         this.inputAttached = true;
     }
 
+    /**
+     * Shorts the input path of this operator by providing a batch of input
+     * tuples directly. The operator reads them one at a time through
+     * {@link #processInput()}, or all at once through
+     * {@link #processInputBatch(TupleBatch)}.
+     *
+     * @param batch -
+     *            The tuples that should be used as input
+     */
+    public void attachInputBatch(TupleBatch batch) {
+        input = null;
+        inputBatch = batch;
+        inputBatchPosition = 0;
+        this.inputAttached = true;
+    }
+
     /**
      * Detaches any tuples that are attached
      *
      */
     public void detachInput() {
         input = null;
+        inputBatch = null;
         this.inputAttached = false;
     }
 
@@ -290,7 +311,7 @@ public abstract class PhysicalOperator extends Operator<PhyPlanVisitor> implemen
      */
     public Result processInput() throws ExecException {
         try {
-            if (input == null && (inputs == null || inputs.size() == 0)) {
+            if (input == null && inputBatch == null && (inputs == null || inputs.size() == 0)) {
                 // log.warn("No inputs found. Signaling End of Processing.");
                 return RESULT_EOP;
             }
@@ -303,6 +324,12 @@ public abstract class PhysicalOperator extends Operator<PhyPlanVisitor> implemen
 
             if (!isInputAttached()) {
                 return inputs.get(0).getNextTuple();
+            } else if (inputBatch != null) {
+                if (inputBatchPosition == inputBatch.size()) {
+                    detachInput();
+                    return RESULT_EOP;
+                }
+                return new Result(POStatus.STATUS_OK, inputBatch.get(inputBatchPosition++));
             } else {
                 Result res = new Result();
                 res.result = input;
@@ -316,6 +343,120 @@ public abstract class PhysicalOperator extends Operator<PhyPlanVisitor> implemen
         }
     }
 
+    /**
+     * The batch version of {@link #processInput()}: fills the given batch with
+     * the attached input if it exists, or with the next batch of its
+     * predecessor.
+     *
+     * @param batch the batch to fill, emptied first
+     * @return the Result holding the batch, with a status of STATUS_OK when it
+     *  holds tuples, or STATUS_EOP if there are none left
+     * @throws ExecException
+     */
+    protected Result processInputBatch(TupleBatch batch) throws ExecException {
+        batch.clear();
+        try {
+            if (input == null && inputBatch == null && (inputs == null || inputs.size() == 0)) {
+                return RESULT_EOP;
+            }
+
+            PigProgressable progRep = getReporter();
+            if (progRep != null) {
+                progRep.progress();
+            }
+
+            if (!isInputAttached()) {
+                return inputs.get(0).getNextBatch(batch);
+            }
+            if (inputBatch != null) {
+                batch.addAll(inputBatch, inputBatchPosition);
+                inputBatchPosition += batch.size();
+                if (inputBatchPosition < inputBatch.size()) {
+                    // the attached batch is larger than the given one
+                    return new Result(POStatus.STATUS_OK, batch);
+                }
+            } else {
+                batch.add(input);
+            }
+            // like a single attached tuple, an attached batch is followed by the end of processing
+            batch.setEndOfInput(true);
+            detachInput();
+            return batch.size() == 0 ? RESULT_EOP : new Result(POStatus.STATUS_OK, batch);
+        } catch (ExecException e) {
+            throw new ExecException("Exception while executing "
+                    + this.toString() + ": " + e.toString(), e);
+        }
+    }
+
+    /**
+     * Fills the given batch with the next tuples of this operator, up to its
+     * capacity. The batch is marked as ending the input when this operator had
+     * no more tuples after them, so that its consumer can signal the end of
+     * processing once it has consumed them. This default implementation calls
+     * {@link #getNextTuple()}, operators which evaluate whole batches at once
+     * override it and {@link #supportsBatch()}.
+     *
+     * @param batch the batch to fill, emptied first
+     * @return the Result holding the batch, with a status of STATUS_OK when it
+     *  holds tuples, STATUS_EOP if there are none left, or any other status
+     *  returned by getNextTuple, which stops the filling
+     * @throws ExecException
+     */
+    public Result getNextBatch(TupleBatch batch) throws ExecException {
+        batch.clear();
+        while (!batch.isFull()) {
+            Result res = getNextTuple();
+            if (res.returnStatus == POStatus.STATUS_OK) {
+                // the tuples are held past the next call, which may reuse them
+                batch.add(mTupleFactory.newTuple(((Tuple) res.result).getAll()));
+            } else if (res.returnStatus == POStatus.STATUS_EOP) {
+                batch.setEndOfInput(true);
+                break;
+            } else if (res.returnStatus != POStatus.STATUS_NULL) {
+                return res;
+            }
+        }
+        return batch.size() == 0 ? RESULT_EOP : new Result(POStatus.STATUS_OK, batch);
+    }
+
+    /**
+     * Operators which implement {@link #getNextBatch(TupleBatch)} natively,
+     * rather than through getNextTuple, should override this to return true
+     * when they can process batches, which depends on their expressions.
+     *
+     * @return true if batches of input tuples can be attached to this operator
+     *  with no loss in performance
+     */
+    public boolean supportsBatch() {
+        return false;
+    }
+
+    /**
+     * Returns the tuples of the given batch one at a time, for operators which
+     * evaluate whole batches but still have to give tuples to their consumer,
+     * refilling it with {@link #getNextBatch(TupleBatch)} when it is consumed.
+     *
+     * @param batch the batch holding the tuples not returned yet
+     * @return the Result holding the next tuple, or the status of getNextBatch
+     * @throws ExecException
+     */
+    protected Result getNextTupleFromBatch(TupleBatch batch) throws ExecException {
+        while (true) {
+            if (batch.hasNext()) {
+                return new Result(POStatus.STATUS_OK, batch.next());
+            }
+            if (batch.isEndOfInput()) {
+                batch.clear();
+                return RESULT_EOP;
+            }
+            Result res = getNextBatch(batch);
+            if (res.returnStatus != POStatus.STATUS_OK) {
+                batch.clear();
+                return res;
+            }
+        }
+    }
+
     @Override
     public abstract void visit(PhyPlanVisitor v) throws VisitorException;
 
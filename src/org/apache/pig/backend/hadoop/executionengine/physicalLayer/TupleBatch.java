@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pig.backend.hadoop.executionengine.physicalLayer;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.pig.PigConfiguration;
+import org.apache.pig.backend.hadoop.executionengine.mapReduceLayer.PigMapReduce;
+import org.apache.pig.data.Tuple;
+
+/**
+ * A batch of tuples moved at once between physical operators by
+ * {@link PhysicalOperator#getNextBatch(TupleBatch)}. The expressions of the
+ * operators which support batches evaluate a {@link ColumnVector} per
+ * expression over all the tuples of the batch, instead of going through
+ * getNext for every field of every tuple.
+ * <p>
+ * A batch also remembers whether its producer reached the end of its input
+ * after its tuples, so that the end of processing can be signaled once they
+ * have been consumed.
+ */
+public class TupleBatch {
+    private final Tuple[] tuples;
+    private int size = 0;
+    // position of the next tuple to read with next()
+    private int position = 0;
+    private boolean endOfInput = false;
+
+    public TupleBatch(int capacity) {
+        tuples = new Tuple[capacity];
+    }
+
+    /**
+     * @return the batch size configured with {@link PigConfiguration#PIG_EXEC_BATCH_SIZE}
+     *  for the running task, 0 if batch execution is disabled
+     */
+    public static int getConfiguredSize() {
+        Configuration conf = PigMapReduce.sJobConfInternal.get();
+        if (conf == null) {
+            return 0;
+        }
+        int size = conf.getInt(PigConfiguration.PIG_EXEC_BATCH_SIZE, 0);
+        return size > 1 ? size : 0;
+    }
+
+    public int capacity() {
+        return tuples.length;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isFull() {
+        return size == tuples.length;
+    }
+
+    public Tuple get(int i) {
+        return tuples[i];
+    }
+
+    public void add(Tuple t) {
+        tuples[size++] = t;
+    }
+
+    /**
+     * Adds the tuples of the given batch, from its position on.
+     */
+    public void addAll(TupleBatch batch, int from) {
+        int n = Math.min(batch.size - from, tuples.length - size);
+        System.arraycopy(batch.tuples, from, tuples, size, n);
+        size += n;
+    }
+
+    /**
+     * @return whether there are tuples left to read with {@link #next()}
+     */
+    public boolean hasNext() {
+        return position < size;
+    }
+
+    public Tuple next() {
+        return tuples[position++];
+    }
+
+    /**
+     * @return whether the producer of this batch has no more tuples
+     *  after the ones in this batch
+     */
+    public boolean isEndOfInput() {
+        return endOfInput;
+    }
+
+    public void setEndOfInput(boolean endOfInput) {
+        this.endOfInput = endOfInput;
+    }
+
+    /**
+     * Empties the batch, releasing its tuples.
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            tuples[i] = null;
+        }
+        size = 0;
+        position = 0;
+        endOfInput = false;
+    }
+}
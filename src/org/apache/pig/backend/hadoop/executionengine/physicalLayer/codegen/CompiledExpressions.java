@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pig.backend.hadoop.executionengine.physicalLayer.codegen;
+
+import org.apache.pig.PigWarning;
+import org.apache.pig.backend.executionengine.ExecException;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.PhysicalOperator;
+import org.apache.pig.classification.InterfaceAudience;
+import org.apache.pig.classification.InterfaceStability;
+import org.apache.pig.data.Tuple;
+
+/**
+ * The superclass of the classes generated by {@link ExpressionCompiler}, which
+ * evaluate the leaves of a list of expression plans in a single method, on
+ * primitive values wherever the types allow it.
+ * <p>
+ * The public final methods are called by the generated code only. They take
+ * the index of the operator the code was generated for, in the order of
+ * {@link ExpressionCompiler}, to report warnings as the operator would.
+ */
+@InterfaceAudience.Private
+@InterfaceStability.Unstable
+public abstract class CompiledExpressions {
+    private PhysicalOperator[] operators;
+
+    void setOperators(PhysicalOperator[] operators) {
+        this.operators = operators;
+    }
+
+    /**
+     * Evaluates the leaves of the expression plans for the given input tuple.
+     *
+     * @param input the input tuple of the plans
+     * @param results receives the value of the leaf of every plan, boxed,
+     *  in the order of the plans
+     * @throws ExecException
+     */
+    public abstract void evaluate(Tuple input, Object[] results) throws ExecException;
+
+    /**
+     * @return the field of the input projected by a POProject, or null if the
+     *  input does not have it
+     */
+    public final Object project(Tuple input, int column, int operator) throws ExecException {
+        if (input == null) {
+            return null;
+        }
+        if (input.size() > column) {
+            return input.get(column);
+        }
+        warn(operator, "Attempt to access field which was not found in the input",
+                PigWarning.ACCESSING_NON_EXISTENT_FIELD);
+        return null;
+    }
+
+    public final void divideByZero(int operator) {
+        warn(operator, "Divide by zero. Converting it to NULL.", PigWarning.DIVIDE_BY_ZERO);
+    }
+
+    private void warn(int operator, String msg, PigWarning warning) {
+        if (PhysicalOperator.getPigLogger() != null) {
+            PhysicalOperator.getPigLogger().warn(operators[operator], msg, warning);
+        }
+    }
+}
@@ -0,0 +1,913 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pig.backend.hadoop.executionengine.physicalLayer.codegen;
+
+import static org.objectweb.asm.Opcodes.AASTORE;
+import static org.objectweb.asm.Opcodes.ACC_FINAL;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ACC_SUPER;
+import static org.objectweb.asm.Opcodes.ACONST_NULL;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.ASTORE;
+import static org.objectweb.asm.Opcodes.BIPUSH;
+import static org.objectweb.asm.Opcodes.CHECKCAST;
+import static org.objectweb.asm.Opcodes.D2F;
+import static org.objectweb.asm.Opcodes.D2I;
+import static org.objectweb.asm.Opcodes.D2L;
+import static org.objectweb.asm.Opcodes.DCMPL;
+import static org.objectweb.asm.Opcodes.DCONST_0;
+import static org.objectweb.asm.Opcodes.DUP;
+import static org.objectweb.asm.Opcodes.F2D;
+import static org.objectweb.asm.Opcodes.F2I;
+import static org.objectweb.asm.Opcodes.F2L;
+import static org.objectweb.asm.Opcodes.FCMPL;
+import static org.objectweb.asm.Opcodes.FCONST_0;
+import static org.objectweb.asm.Opcodes.GOTO;
+import static org.objectweb.asm.Opcodes.I2D;
+import static org.objectweb.asm.Opcodes.I2F;
+import static org.objectweb.asm.Opcodes.I2L;
+import static org.objectweb.asm.Opcodes.IADD;
+import static org.objectweb.asm.Opcodes.ICONST_0;
+import static org.objectweb.asm.Opcodes.ICONST_1;
+import static org.objectweb.asm.Opcodes.IDIV;
+import static org.objectweb.asm.Opcodes.IFEQ;
+import static org.objectweb.asm.Opcodes.IFGE;
+import static org.objectweb.asm.Opcodes.IFGT;
+import static org.objectweb.asm.Opcodes.IFLE;
+import static org.objectweb.asm.Opcodes.IFLT;
+import static org.objectweb.asm.Opcodes.IFNE;
+import static org.objectweb.asm.Opcodes.IFNULL;
+import static org.objectweb.asm.Opcodes.ILOAD;
+import static org.objectweb.asm.Opcodes.IMUL;
+import static org.objectweb.asm.Opcodes.INEG;
+import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
+import static org.objectweb.asm.Opcodes.INVOKESTATIC;
+import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
+import static org.objectweb.asm.Opcodes.IREM;
+import static org.objectweb.asm.Opcodes.ISTORE;
+import static org.objectweb.asm.Opcodes.ISUB;
+import static org.objectweb.asm.Opcodes.IXOR;
+import static org.objectweb.asm.Opcodes.L2D;
+import static org.objectweb.asm.Opcodes.L2F;
+import static org.objectweb.asm.Opcodes.L2I;
+import static org.objectweb.asm.Opcodes.LCMP;
+import static org.objectweb.asm.Opcodes.LCONST_0;
+import static org.objectweb.asm.Opcodes.POP;
+import static org.objectweb.asm.Opcodes.RETURN;
+import static org.objectweb.asm.Opcodes.SIPUSH;
+import static org.objectweb.asm.Opcodes.V1_5;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.pig.PigConfiguration;
+import org.apache.pig.backend.executionengine.ExecException;
+import org.apache.pig.backend.hadoop.executionengine.mapReduceLayer.PigMapReduce;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.PhysicalOperator;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators.Add;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators.BinaryComparisonOperator;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators.BinaryExpressionOperator;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators.ConstantExpression;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators.Divide;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators.EqualToExpr;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators.ExpressionOperator;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators.GTOrEqualToExpr;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators.GreaterThanExpr;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators.LTOrEqualToExpr;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators.LessThanExpr;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators.Mod;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators.Multiply;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators.NotEqualToExpr;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators.POAnd;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators.POCast;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators.POIsNull;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators.PONegative;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators.PONot;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators.POOr;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators.POProject;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators.Subtract;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators.UnaryComparisonOperator;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators.UnaryExpressionOperator;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.plans.PhysicalPlan;
+import org.apache.pig.classification.InterfaceAudience;
+import org.apache.pig.classification.InterfaceStability;
+import org.apache.pig.data.DataType;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Compiles the expression plans of a FILTER or a FOREACH into a single class
+ * extending {@link CompiledExpressions}, whose bytecode is generated with ASM
+ * as for SchemaTuple classes. The generated code evaluates the whole plans in
+ * one method, keeping numbers and booleans in primitive local variables, with
+ * a null flag for every value, and boxes only the values of the leaves.
+ * <p>
+ * Only the operators whose types are known to be numbers, booleans or
+ * chararrays are compiled: projections of a single field, constants,
+ * arithmetic, comparisons, AND, OR, NOT, IS NULL, negation and casts between
+ * numbers and booleans. A plan with any other operator, such as a UDF, is not
+ * compiled at all and the caller keeps interpreting it. The generated code
+ * follows the semantics of the interpreted operators, including the evaluation
+ * order, null handling and warnings.
+ * <p>
+ * The classes are generated in the tasks, once per distinct shape of plans, and
+ * defined by a class loader which is a child of the one of Pig.
+ */
+@InterfaceAudience.Private
+@InterfaceStability.Unstable
+public class ExpressionCompiler {
+    private static final Log LOG = LogFactory.getLog(ExpressionCompiler.class);
+
+    private static final String COMPILED_EXPRESSIONS =
+            Type.getInternalName(CompiledExpressions.class);
+    private static final String EVALUATE_DESC = "(Lorg/apache/pig/data/Tuple;[Ljava/lang/Object;)V";
+    private static final String[] EXEC_EXCEPTIONS = new String[] { Type.getInternalName(ExecException.class) };
+
+    // the generated classes, by the description of the plans they evaluate
+    private static final Map<String, Class<? extends CompiledExpressions>> classes =
+            new HashMap<String, Class<? extends CompiledExpressions>>();
+    private static GeneratedClassLoader classLoader;
+    private static int nextClassId = 0;
+
+    private ExpressionCompiler() {
+    }
+
+    /**
+     * @return whether compilation is enabled with
+     *  {@link PigConfiguration#PIG_EXEC_CODEGEN} for the running task
+     */
+    public static boolean isEnabled() {
+        Configuration conf = PigMapReduce.sJobConfInternal.get();
+        return conf != null && conf.getBoolean(PigConfiguration.PIG_EXEC_CODEGEN, false);
+    }
+
+    /**
+     * Compiles the given expression plans.
+     *
+     * @param plans the plans, with a single leaf each
+     * @return the compiled plans, or null if any of them can not be compiled
+     */
+    public static CompiledExpressions compile(List<PhysicalPlan> plans) {
+        List<ExpressionOperator> leaves = new ArrayList<ExpressionOperator>(plans.size());
+        for (PhysicalPlan plan : plans) {
+            if (plan.getLeaves().size() != 1 || !(plan.getLeaves().get(0) instanceof ExpressionOperator)) {
+                return null;
+            }
+            ExpressionOperator leaf = (ExpressionOperator) plan.getLeaves().get(0);
+            if (!canCompile(leaf)) {
+                return null;
+            }
+            leaves.add(leaf);
+        }
+
+        List<PhysicalOperator> operators = new ArrayList<PhysicalOperator>();
+        StringBuilder description = new StringBuilder();
+        try {
+            for (ExpressionOperator leaf : leaves) {
+                describe(leaf, operators, description);
+                description.append(';');
+            }
+        } catch (ExecException e) {
+            LOG.warn("Unable to compile expressions, falling back to interpreting them", e);
+            return null;
+        }
+
+        try {
+            Class<? extends CompiledExpressions> clazz = getClass(description.toString(), leaves);
+            if (clazz == null) {
+                return null;
+            }
+            CompiledExpressions compiled = clazz.newInstance();
+            compiled.setOperators(operators.toArray(new PhysicalOperator[operators.size()]));
+            return compiled;
+        } catch (InstantiationException e) {
+            throw new RuntimeException("Unable to instantiate compiled expressions", e);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException("Unable to instantiate compiled expressions", e);
+        }
+    }
+
+    /**
+     * @return the number of classes generated so far
+     */
+    @VisibleForTesting
+    public static synchronized int getNumGeneratedClasses() {
+        int n = 0;
+        for (Class<? extends CompiledExpressions> clazz : classes.values()) {
+            if (clazz != null) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    private static synchronized Class<? extends CompiledExpressions> getClass(String description,
+            List<ExpressionOperator> leaves) {
+        if (classes.containsKey(description)) {
+            return classes.get(description);
+        }
+        if (classLoader == null) {
+            classLoader = new GeneratedClassLoader(CompiledExpressions.class.getClassLoader());
+        }
+        String className = "CompiledExpressions_" + nextClassId++;
+        Class<? extends CompiledExpressions> clazz = null;
+        try {
+            byte[] bytes = new Generator(className).generate(leaves);
+            clazz = classLoader.define(className, bytes).asSubclass(CompiledExpressions.class);
+            LOG.info("Compiled expressions into " + className);
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(className + " evaluates " + description);
+            }
+        } catch (ExecException e) {
+            LOG.warn("Unable to compile expressions, falling back to interpreting them", e);
+        } catch (LinkageError e) {
+            // for instance a method too large
+            LOG.warn("Unable to load compiled expressions, falling back to interpreting them", e);
+        }
+        // failures are remembered too, not to try again
+        classes.put(description, clazz);
+        return clazz;
+    }
+
+    private static class GeneratedClassLoader extends ClassLoader {
+        GeneratedClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        Class<?> define(String className, byte[] bytes) {
+            return defineClass(className, bytes, 0, bytes.length);
+        }
+    }
+
+    private static boolean isPrimitiveType(byte type) {
+        switch (type) {
+        case DataType.INTEGER:
+        case DataType.LONG:
+        case DataType.FLOAT:
+        case DataType.DOUBLE:
+        case DataType.BOOLEAN:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    private static boolean isNumberType(byte type) {
+        return isPrimitiveType(type) && type != DataType.BOOLEAN;
+    }
+
+    private static boolean isValueType(byte type) {
+        return isPrimitiveType(type) || type == DataType.CHARARRAY;
+    }
+
+    private static boolean canCompile(PhysicalOperator op) {
+        if (!(op instanceof ExpressionOperator) || op.isAccumulative()) {
+            return false;
+        }
+        byte type = op.getResultType();
+        Class<?> c = op.getClass();
+        if (c == POProject.class) {
+            return ((POProject) op).supportsVector() && isValueType(type);
+        }
+        if (c == ConstantExpression.class) {
+            Object value = ((ConstantExpression) op).getValue();
+            return isValueType(type) && (value == null || DataType.findType(value) == type);
+        }
+        if (c == Add.class || c == Subtract.class || c == Multiply.class || c == Divide.class) {
+            return isNumberType(type) && canCompileOperands((BinaryExpressionOperator) op, type);
+        }
+        if (c == Mod.class) {
+            return (type == DataType.INTEGER || type == DataType.LONG)
+                    && canCompileOperands((BinaryExpressionOperator) op, type);
+        }
+        if (c == EqualToExpr.class || c == NotEqualToExpr.class) {
+            byte operandType = ((BinaryComparisonOperator) op).getOperandType();
+            return isValueType(operandType) && canCompileOperands((BinaryExpressionOperator) op, operandType);
+        }
+        if (c == GreaterThanExpr.class || c == GTOrEqualToExpr.class
+                || c == LessThanExpr.class || c == LTOrEqualToExpr.class) {
+            byte operandType = ((BinaryComparisonOperator) op).getOperandType();
+            return isValueType(operandType) && operandType != DataType.BOOLEAN
+                    && canCompileOperands((BinaryExpressionOperator) op, operandType);
+        }
+        if (c == POAnd.class || c == POOr.class) {
+            return canCompileOperands((BinaryExpressionOperator) op, DataType.BOOLEAN);
+        }
+        if (c == PONot.class) {
+            return canCompileOperand((UnaryExpressionOperator) op, DataType.BOOLEAN);
+        }
+        if (c == POIsNull.class) {
+            return canCompileOperand((UnaryExpressionOperator) op, ((UnaryComparisonOperator) op).getOperandType());
+        }
+        if (c == PONegative.class) {
+            return isNumberType(type) && canCompileOperand((UnaryExpressionOperator) op, type);
+        }
+        if (c == POCast.class) {
+            if (op.getInputs() == null || op.getInputs().size() != 1) {
+                return false;
+            }
+            PhysicalOperator in = op.getInputs().get(0);
+            return isPrimitiveType(type) && isPrimitiveType(in.getResultType()) && canCompile(in);
+        }
+        return false;
+    }
+
+    private static boolean canCompileOperands(BinaryExpressionOperator op, byte operandType) {
+        return op.getLhs() != null && op.getRhs() != null
+                && op.getLhs().getResultType() == operandType && op.getRhs().getResultType() == operandType
+                && canCompile(op.getLhs()) && canCompile(op.getRhs());
+    }
+
+    private static boolean canCompileOperand(UnaryExpressionOperator op, byte operandType) {
+        return op.getExpr() != null && op.getExpr().getResultType() == operandType && canCompile(op.getExpr());
+    }
+
+    private static ExpressionOperator getCastInput(PhysicalOperator cast) {
+        return (ExpressionOperator) cast.getInputs().get(0);
+    }
+
+    /**
+     * Describes the operators under the given one, which determine the
+     * generated code, and lists them in the order of the generated code.
+     */
+    private static void describe(ExpressionOperator op, List<PhysicalOperator> operators, StringBuilder sb)
+            throws ExecException {
+        operators.add(op);
+        sb.append(op.getClass().getSimpleName()).append(':').append(op.getResultType());
+        if (op instanceof POProject) {
+            sb.append(':').append(((POProject) op).getColumn());
+        } else if (op instanceof ConstantExpression) {
+            Object value = ((ConstantExpression) op).getValue();
+            if (value instanceof Float) {
+                sb.append(":F").append(Float.floatToRawIntBits((Float) value));
+            } else if (value instanceof Double) {
+                sb.append(":D").append(Double.doubleToRawLongBits((Double) value));
+            } else if (value instanceof String) {
+                sb.append(":S").append(((String) value).length()).append(':').append(value);
+            } else {
+                sb.append(':').append(value);
+            }
+        } else if (op instanceof BinaryComparisonOperator) {
+            sb.append(':').append(((BinaryComparisonOperator) op).getOperandType());
+        }
+        sb.append('(');
+        if (op instanceof BinaryExpressionOperator) {
+            describe(((BinaryExpressionOperator) op).getLhs(), operators, sb);
+            sb.append(',');
+            describe(((BinaryExpressionOperator) op).getRhs(), operators, sb);
+        } else if (op instanceof UnaryExpressionOperator) {
+            describe(((UnaryExpressionOperator) op).getExpr(), operators, sb);
+        } else if (op instanceof POCast) {
+            describe(getCastInput(op), operators, sb);
+        }
+        sb.append(')');
+    }
+
+    /**
+     * A value computed by the generated code: the local variable holding it,
+     * and the one holding 1 if it is null, 0 otherwise.
+     */
+    private static class Value {
+        final byte type;
+        final int var;
+        final int nullVar;
+
+        Value(byte type, int var, int nullVar) {
+            this.type = type;
+            this.var = var;
+            this.nullVar = nullVar;
+        }
+    }
+
+    private static class Generator {
+        private final String className;
+        private MethodVisitor mv;
+        // the first local variables are this, the input and the results
+        private int nextVar = 3;
+        private int nextOperator = 0;
+
+        Generator(String className) {
+            this.className = className;
+        }
+
+        byte[] generate(List<ExpressionOperator> leaves) throws ExecException {
+            ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+            cw.visit(V1_5, ACC_PUBLIC + ACC_FINAL + ACC_SUPER, className, null, COMPILED_EXPRESSIONS, null);
+
+            mv = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+            mv.visitCode();
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitMethodInsn(INVOKESPECIAL, COMPILED_EXPRESSIONS, "<init>", "()V");
+            mv.visitInsn(RETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+
+            mv = cw.visitMethod(ACC_PUBLIC, "evaluate", EVALUATE_DESC, null, EXEC_EXCEPTIONS);
+            mv.visitCode();
+            for (int i = 0; i < leaves.size(); i++) {
+                ExpressionOperator leaf = leaves.get(i);
+                // the leaves keep the projected values as they are, as the interpreter does
+                Value v = leaf instanceof POProject ? generateRawProject((POProject) leaf) : generate(leaf);
+                mv.visitVarInsn(ALOAD, 2);
+                pushInt(i);
+                Label box = new Label();
+                Label store = new Label();
+                mv.visitVarInsn(ILOAD, v.nullVar);
+                mv.visitJumpInsn(IFEQ, box);
+                mv.visitInsn(ACONST_NULL);
+                mv.visitJumpInsn(GOTO, store);
+                mv.visitLabel(box);
+                load(v);
+                box(v.type);
+                mv.visitLabel(store);
+                mv.visitInsn(AASTORE);
+            }
+            mv.visitInsn(RETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+
+            cw.visitEnd();
+            return cw.toByteArray();
+        }
+
+        /**
+         * Allocates the variables of a value, initialized to null, so that
+         * they are assigned on every path through the code of the operator.
+         */
+        private Value newValue(byte type) {
+            Type t = asmType(type);
+            Value v = new Value(type, nextVar, nextVar + t.getSize());
+            nextVar += t.getSize() + 1;
+            switch (t.getSort()) {
+            case Type.LONG:
+                mv.visitInsn(LCONST_0);
+                break;
+            case Type.FLOAT:
+                mv.visitInsn(FCONST_0);
+                break;
+            case Type.DOUBLE:
+                mv.visitInsn(DCONST_0);
+                break;
+            case Type.OBJECT:
+                mv.visitInsn(ACONST_NULL);
+                break;
+            default:
+                mv.visitInsn(ICONST_0);
+            }
+            mv.visitVarInsn(t.getOpcode(ISTORE), v.var);
+            mv.visitInsn(ICONST_1);
+            mv.visitVarInsn(ISTORE, v.nullVar);
+            return v;
+        }
+
+        private Type asmType(byte type) {
+            switch (type) {
+            case DataType.LONG:
+                return Type.LONG_TYPE;
+            case DataType.FLOAT:
+                return Type.FLOAT_TYPE;
+            case DataType.DOUBLE:
+                return Type.DOUBLE_TYPE;
+            case DataType.INTEGER:
+            case DataType.BOOLEAN:
+                return Type.INT_TYPE;
+            case DataType.CHARARRAY:
+                return Type.getType(String.class);
+            default:
+                return Type.getType(Object.class);
+            }
+        }
+
+        private void load(Value v) {
+            mv.visitVarInsn(asmType(v.type).getOpcode(ILOAD), v.var);
+        }
+
+        private void store(Value v) {
+            mv.visitVarInsn(asmType(v.type).getOpcode(ISTORE), v.var);
+        }
+
+        /**
+         * Stores the value on the stack in v, which is then not null.
+         */
+        private void storeNotNull(Value v) {
+            store(v);
+            mv.visitInsn(ICONST_0);
+            mv.visitVarInsn(ISTORE, v.nullVar);
+        }
+
+        private void pushInt(int i) {
+            if (i >= -1 && i <= 5) {
+                mv.visitInsn(ICONST_0 + i);
+            } else if (i >= Byte.MIN_VALUE && i <= Byte.MAX_VALUE) {
+                mv.visitIntInsn(BIPUSH, i);
+            } else if (i >= Short.MIN_VALUE && i <= Short.MAX_VALUE) {
+                mv.visitIntInsn(SIPUSH, i);
+            } else {
+                mv.visitLdcInsn(Integer.valueOf(i));
+            }
+        }
+
+        private void box(byte type) {
+            switch (type) {
+            case DataType.INTEGER:
+                mv.visitMethodInsn(INVOKESTATIC, "java/lang/Integer", "valueOf", "(I)Ljava/lang/Integer;");
+                break;
+            case DataType.LONG:
+                mv.visitMethodInsn(INVOKESTATIC, "java/lang/Long", "valueOf", "(J)Ljava/lang/Long;");
+                break;
+            case DataType.FLOAT:
+                mv.visitMethodInsn(INVOKESTATIC, "java/lang/Float", "valueOf", "(F)Ljava/lang/Float;");
+                break;
+            case DataType.DOUBLE:
+                mv.visitMethodInsn(INVOKESTATIC, "java/lang/Double", "valueOf", "(D)Ljava/lang/Double;");
+                break;
+            case DataType.BOOLEAN:
+                mv.visitMethodInsn(INVOKESTATIC, "java/lang/Boolean", "valueOf", "(Z)Ljava/lang/Boolean;");
+                break;
+            default:
+                // already an object
+            }
+        }
+
+        private void unbox(byte type) {
+            switch (type) {
+            case DataType.INTEGER:
+                mv.visitTypeInsn(CHECKCAST, "java/lang/Integer");
+                mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/Integer", "intValue", "()I");
+                break;
+            case DataType.LONG:
+                mv.visitTypeInsn(CHECKCAST, "java/lang/Long");
+                mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/Long", "longValue", "()J");
+                break;
+            case DataType.FLOAT:
+                mv.visitTypeInsn(CHECKCAST, "java/lang/Float");
+                mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/Float", "floatValue", "()F");
+                break;
+            case DataType.DOUBLE:
+                mv.visitTypeInsn(CHECKCAST, "java/lang/Double");
+                mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/Double", "doubleValue", "()D");
+                break;
+            case DataType.BOOLEAN:
+                mv.visitTypeInsn(CHECKCAST, "java/lang/Boolean");
+                mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/Boolean", "booleanValue", "()Z");
+                break;
+            case DataType.CHARARRAY:
+                mv.visitTypeInsn(CHECKCAST, "java/lang/String");
+                break;
+            default:
+                // kept as an object
+            }
+        }
+
+        private Value generate(ExpressionOperator op) throws ExecException {
+            Class<?> c = op.getClass();
+            if (c == POProject.class) {
+                return generateProject((POProject) op, op.getResultType());
+            } else if (c == ConstantExpression.class) {
+                return generateConstant((ConstantExpression) op);
+            } else if (c == Add.class) {
+                return generateArithmetic((BinaryExpressionOperator) op, IADD);
+            } else if (c == Subtract.class) {
+                return generateArithmetic((BinaryExpressionOperator) op, ISUB);
+            } else if (c == Multiply.class) {
+                return generateArithmetic((BinaryExpressionOperator) op, IMUL);
+            } else if (c == Divide.class) {
+                return generateArithmetic((BinaryExpressionOperator) op, IDIV);
+            } else if (c == Mod.class) {
+                return generateArithmetic((BinaryExpressionOperator) op, IREM);
+            } else if (c == EqualToExpr.class) {
+                return generateComparison((BinaryComparisonOperator) op, IFEQ);
+            } else if (c == NotEqualToExpr.class) {
+                return generateComparison((BinaryComparisonOperator) op, IFNE);
+            } else if (c == GreaterThanExpr.class) {
+                return generateComparison((BinaryComparisonOperator) op, IFGT);
+            } else if (c == GTOrEqualToExpr.class) {
+                return generateComparison((BinaryComparisonOperator) op, IFGE);
+            } else if (c == LessThanExpr.class) {
+                return generateComparison((BinaryComparisonOperator) op, IFLT);
+            } else if (c == LTOrEqualToExpr.class) {
+                return generateComparison((BinaryComparisonOperator) op, IFLE);
+            } else if (c == POAnd.class) {
+                return generateAndOr((BinaryExpressionOperator) op, true);
+            } else if (c == POOr.class) {
+                return generateAndOr((BinaryExpressionOperator) op, false);
+            } else if (c == PONot.class) {
+                return generateNot((PONot) op);
+            } else if (c == POIsNull.class) {
+                return generateIsNull((POIsNull) op);
+            } else if (c == PONegative.class) {
+                return generateNegative((PONegative) op);
+            } else if (c == POCast.class) {
+                return generateCast((POCast) op);
+            }
+            throw new ExecException("Can not compile " + op.getClass().getSimpleName());
+        }
+
+        private Value generateRawProject(POProject op) throws ExecException {
+            return generateProject(op, DataType.UNKNOWN);
+        }
+
+        private Value generateProject(POProject op, byte type) throws ExecException {
+            int operator = nextOperator++;
+            Value v = newValue(type);
+            Label isNull = new Label();
+            Label end = new Label();
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitVarInsn(ALOAD, 1);
+            pushInt(op.getColumn());
+            pushInt(operator);
+            mv.visitMethodInsn(INVOKEVIRTUAL, COMPILED_EXPRESSIONS, "project",
+                    "(Lorg/apache/pig/data/Tuple;II)Ljava/lang/Object;");
+            mv.visitInsn(DUP);
+            mv.visitJumpInsn(IFNULL, isNull);
+            unbox(type);
+            storeNotNull(v);
+            mv.visitJumpInsn(GOTO, end);
+            mv.visitLabel(isNull);
+            mv.visitInsn(POP);
+            mv.visitLabel(end);
+            return v;
+        }
+
+        private Value generateConstant(ConstantExpression op) {
+            nextOperator++;
+            Value v = newValue(op.getResultType());
+            Object value = op.getValue();
+            if (value != null) {
+                if (value instanceof Boolean) {
+                    mv.visitInsn((Boolean) value ? ICONST_1 : ICONST_0);
+                } else {
+                    mv.visitLdcInsn(value);
+                }
+                storeNotNull(v);
+            }
+            return v;
+        }
+
+        /**
+         * As the interpreter, the right operand is not evaluated when the left
+         * one is null.
+         */
+        private Value generateArithmetic(BinaryExpressionOperator op, int intOpcode) throws ExecException {
+            int operator = nextOperator++;
+            byte type = op.getResultType();
+            Value v = newValue(type);
+            Label end = new Label();
+            Value lhs = generate(op.getLhs());
+            mv.visitVarInsn(ILOAD, lhs.nullVar);
+            mv.visitJumpInsn(IFNE, end);
+            Value rhs = generate(op.getRhs());
+            mv.visitVarInsn(ILOAD, rhs.nullVar);
+            mv.visitJumpInsn(IFNE, end);
+            if (intOpcode == IDIV) {
+                // the same test as Divide.equalsZero
+                Label notZero = new Label();
+                load(rhs);
+                switch (type) {
+                case DataType.LONG:
+                    mv.visitInsn(LCONST_0);
+                    mv.visitInsn(LCMP);
+                    break;
+                case DataType.FLOAT:
+                    mv.visitMethodInsn(INVOKESTATIC, "java/lang/Float", "floatToIntBits", "(F)I");
+                    break;
+                case DataType.DOUBLE:
+                    mv.visitMethodInsn(INVOKESTATIC, "java/lang/Double", "doubleToLongBits", "(D)J");
+                    mv.visitInsn(LCONST_0);
+                    mv.visitInsn(LCMP);
+                    break;
+                default:
+                }
+                mv.visitJumpInsn(IFNE, notZero);
+                mv.visitVarInsn(ALOAD, 0);
+                pushInt(operator);
+                mv.visitMethodInsn(INVOKEVIRTUAL, COMPILED_EXPRESSIONS, "divideByZero", "(I)V");
+                mv.visitJumpInsn(GOTO, end);
+                mv.visitLabel(notZero);
+            }
+            load(lhs);
+            load(rhs);
+            mv.visitInsn(asmType(type).getOpcode(intOpcode));
+            storeNotNull(v);
+            mv.visitLabel(end);
+            return v;
+        }
+
+        /**
+         * Both operands are evaluated, and compared as with compareTo.
+         */
+        private Value generateComparison(BinaryComparisonOperator op, int ifOpcode) throws ExecException {
+            nextOperator++;
+            Value v = newValue(DataType.BOOLEAN);
+            Label end = new Label();
+            Label isTrue = new Label();
+            Label set = new Label();
+            Value lhs = generate(op.getLhs());
+            Value rhs = generate(op.getRhs());
+            mv.visitVarInsn(ILOAD, lhs.nullVar);
+            mv.visitJumpInsn(IFNE, end);
+            mv.visitVarInsn(ILOAD, rhs.nullVar);
+            mv.visitJumpInsn(IFNE, end);
+            load(lhs);
+            load(rhs);
+            switch (op.getOperandType()) {
+            case DataType.LONG:
+                mv.visitInsn(LCMP);
+                break;
+            case DataType.FLOAT:
+                mv.visitMethodInsn(INVOKESTATIC, "java/lang/Float", "compare", "(FF)I");
+                break;
+            case DataType.DOUBLE:
+                mv.visitMethodInsn(INVOKESTATIC, "java/lang/Double", "compare", "(DD)I");
+                break;
+            case DataType.CHARARRAY:
+                mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/String", "compareTo", "(Ljava/lang/String;)I");
+                break;
+            default:
+                mv.visitMethodInsn(INVOKESTATIC, "java/lang/Integer", "compare", "(II)I");
+            }
+            mv.visitJumpInsn(ifOpcode, isTrue);
+            mv.visitInsn(ICONST_0);
+            mv.visitJumpInsn(GOTO, set);
+            mv.visitLabel(isTrue);
+            mv.visitInsn(ICONST_1);
+            mv.visitLabel(set);
+            storeNotNull(v);
+            mv.visitLabel(end);
+            return v;
+        }
+
+        /**
+         * The right operand is only evaluated when the left one does not
+         * decide the result, as in POAnd and POOr.
+         */
+        private Value generateAndOr(BinaryExpressionOperator op, boolean and) throws ExecException {
+            nextOperator++;
+            Value v = newValue(DataType.BOOLEAN);
+            Label end = new Label();
+            Label evalRhs = new Label();
+            Label rhsDecides = new Label();
+            // the value which decides the result on its own: false for AND, true for OR
+            int decisive = and ? ICONST_0 : ICONST_1;
+            int ifNotDecisive = and ? IFNE : IFEQ;
+            Value lhs = generate(op.getLhs());
+            mv.visitVarInsn(ILOAD, lhs.nullVar);
+            mv.visitJumpInsn(IFNE, evalRhs);
+            mv.visitVarInsn(ILOAD, lhs.var);
+            mv.visitJumpInsn(ifNotDecisive, evalRhs);
+            mv.visitInsn(decisive);
+            storeNotNull(v);
+            mv.visitJumpInsn(GOTO, end);
+            mv.visitLabel(evalRhs);
+            Value rhs = generate(op.getRhs());
+            mv.visitVarInsn(ILOAD, rhs.nullVar);
+            mv.visitJumpInsn(IFNE, end);
+            mv.visitVarInsn(ILOAD, rhs.var);
+            mv.visitJumpInsn(ifNotDecisive, rhsDecides);
+            mv.visitInsn(decisive);
+            storeNotNull(v);
+            mv.visitJumpInsn(GOTO, end);
+            mv.visitLabel(rhsDecides);
+            // the right operand is not decisive, so the result is the one of the left operand
+            mv.visitVarInsn(ILOAD, lhs.nullVar);
+            mv.visitJumpInsn(IFNE, end);
+            mv.visitInsn(and ? ICONST_1 : ICONST_0);
+            storeNotNull(v);
+            mv.visitLabel(end);
+            return v;
+        }
+
+        private Value generateNot(PONot op) throws ExecException {
+            nextOperator++;
+            Value v = newValue(DataType.BOOLEAN);
+            Label end = new Label();
+            Value expr = generate(op.getExpr());
+            mv.visitVarInsn(ILOAD, expr.nullVar);
+            mv.visitJumpInsn(IFNE, end);
+            mv.visitVarInsn(ILOAD, expr.var);
+            mv.visitInsn(ICONST_1);
+            mv.visitInsn(IXOR);
+            storeNotNull(v);
+            mv.visitLabel(end);
+            return v;
+        }
+
+        private Value generateIsNull(POIsNull op) throws ExecException {
+            nextOperator++;
+            Value v = newValue(DataType.BOOLEAN);
+            // only tests the value, which is not cast
+            ExpressionOperator operand = op.getExpr();
+            Value expr = operand instanceof POProject
+                    ? generateRawProject((POProject) operand) : generate(operand);
+            mv.visitVarInsn(ILOAD, expr.nullVar);
+            storeNotNull(v);
+            return v;
+        }
+
+        private Value generateNegative(PONegative op) throws ExecException {
+            nextOperator++;
+            Value v = newValue(op.getResultType());
+            Label end = new Label();
+            Value expr = generate(op.getExpr());
+            mv.visitVarInsn(ILOAD, expr.nullVar);
+            mv.visitJumpInsn(IFNE, end);
+            load(expr);
+            mv.visitInsn(asmType(v.type).getOpcode(INEG));
+            storeNotNull(v);
+            mv.visitLabel(end);
+            return v;
+        }
+
+        private Value generateCast(POCast op) throws ExecException {
+            nextOperator++;
+            byte type = op.getResultType();
+            Value v = newValue(type);
+            Label end = new Label();
+            Value expr = generate(getCastInput(op));
+            mv.visitVarInsn(ILOAD, expr.nullVar);
+            mv.visitJumpInsn(IFNE, end);
+            load(expr);
+            convert(expr.type, type);
+            storeNotNull(v);
+            mv.visitLabel(end);
+            return v;
+        }
+
+        /**
+         * Converts the number or boolean on the stack as POCast does.
+         */
+        private void convert(byte from, byte to) {
+            int fromSort = asmType(from).getSort();
+            if (to == DataType.BOOLEAN) {
+                if (from == DataType.BOOLEAN) {
+                    return;
+                }
+                switch (fromSort) {
+                case Type.LONG:
+                    mv.visitInsn(LCONST_0);
+                    mv.visitInsn(LCMP);
+                    break;
+                case Type.FLOAT:
+                    mv.visitInsn(FCONST_0);
+                    mv.visitInsn(FCMPL);
+                    break;
+                case Type.DOUBLE:
+                    mv.visitInsn(DCONST_0);
+                    mv.visitInsn(DCMPL);
+                    break;
+                default:
+                }
+                Label isFalse = new Label();
+                Label end = new Label();
+                mv.visitJumpInsn(IFEQ, isFalse);
+                mv.visitInsn(ICONST_1);
+                mv.visitJumpInsn(GOTO, end);
+                mv.visitLabel(isFalse);
+                mv.visitInsn(ICONST_0);
+                mv.visitLabel(end);
+                return;
+            }
+            int toSort = asmType(to).getSort();
+            if (fromSort == toSort) {
+                return;
+            }
+            switch (fromSort) {
+            case Type.LONG:
+                mv.visitInsn(toSort == Type.INT ? L2I : toSort == Type.FLOAT ? L2F : L2D);
+                break;
+            case Type.FLOAT:
+                mv.visitInsn(toSort == Type.INT ? F2I : toSort == Type.LONG ? F2L : F2D);
+                break;
+            case Type.DOUBLE:
+                mv.visitInsn(toSort == Type.INT ? D2I : toSort == Type.LONG ? D2L : D2F);
+                break;
+            default:
+                mv.visitInsn(toSort == Type.LONG ? I2L : toSort == Type.FLOAT ? I2F : I2D);
+            }
+        }
+    }
+}
@@ -20,6 +20,9 @@ package org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOp
 import java.util.ArrayList;
 import java.util.List;
 
+import org.apache.pig.backend.executionengine.ExecException;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.ColumnVector;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.TupleBatch;
 import org.apache.pig.data.Tuple;
 import org.apache.pig.impl.plan.OperatorKey;
 import org.apache.pig.impl.util.IdentityHashSet;
@@ -37,6 +40,12 @@ public abstract class BinaryExpressionOperator extends ExpressionOperator {
     protected ExpressionOperator lhs;
     protected ExpressionOperator rhs;
     private transient List<ExpressionOperator> child;
+
+    // operand values and positions of the rows where both are not null,
+    // when evaluated over a batch
+    protected transient ColumnVector lhsVector;
+    protected transient ColumnVector rhsVector;
+    protected transient int[] operandSel;
     
     public BinaryExpressionOperator(OperatorKey k) {
         this(k,-1);
@@ -79,6 +88,59 @@ public abstract class BinaryExpressionOperator extends ExpressionOperator {
         this.rhs = rhs;
     }
 
+    /**
+     * @return whether both operands support vectorized evaluation, for the
+     *  operators which support it themselves
+     */
+    protected boolean operandsSupportVector() {
+        return lhs != null && rhs != null && lhs.supportsVector() && rhs.supportsVector();
+    }
+
+    /**
+     * Evaluates both operands over the given rows of the batch into lhsVector
+     * and rhsVector, sets null in out for the rows where one of them is null,
+     * and stores the other rows in operandSel.
+     *
+     * @param lazyRhs whether the rhs is only evaluated for the rows where the
+     *  lhs is not null, as the arithmetic operators do in row mode
+     * @return the number of rows in operandSel
+     */
+    protected int getNextOperandVectors(TupleBatch batch, int[] sel, int n, byte lhsType, byte rhsType,
+            ColumnVector out, boolean lazyRhs) throws ExecException {
+        lhsVector = prepareVector(lhsVector, lhsType, batch);
+        rhsVector = prepareVector(rhsVector, rhsType, batch);
+        if (operandSel == null || operandSel.length < batch.capacity()) {
+            operandSel = new int[batch.capacity()];
+        }
+        lhs.getNextVector(batch, sel, n, lhsType, lhsVector);
+        int m = 0;
+        if (lazyRhs) {
+            for (int i = 0; i < n; i++) {
+                int row = sel[i];
+                if (lhsVector.isNull(row)) {
+                    out.setNull(row);
+                } else {
+                    operandSel[m++] = row;
+                }
+            }
+            rhs.getNextVector(batch, operandSel, m, rhsType, rhsVector);
+            n = m;
+            sel = operandSel;
+        } else {
+            rhs.getNextVector(batch, sel, n, rhsType, rhsVector);
+        }
+        m = 0;
+        for (int i = 0; i < n; i++) {
+            int row = sel[i];
+            if (lhsVector.isNull(row) || rhsVector.isNull(row)) {
+                out.setNull(row);
+            } else {
+                operandSel[m++] = row;
+            }
+        }
+        return m;
+    }
+
     protected void cloneHelper(BinaryExpressionOperator op) {
         // Don't clone these, as they are just references to things already in
         // the plan.
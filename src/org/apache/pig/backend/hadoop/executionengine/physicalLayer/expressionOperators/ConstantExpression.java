@@ -21,8 +21,10 @@ import java.util.List;
 
 
 import org.apache.pig.backend.executionengine.ExecException;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.ColumnVector;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.POStatus;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.Result;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.TupleBatch;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.plans.PhyPlanVisitor;
 import org.apache.pig.data.DataType;
 import org.apache.pig.data.Tuple;
@@ -174,6 +176,19 @@ public class ConstantExpression extends ExpressionOperator {
         return genericGetNext(DataType.BIGDECIMAL);
     }
 
+    @Override
+    public boolean supportsVector() {
+        return true;
+    }
+
+    @Override
+    public void getNextVector(TupleBatch batch, int[] sel, int n, byte dataType, ColumnVector out)
+            throws ExecException {
+        for (int i = 0; i < n; i++) {
+            out.set(sel[i], value);
+        }
+    }
+
     @Override
     public ConstantExpression clone() throws CloneNotSupportedException {
         ConstantExpression clone =
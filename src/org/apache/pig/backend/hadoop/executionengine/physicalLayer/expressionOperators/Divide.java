@@ -25,8 +25,10 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.pig.PigWarning;
 import org.apache.pig.backend.executionengine.ExecException;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.ColumnVector;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.POStatus;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.Result;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.TupleBatch;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.plans.PhyPlanVisitor;
 import org.apache.pig.data.DataType;
 import org.apache.pig.impl.plan.NodeIdGenerator;
@@ -181,6 +183,88 @@ public class Divide extends BinaryExpressionOperator {
         return genericGetNext(DataType.BIGDECIMAL);
     }
 
+    @Override
+    public boolean supportsVector() {
+        return operandsSupportVector();
+    }
+
+    @Override
+    public void getNextVector(TupleBatch batch, int[] sel, int n, byte dataType, ColumnVector out)
+            throws ExecException {
+        int m = getNextOperandVectors(batch, sel, n, dataType, dataType, out, true);
+        switch (dataType) {
+        case DataType.INTEGER:
+            for (int i = 0; i < m; i++) {
+                int row = operandSel[i];
+                int right = (int) rhsVector.getLong(row);
+                if (right == 0) {
+                    if (pigLogger != null) {
+                        pigLogger.warn(this, "Divide by zero. Converting it to NULL.", PigWarning.DIVIDE_BY_ZERO);
+                    }
+                    out.setNull(row);
+                } else {
+                    out.setLong(row, (int) lhsVector.getLong(row) / right);
+                }
+            }
+            break;
+        case DataType.LONG:
+            for (int i = 0; i < m; i++) {
+                int row = operandSel[i];
+                long right = rhsVector.getLong(row);
+                if (right == 0L) {
+                    if (pigLogger != null) {
+                        pigLogger.warn(this, "Divide by zero. Converting it to NULL.", PigWarning.DIVIDE_BY_ZERO);
+                    }
+                    out.setNull(row);
+                } else {
+                    out.setLong(row, lhsVector.getLong(row) / right);
+                }
+            }
+            break;
+        case DataType.FLOAT:
+            for (int i = 0; i < m; i++) {
+                int row = operandSel[i];
+                float right = (float) rhsVector.getDouble(row);
+                if (Float.floatToIntBits(right) == 0) {
+                    if (pigLogger != null) {
+                        pigLogger.warn(this, "Divide by zero. Converting it to NULL.", PigWarning.DIVIDE_BY_ZERO);
+                    }
+                    out.setNull(row);
+                } else {
+                    out.setDouble(row, (float) lhsVector.getDouble(row) / right);
+                }
+            }
+            break;
+        case DataType.DOUBLE:
+            for (int i = 0; i < m; i++) {
+                int row = operandSel[i];
+                double right = rhsVector.getDouble(row);
+                if (Double.doubleToLongBits(right) == 0L) {
+                    if (pigLogger != null) {
+                        pigLogger.warn(this, "Divide by zero. Converting it to NULL.", PigWarning.DIVIDE_BY_ZERO);
+                    }
+                    out.setNull(row);
+                } else {
+                    out.setDouble(row, lhsVector.getDouble(row) / right);
+                }
+            }
+            break;
+        default:
+            for (int i = 0; i < m; i++) {
+                int row = operandSel[i];
+                Number right = (Number) rhsVector.getObject(row);
+                if (equalsZero(right, dataType)) {
+                    if (pigLogger != null) {
+                        pigLogger.warn(this, "Divide by zero. Converting it to NULL.", PigWarning.DIVIDE_BY_ZERO);
+                    }
+                    out.setNull(row);
+                } else {
+                    out.set(row, divide((Number) lhsVector.getObject(row), right, dataType));
+                }
+            }
+        }
+    }
+
     @Override
     public Divide clone() throws CloneNotSupportedException {
         Divide clone = new Divide(new OperatorKey(mKey.scope,
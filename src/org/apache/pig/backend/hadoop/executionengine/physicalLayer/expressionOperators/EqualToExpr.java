@@ -23,15 +23,17 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.pig.PigException;
 import org.apache.pig.backend.executionengine.ExecException;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.ColumnVector;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.POStatus;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.Result;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.TupleBatch;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.plans.PhyPlanVisitor;
 import org.apache.pig.data.DataType;
 import org.apache.pig.impl.plan.NodeIdGenerator;
 import org.apache.pig.impl.plan.OperatorKey;
 import org.apache.pig.impl.plan.VisitorException;
 
-public class EqualToExpr extends BinaryComparisonOperator {
+public class EqualToExpr extends ValueComparisonOperator {
 
     /**
      *
@@ -135,6 +137,35 @@ public class EqualToExpr extends BinaryComparisonOperator {
         return left;
     }
 
+    @Override
+    public boolean supportsVector() {
+        return operandsSupportVector() && (isOrderedType(operandType) || operandType == DataType.BOOLEAN
+                || operandType == DataType.TUPLE || operandType == DataType.MAP);
+    }
+
+    @Override
+    public void getNextVector(TupleBatch batch, int[] sel, int n, byte dataType, ColumnVector out)
+            throws ExecException {
+        getNextComparisonVector(batch, sel, n, out);
+    }
+
+    @Override
+    protected boolean isTrue(int cmp) {
+        return cmp == 0;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected boolean compareObjects(Object left, Object right) throws ExecException {
+        if (left instanceof Comparable && right instanceof Comparable) {
+            return isTrue(((Comparable) left).compareTo(right));
+        } else if (left instanceof HashMap && right instanceof HashMap) {
+            return ((HashMap) left).equals(right);
+        } else {
+            throw new ExecException("The left side and right side has the different types");
+        }
+    }
+
     @Override
     public EqualToExpr clone() throws CloneNotSupportedException {
         EqualToExpr clone = new EqualToExpr(new OperatorKey(mKey.scope,
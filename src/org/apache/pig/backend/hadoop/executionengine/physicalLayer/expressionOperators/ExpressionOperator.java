@@ -22,10 +22,13 @@ import java.util.List;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.pig.PigException;
 import org.apache.pig.backend.executionengine.ExecException;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.ColumnVector;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.POStatus;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.PhysicalOperator;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.Result;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.TupleBatch;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.plans.PhyPlanVisitor;
 import org.apache.pig.impl.plan.OperatorKey;
 import org.apache.pig.impl.plan.VisitorException;
@@ -141,6 +144,52 @@ public abstract class ExpressionOperator extends PhysicalOperator {
     }
     }
 
+    /**
+     * Expressions which can be evaluated over a whole batch of tuples by
+     * {@link #getNextVector(TupleBatch, int[], int, byte, ColumnVector)}
+     * override this to return true when their children can be as well. The
+     * operators holding an expression which can not, such as a UDF, process
+     * their input one tuple at a time.
+     */
+    public boolean supportsVector() {
+        return false;
+    }
+
+    /**
+     * The vectorized version of {@link #getNext(byte)}: evaluates this
+     * expression for the tuples of the batch at the positions sel[0] to
+     * sel[n - 1], in increasing order, and sets the results at the same
+     * positions of the given vector. The results are the ones getNext would
+     * give for each of the tuples, null included. Only called when
+     * {@link #supportsVector()} returns true.
+     *
+     * @param batch the input tuples
+     * @param sel the positions of the tuples to evaluate the expression for
+     * @param n the number of positions in sel
+     * @param dataType the type to evaluate the expression as
+     * @param out the vector to set the results in, already reset to the
+     *  given type by {@link #prepareVector(ColumnVector, byte, TupleBatch)}
+     * @throws ExecException
+     */
+    public void getNextVector(TupleBatch batch, int[] sel, int n, byte dataType, ColumnVector out)
+            throws ExecException {
+        int errCode = 2067;
+        String msg = this.getClass().getSimpleName() + " does not support vectorized evaluation";
+        throw new ExecException(msg, errCode, PigException.BUG);
+    }
+
+    /**
+     * @return the given vector, or a new one if it is null, reset to the given
+     *  type for the given batch
+     */
+    protected static ColumnVector prepareVector(ColumnVector vector, byte type, TupleBatch batch) {
+        if (vector == null) {
+            vector = new ColumnVector();
+        }
+        vector.reset(type, batch.capacity());
+        return vector;
+    }
+
     @Override
     public String toString() {
         return "[" + this.getClass().getSimpleName() + " " + super.toString() + " children: " + getChildExpressions() + " at " + getOriginalLocations() + "]";
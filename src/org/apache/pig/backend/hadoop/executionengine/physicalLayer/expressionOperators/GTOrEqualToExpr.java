@@ -21,15 +21,17 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.pig.PigException;
 import org.apache.pig.backend.executionengine.ExecException;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.ColumnVector;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.POStatus;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.Result;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.TupleBatch;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.plans.PhyPlanVisitor;
 import org.apache.pig.data.DataType;
 import org.apache.pig.impl.plan.NodeIdGenerator;
 import org.apache.pig.impl.plan.OperatorKey;
 import org.apache.pig.impl.plan.VisitorException;
 
-public class GTOrEqualToExpr extends BinaryComparisonOperator {
+public class GTOrEqualToExpr extends ValueComparisonOperator {
 
     /**
      *
@@ -115,6 +117,22 @@ public class GTOrEqualToExpr extends BinaryComparisonOperator {
         return left;
     }
 
+    @Override
+    public boolean supportsVector() {
+        return operandsSupportVector() && isOrderedType(operandType);
+    }
+
+    @Override
+    public void getNextVector(TupleBatch batch, int[] sel, int n, byte dataType, ColumnVector out)
+            throws ExecException {
+        getNextComparisonVector(batch, sel, n, out);
+    }
+
+    @Override
+    protected boolean isTrue(int cmp) {
+        return cmp >= 0;
+    }
+
     @Override
     public GTOrEqualToExpr clone() throws CloneNotSupportedException {
         GTOrEqualToExpr clone = new GTOrEqualToExpr(new OperatorKey(mKey.scope,
@@ -20,8 +20,10 @@ package org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOp
 import java.math.BigInteger;
 
 import org.apache.pig.backend.executionengine.ExecException;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.ColumnVector;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.POStatus;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.Result;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.TupleBatch;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.plans.PhyPlanVisitor;
 import org.apache.pig.data.DataType;
 import org.apache.pig.impl.plan.NodeIdGenerator;
@@ -107,6 +109,36 @@ public class Mod extends BinaryExpressionOperator {
         return genericGetNext(DataType.BIGINTEGER);
     }
 
+    @Override
+    public boolean supportsVector() {
+        return operandsSupportVector();
+    }
+
+    @Override
+    public void getNextVector(TupleBatch batch, int[] sel, int n, byte dataType, ColumnVector out)
+            throws ExecException {
+        int m = getNextOperandVectors(batch, sel, n, dataType, dataType, out, true);
+        switch (dataType) {
+        case DataType.INTEGER:
+            for (int i = 0; i < m; i++) {
+                int row = operandSel[i];
+                out.setLong(row, (int) lhsVector.getLong(row) % (int) rhsVector.getLong(row));
+            }
+            break;
+        case DataType.LONG:
+            for (int i = 0; i < m; i++) {
+                int row = operandSel[i];
+                out.setLong(row, lhsVector.getLong(row) % rhsVector.getLong(row));
+            }
+            break;
+        default:
+            for (int i = 0; i < m; i++) {
+                int row = operandSel[i];
+                out.set(row, mod((Number) lhsVector.getObject(row), (Number) rhsVector.getObject(row), dataType));
+            }
+        }
+    }
+
     @Override
     public Mod clone() throws CloneNotSupportedException {
         Mod clone = new Mod(new OperatorKey(mKey.scope,
@@ -21,8 +21,10 @@ import java.math.BigDecimal;
 import java.math.BigInteger;
 
 import org.apache.pig.backend.executionengine.ExecException;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.ColumnVector;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.POStatus;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.Result;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.TupleBatch;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.plans.PhyPlanVisitor;
 import org.apache.pig.data.DataType;
 import org.apache.pig.impl.plan.NodeIdGenerator;
@@ -129,6 +131,48 @@ public class Multiply extends BinaryExpressionOperator {
         return genericGetNext(DataType.BIGDECIMAL);
     }
 
+    @Override
+    public boolean supportsVector() {
+        return operandsSupportVector();
+    }
+
+    @Override
+    public void getNextVector(TupleBatch batch, int[] sel, int n, byte dataType, ColumnVector out)
+            throws ExecException {
+        int m = getNextOperandVectors(batch, sel, n, dataType, dataType, out, true);
+        switch (dataType) {
+        case DataType.INTEGER:
+            for (int i = 0; i < m; i++) {
+                int row = operandSel[i];
+                out.setLong(row, (int) lhsVector.getLong(row) * (int) rhsVector.getLong(row));
+            }
+            break;
+        case DataType.LONG:
+            for (int i = 0; i < m; i++) {
+                int row = operandSel[i];
+                out.setLong(row, lhsVector.getLong(row) * rhsVector.getLong(row));
+            }
+            break;
+        case DataType.FLOAT:
+            for (int i = 0; i < m; i++) {
+                int row = operandSel[i];
+                out.setDouble(row, (float) lhsVector.getDouble(row) * (float) rhsVector.getDouble(row));
+            }
+            break;
+        case DataType.DOUBLE:
+            for (int i = 0; i < m; i++) {
+                int row = operandSel[i];
+                out.setDouble(row, lhsVector.getDouble(row) * rhsVector.getDouble(row));
+            }
+            break;
+        default:
+            for (int i = 0; i < m; i++) {
+                int row = operandSel[i];
+                out.set(row, multiply((Number) lhsVector.getObject(row), (Number) rhsVector.getObject(row), dataType));
+            }
+        }
+    }
+
     @Override
     public Multiply clone() throws CloneNotSupportedException {
         Multiply clone = new Multiply(new OperatorKey(mKey.scope,
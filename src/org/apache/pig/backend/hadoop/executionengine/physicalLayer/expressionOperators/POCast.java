@@ -38,9 +38,11 @@ import org.apache.pig.ResourceSchema;
 import org.apache.pig.ResourceSchema.ResourceFieldSchema;
 import org.apache.pig.StreamToPig;
 import org.apache.pig.backend.executionengine.ExecException;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.ColumnVector;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.POStatus;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.PhysicalOperator;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.Result;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.TupleBatch;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.plans.PhyPlanVisitor;
 import org.apache.pig.builtin.ToDate;
 import org.apache.pig.data.DataBag;
@@ -69,6 +71,8 @@ public class POCast extends ExpressionOperator {
     private Byte realType = null;
     private transient List<ExpressionOperator> child;
     private ResourceFieldSchema fieldSchema = null;
+    // values of the input, when evaluated over a batch
+    private transient ColumnVector inputVector;
 
     private static final long serialVersionUID = 1L;
 
@@ -2015,6 +2019,78 @@ public class POCast extends ExpressionOperator {
         instantiateFunc();
     }
 
+    private static boolean isVectorCastType(byte type) {
+        switch (type) {
+        case DataType.INTEGER:
+        case DataType.LONG:
+        case DataType.FLOAT:
+        case DataType.DOUBLE:
+        case DataType.BOOLEAN:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Only the casts between numbers and booleans are evaluated over batches.
+     */
+    @Override
+    public boolean supportsVector() {
+        if (inputs == null || inputs.size() != 1 || !(inputs.get(0) instanceof ExpressionOperator)) {
+            return false;
+        }
+        ExpressionOperator in = (ExpressionOperator) inputs.get(0);
+        return in.supportsVector() && isVectorCastType(in.getResultType()) && isVectorCastType(resultType);
+    }
+
+    @Override
+    public void getNextVector(TupleBatch batch, int[] sel, int n, byte dataType, ColumnVector out)
+            throws ExecException {
+        ExpressionOperator in = (ExpressionOperator) inputs.get(0);
+        byte inType = in.getResultType();
+        inputVector = prepareVector(inputVector, inType, batch);
+        in.getNextVector(batch, sel, n, inType, inputVector);
+        if (inType == dataType) {
+            for (int i = 0; i < n; i++) {
+                int row = sel[i];
+                out.set(row, inputVector.getObject(row));
+            }
+            return;
+        }
+        if (!isVectorCastType(dataType)) {
+            int errCode = 2067;
+            String msg = this.getClass().getSimpleName() + " does not know how to " +
+            "handle type: " + DataType.findTypeName(dataType);
+            throw new ExecException(msg, errCode, PigException.BUG);
+        }
+        // floats are held as doubles, which casts the same way
+        boolean fromDouble = inType == DataType.FLOAT || inType == DataType.DOUBLE;
+        for (int i = 0; i < n; i++) {
+            int row = sel[i];
+            if (inputVector.isNull(row)) {
+                out.setNull(row);
+                continue;
+            }
+            switch (dataType) {
+            case DataType.INTEGER:
+                out.setLong(row, fromDouble ? (int) inputVector.getDouble(row) : (int) inputVector.getLong(row));
+                break;
+            case DataType.LONG:
+                out.setLong(row, fromDouble ? (long) inputVector.getDouble(row) : inputVector.getLong(row));
+                break;
+            case DataType.FLOAT:
+                out.setDouble(row, fromDouble ? (float) inputVector.getDouble(row) : (float) inputVector.getLong(row));
+                break;
+            case DataType.DOUBLE:
+                out.setDouble(row, fromDouble ? inputVector.getDouble(row) : (double) inputVector.getLong(row));
+                break;
+            default:
+                out.setBoolean(row, fromDouble ? inputVector.getDouble(row) != 0.0 : inputVector.getLong(row) != 0L);
+            }
+        }
+    }
+
     @Override
     public POCast clone() throws CloneNotSupportedException {
         POCast clone = new POCast(new OperatorKey(mKey.scope, NodeIdGenerator
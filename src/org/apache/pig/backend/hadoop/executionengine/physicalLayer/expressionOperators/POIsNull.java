@@ -19,8 +19,10 @@ package org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOp
 
 import org.apache.pig.PigException;
 import org.apache.pig.backend.executionengine.ExecException;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.ColumnVector;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.POStatus;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.Result;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.TupleBatch;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.plans.PhyPlanVisitor;
 import org.apache.pig.data.DataType;
 import org.apache.pig.impl.plan.NodeIdGenerator;
@@ -95,6 +97,22 @@ public class POIsNull extends UnaryComparisonOperator {
         }
     }
 
+    @Override
+    public boolean supportsVector() {
+        return exprSupportsVector() && (DataType.isAtomic(operandType) || DataType.isComplex(operandType));
+    }
+
+    @Override
+    public void getNextVector(TupleBatch batch, int[] sel, int n, byte dataType, ColumnVector out)
+            throws ExecException {
+        exprVector = prepareVector(exprVector, operandType, batch);
+        expr.getNextVector(batch, sel, n, operandType, exprVector);
+        for (int i = 0; i < n; i++) {
+            int row = sel[i];
+            out.setBoolean(row, exprVector.isNull(row));
+        }
+    }
+
     @Override
     public POIsNull clone() throws CloneNotSupportedException {
         POIsNull clone = new POIsNull(new OperatorKey(mKey.scope,
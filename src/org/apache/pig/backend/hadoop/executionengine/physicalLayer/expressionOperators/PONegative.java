@@ -20,9 +20,12 @@ package org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOp
 import java.math.BigDecimal;
 import java.math.BigInteger;
 
+import org.apache.pig.PigException;
 import org.apache.pig.backend.executionengine.ExecException;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.ColumnVector;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.POStatus;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.Result;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.TupleBatch;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.plans.PhyPlanVisitor;
 import org.apache.pig.data.DataType;
 import org.apache.pig.data.Tuple;
@@ -116,6 +119,50 @@ public class PONegative extends UnaryExpressionOperator {
         return res;
     }
 
+    @Override
+    public boolean supportsVector() {
+        return exprSupportsVector();
+    }
+
+    @Override
+    public void getNextVector(TupleBatch batch, int[] sel, int n, byte dataType, ColumnVector out)
+            throws ExecException {
+        exprVector = prepareVector(exprVector, dataType, batch);
+        expr.getNextVector(batch, sel, n, dataType, exprVector);
+        for (int i = 0; i < n; i++) {
+            int row = sel[i];
+            if (exprVector.isNull(row)) {
+                out.setNull(row);
+                continue;
+            }
+            switch (dataType) {
+            case DataType.INTEGER:
+                out.setLong(row, -1 * (int) exprVector.getLong(row));
+                break;
+            case DataType.LONG:
+                out.setLong(row, -1 * exprVector.getLong(row));
+                break;
+            case DataType.FLOAT:
+                out.setDouble(row, -1 * (float) exprVector.getDouble(row));
+                break;
+            case DataType.DOUBLE:
+                out.setDouble(row, -1 * exprVector.getDouble(row));
+                break;
+            case DataType.BIGINTEGER:
+                out.set(row, ((BigInteger) exprVector.getObject(row)).negate());
+                break;
+            case DataType.BIGDECIMAL:
+                out.set(row, ((BigDecimal) exprVector.getObject(row)).negate());
+                break;
+            default:
+                int errCode = 2067;
+                String msg = this.getClass().getSimpleName() + " does not know how to " +
+                "handle type: " + DataType.findTypeName(dataType);
+                throw new ExecException(msg, errCode, PigException.BUG);
+            }
+        }
+    }
+
     @Override
     public PONegative clone() throws CloneNotSupportedException {
         PONegative clone = new PONegative(new OperatorKey(mKey.scope,
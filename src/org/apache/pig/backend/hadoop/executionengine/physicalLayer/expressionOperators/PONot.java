@@ -18,8 +18,10 @@
 package org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators;
 
 import org.apache.pig.backend.executionengine.ExecException;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.ColumnVector;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.POStatus;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.Result;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.TupleBatch;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.plans.PhyPlanVisitor;
 import org.apache.pig.data.DataType;
 import org.apache.pig.impl.plan.OperatorKey;
@@ -82,6 +84,26 @@ public class PONot extends UnaryComparisonOperator {
         }
     }
 
+    @Override
+    public boolean supportsVector() {
+        return exprSupportsVector();
+    }
+
+    @Override
+    public void getNextVector(TupleBatch batch, int[] sel, int n, byte dataType, ColumnVector out)
+            throws ExecException {
+        exprVector = prepareVector(exprVector, DataType.BOOLEAN, batch);
+        expr.getNextVector(batch, sel, n, DataType.BOOLEAN, exprVector);
+        for (int i = 0; i < n; i++) {
+            int row = sel[i];
+            if (exprVector.isNull(row)) {
+                out.setNull(row);
+            } else {
+                out.setBoolean(row, !exprVector.getBoolean(row));
+            }
+        }
+    }
+
     @Override
     public PONot clone() throws CloneNotSupportedException {
         PONot clone = new PONot(new OperatorKey(mKey.scope, 
@@ -18,8 +18,10 @@
 package org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators;
 
 import org.apache.pig.backend.executionengine.ExecException;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.ColumnVector;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.POStatus;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.Result;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.TupleBatch;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.plans.PhyPlanVisitor;
 import org.apache.pig.data.DataType;
 import org.apache.pig.impl.plan.NodeIdGenerator;
@@ -109,6 +111,45 @@ public class POOr extends BinaryComparisonOperator {
         return right;
     }
 
+    @Override
+    public boolean supportsVector() {
+        return operandsSupportVector();
+    }
+
+    @Override
+    public void getNextVector(TupleBatch batch, int[] sel, int n, byte dataType, ColumnVector out)
+            throws ExecException {
+        lhsVector = prepareVector(lhsVector, DataType.BOOLEAN, batch);
+        rhsVector = prepareVector(rhsVector, DataType.BOOLEAN, batch);
+        if (operandSel == null || operandSel.length < batch.capacity()) {
+            operandSel = new int[batch.capacity()];
+        }
+        lhs.getNextVector(batch, sel, n, DataType.BOOLEAN, lhsVector);
+        // short circuit - the rhs is only evaluated for the rows where the lhs is not true
+        int m = 0;
+        for (int i = 0; i < n; i++) {
+            int row = sel[i];
+            if (!lhsVector.isNull(row) && lhsVector.getBoolean(row)) {
+                out.setBoolean(row, true);
+            } else {
+                operandSel[m++] = row;
+            }
+        }
+        rhs.getNextVector(batch, operandSel, m, DataType.BOOLEAN, rhsVector);
+        for (int i = 0; i < m; i++) {
+            int row = operandSel[i];
+            if (rhsVector.isNull(row)) {
+                out.setNull(row);
+            } else if (rhsVector.getBoolean(row)) {
+                out.setBoolean(row, true);
+            } else if (lhsVector.isNull(row)) {
+                out.setNull(row);
+            } else {
+                out.setBoolean(row, false);
+            }
+        }
+    }
+
     @Override
     public POOr clone() throws CloneNotSupportedException {
         POOr clone = new POOr(new OperatorKey(mKey.scope, 
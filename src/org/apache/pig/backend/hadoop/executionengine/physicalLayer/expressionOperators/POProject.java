@@ -24,8 +24,10 @@ import java.util.List;
 import org.apache.pig.PigException;
 import org.apache.pig.PigWarning;
 import org.apache.pig.backend.executionengine.ExecException;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.ColumnVector;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.POStatus;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.Result;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.TupleBatch;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.plans.PhyPlanVisitor;
 import org.apache.pig.data.DataBag;
 import org.apache.pig.data.DataType;
@@ -529,6 +531,41 @@ public class POProject extends ExpressionOperator {
         }
     }
 
+    /**
+     * Only the projection of a single column of the input tuples of the plan
+     * is evaluated over batches.
+     */
+    @Override
+    public boolean supportsVector() {
+        return getClass() == POProject.class && !isProjectToEnd && !overloaded
+                && columns != null && columns.size() == 1 && resultType != DataType.BAG
+                && (inputs == null || inputs.isEmpty());
+    }
+
+    @Override
+    public void getNextVector(TupleBatch batch, int[] sel, int n, byte dataType, ColumnVector out)
+            throws ExecException {
+        int col = columns.get(0);
+        for (int i = 0; i < n; i++) {
+            int row = sel[i];
+            Tuple inpValue = batch.get(row);
+            if (inpValue == null) {
+                // the tuple is null, so a dereference should also produce a null
+                out.setNull(row);
+            } else if (inpValue.size() > col) {
+                Object value = inpValue.get(col);
+                // as in getNextTuple
+                out.set(row, dataType == DataType.TUPLE ? (Tuple) value : value);
+            } else {
+                if (pigLogger != null) {
+                    pigLogger.warn(this, "Attempt to access field " +
+                            "which was not found in the input", PigWarning.ACCESSING_NON_EXISTENT_FIELD);
+                }
+                out.setNull(row);
+            }
+        }
+    }
+
     @Override
     public POProject clone() throws CloneNotSupportedException {
         ArrayList<Integer> cols = new ArrayList<Integer>(columns.size());
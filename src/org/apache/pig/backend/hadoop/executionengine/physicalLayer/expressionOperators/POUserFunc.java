@@ -18,16 +18,24 @@
 
 package org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators;
 
+import static org.apache.pig.PigConfiguration.PIG_UDF_CACHE;
+import static org.apache.pig.PigConfiguration.PIG_UDF_CACHE_FUNCTIONS;
+import static org.apache.pig.PigConfiguration.PIG_UDF_CACHE_SIZE;
+import static org.apache.pig.PigConfiguration.PIG_UDF_CACHE_SIZE_DEFAULT;
 import static org.apache.pig.PigConfiguration.PIG_UDF_PROFILE;
 import static org.apache.pig.PigConfiguration.PIG_UDF_PROFILE_FREQUENCY;
 import static org.apache.pig.PigConstants.TIME_UDFS_ELAPSED_TIME_COUNTER;
 import static org.apache.pig.PigConstants.TIME_UDFS_INVOCATION_COUNTER;
+import static org.apache.pig.PigConstants.UDF_CACHE_HIT_COUNTER;
+import static org.apache.pig.PigConstants.UDF_CACHE_MISS_COUNTER;
 
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.lang.reflect.Type;
+import java.util.ArrayDeque;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.Future;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -44,8 +52,12 @@ import org.apache.pig.backend.hadoop.executionengine.physicalLayer.POStatus;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.PhysicalOperator;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.Result;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.plans.PhyPlanVisitor;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.util.AsyncUDFExecutor;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.util.MonitoredUDFExecutor;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.util.UDFResultCache;
+import org.apache.pig.builtin.AsyncUDF;
 import org.apache.pig.builtin.MonitoredUDF;
+import org.apache.pig.builtin.Nondeterministic;
 import org.apache.pig.data.DataType;
 import org.apache.pig.data.SchemaTupleClassGenerator.GenContext;
 import org.apache.pig.data.SchemaTupleFactory;
@@ -78,6 +90,12 @@ public class POUserFunc extends ExpressionOperator {
     public static final byte FINAL = 2;
     private boolean initialized = false;
     private MonitoredUDFExecutor executor = null;
+    private transient AsyncUDFExecutor asyncExecutor;
+    // the calls submitted through submitAsync(), in the order of their inputs
+    private transient ArrayDeque<AsyncCall> asyncCalls;
+    // the results of the UDF by input, if pig.udf.cache applies to it
+    private transient UDFResultCache resultCache;
+    private transient long numCacheLookups;
 
     private PhysicalOperator referencedOperator = null;
     private boolean isAccumulationDone;
@@ -86,6 +104,8 @@ public class POUserFunc extends ExpressionOperator {
 
     private long numInvocations = 0L;
     private long timingFrequency = 100L;
+    // the cache counters are updated once per this number of lookups
+    private static final long CACHE_COUNTER_FREQUENCY = 1000L;
     private boolean doTiming = false;
 
     public PhysicalOperator getReferencedOperator() {
@@ -132,6 +152,8 @@ public class POUserFunc extends ExpressionOperator {
         this.setFuncInputSchema(signature);
         if (func.getClass().isAnnotationPresent(MonitoredUDF.class)) {
             executor = new MonitoredUDFExecutor(func);
+        } else if (func.getClass().isAnnotationPresent(AsyncUDF.class)) {
+            asyncExecutor = new AsyncUDFExecutor(func);
         }
         //the next couple of initializations do not work as intended for the following reasons
         //the reporter and pigLogger are member variables of PhysicalOperator
@@ -164,6 +186,9 @@ public class POUserFunc extends ExpressionOperator {
                     counterGroup = funcSpec.toString();
                     timingFrequency = jobConf.getLong(PIG_UDF_PROFILE_FREQUENCY, 100L);
                 }
+                if (isResultCacheEnabled(jobConf)) {
+                    resultCache = new UDFResultCache(jobConf.getLong(PIG_UDF_CACHE_SIZE, PIG_UDF_CACHE_SIZE_DEFAULT));
+                }
             }
             // We initialize here instead of instantiateFunc because this is called
             // when actual processing has begun, whereas a function can be instantiated
@@ -272,8 +297,82 @@ public class POUserFunc extends ExpressionOperator {
         isTerminated = true;
     }
 
+    /**
+     * @return whether the UDF can be called on several inputs at once through
+     *  {@link #submitAsync()}
+     */
+    public boolean isAsyncExec() {
+        return asyncExecutor != null && !isAccumulative();
+    }
+
+    /**
+     * @return maximum number of calls to the UDF in flight
+     */
+    public int getAsyncConcurrency() {
+        return asyncExecutor.getConcurrency();
+    }
+
+    /**
+     * Evaluates the arguments of the UDF on the attached input and calls it in
+     * the background. The next getNext() call returns the result of the oldest
+     * call submitted, waiting for it if needed, instead of evaluating the input.
+     */
+    public void submitAsync() throws ExecException {
+        if (asyncCalls == null) {
+            asyncCalls = new ArrayDeque<AsyncCall>();
+        }
+        Result input = processInput();
+        Future<Object> output = null;
+        if (input.returnStatus == POStatus.STATUS_OK) {
+            output = asyncExecutor.submit((Tuple) input.result);
+        }
+        asyncCalls.add(new AsyncCall(input, output));
+    }
+
+    /**
+     * @return whether the oldest call submitted through {@link #submitAsync()}
+     *  has completed
+     */
+    public boolean isAsyncResultReady() {
+        AsyncCall call = asyncCalls == null ? null : asyncCalls.peek();
+        return call == null || call.output == null || call.output.isDone();
+    }
+
+    /**
+     * The results of the UDF are cached if it is deterministic, and either
+     * pig.udf.cache is set or it is listed in pig.udf.cache.functions. The
+     * results of MonitoredUDFs are not cached, as they may be timeouts.
+     */
+    private boolean isResultCacheEnabled(Configuration jobConf) {
+        if (executor != null || func.getClass().getAnnotation(Nondeterministic.class) != null) {
+            return false;
+        }
+        return jobConf.getBoolean(PIG_UDF_CACHE, false)
+                || jobConf.getTrimmedStringCollection(PIG_UDF_CACHE_FUNCTIONS).contains(funcSpec.getClassName());
+    }
+
+    private Object cachedExec(Tuple input) throws IOException {
+        Object output = resultCache.get(input);
+        if (output == UDFResultCache.NOT_FOUND) {
+            output = func.exec(input);
+            resultCache.put(input, output);
+        }
+        if (++numCacheLookups % CACHE_COUNTER_FREQUENCY == 0) {
+            reportCacheCounters();
+        }
+        return output;
+    }
+
+    private void reportCacheCounters() {
+        PigStatusReporter reporter = PigStatusReporter.getInstance();
+        String group = funcSpec.toString();
+        reporter.incrCounter(group, UDF_CACHE_HIT_COUNTER, resultCache.takeHits());
+        reporter.incrCounter(group, UDF_CACHE_MISS_COUNTER, resultCache.takeMisses());
+    }
+
     private Result getNext() throws ExecException {
-        Result result = processInput();
+        AsyncCall call = asyncCalls == null ? null : asyncCalls.poll();
+        Result result = call == null ? processInput() : call.input;
         long startNanos = 0;
         boolean timeThis = doTiming && (numInvocations++ % timingFrequency == 0);
         if (timeThis) {
@@ -326,8 +425,12 @@ public class POUserFunc extends ExpressionOperator {
                     if (parentPlan!=null && parentPlan.endOfAllInput && needEndOfAllInputProcessing()) {
                         func.setEndOfAllInput(true);
                     }
-                    if (executor != null) {
+                    if (call != null) {
+                        result.result = AsyncUDFExecutor.getResult(call.output);
+                    } else if (executor != null) {
                         result.result = executor.monitorExec((Tuple) result.result);
+                    } else if (resultCache != null && UDFResultCache.isCacheable((Tuple) result.result)) {
+                        result.result = cachedExec((Tuple) result.result);
                     } else {
                         result.result = func.exec((Tuple) result.result);
                     }
@@ -507,6 +610,13 @@ public class POUserFunc extends ExpressionOperator {
         if (executor != null) {
             executor.terminate();
         }
+        if (asyncExecutor != null) {
+            asyncExecutor.terminate();
+        }
+        if (resultCache != null) {
+            reportCacheCounters();
+            resultCache = null;
+        }
     }
 
     public Schema outputSchema(Schema input) {
@@ -653,4 +763,14 @@ public class POUserFunc extends ExpressionOperator {
         this.creds = creds;
    }
 
+
+    private static class AsyncCall {
+        final Result input;
+        final Future<Object> output;
+
+        AsyncCall(Result input, Future<Object> output) {
+            this.input = input;
+            this.output = output;
+        }
+    }
 }
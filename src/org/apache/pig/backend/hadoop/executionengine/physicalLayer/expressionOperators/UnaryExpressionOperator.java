@@ -20,6 +20,7 @@ package org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOp
 import java.util.ArrayList;
 import java.util.List;
 
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.ColumnVector;
 import org.apache.pig.impl.plan.OperatorKey;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.plans.PhyPlanVisitor;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.plans.PhysicalPlan;
@@ -30,6 +31,9 @@ public abstract class UnaryExpressionOperator extends ExpressionOperator {
 
     ExpressionOperator expr;
     private transient List<ExpressionOperator> child;
+
+    // values of the contained expression, when evaluated over a batch
+    protected transient ColumnVector exprVector;
     
     public UnaryExpressionOperator(OperatorKey k, int rp) {
         super(k, rp);
@@ -70,6 +74,14 @@ public abstract class UnaryExpressionOperator extends ExpressionOperator {
         return expr;
     }
 
+    /**
+     * @return whether the contained expression supports vectorized evaluation,
+     *  for the operators which support it themselves
+     */
+    protected boolean exprSupportsVector() {
+        return expr != null && expr.supportsVector();
+    }
+
     protected void cloneHelper(UnaryExpressionOperator op) {
         // Don't clone this, as it is just a reference to something already in
         // the plan.
@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators;
+
+import org.apache.pig.backend.executionengine.ExecException;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.ColumnVector;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.TupleBatch;
+import org.apache.pig.data.DataType;
+import org.apache.pig.impl.plan.OperatorKey;
+
+/**
+ * Base class of the comparison operators which compare the values of their
+ * operands, for equality or order. The result of the comparison is given by
+ * {@link #isTrue(int)} from the result of compareTo, which lets them share
+ * their vectorized evaluation.
+ */
+public abstract class ValueComparisonOperator extends BinaryComparisonOperator {
+    private static final long serialVersionUID = 1L;
+
+    public ValueComparisonOperator(OperatorKey k) {
+        this(k, -1);
+    }
+
+    public ValueComparisonOperator(OperatorKey k, int rp) {
+        super(k, rp);
+    }
+
+    /**
+     * @return whether the given operand type is one the ordering comparison
+     *  operators handle
+     */
+    protected static boolean isOrderedType(byte type) {
+        switch (type) {
+        case DataType.BYTEARRAY:
+        case DataType.DOUBLE:
+        case DataType.FLOAT:
+        case DataType.INTEGER:
+        case DataType.LONG:
+        case DataType.BIGINTEGER:
+        case DataType.BIGDECIMAL:
+        case DataType.DATETIME:
+        case DataType.CHARARRAY:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Tells whether the comparison holds given the result of comparing the
+     * lhs to the rhs.
+     */
+    protected abstract boolean isTrue(int cmp);
+
+    /**
+     * Compares two non null operands which are not held as primitives.
+     */
+    @SuppressWarnings("unchecked")
+    protected boolean compareObjects(Object left, Object right) throws ExecException {
+        return isTrue(((Comparable) left).compareTo(right));
+    }
+
+    /**
+     * Evaluates the comparison over the given rows of the batch: the result is
+     * null when one of the operands is, as in row mode, and otherwise tells
+     * whether {@link #isTrue(int)} holds for the comparison of the operands.
+     */
+    protected void getNextComparisonVector(TupleBatch batch, int[] sel, int n, ColumnVector out)
+            throws ExecException {
+        int m = getNextOperandVectors(batch, sel, n, operandType, operandType, out, false);
+        switch (operandType) {
+        case DataType.INTEGER:
+        case DataType.LONG:
+        case DataType.BOOLEAN:
+            for (int i = 0; i < m; i++) {
+                int row = operandSel[i];
+                out.setBoolean(row, isTrue(Long.compare(lhsVector.getLong(row), rhsVector.getLong(row))));
+            }
+            break;
+        case DataType.FLOAT:
+        case DataType.DOUBLE:
+            // same ordering as Float.compareTo and Double.compareTo, for -0.0 and NaN
+            for (int i = 0; i < m; i++) {
+                int row = operandSel[i];
+                out.setBoolean(row, isTrue(Double.compare(lhsVector.getDouble(row), rhsVector.getDouble(row))));
+            }
+            break;
+        default:
+            for (int i = 0; i < m; i++) {
+                int row = operandSel[i];
+                out.setBoolean(row, compareObjects(lhsVector.getObject(row), rhsVector.getObject(row)));
+            }
+        }
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.pig.PigConfiguration;
+import org.apache.pig.backend.executionengine.ExecException;
+import org.apache.pig.backend.hadoop.executionengine.mapReduceLayer.PigMapReduce;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.POStatus;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.PhysicalOperator;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.Result;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators.BinaryExpressionOperator;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators.POAnd;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators.POOr;
+
+/**
+ * Evaluates the predicate of a {@link POFilter} whose root is an AND or an OR,
+ * changing the order of the operands of the chains of ANDs and ORs as it
+ * goes. Each chain starts in the order of the script. The time taken by each
+ * operand is measured on a sample of the tuples, and how often it lets the
+ * evaluation go on (is not false for an AND, not true for an OR) on all of
+ * them. Every {@link #REORDER_INTERVAL} tuples the operands are sorted by
+ * cost / (1 - pass rate), which minimizes the expected cost of evaluating
+ * independent operands, if that is expected to be cheaper by
+ * {@link #MIN_GAIN} at least.
+ * <p>
+ * AND and OR give the same result in any order, but an operand which relied
+ * on another one being evaluated first to guard it, as in
+ * {@code x is not null and MyUDF(x)} where MyUDF fails on nulls, may be
+ * evaluated on tuples it was not before. Hence this is only done when
+ * {@link PigConfiguration#PIG_EXEC_FILTER_REORDER} is set.
+ */
+class AdaptivePredicate {
+
+    // number of tuples between the changes of order
+    private static final int REORDER_INTERVAL = 1024;
+    // the evaluation time is measured once per this number of tuples
+    private static final int TIMING_FREQUENCY = 8;
+    // the minimum fraction of the expected cost saved by a change of order
+    private static final double MIN_GAIN = 0.1;
+
+    private final Chain root;
+    private long numTuples;
+
+    private AdaptivePredicate(Chain root) {
+        this.root = root;
+    }
+
+    static boolean isEnabled() {
+        Configuration conf = PigMapReduce.sJobConfInternal.get();
+        return conf != null && conf.getBoolean(PigConfiguration.PIG_EXEC_FILTER_REORDER, false);
+    }
+
+    /**
+     * @return the adaptive predicate for the root of an expression plan, or
+     *  null if it is not an AND or an OR
+     */
+    static AdaptivePredicate create(PhysicalOperator op) {
+        Operand operand = createOperand(op);
+        return operand instanceof Chain ? new AdaptivePredicate((Chain) operand) : null;
+    }
+
+    private static Operand createOperand(PhysicalOperator op) {
+        if (op instanceof POAnd || op instanceof POOr) {
+            List<Operand> operands = new ArrayList<Operand>();
+            addOperands(op, op.getClass(), operands);
+            return new Chain(op instanceof POAnd, operands.toArray(new Operand[operands.size()]));
+        }
+        return new Leaf(op);
+    }
+
+    private static void addOperands(PhysicalOperator op, Class<?> chainClass, List<Operand> operands) {
+        if (op.getClass() == chainClass) {
+            addOperands(((BinaryExpressionOperator) op).getLhs(), chainClass, operands);
+            addOperands(((BinaryExpressionOperator) op).getRhs(), chainClass, operands);
+        } else {
+            operands.add(createOperand(op));
+        }
+    }
+
+    /**
+     * Evaluates the predicate on the input attached to the plan.
+     */
+    Result evaluate() throws ExecException {
+        numTuples++;
+        Result res = root.evaluate(numTuples % TIMING_FREQUENCY == 0);
+        if (numTuples % REORDER_INTERVAL == 0) {
+            root.reorder();
+        }
+        return res;
+    }
+
+    private static abstract class Operand {
+        abstract Result evaluate(boolean time) throws ExecException;
+
+        abstract void reorder();
+    }
+
+    private static class Leaf extends Operand {
+        final PhysicalOperator op;
+
+        Leaf(PhysicalOperator op) {
+            this.op = op;
+        }
+
+        @Override
+        Result evaluate(boolean time) throws ExecException {
+            return op.getNextBoolean();
+        }
+
+        @Override
+        void reorder() {
+        }
+    }
+
+    private static class Chain extends Operand {
+        // whether the operands are ANDed or ORed
+        final boolean and;
+        final Operand[] operands;
+        final Stats[] stats;
+
+        Chain(boolean and, Operand[] operands) {
+            this.and = and;
+            this.operands = operands;
+            stats = new Stats[operands.length];
+            for (int i = 0; i < operands.length; i++) {
+                stats[i] = new Stats();
+            }
+        }
+
+        @Override
+        Result evaluate(boolean time) throws ExecException {
+            boolean sawNull = false;
+            Result res = null;
+            for (int i = 0; i < operands.length; i++) {
+                Stats s = stats[i];
+                long start = time ? System.nanoTime() : 0;
+                res = operands[i].evaluate(time);
+                if (time) {
+                    s.nanos += System.nanoTime() - start;
+                    s.timed++;
+                }
+                s.evaluations++;
+                // pass on ERROR and EOP
+                if (res.returnStatus != POStatus.STATUS_OK) {
+                    return res;
+                }
+                if (res.result == null) {
+                    sawNull = true;
+                } else if ((Boolean) res.result != and) {
+                    // short circuit on false for AND, on true for OR
+                    return res;
+                }
+                s.passes++;
+            }
+            return sawNull ? new Result(POStatus.STATUS_OK, null) : res;
+        }
+
+        @Override
+        void reorder() {
+            for (Operand operand : operands) {
+                operand.reorder();
+            }
+            int n = operands.length;
+            Integer[] order = new Integer[n];
+            final double[] ranks = new double[n];
+            for (int i = 0; i < n; i++) {
+                order[i] = i;
+                // the operands not measured yet stay after the previous one
+                ranks[i] = stats[i].isKnown() ? stats[i].getRank() : (i == 0 ? 0 : ranks[i - 1]);
+            }
+            // stable, so that ties keep the current order
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer o1, Integer o2) {
+                    return Double.compare(ranks[o1], ranks[o2]);
+                }
+            });
+            if (getExpectedCost(order) < (1 - MIN_GAIN) * getExpectedCost(null)) {
+                Operand[] oldOperands = operands.clone();
+                Stats[] oldStats = stats.clone();
+                for (int i = 0; i < n; i++) {
+                    operands[i] = oldOperands[order[i]];
+                    stats[i] = oldStats[order[i]];
+                }
+            }
+            // give more weight to the recent tuples
+            for (Stats s : stats) {
+                s.decay();
+            }
+        }
+
+        /**
+         * @return the expected cost of evaluating the operands in the order,
+         *  or in the current order if null, with the operands not measured
+         *  yet taken as free
+         */
+        private double getExpectedCost(Integer[] order) {
+            double cost = 0;
+            double reached = 1;
+            for (int i = 0; i < operands.length; i++) {
+                Stats s = stats[order == null ? i : order[i]];
+                if (s.isKnown()) {
+                    cost += reached * s.getCost();
+                    reached *= s.getPassRate();
+                }
+            }
+            return cost;
+        }
+    }
+
+    private static class Stats {
+        long evaluations;
+        long passes;
+        long timed;
+        long nanos;
+
+        boolean isKnown() {
+            return timed > 0;
+        }
+
+        double getCost() {
+            return (double) nanos / timed;
+        }
+
+        double getPassRate() {
+            return (double) passes / evaluations;
+        }
+
+        double getRank() {
+            double stopRate = 1 - getPassRate();
+            return stopRate <= 0 ? Double.MAX_VALUE : getCost() / stopRate;
+        }
+
+        void decay() {
+            // keep a timed evaluation to remain known
+            evaluations = (evaluations + 1) / 2;
+            passes = (passes + 1) / 2;
+            timed = (timed + 1) / 2;
+            nanos = (nanos + 1) / 2;
+        }
+    }
+}
@@ -28,6 +28,7 @@ import org.apache.pig.backend.hadoop.executionengine.physicalLayer.Result;
 import org.apache.pig.data.DataBag;
 import org.apache.pig.data.InternalCachedBag;
 import org.apache.pig.data.NonSpillableDataBag;
+import org.apache.pig.data.OffHeapCachedBag;
 import org.apache.pig.data.Tuple;
 import org.apache.pig.impl.io.NullableTuple;
 import org.apache.pig.impl.io.PigNullableWritable;
@@ -53,6 +54,8 @@ public class CombinerPackager extends Packager {
     private transient boolean initialized;
     private transient boolean useDefaultBag;
 
+    private transient boolean useOffHeapBag;
+
     /**
      * A new POPostCombinePackage will be constructed as a near clone of the
      * provided POPackage.
@@ -110,10 +113,15 @@ public class CombinerPackager extends Packager {
                 String bagType = PigMapReduce.sJobConfInternal.get().get(PigConfiguration.PIG_CACHEDBAG_TYPE);
                 if (bagType != null && bagType.equalsIgnoreCase("default")) {
                     useDefaultBag = true;
+                } else if (bagType != null && bagType.equalsIgnoreCase("offheap")) {
+                    useOffHeapBag = true;
                 }
             }
         }
-        return useDefaultBag ? new NonSpillableDataBag() : new InternalCachedBag(numBags);
+        if (useDefaultBag) {
+            return new NonSpillableDataBag();
+        }
+        return useOffHeapBag ? new OffHeapCachedBag(numBags) : new InternalCachedBag(numBags);
     }
 
     @Override
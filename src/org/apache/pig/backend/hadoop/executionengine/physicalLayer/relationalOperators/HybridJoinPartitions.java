@@ -0,0 +1,227 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.pig.backend.executionengine.ExecException;
+import org.apache.pig.data.InterSedes;
+import org.apache.pig.data.InterSedesFactory;
+import org.apache.pig.data.SpillStreams;
+import org.apache.pig.data.Tuple;
+
+/**
+ * The partitions of a fragment-replicated join whose replicated inputs do not
+ * fit in memory. The join keys are hashed into {@link #NUM_PARTITIONS}
+ * partitions, and the last {@link #getNumSpilled()} of them are spilled to
+ * local files: the rows of the replicated inputs while they are loaded, and
+ * the tuples of the fragment while it is joined with the partitions kept in
+ * memory. Each spilled partition is then loaded and joined in turn.
+ */
+class HybridJoinPartitions {
+    private static final Log log = LogFactory.getLog(HybridJoinPartitions.class);
+    private static final InterSedes sedes = InterSedesFactory.getInterSedesInstance();
+
+    static final int NUM_PARTITIONS = 32;
+
+    private final int numSpilled;
+    private final File[] buildFiles = new File[NUM_PARTITIONS];
+    private final DataOutputStream[] buildOutputs = new DataOutputStream[NUM_PARTITIONS];
+    private final long[] buildCounts = new long[NUM_PARTITIONS];
+    private final File[] probeFiles = new File[NUM_PARTITIONS];
+    private final DataOutputStream[] probeOutputs = new DataOutputStream[NUM_PARTITIONS];
+    private final long[] probeCounts = new long[NUM_PARTITIONS];
+
+    /**
+     * @param numSpilled number of partitions to spill, from the last one
+     */
+    HybridJoinPartitions(int numSpilled) {
+        this.numSpilled = numSpilled;
+    }
+
+    /**
+     * @return the partition of a join key
+     */
+    static int getPartition(Object key) {
+        int h = key == null ? 0 : key.hashCode() * 0x9E3779B9;
+        return (h >>> 16) % NUM_PARTITIONS;
+    }
+
+    int getNumSpilled() {
+        return numSpilled;
+    }
+
+    /**
+     * @return the first spilled partition
+     */
+    int getFirstSpilled() {
+        return NUM_PARTITIONS - numSpilled;
+    }
+
+    boolean isSpilled(int partition) {
+        return partition >= NUM_PARTITIONS - numSpilled;
+    }
+
+    /**
+     * Spills a row of a replicated input.
+     */
+    void addBuildRow(int partition, int input, Object key, Tuple value) throws ExecException {
+        try {
+            if (buildOutputs[partition] == null) {
+                buildFiles[partition] = createFile();
+                buildOutputs[partition] = SpillStreams.createOutputStream(buildFiles[partition]);
+            }
+            DataOutputStream out = buildOutputs[partition];
+            out.writeInt(input);
+            sedes.writeDatum(out, key);
+            sedes.writeDatum(out, value);
+            buildCounts[partition]++;
+        } catch (IOException e) {
+            throw new ExecException("Unable to spill replicated join input", e);
+        }
+    }
+
+    /**
+     * Spills a tuple of the fragment.
+     */
+    void addProbeTuple(int partition, Tuple tuple) throws ExecException {
+        try {
+            if (probeOutputs[partition] == null) {
+                probeFiles[partition] = createFile();
+                probeOutputs[partition] = SpillStreams.createOutputStream(probeFiles[partition]);
+            }
+            sedes.writeDatum(probeOutputs[partition], tuple);
+            probeCounts[partition]++;
+        } catch (IOException e) {
+            throw new ExecException("Unable to spill replicated join fragment", e);
+        }
+    }
+
+    long getBuildCount(int partition) {
+        return buildCounts[partition];
+    }
+
+    long getProbeCount(int partition) {
+        return probeCounts[partition];
+    }
+
+    /**
+     * Closes the spill files of the replicated inputs, once they are loaded.
+     */
+    void finishBuild() throws ExecException {
+        close(buildOutputs);
+    }
+
+    /**
+     * Closes the spill files of the fragment, once all of it has been read.
+     */
+    void finishProbe() throws ExecException {
+        close(probeOutputs);
+    }
+
+    /**
+     * @return the spilled rows of the replicated inputs in the partition, as
+     *  written by {@link #addBuildRow(int, int, Object, Tuple)}
+     */
+    DataInputStream openBuild(int partition) throws ExecException {
+        return open(buildFiles[partition]);
+    }
+
+    /**
+     * @return the spilled tuples of the fragment in the partition
+     */
+    DataInputStream openProbe(int partition) throws ExecException {
+        return open(probeFiles[partition]);
+    }
+
+    static Object read(DataInputStream in) throws ExecException {
+        try {
+            return sedes.readDatum(in);
+        } catch (IOException e) {
+            throw new ExecException("Unable to read replicated join spill file", e);
+        }
+    }
+
+    /**
+     * Deletes the spill files of a partition once it has been joined.
+     */
+    void delete(int partition) {
+        delete(buildFiles, partition);
+        delete(probeFiles, partition);
+    }
+
+    /**
+     * Closes and deletes all the spill files.
+     */
+    void deleteAll() {
+        try {
+            close(buildOutputs);
+            close(probeOutputs);
+        } catch (ExecException e) {
+            log.warn("Unable to close replicated join spill file", e);
+        }
+        for (int i = 0; i < NUM_PARTITIONS; i++) {
+            delete(i);
+        }
+    }
+
+    private static File createFile() throws IOException {
+        File f = File.createTempFile("pigfrjoin", null);
+        f.deleteOnExit();
+        return f;
+    }
+
+    private static DataInputStream open(File f) throws ExecException {
+        if (f == null) {
+            return null;
+        }
+        try {
+            return SpillStreams.createInputStream(f);
+        } catch (IOException e) {
+            throw new ExecException("Unable to open replicated join spill file " + f, e);
+        }
+    }
+
+    private static void close(DataOutputStream[] outputs) throws ExecException {
+        for (int i = 0; i < outputs.length; i++) {
+            if (outputs[i] != null) {
+                try {
+                    outputs[i].close();
+                } catch (IOException e) {
+                    throw new ExecException("Unable to write replicated join spill file", e);
+                } finally {
+                    outputs[i] = null;
+                }
+            }
+        }
+    }
+
+    private static void delete(File[] files, int partition) {
+        if (files[partition] != null) {
+            if (!files[partition].delete()) {
+                log.warn("Unable to delete replicated join spill file " + files[partition]);
+            }
+            files[partition] = null;
+        }
+    }
+}
@@ -33,6 +33,7 @@ import org.apache.pig.data.BagFactory;
 import org.apache.pig.data.DataBag;
 import org.apache.pig.data.DataType;
 import org.apache.pig.data.InternalCachedBag;
+import org.apache.pig.data.OffHeapCachedBag;
 import org.apache.pig.data.Tuple;
 import org.apache.pig.data.TupleFactory;
 import org.apache.pig.impl.plan.OperatorKey;
@@ -70,6 +71,8 @@ public class POCollectedGroup extends PhysicalOperator {
 
     private transient boolean useDefaultBag;
 
+    private transient boolean useOffHeapBag;
+
     //For Spark
     private transient boolean endOfInput = false;
     public boolean isEndOfInput() {
@@ -177,6 +180,8 @@ public class POCollectedGroup extends PhysicalOperator {
                     String bagType = PigMapReduce.sJobConfInternal.get().get(PigConfiguration.PIG_CACHEDBAG_TYPE);
                     if (bagType != null && bagType.equalsIgnoreCase("default")) {
                         useDefaultBag = true;
+                    } else if (bagType != null && bagType.equalsIgnoreCase("offheap")) {
+                        useOffHeapBag = true;
                     }
                 }
                 prevKey = curKey;
@@ -189,7 +194,7 @@ public class POCollectedGroup extends PhysicalOperator {
                 // Additionally, if there is a merge join(on a different key) following POCollectedGroup
                 // default bags should be used. But since we don't allow anything
                 // before Merge Join currently we are good.
-                        : new InternalCachedBag(1);
+                        : newCachedBag();
                 outputBag.add((Tuple)tup.get(1));
                 continue;
             }
@@ -214,7 +219,7 @@ public class POCollectedGroup extends PhysicalOperator {
 
             prevKey = curKey;
             outputBag = useDefaultBag ? BagFactory.getInstance().newDefaultBag()
-                    : new InternalCachedBag(1);
+                    : newCachedBag();
             outputBag.add((Tuple)tup.get(1));
             return res;
         }
@@ -222,6 +227,10 @@ public class POCollectedGroup extends PhysicalOperator {
         return inp;
     }
 
+    private DataBag newCachedBag() {
+        return useOffHeapBag ? new OffHeapCachedBag(1) : new InternalCachedBag(1);
+    }
+
     protected Tuple constructOutput(List<Result> resLst, Tuple value) throws ExecException{
 
         // Construct key
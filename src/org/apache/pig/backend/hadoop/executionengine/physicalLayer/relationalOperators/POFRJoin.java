@@ -17,6 +17,7 @@
  */
 package org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators;
 
+import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.util.ArrayList;
@@ -28,10 +29,13 @@ import java.util.Properties;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
 import org.apache.pig.ExecType;
+import org.apache.pig.PigConfiguration;
 import org.apache.pig.PigException;
 import org.apache.pig.backend.executionengine.ExecException;
 import org.apache.pig.backend.hadoop.datastorage.ConfigurationUtil;
+import org.apache.pig.backend.hadoop.executionengine.mapReduceLayer.PigMapReduce;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.POStatus;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.PhysicalOperator;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.Result;
@@ -53,6 +57,7 @@ import org.apache.pig.impl.plan.NodeIdGenerator;
 import org.apache.pig.impl.plan.OperatorKey;
 import org.apache.pig.impl.plan.PlanException;
 import org.apache.pig.impl.plan.VisitorException;
+import org.apache.pig.impl.util.SpillableMemoryManager;
 
 /**
  * The operator models the join keys using the Local Rearrange operators which
@@ -95,6 +100,10 @@ public class POFRJoin extends PhysicalOperator {
     protected Schema[] inputSchemas;
     protected Schema[] keySchemas;
 
+    // Set by the MRCompiler with pig.join.replicated.hybrid. Partitions of
+    // the join can then be spilled, and are joined at the end of all input
+    protected boolean hybrid = false;
+
     // The array of Hashtables one per replicated input. replicates[fragment] =
     // null fragment is the input which is fragmented and not replicated.
     protected transient List<Map<? extends Object, ? extends List<Tuple>>> replicates;
@@ -105,6 +114,16 @@ public class POFRJoin extends PhysicalOperator {
     protected transient Tuple dumTup;
     protected transient boolean setUp;
 
+    protected transient SchemaTupleFactory[] inputSchemaTupleFactories;
+    protected transient SchemaTupleFactory[] keySchemaTupleFactories;
+    // Set when the replicated inputs did not fit in memory. The fragment
+    // tuples of the spilled partitions are then joined once all input is over
+    protected transient HybridJoinPartitions hybridPartitions;
+    // The spilled partition being joined, or -1
+    private transient int spilledPartition;
+    private transient DataInputStream probeInput;
+    private transient long probeRemaining;
+
     public POFRJoin(OperatorKey k, int rp, List<PhysicalOperator> inp,
             List<List<PhysicalPlan>> ppLists, List<List<Byte>> keyTypes,
             FileSpec[] replFiles, int fragment, boolean isLeftOuter,
@@ -160,6 +179,7 @@ public class POFRJoin extends PhysicalOperator {
         this.isLeftOuterJoin = copy.isLeftOuterJoin;
         this.inputSchemas = copy.inputSchemas;
         this.keySchemas = copy.keySchemas;
+        this.hybrid = copy.hybrid;
     }
 
     private OperatorKey genKey(OperatorKey old) {
@@ -239,6 +259,7 @@ public class POFRJoin extends PhysicalOperator {
                 replicates.add(null);
             }
             dumTup = mTupleFactory.newTuple(1);
+            spilledPartition = -1;
             setUpHashMap();
             setUp = true;
         }
@@ -268,7 +289,7 @@ public class POFRJoin extends PhysicalOperator {
         }
         while (true) {
             // Process the current input
-            inp = processInput();
+            inp = getNextFragmentInput();
             if (inp.returnStatus == POStatus.STATUS_EOP
                     || inp.returnStatus == POStatus.STATUS_ERR) {
                 return inp;
@@ -286,6 +307,14 @@ public class POFRJoin extends PhysicalOperator {
             }
             Tuple lrOutTuple = (Tuple) lrOut.result;
             Object key = lrOutTuple.get(1);
+            if (hybridPartitions != null && spilledPartition < 0) {
+                int partition = HybridJoinPartitions.getPartition(key);
+                if (hybridPartitions.isSpilled(partition)) {
+                    lr.detachInput();
+                    hybridPartitions.addProbeTuple(partition, (Tuple) inp.result);
+                    continue;
+                }
+            }
             Tuple value = getValueTuple(lr, lrOutTuple);
             lr.detachInput();
             // Configure the for each operator with the relevant bags
@@ -299,14 +328,15 @@ public class POFRJoin extends PhysicalOperator {
                     continue;
                 }
                 Map<? extends Object, ? extends List<Tuple>> replicate = replicates.get(i);
-                if (replicate.get(key) == null) {
+                List<Tuple> values = replicate.get(key);
+                if (values == null) {
                     if (isLeftOuterJoin) {
                         ce.setValue(nullBag);
                     }
                     noMatch = true;
                     break;
                 }
-                ce.setValue(new NonSpillableDataBag(replicate.get(key)));
+                ce.setValue(new NonSpillableDataBag(values));
             }
 
             // If this is not LeftOuter Join and there was no match we
@@ -354,15 +384,52 @@ public class POFRJoin extends PhysicalOperator {
         }
     }
 
+    /**
+     * @return whether the replicated inputs are loaded into
+     *  {@link ReplicatedJoinHashTable}s rather than maps of tuples
+     */
+    protected boolean useCompactHashTable() {
+        return PigMapReduce.sJobConfInternal.get() != null
+                && PigMapReduce.sJobConfInternal.get().getBoolean(PigConfiguration.PIG_JOIN_REPLICATED_COMPACT, false);
+    }
+
+    /**
+     * @return whether partitions of the join are spilled to disk when the
+     *  replicated inputs do not fit in memory
+     */
+    public boolean isHybrid() {
+        return hybrid;
+    }
+
+    public void setHybrid(boolean hybrid) {
+        this.hybrid = hybrid;
+    }
+
+    /**
+     * @return the number of bytes the replicated inputs can use before the
+     *  join spills partitions of them to disk, or -1 if it never does
+     */
+    protected long getHybridMemoryLimit() {
+        if (!hybrid) {
+            return -1;
+        }
+        Configuration conf = PigMapReduce.sJobConfInternal.get();
+        float usage = conf == null ? 0.5F
+                : conf.getFloat(PigConfiguration.PIG_JOIN_REPLICATED_HYBRID_MEMUSAGE, 0.5F);
+        return (long) (Runtime.getRuntime().maxMemory() * usage);
+    }
+
     /**
      * Builds the HashMaps by reading each replicated input from the DFS using a
-     * Load operator
+     * Load operator. If the hash tables grow larger than
+     * {@link #getHybridMemoryLimit()}, starts over with more partitions of the
+     * join spilled to disk.
      *
      * @throws ExecException
      */
     protected void setUpHashMap() throws ExecException {
-        SchemaTupleFactory[] inputSchemaTupleFactories = new SchemaTupleFactory[inputSchemas.length];
-        SchemaTupleFactory[] keySchemaTupleFactories = new SchemaTupleFactory[inputSchemas.length];
+        inputSchemaTupleFactories = new SchemaTupleFactory[inputSchemas.length];
+        keySchemaTupleFactories = new SchemaTupleFactory[inputSchemas.length];
         for (int i = 0; i < inputSchemas.length; i++) {
             Schema schema = inputSchemas[i];
             if (schema != null) {
@@ -376,14 +443,50 @@ public class POFRJoin extends PhysicalOperator {
             }
         }
 
-        int i = -1;
         long time1 = System.currentTimeMillis();
+        long hybridMemoryLimit = getHybridMemoryLimit();
+        int numSpilled = 0;
+        while (!loadReplicatedInputs(hybridMemoryLimit)) {
+            // Spill half of the partitions still in memory and start over
+            int numInMemory = HybridJoinPartitions.NUM_PARTITIONS - numSpilled;
+            numSpilled = numInMemory > 1 ? numSpilled + numInMemory / 2 : HybridJoinPartitions.NUM_PARTITIONS;
+            log.warn("Replicated join inputs exceed " + hybridMemoryLimit + " bytes. Spilling "
+                    + numSpilled + " out of " + HybridJoinPartitions.NUM_PARTITIONS + " partitions of the join");
+            hybridPartitions = new HybridJoinPartitions(numSpilled);
+        }
+        if (hybridPartitions != null) {
+            hybridPartitions.finishBuild();
+        }
+        long time2 = System.currentTimeMillis();
+        log.debug("Hash Table built. Time taken: " + (time2 - time1));
+    }
+
+    /**
+     * Loads the replicated inputs into replicates, spilling the rows of the
+     * spilled partitions of hybridPartitions if set.
+     *
+     * @param hybridMemoryLimit see {@link #getHybridMemoryLimit()}
+     * @return false if the hash tables grew larger than hybridMemoryLimit, in
+     *  which case they are discarded
+     */
+    private boolean loadReplicatedInputs(long hybridMemoryLimit) throws ExecException {
+        int i = -1;
+        // Estimated size of the hash tables, sampled every 100th tuple and
+        // reported to the SpillableMemoryManager if it runs with a memory budget
+        long estimatedSize = 0;
+        long numTuples = 0;
+        SpillableMemoryManager memoryManager = SpillableMemoryManager.getInstance();
+        boolean trackSize = memoryManager.isMemoryBudgetEnabled() || hybridMemoryLimit >= 0;
+        if (hybridPartitions != null && hybridPartitions.getNumSpilled() == HybridJoinPartitions.NUM_PARTITIONS) {
+            // all the rows go to disk
+            hybridMemoryLimit = -1;
+        }
+        boolean compact = useCompactHashTable();
+        // The size of the compact hash tables is known, no need to sample it
+        long compactSize = 0;
         for (FileSpec replFile : replFiles) {
             ++i;
 
-            SchemaTupleFactory inputSchemaTupleFactory = inputSchemaTupleFactories[i];
-            SchemaTupleFactory keySchemaTupleFactory = keySchemaTupleFactories[i];
-
             if (i == fragment) {
                 replicates.set(i, null);
                 continue;
@@ -404,11 +507,12 @@ public class POFRJoin extends PhysicalOperator {
             POLocalRearrange lr = LRs[i];
             lr.setInputs(Arrays.asList((PhysicalOperator) ld));
 
-            Map<Object, ArrayList<Tuple>> replicate;
-            if (keySchemaTupleFactory == null) {
-                replicate = new HashMap<Object, ArrayList<Tuple>>(1000);
+            Map<Object, ArrayList<Tuple>> replicate = null;
+            ReplicatedJoinHashTable table = null;
+            if (compact) {
+                table = new ReplicatedJoinHashTable();
             } else {
-                replicate = new TupleToMapKey(1000, keySchemaTupleFactory);
+                replicate = newReplicate(i);
             }
 
             log.debug("Completed setup. Trying to build replication hash table");
@@ -420,21 +524,203 @@ public class POFRJoin extends PhysicalOperator {
                 if (isKeyNull(key)) continue;
                 Tuple value = getValueTuple(lr, tuple);
 
-                ArrayList<Tuple> values = replicate.get(key);
-                if (values == null) {
-                    if (inputSchemaTupleFactory == null) {
-                        values = new ArrayList<Tuple>(1);
-                    } else {
-                        values = new TuplesToSchemaTupleList(1, inputSchemaTupleFactory);
+                if (hybridPartitions != null) {
+                    int partition = HybridJoinPartitions.getPartition(key);
+                    if (hybridPartitions.isSpilled(partition)) {
+                        hybridPartitions.addBuildRow(partition, i, key, value);
+                        continue;
+                    }
+                }
+                if (table != null) {
+                    table.add(key, value);
+                    if (trackSize && (numTuples++ % 1000) == 0) {
+                        estimatedSize = compactSize + table.getMemorySize();
+                        if (memoryManager.isMemoryBudgetEnabled() && (numTuples % 100000) == 1) {
+                            memoryManager.updateMemoryReservation(this, estimatedSize);
+                        }
+                    }
+                } else {
+                    addToReplicate(replicate, i, key, value);
+                    if (trackSize && (numTuples++ % 100) == 0) {
+                        estimatedSize += value.getMemorySize() * 100;
+                        if (memoryManager.isMemoryBudgetEnabled() && (numTuples % 100000) == 1) {
+                            memoryManager.updateMemoryReservation(this, estimatedSize);
+                        }
+                    }
+                }
+                if (hybridMemoryLimit >= 0 && estimatedSize > hybridMemoryLimit) {
+                    lr.setInputs(null);
+                    try {
+                        ld.tearDown();
+                    } catch (IOException e) {
+                        throw new ExecException("Unable to close replicated input " + replFile, e);
+                    }
+                    for (int j = 0; j < replicates.size(); j++) {
+                        replicates.set(j, null);
                     }
-                    replicate.put(key, values);
+                    if (hybridPartitions != null) {
+                        hybridPartitions.deleteAll();
+                    }
+                    return false;
                 }
-                values.add(value);
             }
-            replicates.set(i, replicate);
+            if (table != null) {
+                table.finish();
+                compactSize += table.getMemorySize();
+                estimatedSize = compactSize;
+                log.debug("Replicated " + table.getNumRows() + " rows with " + table.size()
+                        + " keys in a hash table of " + table.getMemorySize() + " bytes");
+                replicates.set(i, table);
+            } else {
+                replicates.set(i, replicate);
+            }
+        }
+        if (memoryManager.isMemoryBudgetEnabled()
+                && memoryManager.updateMemoryReservation(this, estimatedSize)) {
+            log.warn("Replicated join hash tables of an estimated " + estimatedSize
+                    + " bytes exceed the memory budget");
+        }
+        return true;
+    }
+
+    private Map<Object, ArrayList<Tuple>> newReplicate(int input) {
+        if (keySchemaTupleFactories[input] == null) {
+            return new HashMap<Object, ArrayList<Tuple>>(1000);
+        } else {
+            return new TupleToMapKey(1000, keySchemaTupleFactories[input]);
+        }
+    }
+
+    private void addToReplicate(Map<Object, ArrayList<Tuple>> replicate, int input, Object key, Tuple value) {
+        ArrayList<Tuple> values = replicate.get(key);
+        if (values == null) {
+            if (inputSchemaTupleFactories[input] == null) {
+                values = new ArrayList<Tuple>(1);
+            } else {
+                values = new TuplesToSchemaTupleList(1, inputSchemaTupleFactories[input]);
+            }
+            replicate.put(key, values);
+        }
+        values.add(value);
+    }
+
+    /**
+     * Replaces the hash tables with the rows of a spilled partition. The
+     * partition is not split again: it fails if it does not fit in
+     * {@link #getHybridMemoryLimit()} either, which happens when a few keys
+     * have most of the rows.
+     */
+    @SuppressWarnings("unchecked")
+    private void loadSpilledPartition(int partition) throws ExecException {
+        boolean compact = useCompactHashTable();
+        for (int i = 0; i < replicates.size(); i++) {
+            if (i != fragment) {
+                replicates.set(i, compact ? new ReplicatedJoinHashTable() : newReplicate(i));
+            }
+        }
+        long hybridMemoryLimit = getHybridMemoryLimit();
+        // Estimated as while loading the replicated inputs
+        long estimatedSize = 0;
+        long numTuples = 0;
+        DataInputStream in = hybridPartitions.openBuild(partition);
+        try {
+            for (long n = hybridPartitions.getBuildCount(partition); n > 0; n--) {
+                if (getReporter() != null)
+                    getReporter().progress();
+                int i = in.readInt();
+                Object key = HybridJoinPartitions.read(in);
+                Tuple value = (Tuple) HybridJoinPartitions.read(in);
+                if (compact) {
+                    ((ReplicatedJoinHashTable) replicates.get(i)).add(key, value);
+                    if ((numTuples++ % 1000) == 0) {
+                        estimatedSize = 0;
+                        for (int j = 0; j < replicates.size(); j++) {
+                            if (j != fragment) {
+                                estimatedSize += ((ReplicatedJoinHashTable) replicates.get(j)).getMemorySize();
+                            }
+                        }
+                    }
+                } else {
+                    addToReplicate((Map<Object, ArrayList<Tuple>>) replicates.get(i), i, key, value);
+                    if ((numTuples++ % 100) == 0) {
+                        estimatedSize += value.getMemorySize() * 100;
+                    }
+                }
+                if (hybridMemoryLimit >= 0 && estimatedSize > hybridMemoryLimit) {
+                    break;
+                }
+            }
+            if (in != null) {
+                in.close();
+            }
+        } catch (IOException e) {
+            throw new ExecException("Unable to read replicated join spill file", e);
+        }
+        if (hybridMemoryLimit >= 0 && estimatedSize > hybridMemoryLimit) {
+            int errCode = 6016;
+            String msg = "Spilled partition " + partition + " of the replicated join, with "
+                    + hybridPartitions.getBuildCount(partition) + " rows, exceeds " + hybridMemoryLimit
+                    + " bytes (" + PigConfiguration.PIG_JOIN_REPLICATED_HYBRID_MEMUSAGE + " of the heap)"
+                    + " when loaded. Its join keys are likely skewed: use a skewed join,"
+                    + " or give the tasks more memory.";
+            throw new ExecException(msg, errCode, PigException.REMOTE_ENVIRONMENT);
+        }
+        if (compact) {
+            for (int i = 0; i < replicates.size(); i++) {
+                if (i != fragment) {
+                    ((ReplicatedJoinHashTable) replicates.get(i)).finish();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the next tuple of the fragment, which once all of the input has
+     *  been seen, comes from the spilled partitions one after the other
+     */
+    private Result getNextFragmentInput() throws ExecException {
+        if (spilledPartition < 0) {
+            Result inp = processInput();
+            if (inp.returnStatus != POStatus.STATUS_EOP || hybridPartitions == null
+                    || !parentPlan.endOfAllInput) {
+                return inp;
+            }
+            // All of the fragment has been joined with the partitions in memory
+            hybridPartitions.finishProbe();
+            spilledPartition = hybridPartitions.getFirstSpilled();
+        }
+        while (true) {
+            if (spilledPartition == HybridJoinPartitions.NUM_PARTITIONS) {
+                hybridPartitions = null;
+                spilledPartition = -1;
+                for (int i = 0; i < replicates.size(); i++) {
+                    replicates.set(i, null);
+                }
+                return new Result(POStatus.STATUS_EOP, null);
+            }
+            if (probeInput == null) {
+                log.info("Joining spilled partition " + spilledPartition + " of "
+                        + hybridPartitions.getBuildCount(spilledPartition) + " replicated rows with "
+                        + hybridPartitions.getProbeCount(spilledPartition) + " fragment tuples");
+                loadSpilledPartition(spilledPartition);
+                probeInput = hybridPartitions.openProbe(spilledPartition);
+                probeRemaining = hybridPartitions.getProbeCount(spilledPartition);
+            }
+            if (probeRemaining > 0) {
+                probeRemaining--;
+                return new Result(POStatus.STATUS_OK, HybridJoinPartitions.read(probeInput));
+            }
+            try {
+                if (probeInput != null) {
+                    probeInput.close();
+                }
+            } catch (IOException e) {
+                throw new ExecException("Unable to read replicated join spill file", e);
+            }
+            probeInput = null;
+            hybridPartitions.delete(spilledPartition);
+            spilledPartition++;
         }
-        long time2 = System.currentTimeMillis();
-        log.debug("Hash Table built. Time taken: " + (time2 - time1));
     }
 
     protected boolean isKeyNull(Object key) throws ExecException {
@@ -17,12 +17,18 @@
  */
 package org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators;
 
+import java.util.Collections;
 import java.util.List;
 
 import org.apache.pig.backend.executionengine.ExecException;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.ColumnVector;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.POStatus;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.PhysicalOperator;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.Result;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.TupleBatch;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.codegen.CompiledExpressions;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.codegen.ExpressionCompiler;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators.ExpressionOperator;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.plans.PhyPlanVisitor;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.plans.PhysicalPlan;
 import org.apache.pig.data.DataType;
@@ -40,6 +46,14 @@ import org.apache.pig.impl.plan.VisitorException;
  * Since the filter is supposed to return tuples only, getNext is not supported
  * on any other data type.
  *
+ * When batch execution is enabled and the expression plan supports it, the
+ * input is read a batch at a time and the expression is evaluated over the
+ * whole batch.
+ *
+ * When pig.exec.filter.reorder is set and the expression plan is interpreted,
+ * the operands of its ANDs and ORs are evaluated in the order which is the
+ * cheapest for the data seen so far. See {@link AdaptivePredicate}.
+ *
  */
 public class POFilter extends PhysicalOperator {
 
@@ -60,6 +74,22 @@ public class POFilter extends PhysicalOperator {
     // appropriate type
     // private byte compOperandType;
 
+    // whether the input is processed a batch at a time, null until known
+    private transient Boolean batchMode;
+    private transient TupleBatch inputBatch;
+    private transient TupleBatch outputBatch;
+    private transient ColumnVector predicate;
+    private transient int[] allRows;
+
+    // the expression plan compiled, null if it is interpreted
+    private transient CompiledExpressions compiledPlan;
+    private transient boolean compiled = false;
+    private transient Object[] compiledResult;
+
+    // evaluates the plan if its operands are reordered, null otherwise
+    private transient AdaptivePredicate adaptivePredicate;
+    private transient boolean adaptiveChecked = false;
+
     public POFilter(OperatorKey k) {
         this(k, -1, null);
     }
@@ -84,6 +114,11 @@ public class POFilter extends PhysicalOperator {
      */
     @Override
     public Result getNextTuple() throws ExecException {
+        if (isBatchMode()) {
+            return getNextTupleFromBatch(outputBatch);
+        }
+        CompiledExpressions compiledPredicate = getCompiledPlan();
+        AdaptivePredicate adaptive = compiledPredicate == null ? getAdaptivePredicate() : null;
         Result res = null;
         Result inp = null;
         while (true) {
@@ -95,6 +130,18 @@ public class POFilter extends PhysicalOperator {
                 continue;
             }
 
+            if (compiledPredicate != null) {
+                try {
+                    compiledPredicate.evaluate((Tuple) inp.result, compiledResult);
+                } catch (RuntimeException e) {
+                    throw new ExecException("Exception while executing " + this.toString() + ": " + e.toString(), e);
+                }
+                if (Boolean.TRUE.equals(compiledResult[0])) {
+                    return inp;
+                }
+                continue;
+            }
+
             plan.attachInput((Tuple) inp.result);
 
             /*
@@ -140,7 +187,7 @@ public class POFilter extends PhysicalOperator {
                     DataType.findTypeName(compOperandType));
             }
             */
-            res = comOp.getNextBoolean();
+            res = adaptive != null ? adaptive.evaluate() : comOp.getNextBoolean();
             plan.detachInput();
             if (res.returnStatus != POStatus.STATUS_OK)
                 return res;
@@ -154,6 +201,110 @@ public class POFilter extends PhysicalOperator {
         return inp;
     }
 
+    /**
+     * Evaluates the expression plan over a batch of input tuples at a time,
+     * and returns the ones which pass through.
+     */
+    @Override
+    public Result getNextBatch(TupleBatch batch) throws ExecException {
+        if (!isBatchMode()) {
+            return super.getNextBatch(batch);
+        }
+        ExpressionOperator predicateOp = (ExpressionOperator) comOp;
+        while (true) {
+            Result inp = processInputBatch(inputBatch);
+            if (inp.returnStatus != POStatus.STATUS_OK) {
+                return inp;
+            }
+            int n = inputBatch.size();
+            try {
+                predicate.reset(DataType.BOOLEAN, inputBatch.capacity());
+                predicateOp.getNextVector(inputBatch, allRows, n, DataType.BOOLEAN, predicate);
+            } catch (RuntimeException e) {
+                throw new ExecException("Exception while executing " + this.toString() + ": " + e.toString(), e);
+            }
+            batch.clear();
+            for (int i = 0; i < n; i++) {
+                if (!predicate.isNull(i) && predicate.getBoolean(i)) {
+                    batch.add(inputBatch.get(i));
+                }
+            }
+            batch.setEndOfInput(inputBatch.isEndOfInput());
+            if (batch.size() > 0) {
+                return new Result(POStatus.STATUS_OK, batch);
+            }
+            if (batch.isEndOfInput()) {
+                batch.clear();
+                return RESULT_EOP;
+            }
+        }
+    }
+
+    @Override
+    public boolean supportsBatch() {
+        return illustrator == null && !isAccumulative() && plan != null
+                && plan.getLeaves().size() == 1 && comOp instanceof ExpressionOperator
+                && ((ExpressionOperator) comOp).supportsVector();
+    }
+
+    /**
+     * @return the expression plan compiled, if compilation is enabled and
+     *  the plan can be compiled
+     */
+    private CompiledExpressions getCompiledPlan() {
+        if (!compiled) {
+            compiled = true;
+            if (illustrator == null && !isAccumulative() && ExpressionCompiler.isEnabled()) {
+                compiledPlan = ExpressionCompiler.compile(Collections.singletonList(plan));
+                compiledResult = new Object[1];
+            }
+        }
+        return compiledPlan;
+    }
+
+    /**
+     * @return the adaptive evaluation of the plan, if enabled and the root of
+     *  the plan is an AND or an OR
+     */
+    private AdaptivePredicate getAdaptivePredicate() {
+        if (!adaptiveChecked) {
+            adaptiveChecked = true;
+            if (illustrator == null && !isAccumulative() && AdaptivePredicate.isEnabled()) {
+                adaptivePredicate = AdaptivePredicate.create(comOp);
+            }
+        }
+        return adaptivePredicate;
+    }
+
+    private boolean isBatchMode() {
+        if (batchMode == null) {
+            int batchSize = TupleBatch.getConfiguredSize();
+            batchMode = batchSize > 0 && supportsBatch();
+            if (batchMode) {
+                inputBatch = new TupleBatch(batchSize);
+                outputBatch = new TupleBatch(batchSize);
+                predicate = new ColumnVector();
+                allRows = new int[batchSize];
+                for (int i = 0; i < batchSize; i++) {
+                    allRows[i] = i;
+                }
+            }
+        }
+        // a single tuple attached at a time is processed in row mode
+        return batchMode && !(isInputAttached() && input != null);
+    }
+
+    /**
+     * Drops the tuples read ahead in batch mode, when the filter is in a
+     * nested plan whose consumer may not have read all of them.
+     */
+    @Override
+    public void reset() {
+        if (outputBatch != null) {
+            outputBatch.clear();
+        }
+    }
+
     @Override
     public String name() {
         return getAliasString() + "Filter" + "["
@@ -179,6 +330,11 @@ public class POFilter extends PhysicalOperator {
     public void setPlan(PhysicalPlan plan) {
         this.plan = plan;
         comOp = plan.getLeaves().get(0);
+        batchMode = null;
+        compiled = false;
+        compiledPlan = null;
+        adaptiveChecked = false;
+        adaptivePredicate = null;
 //        compOperandType = comOp.getOperandType();
     }
 
@@ -18,6 +18,7 @@
 package org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Iterator;
@@ -27,12 +28,17 @@ import java.util.Map;
 import org.apache.pig.PigException;
 import org.apache.pig.backend.executionengine.ExecException;
 import org.apache.pig.backend.hadoop.executionengine.mapReduceLayer.UDFEndOfAllInputNeededVisitor;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.ColumnVector;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.POStatus;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.PhysicalOperator;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.Result;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.TupleBatch;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.codegen.CompiledExpressions;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.codegen.ExpressionCompiler;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators.ExpressionOperator;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators.POProject;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators.PORelationToExprProject;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators.POUserFunc;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.plans.PhyPlanVisitor;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.plans.PhysicalPlan;
 import org.apache.pig.data.AccumulativeBag;
@@ -110,8 +116,29 @@ public class POForEach extends PhysicalOperator {
 
     protected Boolean endOfAllInputProcessing = false;
 
+    // whether the UDFs annotated with AsyncUDF at the root of the input plans
+    // are called on several inputs at once, set by the EndOfAllInputChecker
+    // once the plan is compiled
+    protected boolean asyncExec = false;
+    protected transient POUserFunc[] asyncFuncs;
+    // the inputs read ahead, whose async UDF calls are in flight
+    protected transient ArrayDeque<Tuple> asyncInputs;
+    protected transient int asyncLookahead;
+
     private Schema schema;
 
+    // whether the input is processed a batch at a time, null until known
+    protected transient Boolean batchMode;
+    protected transient TupleBatch inputBatch;
+    protected transient TupleBatch outputBatch;
+    protected transient ColumnVector[] vectors;
+    protected transient int[] allRows;
+
+    // the input plans compiled, null if they are interpreted
+    protected transient CompiledExpressions compiledPlans;
+    protected transient boolean compiled = false;
+    protected transient Object[] generated;
+
     public POForEach(OperatorKey k) {
         this(k,-1,null,null);
     }
@@ -224,6 +251,12 @@ public class POForEach extends PhysicalOperator {
      */
     @Override
     public Result getNextTuple() throws ExecException {
+        if (isBatchMode()) {
+            return getNextTupleFromBatch(outputBatch);
+        }
+        if (getCompiledPlans() != null) {
+            return getNextTupleCompiled();
+        }
         try {
             Result res = null;
             Result inp = null;
@@ -257,7 +290,7 @@ public class POForEach extends PhysicalOperator {
             //nested plan processing on the input tuple
             //read
             while (true) {
-                inp = processInput();
+                inp = asyncExec ? processAsyncInput() : processInput();
 
                 if (inp.returnStatus == POStatus.STATUS_ERR) {
                     return inp;
@@ -334,6 +367,59 @@ public class POForEach extends PhysicalOperator {
         }
     }
 
+    /**
+     * Reads ahead of the input to call the async UDFs on up to asyncLookahead
+     * inputs at once.
+     * @return the oldest input read ahead once its calls have completed, or
+     *  once enough inputs are in flight or all input has been seen
+     */
+    private Result processAsyncInput() throws ExecException {
+        if (asyncFuncs == null) {
+            List<POUserFunc> funcs = new ArrayList<POUserFunc>();
+            asyncLookahead = 1;
+            for (PhysicalOperator leaf : planLeafOps) {
+                if (leaf instanceof POUserFunc && ((POUserFunc) leaf).isAsyncExec()) {
+                    funcs.add((POUserFunc) leaf);
+                    asyncLookahead = Math.max(asyncLookahead, ((POUserFunc) leaf).getAsyncConcurrency());
+                }
+            }
+            asyncFuncs = funcs.toArray(new POUserFunc[funcs.size()]);
+            asyncInputs = new ArrayDeque<Tuple>();
+        }
+        while (true) {
+            if (!asyncInputs.isEmpty() && (asyncInputs.size() >= asyncLookahead || isAsyncResultReady())) {
+                return new Result(POStatus.STATUS_OK, asyncInputs.poll());
+            }
+            Result inp = processInput();
+            if (inp.returnStatus == POStatus.STATUS_OK) {
+                // the input may reuse its tuple for the next one
+                Tuple t = mTupleFactory.newTuple(((Tuple) inp.result).getAll());
+                attachInputToPlans(t);
+                for (POUserFunc func : asyncFuncs) {
+                    func.submitAsync();
+                }
+                asyncInputs.add(t);
+                continue;
+            }
+            if (inp.returnStatus == POStatus.STATUS_EOP && !asyncInputs.isEmpty()
+                    && (parentPlan == null || parentPlan.endOfAllInput)) {
+                // No more input, wait for the calls in flight
+                return new Result(POStatus.STATUS_OK, asyncInputs.poll());
+            }
+            // Wait for more input before waiting for the calls in flight
+            return inp;
+        }
+    }
+
+    private boolean isAsyncResultReady() {
+        for (POUserFunc func : asyncFuncs) {
+            if (!func.isAsyncResultReady()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private boolean isEarlyTerminated = false;
     private TupleMaker<? extends Tuple> tupleMaker;
     private boolean knownSize = false;
@@ -346,7 +432,164 @@ public class POForEach extends PhysicalOperator {
         isEarlyTerminated = true;
     }
 
-    protected Result processPlan() throws ExecException{
+    /**
+     * Evaluates the expressions of the generate over a batch of input tuples
+     * at a time, one column at a time.
+     */
+    @Override
+    public Result getNextBatch(TupleBatch batch) throws ExecException {
+        if (!isBatchMode()) {
+            return super.getNextBatch(batch);
+        }
+        Result inp = processInputBatch(inputBatch);
+        if (inp.returnStatus != POStatus.STATUS_OK) {
+            return inp;
+        }
+        initTupleMaker();
+        int n = inputBatch.size();
+        try {
+            for (int i = 0; i < noItems; i++) {
+                vectors[i].reset(resultTypes[i], inputBatch.capacity());
+                ((ExpressionOperator) planLeafOps[i]).getNextVector(inputBatch, allRows, n,
+                        resultTypes[i], vectors[i]);
+            }
+            batch.clear();
+            for (int row = 0; row < n; row++) {
+                Tuple out = tupleMaker.newTuple();
+                for (int i = 0; i < noItems; i++) {
+                    if (knownSize) {
+                        out.set(i, vectors[i].getObject(row));
+                    } else {
+                        out.append(vectors[i].getObject(row));
+                    }
+                }
+                batch.add(out);
+            }
+        } catch (RuntimeException e) {
+            throw new ExecException("Error while executing ForEach at " + this.getOriginalLocations(), e);
+        }
+        batch.setEndOfInput(inputBatch.isEndOfInput());
+        return new Result(POStatus.STATUS_OK, batch);
+    }
+
+    /**
+     * A foreach processes batches when its input plans are simple expressions,
+     * not flattened, with no nested relational operators.
+     */
+    @Override
+    public boolean supportsBatch() {
+        if (!isSimpleGenerate()) {
+            return false;
+        }
+        for (int i = 0; i < inputPlans.size(); i++) {
+            if (!((ExpressionOperator) planLeafOps[i]).supportsVector()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return whether the input plans are expressions generating exactly one
+     *  output tuple per input tuple
+     */
+    private boolean isSimpleGenerate() {
+        // subclasses generate their output differently
+        if (getClass() != POForEach.class) {
+            return false;
+        }
+        if (illustrator != null || isAccumulative() || mapSideOnly || endOfAllInputProcessing
+                || inputPlans == null || inputPlans.isEmpty() || !opsToBeReset.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < inputPlans.size(); i++) {
+            if (isToBeFlattenedArray[i] || inputPlans.get(i).getLeaves().size() != 1
+                    || !(planLeafOps[i] instanceof ExpressionOperator)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the input plans compiled, if compilation is enabled and they
+     *  can all be compiled
+     */
+    private CompiledExpressions getCompiledPlans() {
+        if (!compiled) {
+            compiled = true;
+            if (isSimpleGenerate() && ExpressionCompiler.isEnabled()) {
+                compiledPlans = ExpressionCompiler.compile(inputPlans);
+                generated = new Object[noItems];
+            }
+        }
+        return compiledPlans;
+    }
+
+    /**
+     * Generates the output tuple of the next input tuple with the compiled
+     * input plans.
+     */
+    private Result getNextTupleCompiled() throws ExecException {
+        while (true) {
+            Result inp = processInput();
+            if (inp.returnStatus == POStatus.STATUS_NULL) {
+                continue;
+            }
+            if (inp.returnStatus != POStatus.STATUS_OK) {
+                return inp;
+            }
+            initTupleMaker();
+            try {
+                compiledPlans.evaluate((Tuple) inp.result, generated);
+            } catch (RuntimeException e) {
+                throw new ExecException("Error while executing ForEach at " + this.getOriginalLocations(), e);
+            }
+            Tuple out = tupleMaker.newTuple();
+            for (int i = 0; i < noItems; i++) {
+                if (knownSize) {
+                    out.set(i, generated[i]);
+                } else {
+                    out.append(generated[i]);
+                }
+            }
+            return new Result(POStatus.STATUS_OK, out);
+        }
+    }
+
+    private boolean isBatchMode() {
+        if (batchMode == null) {
+            int batchSize = TupleBatch.getConfiguredSize();
+            batchMode = batchSize > 0 && supportsBatch();
+            if (batchMode) {
+                inputBatch = new TupleBatch(batchSize);
+                outputBatch = new TupleBatch(batchSize);
+                vectors = new ColumnVector[noItems];
+                for (int i = 0; i < noItems; i++) {
+                    vectors[i] = new ColumnVector();
+                }
+                allRows = new int[batchSize];
+                for (int i = 0; i < batchSize; i++) {
+                    allRows[i] = i;
+                }
+            }
+        }
+        // a single tuple attached at a time is processed in row mode
+        return batchMode && !processingPlan && !(isInputAttached() && input != null);
+    }
+
+    /**
+     * Drops the tuples generated ahead in batch mode, when the foreach is in a
+     * nested plan whose consumer may not have read all of them.
+     */
+    @Override
+    public void reset() {
+        if (outputBatch != null) {
+            outputBatch.clear();
+        }
+    }
+
+    private void initTupleMaker() {
         if (schema != null && tupleMaker == null) {
             // Note here that if SchemaTuple is currently turned on, then any UDF's in the chain
             // must follow good practices. Namely, they should not append to the Tuple that comes
@@ -359,6 +602,10 @@ public class POForEach extends PhysicalOperator {
         if (tupleMaker == null) {
             tupleMaker = TupleFactory.getInstance();
         }
+    }
+
+    protected Result processPlan() throws ExecException{
+        initTupleMaker();
 
         Result res = new Result();
 
@@ -624,6 +871,9 @@ public class POForEach extends PhysicalOperator {
     }
 
     private void reInitialize() {
+        batchMode = null;
+        compiled = false;
+        compiledPlans = null;
         if(planLeafOps != null) {
             noItems = planLeafOps.length;
             resultTypes = new byte[noItems];
@@ -725,6 +975,7 @@ public class POForEach extends PhysicalOperator {
         clone.setResultType(getResultType());
         clone.addOriginalLocation(alias, getOriginalLocations());
         clone.endOfAllInputProcessing = endOfAllInputProcessing;
+        clone.asyncExec = asyncExec;
         clone.mapSideOnly = mapSideOnly;
         clone.flattenNumFields = flattenNumFields;
         return clone;
@@ -769,6 +1020,19 @@ public class POForEach extends PhysicalOperator {
             opsToBeReset.add(d);
         }
 
+        @Override
+        public void visitFilter(POFilter fl) throws VisitorException {
+            // drops the tuples it may have read ahead in batch mode
+            opsToBeReset.add(fl);
+            super.visitFilter(fl);
+        }
+
+        @Override
+        public void visitPOForEach(POForEach nfe) throws VisitorException {
+            opsToBeReset.add(nfe);
+            super.visitPOForEach(nfe);
+        }
+
         @Override
         public void visitLimit(POLimit limit) throws VisitorException {
             opsToBeReset.add(limit);
@@ -876,9 +1140,38 @@ public class POForEach extends PhysicalOperator {
                     return true;
                 }
             }
-            return false;
+            // The inputs read ahead for async UDFs are processed at the end
+            return asyncExec;
         } catch (Exception e) {
             throw new ExecException(e);
         }
     }
+
+    /**
+     * @return whether the UDFs annotated with AsyncUDF at the root of the
+     *  input plans can be called on several inputs at once
+     */
+    public boolean canExecAsync() {
+        if (isAccumulative() || !opsToBeReset.isEmpty() || planLeafOps == null) {
+            return false;
+        }
+        for (PhysicalOperator leaf : planLeafOps) {
+            if (leaf instanceof POUserFunc && ((POUserFunc) leaf).isAsyncExec()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean isAsyncExec() {
+        return asyncExec;
+    }
+
+    /**
+     * @param asyncExec whether the async UDFs are called on several inputs
+     *  at once, which requires the end of all input pass
+     */
+    public void setAsyncExec(boolean asyncExec) {
+        this.asyncExec = asyncExec;
+    }
 }
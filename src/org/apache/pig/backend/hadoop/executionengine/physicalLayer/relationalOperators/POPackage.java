@@ -33,6 +33,7 @@ import org.apache.pig.data.AccumulativeBag;
 import org.apache.pig.data.DataBag;
 import org.apache.pig.data.DataType;
 import org.apache.pig.data.InternalCachedBag;
+import org.apache.pig.data.OffHeapCachedBag;
 import org.apache.pig.data.ReadOnceBag;
 import org.apache.pig.data.Tuple;
 import org.apache.pig.impl.io.NullableTuple;
@@ -80,6 +81,8 @@ public class POPackage extends PhysicalOperator {
 
     private transient boolean initialized;
     private transient boolean useDefaultBag;
+
+    private transient boolean useOffHeapBag;
     private transient int accumulativeBatchSize;
 
     public POPackage(OperatorKey k) {
@@ -193,6 +196,8 @@ public class POPackage extends PhysicalOperator {
                         PigConfiguration.PIG_CACHEDBAG_TYPE);
                 if (bagType != null && bagType.equalsIgnoreCase("default")) {
                     useDefaultBag = true;
+                } else if (bagType != null && bagType.equalsIgnoreCase("offheap")) {
+                    useOffHeapBag = true;
                 }
             }
             accumulativeBatchSize = AccumulatorOptimizerUtil.getAccumulativeBatchSize();
@@ -242,7 +247,7 @@ public class POPackage extends PhysicalOperator {
                             // constructor argument should be 2 * numInputs. But for one
                             // obscure
                             // case we don't want to pay the penalty all the time.
-                            : new InternalCachedBag(numInputs);
+                            : newCachedBag(numInputs);
                 }
                 // For each indexed tup in the inp, sort them
                 // into their corresponding bags based
@@ -254,7 +259,7 @@ public class POPackage extends PhysicalOperator {
                         if (pkgr.getUseSecondaryKey()) {
                             if (dbs[index] == null) {
                                 dbs[index] = useDefaultBag ? mBagFactory
-                                        .newDefaultBag() : new InternalCachedBag(numInputs);
+                                        .newDefaultBag() : newCachedBag(numInputs);
                             }
                         } else {
                             dbs[index] = new PeekedBag(pkgr, ntup, tupIter, keyWritable);
@@ -288,6 +293,10 @@ public class POPackage extends PhysicalOperator {
         return pkgr.getNext();
     }
 
+    private DataBag newCachedBag(int bagCount) {
+        return useOffHeapBag ? new OffHeapCachedBag(bagCount) : new InternalCachedBag(bagCount);
+    }
+
     public Packager getPkgr() {
         return pkgr;
     }
@@ -26,6 +26,9 @@ import java.util.WeakHashMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.pig.AggregationStates;
+import org.apache.pig.EvalFunc;
+import org.apache.pig.IncrementalIntermediate;
 import org.apache.pig.PigConfiguration;
 import org.apache.pig.PigException;
 import org.apache.pig.backend.executionengine.ExecException;
@@ -34,6 +37,8 @@ import org.apache.pig.backend.hadoop.executionengine.physicalLayer.POStatus;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.PhysicalOperator;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.Result;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators.ExpressionOperator;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators.POProject;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators.POUserFunc;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.plans.PhyPlanVisitor;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.plans.PhysicalPlan;
 import org.apache.pig.data.DataBag;
@@ -55,6 +60,12 @@ import com.google.common.collect.Maps;
  * are fed these buffered up inputs, and results stored in a secondary
  * map. Once that map fills up or all input has been seen, results are
  * piped out into the next operator (caller of getNext()).
+ * <p>
+ * When the intermediate functions of all the value plans implement
+ * {@link IncrementalIntermediate}, the inputs are not buffered. Instead, a
+ * {@link PartialAggHashTable} numbers the keys and every input updates the
+ * aggregation states of its group. The groups are piped out once the table
+ * fills up its share of memory or all input has been seen.
  */
 public class POPartialAgg extends PhysicalOperator implements Spillable, GroupingSpillable {
     private static final Log LOG = LogFactory.getLog(POPartialAgg.class);
@@ -89,6 +100,10 @@ public class POPartialAgg extends PhysicalOperator implements Spillable, Groupin
     private static final int FIRST_TIER_THRESHOLD = 20000;
     private static final int SECOND_TIER_THRESHOLD = FIRST_TIER_THRESHOLD / DEFAULT_MIN_REDUCTION;
 
+    // Updating a state per group is cheap enough for aggregation to pay off
+    // with a much lower reduction than buffering the inputs.
+    private static final int DEFAULT_HASH_MIN_REDUCTION = 2;
+
     private static final WeakHashMap<POPartialAgg, Byte> ALL_POPARTS = new WeakHashMap<POPartialAgg, Byte>();
 
     private PhysicalPlan keyPlan;
@@ -131,6 +146,14 @@ public class POPartialAgg extends PhysicalOperator implements Spillable, Groupin
     private transient int avgTupleSize;
     private transient Iterator<Entry<Object, List<Tuple>>> spillingIterator;
 
+    // set when the inputs are aggregated in hashTable rather than buffered
+    private transient boolean hashAggregation;
+    private transient PartialAggHashTable hashTable;
+    private transient AggregationStates[] aggStates;
+    private transient long hashMemoryLimit;
+    // the next group of hashTable to pipe out while spilling
+    private transient int spillingGroup;
+
     public POPartialAgg(OperatorKey k) {
         this(k, false);
     }
@@ -152,6 +175,7 @@ public class POPartialAgg extends PhysicalOperator implements Spillable, Groupin
         avgTupleSize = 0;
         percentUsage = 0.2F;
         spillLock = new Object();
+        boolean useHashTable = true;
         if (PigMapReduce.sJobConfInternal.get() != null) {
             String usage = PigMapReduce.sJobConfInternal.get().get(
                     PigConfiguration.PIG_CACHEDBAG_MEMUSAGE);
@@ -165,6 +189,8 @@ public class POPartialAgg extends PhysicalOperator implements Spillable, Groupin
                         DEFAULT_MIN_REDUCTION);
                 minOutputReduction = DEFAULT_MIN_REDUCTION;
             }
+            useHashTable = PigMapReduce.sJobConfInternal.get().getBoolean(
+                    PigConfiguration.PIG_EXEC_MAP_PARTAGG_HASH, true);
         }
         if (percentUsage <= 0) {
             LOG.info("No memory allocated to intermediate memory buffers. Turning off partial aggregation.");
@@ -182,7 +208,21 @@ public class POPartialAgg extends PhysicalOperator implements Spillable, Groupin
         // For Hashmap, internally its size is always in power of 2.
         // So for NUM_RECS_TO_SAMPLE=10000, hashmap size will be 16384
         // With secondTierThreshold of 2857 (minReduction 7), hashmap size will be 4096
-        if (!disableMapAgg) {
+        if (!disableMapAgg && useHashTable) {
+            aggStates = createAggregationStates();
+        }
+        if (aggStates != null) {
+            hashAggregation = true;
+            hashTable = new PartialAggHashTable(SECOND_TIER_THRESHOLD);
+            hashMemoryLimit = (long) (Runtime.getRuntime().maxMemory() * percentUsage / ALL_POPARTS.size());
+            if (PigMapReduce.sJobConfInternal.get() == null
+                    || PigMapReduce.sJobConfInternal.get().get(PigConfiguration.PIG_EXEC_MAP_PARTAGG_MINREDUCTION) == null) {
+                minOutputReduction = DEFAULT_HASH_MIN_REDUCTION;
+            }
+            // The memory used is known at all times, no need to estimate it
+            estimatedMemThresholds = true;
+            LOG.info("Aggregating states in a hash table, using up to " + hashMemoryLimit + " bytes");
+        } else if (!disableMapAgg) {
             rawInputMap = Maps.newHashMapWithExpectedSize(NUM_RECS_TO_SAMPLE);
             processedInputMap = Maps.newHashMapWithExpectedSize(SECOND_TIER_THRESHOLD);
         }
@@ -208,6 +248,9 @@ public class POPartialAgg extends PhysicalOperator implements Spillable, Groupin
         if (!initialized) {
             init();
         }
+        if (hashAggregation) {
+            return getNextHashAggregated();
+        }
 
         while (true) {
             if (!sizeReductionChecked && numRecsInRawMap >= numRecordsToSample) {
@@ -292,12 +335,143 @@ public class POPartialAgg extends PhysicalOperator implements Spillable, Groupin
                     aggregateBothLevels(true, true);
                     if (shouldSpill()) {
                         startSpill(false); // next time around, we'll start emitting.
+                    } else if (estimatedMemThresholds && (numRecsInRawMap & 0x3ff) == 0
+                            && SpillableMemoryManager.getInstance().updateMemoryReservation(this, getMemorySize())) {
+                        // The memory budget of the SpillableMemoryManager is exceeded
+                        // and we cannot be spilled by it. Aggregate and emit.
+                        LOG.info("Memory budget exceeded. Aggregating and emitting records.");
+                        startSpill(true);
                     }
                 }
             }
         }
     }
 
+    /**
+     * @return the states of the intermediate functions of the value plans, or
+     *  null if not all of them are projections of their bag of inputs by a
+     *  function implementing IncrementalIntermediate
+     */
+    private AggregationStates[] createAggregationStates() throws ExecException {
+        AggregationStates[] states = new AggregationStates[valuePlans.size()];
+        for (int i = 0; i < valuePlans.size(); i++) {
+            PhysicalPlan plan = valuePlans.get(i);
+            if (plan.size() != 2 || !(valueLeaves.get(i) instanceof POUserFunc)) {
+                return null;
+            }
+            PhysicalOperator root = plan.getRoots().get(0);
+            if (root.getClass() != POProject.class || ((POProject) root).isProjectToEnd()
+                    || ((POProject) root).getColumns().size() != 1
+                    || ((POProject) root).getColumn() != i + 1) {
+                return null;
+            }
+            EvalFunc<?> func = ((POUserFunc) valueLeaves.get(i)).getFunc();
+            if (!(func instanceof IncrementalIntermediate)) {
+                return null;
+            }
+            states[i] = ((IncrementalIntermediate) func).newStates();
+        }
+        return states;
+    }
+
+    private Result getNextHashAggregated() throws ExecException {
+        while (true) {
+            if (doSpill) {
+                if (spillingGroup < hashTable.size()) {
+                    return getHashOutput(spillingGroup++);
+                }
+                LOG.info("Emitted " + spillingGroup + " aggregated records for "
+                        + numRecsInRawMap + " input records.");
+                clearHashTable();
+                doSpill = false;
+                doContingentSpill = false;
+                if (inputsExhausted) {
+                    freeMemory();
+                    return EOP_RESULT;
+                }
+            }
+            if (mapAggDisabled()) {
+                freeMemory();
+                return processInput();
+            }
+            if (doContingentSpill) {
+                // SpillableMemoryManager requested a spill. The states are as
+                // aggregated as they can be, so emit them.
+                startedContingentSpill = true;
+                doSpill = true;
+                continue;
+            }
+            Result inp = processInput();
+            if (inp.returnStatus == POStatus.STATUS_ERR) {
+                return inp;
+            } else if (inp.returnStatus == POStatus.STATUS_EOP) {
+                if (parentPlan.endOfAllInput) {
+                    // parent input is over. flush what we have.
+                    inputsExhausted = true;
+                    LOG.info("Spilling last bits.");
+                    doSpill = true;
+                    continue;
+                } else {
+                    return EOP_RESULT;
+                }
+            } else if (inp.returnStatus == POStatus.STATUS_NULL) {
+                continue;
+            }
+            Tuple inpTuple = (Tuple) inp.result;
+            keyPlan.attachInput(inpTuple);
+            Result keyRes = getResult(keyLeaf);
+            if (keyRes.returnStatus != POStatus.STATUS_OK) {
+                return keyRes;
+            }
+            keyPlan.detachInput();
+            int group = hashTable.getGroup(keyRes.result);
+            for (int i = 0; i < aggStates.length; i++) {
+                aggStates[i].merge(group, (Tuple) inpTuple.get(i + 1));
+            }
+            numRecsInRawMap += 1;
+
+            if (!sizeReductionChecked && numRecsInRawMap >= numRecordsToSample) {
+                int reduction = numRecsInRawMap / hashTable.size();
+                LOG.info("Observed reduction factor: from " + numRecsInRawMap
+                        + " to " + hashTable.size() + " => " + reduction + ".");
+                if (reduction < minOutputReduction) {
+                    LOG.info("Disabling in-memory aggregation, since observed reduction is less than "
+                            + minOutputReduction);
+                    doSpill = true;
+                    disableMapAgg = true;
+                    ALL_POPARTS.remove(this);
+                }
+                sizeReductionChecked = true;
+            } else if (getMemorySize() > hashMemoryLimit) {
+                LOG.info("Aggregation hash table is full with " + hashTable.size()
+                        + " groups. Emitting records.");
+                doSpill = true;
+            } else if ((numRecsInRawMap & 0x3ff) == 0
+                    && SpillableMemoryManager.getInstance().updateMemoryReservation(this, getMemorySize())) {
+                LOG.info("Memory budget exceeded. Emitting aggregated records.");
+                doSpill = true;
+            }
+        }
+    }
+
+    private Result getHashOutput(int group) throws ExecException {
+        Tuple output = mTupleFactory.newTuple(aggStates.length + 1);
+        output.set(0, hashTable.getKey(group));
+        for (int i = 0; i < aggStates.length; i++) {
+            output.set(i + 1, aggStates[i].getResult(group));
+        }
+        return new Result(POStatus.STATUS_OK, output);
+    }
+
+    private void clearHashTable() {
+        hashTable.clear();
+        for (AggregationStates states : aggStates) {
+            states.clear();
+        }
+        numRecsInRawMap = 0;
+        spillingGroup = 0;
+    }
+
     private void freeMemory() throws ExecException {
         if (rawInputMap != null && !rawInputMap.isEmpty()) {
             throw new ExecException("Illegal state. Trying to free up partial aggregation maps when they are not empty");
@@ -305,6 +479,9 @@ public class POPartialAgg extends PhysicalOperator implements Spillable, Groupin
         // Free up the maps for garbage collection
         rawInputMap = null;
         processedInputMap = null;
+        hashTable = null;
+        aggStates = null;
+        SpillableMemoryManager.getInstance().releaseMemoryReservation(this);
     }
 
     private void estimateMemThresholds() {
@@ -733,6 +910,19 @@ public class POPartialAgg extends PhysicalOperator implements Spillable, Groupin
 
     @Override
     public long getMemorySize() {
+        if (hashAggregation) {
+            // may be called by SpillableMemoryManager after the table is freed
+            PartialAggHashTable table = hashTable;
+            AggregationStates[] states = aggStates;
+            if (table == null || states == null) {
+                return 0;
+            }
+            long size = table.getMemorySize();
+            for (AggregationStates s : states) {
+                size += (long) s.getStateSize() * table.size();
+            }
+            return size;
+        }
         return avgTupleSize * (numRecsInProcessedMap + numRecsInRawMap);
     }
 
@@ -75,12 +75,6 @@ public class POPartitionRearrange extends POLocalRearrange {
 
     /* Loads the key distribution file obtained from the sampler */
     private void init() throws RuntimeException {
-        String keyDistFile = PigMapReduce.sJobConfInternal.get().get("pig.keyDistFile", "");
-        if (keyDistFile.isEmpty()) {
-            throw new RuntimeException(
-            "Internal error: missing key distribution file property.");
-        }
-
         try {
             Utils.setTmpFileCompressionOnConf(pigContext, PigMapReduce.sJobConfInternal.get());
         } catch (IOException ie) {
@@ -90,8 +84,8 @@ public class POPartitionRearrange extends POLocalRearrange {
 
             Integer [] redCnt = new Integer[1];
 
-            reducerMap = MapRedUtil.loadPartitionFileFromLocalCache(
-                    keyDistFile, redCnt, DataType.NULL, PigMapReduce.sJobConfInternal.get());
+            reducerMap = MapRedUtil.loadPartitionFile(
+                    PigMapReduce.sJobConfInternal.get(), redCnt, DataType.NULL);
 
             // check if the partition file is empty
             totalReducers = (redCnt[0] == null) ? -1 : redCnt[0];
@@ -0,0 +1,301 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.pig.ExecType;
+import org.apache.pig.PigConfiguration;
+import org.apache.pig.backend.executionengine.ExecException;
+import org.apache.pig.backend.hadoop.datastorage.ConfigurationUtil;
+import org.apache.pig.backend.hadoop.executionengine.mapReduceLayer.PigMapReduce;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.POStatus;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.PhysicalOperator;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.Result;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators.ConstantExpression;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.plans.PhysicalPlan;
+import org.apache.pig.data.DataType;
+import org.apache.pig.data.InterSedes;
+import org.apache.pig.data.InterSedesFactory;
+import org.apache.pig.data.SpillStreams;
+import org.apache.pig.data.Tuple;
+import org.apache.pig.impl.PigContext;
+import org.apache.pig.impl.plan.NodeIdGenerator;
+import org.apache.pig.impl.plan.OperatorKey;
+
+/**
+ * The cross product of two inputs, computed as a fragment-replicated join on
+ * no key: the other input than the fragment is stored and replicated to the
+ * tasks of the fragment, instead of both inputs being replicated to a grid of
+ * reducers by {@link org.apache.pig.impl.builtin.GFCross}.
+ * <p>
+ * The replicated input is read in blocks which fit in
+ * {@link PigConfiguration#PIG_CROSS_REPLICATED_MEMUSAGE} of the heap. If it
+ * all fits in one block, each fragment tuple is crossed with it as it comes.
+ * Otherwise the fragment tuples are also spilled to a local file while they
+ * are crossed with the first block, and at the end of all input the file is
+ * read again for each of the next blocks, as in a block nested loop join.
+ */
+public class POReplicatedCross extends POFRJoin {
+    private static final Log log = LogFactory.getLog(POReplicatedCross.class);
+    private static final long serialVersionUID = 1L;
+    private static final InterSedes sedes = InterSedesFactory.getInterSedesInstance();
+
+    // The block of the replicated input in memory
+    private transient List<Tuple> block;
+    // The loader of the replicated input, while it has more blocks
+    private transient POLoad loader;
+    // The fragment tuple being crossed with the block, and the position in
+    // the block
+    private transient Tuple current;
+    private transient int blockIndex;
+    private transient File spillFile;
+    private transient DataOutputStream spillOutput;
+    private transient long spillCount;
+    // Set while the spilled fragment tuples are crossed with the next blocks
+    private transient DataInputStream spillInput;
+    private transient long spillRemaining;
+
+    public POReplicatedCross(OperatorKey k, int rp, List<PhysicalOperator> inp, int fragment)
+            throws ExecException {
+        super(k, rp, inp, createKeyPlans(k, inp.size()), createKeyTypes(inp.size()), null,
+                fragment, false, null);
+    }
+
+    // The inputs are joined on a constant
+    private static List<List<PhysicalPlan>> createKeyPlans(OperatorKey k, int numInputs) {
+        List<List<PhysicalPlan>> ppLists = new ArrayList<List<PhysicalPlan>>(numInputs);
+        for (int i = 0; i < numInputs; i++) {
+            ConstantExpression ce = new ConstantExpression(new OperatorKey(k.scope,
+                    NodeIdGenerator.getGenerator().getNextNodeId(k.scope)));
+            ce.setValue(0);
+            ce.setResultType(DataType.INTEGER);
+            PhysicalPlan pp = new PhysicalPlan();
+            pp.add(ce);
+            ppLists.add(Arrays.asList(pp));
+        }
+        return ppLists;
+    }
+
+    private static List<List<Byte>> createKeyTypes(int numInputs) {
+        List<List<Byte>> keyTypes = new ArrayList<List<Byte>>(numInputs);
+        for (int i = 0; i < numInputs; i++) {
+            keyTypes.add(Arrays.asList(DataType.INTEGER));
+        }
+        return keyTypes;
+    }
+
+    @Override
+    public String name() {
+        return getAliasString() + "ReplicatedCross[" + DataType.findTypeName(resultType)
+                + "]" + " - " + mKey.toString();
+    }
+
+    @Override
+    public Result getNextTuple() throws ExecException {
+        if (!setUp) {
+            openReplicatedInput();
+            loadBlock();
+            setUp = true;
+        }
+        while (true) {
+            if (current != null && blockIndex < block.size()) {
+                return new Result(POStatus.STATUS_OK, cross(current, block.get(blockIndex++)));
+            }
+            current = null;
+            Result inp = getNextFragmentInput();
+            if (inp.returnStatus != POStatus.STATUS_OK) {
+                return inp;
+            }
+            current = (Tuple) inp.result;
+            blockIndex = 0;
+        }
+    }
+
+    private Tuple cross(Tuple fragmentTuple, Tuple replicatedTuple) throws ExecException {
+        Tuple first = fragment == 0 ? fragmentTuple : replicatedTuple;
+        Tuple second = fragment == 0 ? replicatedTuple : fragmentTuple;
+        Tuple out = mTupleFactory.newTuple(first.size() + second.size());
+        for (int i = 0; i < first.size(); i++) {
+            out.set(i, first.get(i));
+        }
+        for (int i = 0; i < second.size(); i++) {
+            out.set(first.size() + i, second.get(i));
+        }
+        return out;
+    }
+
+    /**
+     * @return the next tuple of the fragment, which once all of the input has
+     *  been seen, comes from the spill file for each of the next blocks
+     */
+    private Result getNextFragmentInput() throws ExecException {
+        if (spillInput == null) {
+            Result inp = processInput();
+            if (inp.returnStatus == POStatus.STATUS_OK && loader != null) {
+                spill((Tuple) inp.result);
+            }
+            if (inp.returnStatus != POStatus.STATUS_EOP || loader == null
+                    || !parentPlan.endOfAllInput) {
+                return inp;
+            }
+            // All of the fragment has been crossed with the first block
+            closeSpillOutput();
+            if (spillCount > 0) {
+                log.info("Crossing " + spillCount + " spilled fragment tuples with the next blocks"
+                        + " of the replicated input");
+            }
+        } else if (spillRemaining > 0) {
+            spillRemaining--;
+            return new Result(POStatus.STATUS_OK, read());
+        }
+        while (true) {
+            closeSpillInput();
+            if (loader == null || spillCount == 0) {
+                finish();
+                return new Result(POStatus.STATUS_EOP, null);
+            }
+            loadBlock();
+            try {
+                spillInput = SpillStreams.createInputStream(spillFile);
+            } catch (IOException e) {
+                throw new ExecException("Unable to open cross spill file " + spillFile, e);
+            }
+            spillRemaining = spillCount;
+            if (!block.isEmpty()) {
+                spillRemaining--;
+                return new Result(POStatus.STATUS_OK, read());
+            }
+        }
+    }
+
+    private void openReplicatedInput() {
+        int replicated = fragment == 0 ? 1 : 0;
+        loader = new POLoad(new OperatorKey("Repl File Loader", 1L), replFiles[replicated]);
+        loader.setPc(new PigContext(ExecType.LOCAL, ConfigurationUtil.getLocalFSProperties()));
+    }
+
+    /**
+     * Reads the next block of the replicated input, and lets go of the
+     * loader once it is all read.
+     */
+    private void loadBlock() throws ExecException {
+        Configuration conf = PigMapReduce.sJobConfInternal.get();
+        float usage = conf == null ? 0.3F : conf.getFloat(PigConfiguration.PIG_CROSS_REPLICATED_MEMUSAGE, 0.3F);
+        long memoryLimit = (long) (Runtime.getRuntime().maxMemory() * usage);
+        block = new ArrayList<Tuple>();
+        // Estimated size of the block, sampled every 100th tuple
+        long estimatedSize = 0;
+        while (estimatedSize <= memoryLimit) {
+            if (getReporter() != null) {
+                getReporter().progress();
+            }
+            Result res = loader.getNextTuple();
+            if (res.returnStatus == POStatus.STATUS_EOP) {
+                loader = null;
+                break;
+            }
+            if (res.returnStatus != POStatus.STATUS_OK) {
+                throw new ExecException("Unable to read replicated input of cross: " + res.result);
+            }
+            Tuple t = (Tuple) res.result;
+            if (block.size() % 100 == 0) {
+                estimatedSize += t.getMemorySize() * 100;
+            }
+            block.add(t);
+        }
+        log.debug("Loaded a block of " + block.size() + " replicated tuples"
+                + (loader == null ? "" : ", more to come"));
+    }
+
+    private void spill(Tuple t) throws ExecException {
+        try {
+            if (spillOutput == null) {
+                spillFile = File.createTempFile("pigcross", null);
+                spillFile.deleteOnExit();
+                spillOutput = SpillStreams.createOutputStream(spillFile);
+            }
+            sedes.writeDatum(spillOutput, t);
+            spillCount++;
+        } catch (IOException e) {
+            throw new ExecException("Unable to spill cross fragment", e);
+        }
+    }
+
+    private Tuple read() throws ExecException {
+        if (getReporter() != null) {
+            getReporter().progress();
+        }
+        try {
+            return (Tuple) sedes.readDatum(spillInput);
+        } catch (IOException e) {
+            throw new ExecException("Unable to read cross spill file " + spillFile, e);
+        }
+    }
+
+    private void closeSpillOutput() throws ExecException {
+        if (spillOutput != null) {
+            try {
+                spillOutput.close();
+            } catch (IOException e) {
+                throw new ExecException("Unable to write cross spill file " + spillFile, e);
+            } finally {
+                spillOutput = null;
+            }
+        }
+    }
+
+    private void closeSpillInput() throws ExecException {
+        if (spillInput != null) {
+            try {
+                spillInput.close();
+            } catch (IOException e) {
+                throw new ExecException("Unable to read cross spill file " + spillFile, e);
+            } finally {
+                spillInput = null;
+            }
+        }
+    }
+
+    private void finish() throws ExecException {
+        block = null;
+        if (loader != null) {
+            try {
+                loader.tearDown();
+            } catch (IOException e) {
+                throw new ExecException("Unable to close replicated input of cross", e);
+            }
+            loader = null;
+        }
+        if (spillFile != null) {
+            if (!spillFile.delete()) {
+                log.warn("Unable to delete cross spill file " + spillFile);
+            }
+            spillFile = null;
+        }
+    }
+}
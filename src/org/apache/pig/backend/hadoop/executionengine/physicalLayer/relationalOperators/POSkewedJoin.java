@@ -35,7 +35,7 @@ import org.apache.pig.impl.util.MultiMap;
  * The PhysicalOperator that represents a skewed join. It must have two inputs.
  * This operator does not do any actually work, it is only a place holder. When it is
  * translated into MR plan, a POSkewedJoin is translated into a sampling job and a join
- * job.
+ * job, unless the skewed keys are found when the join job is launched.
  *
  *
  */
@@ -53,6 +53,10 @@ public class POSkewedJoin extends PhysicalOperator  {
     // the value is a list of <code>PhysicalPlan</code> to retrieve each join key for this input
     private MultiMap<PhysicalOperator, PhysicalPlan> mJoinPlans;
 
+    // whether the skewed keys of the first input are found when the job is
+    // launched, instead of by a sampling job
+    private boolean detectKeysAtLaunch = false;
+
     public POSkewedJoin(OperatorKey k)  {
         this(k,-1,null, null);
     }
@@ -88,6 +92,18 @@ public class POSkewedJoin extends PhysicalOperator  {
         mJoinPlans = joinPlans;
     }
 
+    /**
+     * @return whether the skewed keys of the first input are found when the
+     *  job is launched, instead of by a sampling job
+     */
+    public boolean isDetectKeysAtLaunch() {
+        return detectKeysAtLaunch;
+    }
+
+    public void setDetectKeysAtLaunch(boolean detectKeysAtLaunch) {
+        this.detectKeysAtLaunch = detectKeysAtLaunch;
+    }
+
     @Override
     public void visit(PhyPlanVisitor v) throws VisitorException {
         v.visitSkewedJoin(this);
@@ -40,6 +40,7 @@ import org.apache.pig.data.DataBag;
 import org.apache.pig.data.DataType;
 import org.apache.pig.data.InternalSortedBag;
 import org.apache.pig.data.Tuple;
+import org.apache.pig.data.TupleSorter;
 import org.apache.pig.impl.plan.OperatorKey;
 import org.apache.pig.impl.plan.VisitorException;
 
@@ -131,12 +132,18 @@ public class POSort extends PhysicalOperator {
 
 	}
 
-	public class SortComparator implements Comparator<Tuple>,Serializable {
+	public class SortComparator implements TupleSorter.CopyableComparator,Serializable {
 		/**
          *
          */
         private static final long serialVersionUID = 1L;
 
+        @Override
+        public Comparator<Tuple> copy() throws CloneNotSupportedException {
+            // the sort plans hold the tuples they are attached to
+            return POSort.this.clone().mComparator;
+        }
+
         @Override
         public int compare(Tuple o1, Tuple o2) {
 			int count = 0;
@@ -209,13 +216,19 @@ public class POSort extends PhysicalOperator {
 		}
 	}
 
-	public class UDFSortComparator implements Comparator<Tuple>,Serializable {
+	public class UDFSortComparator implements TupleSorter.CopyableComparator,Serializable {
 
 		/**
          *
          */
         private static final long serialVersionUID = 1L;
 
+        @Override
+        public Comparator<Tuple> copy() throws CloneNotSupportedException {
+            // the comparison function holds the tuples it is attached to
+            return POSort.this.clone().mComparator;
+        }
+
         @Override
         public int compare(Tuple t1, Tuple t2) {
 
@@ -375,9 +388,9 @@ public class POSort extends PhysicalOperator {
         POSort clone = (POSort) super.clone();
         clone.sortPlans = clonePlans(sortPlans);
         if (mSortFunc == null) {
-            setSortFunc(null);
+            clone.setSortFunc(null);
         } else {
-            setSortFunc(mSortFunc.clone());
+            clone.setSortFunc(mSortFunc.clone());
         }
         List<Boolean> cloneAsc = new ArrayList<Boolean>(mAscCols.size());
         for (Boolean b : mAscCols) {
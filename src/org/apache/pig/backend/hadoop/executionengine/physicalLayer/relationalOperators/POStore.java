@@ -29,12 +29,15 @@ import org.apache.pig.backend.hadoop.executionengine.physicalLayer.POStatus;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.PhysicalOperator;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.Result;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.plans.PhyPlanVisitor;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.util.SortKeySketch;
 import org.apache.pig.data.Tuple;
 import org.apache.pig.impl.PigContext;
 import org.apache.pig.impl.io.FileSpec;
 import org.apache.pig.impl.logicalLayer.schema.Schema;
 import org.apache.pig.impl.plan.OperatorKey;
 import org.apache.pig.impl.plan.VisitorException;
+import org.apache.pig.impl.util.QuantileSketch;
+import org.apache.pig.impl.util.StatisticsCollector;
 import org.apache.pig.pen.util.ExampleTuple;
 import org.apache.pig.pen.util.LineageTracer;
 import org.apache.pig.tools.pigstats.PigStatsUtil;
@@ -81,6 +84,16 @@ public class POStore extends PhysicalOperator {
 
     private String signature;
 
+    // the directory where the tasks write the statistics of the tuples
+    // stored, or null if they are not collected
+    private String statsDir;
+    transient private StatisticsCollector statsCollector;
+
+    // the sort key of the ORDER BY which loads the tuples stored, if the
+    // tasks build a sketch of it
+    private SortKeySketch sortKeySketch;
+    transient private QuantileSketch<Tuple> keySketch;
+
     private transient List<String> cacheFiles = null;
     private transient List<String> shipFiles = null;
 
@@ -107,6 +120,8 @@ public class POStore extends PhysicalOperator {
         this.lFile = copy.lFile;
         this.sortInfo = copy.sortInfo;
         this.signature = copy.signature;
+        this.statsDir = copy.statsDir;
+        this.sortKeySketch = copy.sortKeySketch;
     }
 
     /**
@@ -126,6 +141,12 @@ public class POStore extends PhysicalOperator {
                         ((MapReducePOStoreImpl) impl).incrRecordCounter(counterName, 0);
                     }
                 }
+                if (statsDir != null && impl instanceof MapReducePOStoreImpl) {
+                    statsCollector = new StatisticsCollector();
+                }
+                if (sortKeySketch != null && impl instanceof MapReducePOStoreImpl) {
+                    keySketch = sortKeySketch.newSketch();
+                }
             }catch (IOException ioe) {
                 int errCode = 2081;
                 String msg = "Unable to setup the store function.";
@@ -141,6 +162,14 @@ public class POStore extends PhysicalOperator {
     public void tearDown() throws IOException{
         if (impl != null) {
             impl.tearDown();
+            if (statsCollector != null) {
+                ((MapReducePOStoreImpl) impl).storeStatistics(statsDir, statsCollector);
+                statsCollector = null;
+            }
+            if (keySketch != null) {
+                ((MapReducePOStoreImpl) impl).storeSortKeySketch(sortKeySketch, keySketch);
+                keySketch = null;
+            }
         }
    }
 
@@ -164,6 +193,12 @@ public class POStore extends PhysicalOperator {
                     sDecorator.putNext((Tuple) res.result);
                 } else
                     illustratorMarkup(res.result, res.result, 0);
+                if (statsCollector != null) {
+                    statsCollector.add((Tuple) res.result);
+                }
+                if (keySketch != null) {
+                    keySketch.add(sortKeySketch.getKey((Tuple) res.result));
+                }
                 res = RESULT_EMPTY;
 
                 if (counterName != null) {
@@ -292,6 +327,29 @@ public class POStore extends PhysicalOperator {
         this.signature = signature;
     }
 
+    /**
+     * @return the directory where the tasks write the statistics of the
+     *  tuples stored, or null if they are not collected
+     */
+    public String getStatsDir() {
+        return statsDir;
+    }
+
+    public void setStatsDir(String statsDir) {
+        this.statsDir = statsDir;
+    }
+
+    /**
+     * @return the sort key whose sketch is built by the tasks, or null
+     */
+    public SortKeySketch getSortKeySketch() {
+        return sortKeySketch;
+    }
+
+    public void setSortKeySketch(SortKeySketch sortKeySketch) {
+        this.sortKeySketch = sortKeySketch;
+    }
+
     public void setMultiStore(boolean isMultiStore) {
         this.isMultiStore = isMultiStore;
     }
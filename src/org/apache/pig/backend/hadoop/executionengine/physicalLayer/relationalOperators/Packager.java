@@ -31,6 +31,8 @@ import org.apache.pig.backend.hadoop.executionengine.physicalLayer.Result;
 import org.apache.pig.data.BagFactory;
 import org.apache.pig.data.DataBag;
 import org.apache.pig.data.InternalCachedBag;
+import org.apache.pig.data.LazyBinSedesTuple;
+import org.apache.pig.data.OffHeapCachedBag;
 import org.apache.pig.data.Tuple;
 import org.apache.pig.data.TupleFactory;
 import org.apache.pig.impl.io.NullableTuple;
@@ -96,6 +98,8 @@ public class Packager implements Illustrable, Serializable, Cloneable {
     private transient boolean initialized;
     private transient boolean useDefaultBag;
 
+    private transient boolean useOffHeapBag;
+
     protected POPackage parent = null;
 
     protected static final BagFactory mBagFactory = BagFactory.getInstance();
@@ -222,7 +226,9 @@ public class Packager implements Illustrable, Serializable, Cloneable {
             // we have some fields of the "value" in the
             // "key".
             int finalValueSize = keyLookupSize + val.size();
-            copy = mTupleFactory.newTuple(finalValueSize);
+            // a lazy value can hand its fields over without deserializing them
+            LazyBinSedesTuple lazyVal = val instanceof LazyBinSedesTuple ? (LazyBinSedesTuple) val : null;
+            copy = lazyVal != null ? lazyVal.newTuple(finalValueSize) : mTupleFactory.newTuple(finalValueSize);
             int valIndex = 0; // an index for accessing elements from
                               // the value (val) that we have currently
             for (int i = 0; i < finalValueSize; i++) {
@@ -231,7 +237,11 @@ public class Packager implements Illustrable, Serializable, Cloneable {
                     // the field for this index is not in the
                     // key - so just take it from the "value"
                     // we were handed
-                    copy.set(i, val.get(valIndex));
+                    if (lazyVal != null) {
+                        ((LazyBinSedesTuple) copy).setField(i, lazyVal, valIndex);
+                    } else {
+                        copy.set(i, val.get(valIndex));
+                    }
                     valIndex++;
                 } else {
                     // the field for this index is in the key
@@ -255,7 +265,15 @@ public class Packager implements Illustrable, Serializable, Cloneable {
             // there is no field of the "value" in the
             // "key" - so just make a copy of what we got
             // as the "value"
-            copy = mTupleFactory.newTuple(val.getAll());
+            if (val instanceof LazyBinSedesTuple) {
+                LazyBinSedesTuple lazyVal = (LazyBinSedesTuple) val;
+                copy = lazyVal.newTuple(val.size());
+                for (int i = 0; i < val.size(); i++) {
+                    ((LazyBinSedesTuple) copy).setField(i, lazyVal, i);
+                }
+            } else {
+                copy = mTupleFactory.newTuple(val.getAll());
+            }
             copy = illustratorMarkup2(val, copy);
         }
         return copy;
@@ -483,6 +501,8 @@ public class Packager implements Illustrable, Serializable, Cloneable {
                 String bagType = PigMapReduce.sJobConfInternal.get().get(PigConfiguration.PIG_CACHEDBAG_TYPE);
                 if (bagType != null && bagType.equalsIgnoreCase("default")) {
                     useDefaultBag = true;
+                } else if (bagType != null && bagType.equalsIgnoreCase("offheap")) {
+                    useOffHeapBag = true;
                 }
             }
         }
@@ -494,6 +514,7 @@ public class Packager implements Illustrable, Serializable, Cloneable {
                 // POJoinPackage in the pipeline and is also blocking the pipeline;
                 // constructor argument should be 2 * numInputs. But for one obscure
                 // case we don't want to pay the penalty all the time.
+                : useOffHeapBag ? new OffHeapCachedBag(numInputs)
                 : new InternalCachedBag(numInputs);
     }
 }
@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.pig.backend.executionengine.ExecException;
+import org.apache.pig.data.InterSedes;
+import org.apache.pig.data.InterSedesFactory;
+
+/**
+ * An open addressing hash table that numbers the group keys of
+ * {@link POPartialAgg} densely from 0, in the order they are first seen, so
+ * that the aggregation states can be held in arrays indexed by group. The keys
+ * are serialized one after the other into a single byte array, so that a group
+ * costs a few ints and the bytes of its key instead of the key objects and a
+ * map entry.
+ * <p>
+ * Keys are the same group when their serialized forms are equal. Keys that
+ * are equal but serialize differently, such as maps with a different order of
+ * entries, make separate groups, which only costs an extra partial result that
+ * the combiner or the reducer merges.
+ */
+public class PartialAggHashTable {
+    private static final InterSedes sedes = InterSedesFactory.getInterSedesInstance();
+
+    private static final int MIN_SLOTS = 1024;
+
+    private final DataOutputBuffer keyOutput = new DataOutputBuffer();
+    private final DataInputBuffer keyInput = new DataInputBuffer();
+
+    // the serialized keys of the groups
+    private byte[] arena;
+    private int arenaSize;
+    // the group number + 1 of the key in each slot, 0 for an empty slot
+    private int[] slots;
+    // the hash of the key in each slot, to compare keys only if hashes match
+    private int[] slotHashes;
+    private int[] keyOffsets;
+    private int[] keyLengths;
+    private int size;
+
+    /**
+     * @param expectedGroups number of groups to allocate space for
+     */
+    public PartialAggHashTable(int expectedGroups) {
+        int numSlots = Integer.highestOneBit(Math.max(MIN_SLOTS, expectedGroups * 4 / 3) - 1) << 1;
+        slots = new int[numSlots];
+        slotHashes = new int[numSlots];
+        keyOffsets = new int[numSlots / 2];
+        keyLengths = new int[numSlots / 2];
+        arena = new byte[numSlots * 16];
+    }
+
+    /**
+     * @return the number of the group of the key, which is the number of
+     *  groups so far if the key is new
+     */
+    public int getGroup(Object key) throws ExecException {
+        keyOutput.reset();
+        try {
+            sedes.writeDatum(keyOutput, key);
+        } catch (IOException e) {
+            throw new ExecException("Unable to serialize group key", e);
+        }
+        byte[] bytes = keyOutput.getData();
+        int length = keyOutput.getLength();
+        int hash = hash(bytes, length);
+        int mask = slots.length - 1;
+        int slot = hash & mask;
+        while (slots[slot] != 0) {
+            int group = slots[slot] - 1;
+            if (slotHashes[slot] == hash && keyLengths[group] == length
+                    && WritableComparator.compareBytes(arena, keyOffsets[group], length, bytes, 0, length) == 0) {
+                return group;
+            }
+            slot = (slot + 1) & mask;
+        }
+        int group = size++;
+        if (group == keyOffsets.length) {
+            keyOffsets = Arrays.copyOf(keyOffsets, group * 2);
+            keyLengths = Arrays.copyOf(keyLengths, group * 2);
+        }
+        if (arenaSize + length > arena.length) {
+            arena = Arrays.copyOf(arena, Math.max(arena.length * 2, arenaSize + length));
+        }
+        System.arraycopy(bytes, 0, arena, arenaSize, length);
+        keyOffsets[group] = arenaSize;
+        keyLengths[group] = length;
+        arenaSize += length;
+        slots[slot] = group + 1;
+        slotHashes[slot] = hash;
+        // keep the load factor at most 0.75
+        if (size * 4 > slots.length * 3) {
+            rehash();
+        }
+        return group;
+    }
+
+    private void rehash() {
+        int[] newSlots = new int[slots.length * 2];
+        int[] newHashes = new int[newSlots.length];
+        int mask = newSlots.length - 1;
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i] != 0) {
+                int slot = slotHashes[i] & mask;
+                while (newSlots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                newSlots[slot] = slots[i];
+                newHashes[slot] = slotHashes[i];
+            }
+        }
+        slots = newSlots;
+        slotHashes = newHashes;
+    }
+
+    private static int hash(byte[] bytes, int length) {
+        int h = 1;
+        for (int i = 0; i < length; i++) {
+            h = 31 * h + bytes[i];
+        }
+        // spread the bits, as linear probing takes the low bits only
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * @return the key of the group, deserialized
+     */
+    public Object getKey(int group) throws ExecException {
+        keyInput.reset(arena, keyOffsets[group], keyLengths[group]);
+        try {
+            return sedes.readDatum(keyInput);
+        } catch (IOException e) {
+            throw new ExecException("Unable to deserialize group key", e);
+        }
+    }
+
+    /**
+     * @return the number of groups
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the estimated number of bytes used by the table
+     */
+    public long getMemorySize() {
+        return arena.length + 4L * (slots.length + slotHashes.length + keyOffsets.length + keyLengths.length);
+    }
+
+    /**
+     * Removes all the groups, keeping the allocated space.
+     */
+    public void clear() {
+        Arrays.fill(slots, 0);
+        arenaSize = 0;
+        size = 0;
+    }
+}
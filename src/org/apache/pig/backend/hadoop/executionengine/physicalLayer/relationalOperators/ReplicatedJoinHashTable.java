@@ -0,0 +1,357 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.pig.backend.executionengine.ExecException;
+import org.apache.pig.data.InterSedes;
+import org.apache.pig.data.InterSedesFactory;
+import org.apache.pig.data.LazyBinSedesTuple;
+import org.apache.pig.data.Tuple;
+
+/**
+ * The hash table of a replicated input of {@link POFRJoin}, which keeps the
+ * keys and the rows serialized in large byte arrays instead of holding a map
+ * entry, a key object, a list and a tuple object per row. The keys are indexed
+ * by an open addressing table of ints. Once all the rows have been added, they
+ * are sorted by key so that the rows of a key are next to each other.
+ * <p>
+ * {@link #get(Object)} returns the rows of a key as a list of
+ * {@link LazyBinSedesTuple}, which only deserialize the fields that the join
+ * accesses. Keys match when their serialized forms are equal, which is the
+ * case for the keys of the same type that join plans produce. The table can be
+ * probed concurrently once built, so that it can be shared between tasks.
+ */
+public class ReplicatedJoinHashTable extends AbstractMap<Object, List<Tuple>> {
+    private static final InterSedes sedes = InterSedesFactory.getInterSedesInstance();
+
+    private static final int MIN_SLOTS = 1024;
+    // rows are appended to chunks of this size, or to a chunk of their own if larger
+    private static final int CHUNK_SIZE = 8 * 1024 * 1024;
+
+    private static final ThreadLocal<DataOutputBuffer> keyOutput = new ThreadLocal<DataOutputBuffer>() {
+        @Override
+        protected DataOutputBuffer initialValue() {
+            return new DataOutputBuffer();
+        }
+    };
+
+    // the serialized keys of the groups
+    private byte[] keyArena = new byte[64 * 1024];
+    private int keyArenaSize;
+    // the group number + 1 of the key in each slot, 0 for an empty slot
+    private int[] slots = new int[MIN_SLOTS];
+    // the hash of the key in each slot, to compare keys only if hashes match
+    private int[] slotHashes = new int[MIN_SLOTS];
+    private int[] keyOffsets = new int[MIN_SLOTS / 2];
+    private int[] keyLengths = new int[MIN_SLOTS / 2];
+    private int numGroups;
+
+    private final List<byte[]> chunks = new ArrayList<byte[]>();
+    private int chunkSize;
+    // the chunk index in the high int and the offset in the low int of each row
+    private long[] rowAddresses = new long[1024];
+    private int[] rowLengths = new int[1024];
+    // the group of each row, until the rows are sorted by group
+    private int[] rowGroups = new int[1024];
+    private int numRows;
+    // the rows of group g are rows groupStarts[g] to groupStarts[g + 1] - 1
+    private int[] groupStarts;
+
+    /**
+     * Adds a row for a key. All rows must be added before {@link #finish()}.
+     */
+    public void add(Object key, Tuple row) throws ExecException {
+        if (groupStarts != null) {
+            throw new IllegalStateException("Cannot add rows to a finished hash table");
+        }
+        DataOutputBuffer out = keyOutput.get();
+        serialize(out, key);
+        int group = findGroup(out.getData(), out.getLength(), true);
+
+        serialize(out, row);
+        int length = out.getLength();
+        if (chunks.isEmpty() || chunkSize + length > chunks.get(chunks.size() - 1).length) {
+            chunks.add(new byte[Math.max(CHUNK_SIZE, length)]);
+            chunkSize = 0;
+        }
+        System.arraycopy(out.getData(), 0, chunks.get(chunks.size() - 1), chunkSize, length);
+        if (numRows == rowAddresses.length) {
+            rowAddresses = Arrays.copyOf(rowAddresses, numRows * 2);
+            rowLengths = Arrays.copyOf(rowLengths, numRows * 2);
+            rowGroups = Arrays.copyOf(rowGroups, numRows * 2);
+        }
+        rowAddresses[numRows] = ((long) (chunks.size() - 1) << 32) | chunkSize;
+        rowLengths[numRows] = length;
+        rowGroups[numRows] = group;
+        numRows++;
+        chunkSize += length;
+    }
+
+    /**
+     * Sorts the rows by key, keeping the order in which the rows of a key were
+     * added. Must be called after all the rows are added and before the table
+     * is probed.
+     */
+    public void finish() {
+        groupStarts = new int[numGroups + 1];
+        for (int i = 0; i < numRows; i++) {
+            groupStarts[rowGroups[i] + 1]++;
+        }
+        for (int g = 0; g < numGroups; g++) {
+            groupStarts[g + 1] += groupStarts[g];
+        }
+        int[] next = Arrays.copyOf(groupStarts, numGroups);
+        long[] sortedAddresses = new long[numRows];
+        int[] sortedLengths = new int[numRows];
+        for (int i = 0; i < numRows; i++) {
+            int pos = next[rowGroups[i]]++;
+            sortedAddresses[pos] = rowAddresses[i];
+            sortedLengths[pos] = rowLengths[i];
+        }
+        rowAddresses = sortedAddresses;
+        rowLengths = sortedLengths;
+        rowGroups = null;
+        keyOffsets = Arrays.copyOf(keyOffsets, numGroups);
+        keyLengths = Arrays.copyOf(keyLengths, numGroups);
+        keyArena = Arrays.copyOf(keyArena, keyArenaSize);
+    }
+
+    /**
+     * @return the rows of the key, or null if there are none
+     */
+    @Override
+    public List<Tuple> get(Object key) {
+        if (groupStarts == null) {
+            throw new IllegalStateException("Cannot probe an unfinished hash table");
+        }
+        DataOutputBuffer out = keyOutput.get();
+        try {
+            serialize(out, key);
+        } catch (ExecException e) {
+            throw new RuntimeException(e);
+        }
+        int group = findGroup(out.getData(), out.getLength(), false);
+        return group < 0 ? null : new Rows(group);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    /**
+     * @return the number of distinct keys
+     */
+    @Override
+    public int size() {
+        return numGroups;
+    }
+
+    /**
+     * @return the number of rows
+     */
+    public int getNumRows() {
+        return numRows;
+    }
+
+    /**
+     * @return the number of bytes used by the table
+     */
+    public long getMemorySize() {
+        long size = keyArena.length
+                + 4L * (slots.length + slotHashes.length + keyOffsets.length + keyLengths.length)
+                + 12L * rowAddresses.length;
+        if (rowGroups != null) {
+            size += 4L * rowGroups.length;
+        }
+        for (byte[] chunk : chunks) {
+            size += chunk.length;
+        }
+        return size;
+    }
+
+    /**
+     * Iterates over the keys and the rows, deserializing every key.
+     */
+    @Override
+    public Set<Map.Entry<Object, List<Tuple>>> entrySet() {
+        return new AbstractSet<Map.Entry<Object, List<Tuple>>>() {
+            @Override
+            public Iterator<Map.Entry<Object, List<Tuple>>> iterator() {
+                return new Iterator<Map.Entry<Object, List<Tuple>>>() {
+                    private int group = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return group < numGroups;
+                    }
+
+                    @Override
+                    public Map.Entry<Object, List<Tuple>> next() {
+                        int g = group++;
+                        return new SimpleImmutableEntry<Object, List<Tuple>>(getKey(g), new Rows(g));
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return numGroups;
+            }
+        };
+    }
+
+    private Object getKey(int group) {
+        DataInputBuffer in = new DataInputBuffer();
+        in.reset(keyArena, keyOffsets[group], keyLengths[group]);
+        try {
+            return sedes.readDatum(in);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to deserialize replicated join key", e);
+        }
+    }
+
+    private static void serialize(DataOutputBuffer out, Object o) throws ExecException {
+        out.reset();
+        try {
+            sedes.writeDatum(out, o);
+        } catch (IOException e) {
+            throw new ExecException("Unable to serialize replicated join data", e);
+        }
+    }
+
+    /**
+     * @return the group of the serialized key, or -1 if there is none and
+     *  create is false
+     */
+    private int findGroup(byte[] bytes, int length, boolean create) {
+        int hash = hash(bytes, length);
+        int mask = slots.length - 1;
+        int slot = hash & mask;
+        while (slots[slot] != 0) {
+            int group = slots[slot] - 1;
+            if (slotHashes[slot] == hash && keyLengths[group] == length
+                    && WritableComparator.compareBytes(keyArena, keyOffsets[group], length, bytes, 0, length) == 0) {
+                return group;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (!create) {
+            return -1;
+        }
+        int group = numGroups++;
+        if (group == keyOffsets.length) {
+            keyOffsets = Arrays.copyOf(keyOffsets, group * 2);
+            keyLengths = Arrays.copyOf(keyLengths, group * 2);
+        }
+        if (keyArenaSize + length > keyArena.length) {
+            keyArena = Arrays.copyOf(keyArena, Math.max(keyArena.length * 2, keyArenaSize + length));
+        }
+        System.arraycopy(bytes, 0, keyArena, keyArenaSize, length);
+        keyOffsets[group] = keyArenaSize;
+        keyLengths[group] = length;
+        keyArenaSize += length;
+        slots[slot] = group + 1;
+        slotHashes[slot] = hash;
+        // keep the load factor at most 0.75
+        if (numGroups * 4 > slots.length * 3) {
+            rehash();
+        }
+        return group;
+    }
+
+    private void rehash() {
+        int[] newSlots = new int[slots.length * 2];
+        int[] newHashes = new int[newSlots.length];
+        int mask = newSlots.length - 1;
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i] != 0) {
+                int slot = slotHashes[i] & mask;
+                while (newSlots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                newSlots[slot] = slots[i];
+                newHashes[slot] = slotHashes[i];
+            }
+        }
+        slots = newSlots;
+        slotHashes = newHashes;
+    }
+
+    private static int hash(byte[] bytes, int length) {
+        int h = 1;
+        for (int i = 0; i < length; i++) {
+            h = 31 * h + bytes[i];
+        }
+        // spread the bits, as linear probing takes the low bits only
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * The rows of a group, deserialized lazily when they are accessed.
+     */
+    private class Rows extends AbstractList<Tuple> {
+        private final int start;
+        private final int end;
+        private final DataInputBuffer in = new DataInputBuffer();
+
+        Rows(int group) {
+            start = groupStarts[group];
+            end = groupStarts[group + 1];
+        }
+
+        @Override
+        public Tuple get(int index) {
+            if (index < 0 || index >= end - start) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+            }
+            long address = rowAddresses[start + index];
+            in.reset(chunks.get((int) (address >>> 32)), (int) address, rowLengths[start + index]);
+            try {
+                return LazyBinSedesTuple.read(in);
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to deserialize replicated join row", e);
+            }
+        }
+
+        @Override
+        public int size() {
+            return end - start;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.pig.backend.hadoop.executionengine.physicalLayer.util;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.pig.EvalFunc;
+import org.apache.pig.builtin.AsyncUDF;
+import org.apache.pig.data.Tuple;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Calls the exec() of a UDF annotated with {@link AsyncUDF} on a pool of
+ * threads. The pool is started on the first call, so that the executor can be
+ * created when the plan is compiled.
+ */
+public class AsyncUDFExecutor {
+
+    @SuppressWarnings("rawtypes")
+    private final EvalFunc evalFunc;
+    private final int concurrency;
+    private ExecutorService exec;
+
+    @SuppressWarnings("rawtypes")
+    public AsyncUDFExecutor(EvalFunc udf) {
+        this.evalFunc = udf;
+        this.concurrency = Math.max(1, udf.getClass().getAnnotation(AsyncUDF.class).concurrency());
+    }
+
+    /**
+     * @return maximum number of calls in flight
+     */
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Calls exec() with the input in the background.
+     */
+    public Future<Object> submit(final Tuple input) {
+        if (exec == null) {
+            exec = Executors.newFixedThreadPool(concurrency, new ThreadFactoryBuilder()
+                    .setDaemon(true)
+                    .setNameFormat(evalFunc.getClass().getSimpleName() + "-async-%d")
+                    .build());
+        }
+        return exec.submit(new Callable<Object>() {
+            @Override
+            public Object call() throws IOException {
+                return evalFunc.exec(input);
+            }
+        });
+    }
+
+    /**
+     * Waits for a call to complete.
+     * @return what exec() returned
+     * @throws IOException what exec() threw, or if interrupted
+     */
+    public static Object getResult(Future<Object> call) throws IOException {
+        try {
+            return call.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for UDF", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Stops the threads. Must be called in the finish by POUserFunc.
+     */
+    public void terminate() {
+        if (exec != null) {
+            exec.shutdownNow();
+        }
+    }
+}
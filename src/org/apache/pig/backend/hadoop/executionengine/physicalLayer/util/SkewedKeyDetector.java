@@ -0,0 +1,220 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pig.backend.hadoop.executionengine.physicalLayer.util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.pig.LoadFunc;
+import org.apache.pig.PigConfiguration;
+import org.apache.pig.backend.executionengine.ExecException;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.POStatus;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.PhysicalOperator;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.Result;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators.POUserFunc;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.plans.PhysicalPlan;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators.POFilter;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators.POForEach;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators.POLoad;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators.POLocalRearrange;
+import org.apache.pig.data.Tuple;
+import org.apache.pig.data.TupleFactory;
+import org.apache.pig.impl.PigContext;
+import org.apache.pig.impl.io.FileSpec;
+import org.apache.pig.impl.io.ReadToEndLoader;
+import org.apache.pig.impl.plan.VisitorException;
+import org.apache.pig.impl.util.HeavyHitters;
+
+/**
+ * Finds the heavy hitters among the join keys of the first input of a skewed
+ * join, by reading rows spread over the splits of the input when the join job
+ * is launched. This replaces the sampling job of a skewed join, for the hash
+ * joins which are made skewed joins by
+ * {@link PigConfiguration#PIG_SKEWEDJOIN_AUTO}. As the operators between the
+ * load and the join are run in the client, only inputs loaded in the join job
+ * with at most FOREACH and FILTER operators without UDFs in between are read.
+ * The keys of GROUP BY are not looked at: the rows of a group have to reach a
+ * single reducer anyway, and the combiner already handles the skew of
+ * algebraic groups.
+ */
+public class SkewedKeyDetector {
+    private static final Log log = LogFactory.getLog(SkewedKeyDetector.class);
+    private static final TupleFactory tf = TupleFactory.getInstance();
+
+    public static final int DEFAULT_SAMPLE_SIZE = 100000;
+    public static final double DEFAULT_THRESHOLD = 0.01;
+
+    // the maximum number of splits the rows are read from
+    private static final int MAX_SAMPLED_SPLITS = 100;
+
+    private final Configuration conf;
+    private final int sampleSize;
+    private final double threshold;
+
+    /**
+     * @param conf the configuration of the join job
+     */
+    public SkewedKeyDetector(Configuration conf) {
+        this.conf = conf;
+        sampleSize = conf.getInt(PigConfiguration.PIG_SKEWEDJOIN_AUTO_SAMPLE_SIZE, DEFAULT_SAMPLE_SIZE);
+        threshold = Double.parseDouble(conf.get(PigConfiguration.PIG_SKEWEDJOIN_AUTO_THRESHOLD,
+                String.valueOf(DEFAULT_THRESHOLD)));
+    }
+
+    /**
+     * @param plan the map plan of the join job
+     * @param lr the local rearrange of the first input of the join
+     * @return the keys whose frequency is at least the threshold, as tuples
+     *  of the key fields, with their frequency. This is empty if there are
+     *  none or the input can not be read.
+     */
+    public Map<Tuple, Double> detect(PhysicalPlan plan, POLocalRearrange lr) throws VisitorException {
+        Map<Tuple, Double> none = Collections.emptyMap();
+        for (PhysicalPlan keyPlan : lr.getPlans()) {
+            if (PlanHelper.containsPhysicalOperator(keyPlan, POUserFunc.class)) {
+                return none;
+            }
+        }
+        List<PhysicalOperator> ops = new ArrayList<PhysicalOperator>();
+        PhysicalOperator op = lr;
+        while (true) {
+            List<PhysicalOperator> preds = plan.getPredecessors(op);
+            if (preds == null || preds.size() != 1) {
+                return none;
+            }
+            op = preds.get(0);
+            if (op instanceof POLoad) {
+                break;
+            }
+            if (op instanceof POForEach) {
+                for (PhysicalPlan innerPlan : ((POForEach) op).getInputPlans()) {
+                    if (PlanHelper.containsPhysicalOperator(innerPlan, POUserFunc.class)) {
+                        return none;
+                    }
+                }
+            } else if (!(op instanceof POFilter)
+                    || PlanHelper.containsPhysicalOperator(((POFilter) op).getPlan(), POUserFunc.class)) {
+                return none;
+            }
+            ops.add(0, op);
+        }
+        POLoad load = (POLoad) op;
+        try {
+            List<PhysicalOperator> pipeline = new ArrayList<PhysicalOperator>(ops.size());
+            for (PhysicalOperator o : ops) {
+                PhysicalOperator clone = o.clone();
+                clone.setInputs(null);
+                pipeline.add(clone);
+            }
+            List<PhysicalPlan> keys = new ArrayList<PhysicalPlan>(lr.getPlans().size());
+            for (PhysicalPlan keyPlan : lr.getPlans()) {
+                keys.add(keyPlan.clone());
+            }
+
+            FileSpec lFile = load.getLFile();
+            LoadFunc loadFunc = (LoadFunc) PigContext.instantiateFuncFromSpec(lFile.getFuncSpec());
+            ReadToEndLoader loader = new ReadToEndLoader(loadFunc, conf, lFile.getFileName(), 0,
+                    load.getSignature());
+            HeavyHitters<Tuple> heavyHitters = new HeavyHitters<Tuple>(
+                    (int) Math.min(10000, Math.ceil(2 / threshold)));
+            // the same number of rows is read from the beginning of splits
+            // spread over the input
+            int numSplits = loader.getNumSplits();
+            int numSampledSplits = Math.min(numSplits, MAX_SAMPLED_SPLITS);
+            int rowsPerSplit = (int) Math.ceil((double) sampleSize / Math.max(numSampledSplits, 1));
+            for (int i = 0; i < numSampledSplits; i++) {
+                loader.seekToSplit((int) ((long) i * numSplits / numSampledSplits));
+                Tuple t;
+                int numRows = 0;
+                while (numRows++ < rowsPerSplit && (t = loader.getNext()) != null) {
+                    process(pipeline, 0, t, keys, heavyHitters);
+                }
+            }
+            // closes the reader of the last split read
+            loader.seekToSplit(numSplits);
+            Map<Tuple, Double> keyFrequencies = heavyHitters.getFrequentItems(threshold);
+            log.info("Found " + keyFrequencies.size() + " skewed keys in " + heavyHitters.getTotal()
+                    + " join keys of " + lFile.getFileName() + ", read from " + numSampledSplits
+                    + " of its " + numSplits + " splits");
+            return keyFrequencies;
+        } catch (CloneNotSupportedException e) {
+            log.warn("Unable to copy the operators loading " + load.getLFile().getFileName()
+                    + ", skew is not detected: " + e);
+            return none;
+        } catch (IOException e) {
+            log.warn("Unable to read the join keys of " + load.getLFile().getFileName()
+                    + ", skew is not detected: " + e);
+            return none;
+        }
+    }
+
+    /**
+     * Runs the tuple through the operators from the i-th, and counts the
+     * join keys of their output.
+     */
+    private static void process(List<PhysicalOperator> pipeline, int i, Tuple t, List<PhysicalPlan> keys,
+            HeavyHitters<Tuple> heavyHitters) throws ExecException {
+        if (i == pipeline.size()) {
+            Tuple key = getKey(t, keys);
+            if (key != null) {
+                heavyHitters.add(key);
+            }
+            return;
+        }
+        PhysicalOperator op = pipeline.get(i);
+        op.attachInput(t);
+        while (true) {
+            Result res = op.getNextTuple();
+            if (res.returnStatus == POStatus.STATUS_OK) {
+                process(pipeline, i + 1, (Tuple) res.result, keys, heavyHitters);
+            } else if (res.returnStatus == POStatus.STATUS_EOP) {
+                return;
+            } else if (res.returnStatus == POStatus.STATUS_ERR) {
+                throw new ExecException("Unable to process the join input: " + res.result);
+            }
+        }
+    }
+
+    /**
+     * @return the fields of the join key, or null if the key is null, as null
+     *  keys are not joined
+     */
+    private static Tuple getKey(Tuple t, List<PhysicalPlan> keys) throws ExecException {
+        Tuple key = tf.newTuple(keys.size());
+        boolean allNull = true;
+        for (int i = 0; i < keys.size(); i++) {
+            PhysicalPlan keyPlan = keys.get(i);
+            keyPlan.attachInput(t);
+            PhysicalOperator leaf = keyPlan.getLeaves().get(0);
+            Result res = leaf.getNext(leaf.getResultType());
+            keyPlan.detachInput();
+            if (res.returnStatus != POStatus.STATUS_OK) {
+                return null;
+            }
+            key.set(i, res.result);
+            allNull &= res.result == null;
+        }
+        return allNull ? null : key;
+    }
+}
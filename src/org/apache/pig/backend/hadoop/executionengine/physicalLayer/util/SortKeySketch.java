@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pig.backend.hadoop.executionengine.physicalLayer.util;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Comparator;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.pig.PigConfiguration;
+import org.apache.pig.backend.executionengine.ExecException;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.PigProgressable;
+import org.apache.pig.backend.hadoop.executionengine.util.MapRedUtil;
+import org.apache.pig.data.DataType;
+import org.apache.pig.data.NonSpillableDataBag;
+import org.apache.pig.data.Tuple;
+import org.apache.pig.data.TupleFactory;
+import org.apache.pig.impl.builtin.FindQuantiles;
+import org.apache.pig.impl.util.QuantileSketch;
+
+/**
+ * Builds quantile sketches of the sort key of an ORDER BY in the job which
+ * stores its input, so that the ORDER BY job finds its quantiles without a
+ * sampling job, with {@link PigConfiguration#PIG_ORDER_SKETCH}. Each task
+ * writes its sketch in a temporary directory, and the sketches are merged
+ * when the ORDER BY job is compiled.
+ */
+public class SortKeySketch implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final TupleFactory tf = TupleFactory.getInstance();
+
+    public static final int DEFAULT_SIZE = 1024;
+
+    private final String dir;
+    // the columns of the sort key, or null if the whole tuple is sorted
+    private final int[] keyColumns;
+    private final boolean[] asc;
+    private final int size;
+
+    /**
+     * @param dir the directory where the tasks write their sketch
+     * @param keyColumns the columns of the sort key, or null for a sort on
+     *  the whole tuple
+     * @param asc the sort order of the key fields
+     * @param size the capacity of the sketches
+     */
+    public SortKeySketch(String dir, int[] keyColumns, boolean[] asc, int size) {
+        this.dir = dir;
+        this.keyColumns = keyColumns;
+        this.asc = asc;
+        this.size = size;
+    }
+
+    public String getDir() {
+        return dir;
+    }
+
+    public QuantileSketch<Tuple> newSketch() {
+        return new QuantileSketch<Tuple>(size, new KeyComparator(asc));
+    }
+
+    /**
+     * @return the sort key of a tuple, in the format of the samples of the
+     *  sampling job
+     */
+    public Tuple getKey(Tuple t) throws ExecException {
+        if (keyColumns == null) {
+            return tf.newTuple(tf.newTuple(t.getAll()));
+        }
+        Tuple key = tf.newTuple(keyColumns.length);
+        for (int i = 0; i < keyColumns.length; i++) {
+            if (keyColumns[i] < t.size()) {
+                key.set(i, t.get(keyColumns[i]));
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Writes the sketch of a task, to be merged by {@link #getQuantiles}.
+     */
+    public void write(QuantileSketch<Tuple> sketch, TaskAttemptContext context) throws IOException {
+        MapRedUtil.writeTaskSideFile(dir, sketch, context);
+    }
+
+    /**
+     * Merges the sketches written by the tasks, and finds the quantiles of
+     * the sort key from them, as {@link FindQuantiles} does from the output of
+     * the sampling job.
+     *
+     * @param conf the configuration of the ORDER BY job
+     * @param numQuantiles the number of reducers of the ORDER BY job
+     */
+    public Map<String, Object> getQuantiles(Configuration conf, int numQuantiles) throws IOException {
+        QuantileSketch<Tuple> sketch = newSketch();
+        for (QuantileSketch<Tuple> taskSketch : MapRedUtil.<QuantileSketch<Tuple>>readTaskSideFiles(dir, conf)) {
+            sketch.merge(taskSketch);
+        }
+        String[] ascs = new String[asc.length];
+        for (int i = 0; i < asc.length; i++) {
+            ascs[i] = Boolean.toString(asc[i]);
+        }
+        FindQuantiles findQuantiles = new FindQuantiles(ascs);
+        findQuantiles.setReporter(new PigProgressable() {
+            @Override
+            public void progress() {
+            }
+
+            @Override
+            public void progress(String msg) {
+            }
+        });
+        int sampleSize = Math.max(sketch.getNumRetained(), numQuantiles);
+        Tuple in = tf.newTuple(2);
+        in.set(0, numQuantiles);
+        in.set(1, new NonSpillableDataBag(sketch.getSample(sampleSize)));
+        return findQuantiles.exec(in);
+    }
+
+    /**
+     * The order of the sort keys, as in {@link FindQuantiles}
+     */
+    private static class KeyComparator implements Comparator<Tuple>, Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final boolean[] asc;
+
+        KeyComparator(boolean[] asc) {
+            this.asc = asc;
+        }
+
+        @Override
+        public int compare(Tuple t1, Tuple t2) {
+            int sz1 = t1.size();
+            int sz2 = t2.size();
+            if (sz1 != sz2) {
+                return sz1 < sz2 ? -1 : 1;
+            }
+            try {
+                for (int i = 0; i < sz1; i++) {
+                    int c = DataType.compare(t1.get(i), t2.get(i));
+                    if (c != 0) {
+                        return asc[i < asc.length ? i : 0] ? c : -c;
+                    }
+                }
+            } catch (ExecException e) {
+                throw new RuntimeException("Unable to compare tuples", e);
+            }
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.pig.backend.hadoop.executionengine.physicalLayer.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.pig.backend.executionengine.ExecException;
+import org.apache.pig.data.DataBag;
+import org.apache.pig.data.SizeUtil;
+import org.apache.pig.data.Tuple;
+
+/**
+ * A least recently used cache of the results of a deterministic UDF, keyed by
+ * its input tuple, and bounded by the estimated memory size of the inputs and
+ * results it holds. The cached results are shared by all the calls with the
+ * same input, so they must not be modified.
+ * <p>
+ * Inputs and results holding bags at the top level are not cached, as bags
+ * can be large and hashing them means reading all of them.
+ */
+public class UDFResultCache {
+
+    /**
+     * The value returned by {@link #get(Tuple)} for the inputs not cached.
+     */
+    public static final Object NOT_FOUND = new Object();
+
+    // the estimated overhead of a LinkedHashMap entry
+    private static final int ENTRY_OVERHEAD = 64;
+    // the value of the cached null results
+    private static final Object NULL = new Object();
+
+    private final long maxMemorySize;
+    private final LinkedHashMap<Tuple, Object> results = new LinkedHashMap<Tuple, Object>(1024, 0.75f, true);
+    private long memorySize;
+    private long hits;
+    private long misses;
+
+    /**
+     * @param maxMemorySize maximum estimated memory size of the cached
+     *  inputs and results, in bytes
+     */
+    public UDFResultCache(long maxMemorySize) {
+        this.maxMemorySize = maxMemorySize;
+    }
+
+    /**
+     * @return whether the input can be cached
+     */
+    public static boolean isCacheable(Tuple input) throws ExecException {
+        for (int i = 0; i < input.size(); i++) {
+            if (input.get(i) instanceof DataBag) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the result cached for the input, or {@link #NOT_FOUND} if there
+     *  is none
+     */
+    public Object get(Tuple input) {
+        Object result = results.get(input);
+        if (result == null) {
+            misses++;
+            return NOT_FOUND;
+        }
+        hits++;
+        return result == NULL ? null : result;
+    }
+
+    /**
+     * Caches the result of a UDF for an input not cached yet, evicting the
+     * least recently used results if the cache is full.
+     */
+    public void put(Tuple input, Object result) {
+        if (result instanceof DataBag) {
+            return;
+        }
+        long size = getEntrySize(input, result);
+        if (size > maxMemorySize) {
+            return;
+        }
+        Object previous = results.put(input, result == null ? NULL : result);
+        if (previous != null) {
+            memorySize -= getEntrySize(input, previous == NULL ? null : previous);
+        }
+        memorySize += size;
+        Iterator<Map.Entry<Tuple, Object>> it = results.entrySet().iterator();
+        while (memorySize > maxMemorySize && it.hasNext()) {
+            Map.Entry<Tuple, Object> eldest = it.next();
+            memorySize -= getEntrySize(eldest.getKey(), eldest.getValue() == NULL ? null : eldest.getValue());
+            it.remove();
+        }
+    }
+
+    private static long getEntrySize(Tuple input, Object result) {
+        return ENTRY_OVERHEAD + input.getMemorySize() + SizeUtil.getPigObjMemSize(result);
+    }
+
+    /**
+     * @return number of results cached
+     */
+    public int size() {
+        return results.size();
+    }
+
+    /**
+     * @return estimated memory size of the cached inputs and results
+     */
+    public long getMemorySize() {
+        return memorySize;
+    }
+
+    /**
+     * @return number of lookups of an input cached since the last call
+     */
+    public long takeHits() {
+        long h = hits;
+        hits = 0;
+        return h;
+    }
+
+    /**
+     * @return number of lookups of an input not cached since the last call
+     */
+    public long takeMisses() {
+        long m = misses;
+        misses = 0;
+        return m;
+    }
+}
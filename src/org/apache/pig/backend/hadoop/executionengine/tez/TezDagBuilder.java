@@ -804,6 +804,10 @@ public class TezDagBuilder extends TezOpPlanVisitor {
         payloadConf.setInt(PigImplConstants.REDUCER_DEFAULT_PARALLELISM, pc.defaultParallel);
         payloadConf.setInt(PigImplConstants.REDUCER_REQUESTED_PARALLELISM, tezOp.getRequestedParallelism());
         payloadConf.setInt(PigImplConstants.REDUCER_ESTIMATED_PARALLELISM, tezOp.getEstimatedParallelism());
+        if (tezOp.getStatsSignature() != null) {
+            payloadConf.set(PigImplConstants.STATS_HISTORY_SIGNATURE, tezOp.getStatsSignature());
+            payloadConf.setLong(PigImplConstants.STATS_HISTORY_INPUT_BYTES, tezOp.getStatsInputBytes());
+        }
 
         TezScriptState ss = TezScriptState.get();
         ss.addVertexSettingsToConf(dag.getName(), tezOp, payloadConf);
@@ -246,6 +246,10 @@ public class TezOperator extends Operator<TezOpPlanVisitor> {
 
     private LoaderInfo loaderInfo = new LoaderInfo();
     private long totalInputFilesSize = -1;
+    // Signature and input size under which the statistics of the vertex are
+    // recorded by HistoryTezParallelismEstimator
+    private String statsSignature;
+    private long statsInputBytes = -1;
 
     public TezOperator(OperatorKey k) {
         super(k);
@@ -710,6 +714,22 @@ public class TezOperator extends Operator<TezOpPlanVisitor> {
         this.totalInputFilesSize = totalInputFilesSize;
     }
 
+    public String getStatsSignature() {
+        return statsSignature;
+    }
+
+    public void setStatsSignature(String statsSignature) {
+        this.statsSignature = statsSignature;
+    }
+
+    public long getStatsInputBytes() {
+        return statsInputBytes;
+    }
+
+    public void setStatsInputBytes(long statsInputBytes) {
+        this.statsInputBytes = statsInputBytes;
+    }
+
     public void setUseGraceParallelism(boolean useGraceParallelism) {
         this.useGraceParallelism = useGraceParallelism;
     }
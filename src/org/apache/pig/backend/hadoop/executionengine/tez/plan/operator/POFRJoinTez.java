@@ -32,6 +32,7 @@ import org.apache.pig.backend.executionengine.ExecException;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators.POFRJoin;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators.POLocalRearrange;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators.POMergeJoin.TuplesToSchemaTupleList;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators.ReplicatedJoinHashTable;
 import org.apache.pig.backend.hadoop.executionengine.tez.runtime.ObjectCache;
 import org.apache.pig.backend.hadoop.executionengine.tez.runtime.TezInput;
 import org.apache.pig.data.SchemaTupleBackend;
@@ -154,6 +155,7 @@ public class POFRJoinTez extends POFRJoin implements TezInput {
         }
 
         long time1 = System.currentTimeMillis();
+        boolean compact = useCompactHashTable();
 
         replicates.set(fragment, null);
         int inputIdx = 0;
@@ -165,8 +167,11 @@ public class POFRJoinTez extends POFRJoin implements TezInput {
             SchemaTupleFactory inputSchemaTupleFactory = inputSchemaTupleFactories[schemaIdx];
             SchemaTupleFactory keySchemaTupleFactory = keySchemaTupleFactories[schemaIdx];
 
-            Map<Object, ArrayList<Tuple>> replicate;
-            if (keySchemaTupleFactory == null) {
+            Map<Object, ArrayList<Tuple>> replicate = null;
+            ReplicatedJoinHashTable table = null;
+            if (compact) {
+                table = new ReplicatedJoinHashTable();
+            } else if (keySchemaTupleFactory == null) {
                 replicate = new HashMap<Object, ArrayList<Tuple>>(4000);
             } else {
                 replicate = new TupleToMapKey(4000, keySchemaTupleFactory);
@@ -193,6 +198,10 @@ public class POFRJoinTez extends POFRJoin implements TezInput {
                     retTuple.set(2, val.getValueAsPigType());
                     Tuple valTuple = getValueTuple(lr, retTuple);
 
+                    if (table != null) {
+                        table.add(keyValue, valTuple);
+                        continue;
+                    }
                     ArrayList<Tuple> values = replicate.get(keyValue);
                     if (values == null) {
                         if (inputSchemaTupleFactory == null) {
@@ -207,7 +216,14 @@ public class POFRJoinTez extends POFRJoin implements TezInput {
             } catch (IOException e) {
                 throw new ExecException(e);
             }
-            replicates.set(schemaIdx, replicate);
+            if (table != null) {
+                table.finish();
+                log.info("Replicated " + table.getNumRows() + " rows with " + table.size()
+                        + " keys in a hash table of " + table.getMemorySize() + " bytes");
+                replicates.set(schemaIdx, table);
+            } else {
+                replicates.set(schemaIdx, replicate);
+            }
             inputIdx++;
             schemaIdx++;
         }
@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pig.backend.hadoop.executionengine.tez.plan.optimizer;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.pig.backend.hadoop.executionengine.mapReduceLayer.HistoryReducerEstimator;
+import org.apache.pig.backend.hadoop.executionengine.mapReduceLayer.PigReducerEstimator;
+import org.apache.pig.backend.hadoop.executionengine.tez.plan.TezOperPlan;
+import org.apache.pig.backend.hadoop.executionengine.tez.plan.TezOperator;
+import org.apache.pig.impl.PigContext;
+import org.apache.pig.tools.pigstats.RuntimeStatsStore;
+
+/**
+ * Estimates the parallelism of a vertex from the bytes shuffled to the same
+ * vertex on the previous run of the script, scaled by how much the input
+ * files of the DAG it depends on grew or shrank since. This is the Tez
+ * counterpart of {@link HistoryReducerEstimator}: the statistics of each
+ * vertex are recorded when its DAG succeeds, and vertices which have not run
+ * yet are estimated by {@link TezOperDependencyParallelismEstimator}.
+ */
+public class HistoryTezParallelismEstimator implements TezParallelismEstimator {
+    private static final Log LOG = LogFactory.getLog(HistoryTezParallelismEstimator.class);
+
+    private TezParallelismEstimator fallback = new TezOperDependencyParallelismEstimator();
+
+    @Override
+    public void setPigContext(PigContext pc) {
+        fallback.setPigContext(pc);
+    }
+
+    @Override
+    public int estimateParallelism(TezOperPlan plan, TezOperator tezOper,
+            Configuration conf) throws IOException {
+        String scriptSignature = conf.get(RuntimeStatsStore.SCRIPT_SIGNATURE);
+        if (scriptSignature != null && !tezOper.isVertexGroup() && tezOper.getEstimatedParallelism() == -1) {
+            String signature = RuntimeStatsStore.getSignature(Collections.singletonList(tezOper.plan));
+            long inputBytes = getInputBytes(plan, tezOper, new HashSet<TezOperator>());
+            tezOper.setStatsSignature(signature);
+            tezOper.setStatsInputBytes(inputBytes);
+            Map<String, Long> stats = new RuntimeStatsStore(conf).get(scriptSignature, signature);
+            int parallelism = HistoryReducerEstimator.estimate(stats, inputBytes,
+                    conf.getLong(PigReducerEstimator.BYTES_PER_REDUCER_PARAM, PigReducerEstimator.DEFAULT_BYTES_PER_REDUCER),
+                    conf.getInt(PigReducerEstimator.MAX_REDUCER_COUNT_PARAM, PigReducerEstimator.DEFAULT_MAX_REDUCER_COUNT_PARAM));
+            if (parallelism > 0) {
+                LOG.info("Estimated parallelism " + parallelism + " of " + tezOper.getOperatorKey()
+                        + " from the statistics " + stats + " of the previous run of vertex " + signature);
+                return parallelism;
+            }
+        }
+        return fallback.estimateParallelism(plan, tezOper, conf);
+    }
+
+    /**
+     * @return the total size of the input files of the loader vertices the
+     *  vertex depends on, or -1 if none is known
+     */
+    private static long getInputBytes(TezOperPlan plan, TezOperator tezOper, Set<TezOperator> seen) {
+        long inputBytes = -1;
+        List<TezOperator> preds = plan.getPredecessors(tezOper);
+        if (preds == null) {
+            return inputBytes;
+        }
+        for (TezOperator pred : preds) {
+            if (!seen.add(pred)) {
+                continue;
+            }
+            long size = pred.getTotalInputFilesSize() > 0 ? pred.getTotalInputFilesSize()
+                    : getInputBytes(plan, pred, seen);
+            if (size > 0) {
+                inputBytes = Math.max(inputBytes, 0) + size;
+            }
+        }
+        return inputBytes;
+    }
+}
@@ -38,6 +38,7 @@ import org.apache.hadoop.mapred.TaskAttemptID;
 import org.apache.hadoop.mapreduce.JobContext;
 import org.apache.log4j.PropertyConfigurator;
 import org.apache.pig.JVMReuseImpl;
+import org.apache.pig.PigConfiguration;
 import org.apache.pig.PigConstants;
 import org.apache.pig.PigException;
 import org.apache.pig.backend.executionengine.ExecException;
@@ -60,6 +61,7 @@ import org.apache.pig.data.SchemaTupleBackend;
 import org.apache.pig.data.Tuple;
 import org.apache.pig.impl.PigContext;
 import org.apache.pig.impl.PigImplConstants;
+import org.apache.pig.impl.io.NullableTuple;
 import org.apache.pig.impl.plan.DependencyOrderWalker;
 import org.apache.pig.impl.plan.VisitorException;
 import org.apache.pig.impl.util.ObjectSerializer;
@@ -140,6 +142,7 @@ public class PigProcessor extends AbstractLogicalIOProcessor {
         UserPayload payload = getContext().getUserPayload();
         conf = TezUtils.createConfFromUserPayload(payload);
         SpillableMemoryManager.getInstance().configure(conf);
+        NullableTuple.setLazyDeserialization(conf.getBoolean(PigConfiguration.PIG_LAZY_TUPLE_DESERIALIZATION, false));
         PigContext.setPackageImportList((ArrayList<String>) ObjectSerializer
                 .deserialize(conf.get("udf.import.list")));
         Properties log4jProperties = (Properties) ObjectSerializer
@@ -19,6 +19,9 @@
 package org.apache.pig.backend.hadoop.executionengine.util;
 
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -37,6 +40,7 @@ import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.PathFilter;
 import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
 import org.apache.pig.FuncSpec;
 import org.apache.pig.PigConfiguration;
 import org.apache.pig.PigException;
@@ -49,6 +53,7 @@ import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOpe
 import org.apache.pig.backend.hadoop.executionengine.shims.HadoopShims;
 import org.apache.pig.data.DataBag;
 import org.apache.pig.data.DataType;
+import org.apache.pig.data.NonSpillableDataBag;
 import org.apache.pig.data.Tuple;
 import org.apache.pig.data.TupleFactory;
 import org.apache.pig.impl.PigContext;
@@ -58,6 +63,7 @@ import org.apache.pig.impl.io.FileSpec;
 import org.apache.pig.impl.io.ReadToEndLoader;
 import org.apache.pig.impl.plan.NodeIdGenerator;
 import org.apache.pig.impl.plan.OperatorKey;
+import org.apache.pig.impl.util.ObjectSerializer;
 import org.apache.pig.impl.util.Pair;
 import org.apache.pig.impl.util.UDFContext;
 import org.apache.pig.impl.util.Utils;
@@ -68,10 +74,76 @@ import org.apache.pig.impl.util.Utils;
 public class MapRedUtil {
 
     private static Log log = LogFactory.getLog(MapRedUtil.class);
+
+    // the directory where the task attempts write their side files until
+    // they are committed
+    private static final String TASK_SIDE_FILE_TEMP_DIR = "_temporary";
+
     private static final TupleFactory tf = TupleFactory.getInstance();
 
     public static final String FILE_SYSTEM_NAME = FileSystem.FS_DEFAULT_NAME_KEY;
 
+    /**
+     * The key distribution of a skewed join, when it is set in the job
+     * configuration instead of in the file of pig.keyDistFile.
+     */
+    public static final String KEY_DIST = "pig.keyDist";
+
+    /**
+     * Loads the key distribution of a skewed join, from
+     * {@link #KEY_DIST} if set or else from the file of pig.keyDistFile
+     *
+     * @param conf the job configuration
+     * @param totalReducers gets set to the total number of reducers as found in the distribution
+     * @param keyType Type of the key to be stored in the return map. It currently treats Tuple as a special case.
+     */
+    @SuppressWarnings("unchecked")
+    public static <E> Map<E, Pair<Integer, Integer>> loadPartitionFile(Configuration conf,
+            Integer[] totalReducers, byte keyType) throws IOException {
+        String keyDist = conf.get(KEY_DIST);
+        if (keyDist != null) {
+            return getReducerMap((Map<String, Object>) ObjectSerializer.deserialize(keyDist),
+                    totalReducers, keyType);
+        }
+        String keyDistFile = conf.get("pig.keyDistFile", "");
+        if (keyDistFile.length() == 0) {
+            throw new IOException("Skewed join used but no key distribution found");
+        }
+        return loadPartitionFileFromLocalCache(keyDistFile, totalReducers, keyType, conf);
+    }
+
+    /**
+     * Builds the key distribution of a skewed join from the frequencies of
+     * its skewed keys, in the format of the output of
+     * {@link PartitionSkewedKeys}. Each key is given a range of reducers of
+     * the size of its share of the rows, if more than one.
+     *
+     * @param keyFrequencies the fraction of the rows with each key, as
+     *  tuples of the key fields
+     * @param totalReducers the number of reducers of the join
+     */
+    public static Map<String, Object> getKeyDistribution(Map<Tuple, Double> keyFrequencies,
+            int totalReducers) throws ExecException {
+        List<Tuple> partitionList = new ArrayList<Tuple>();
+        int currentIndex = 0;
+        for (Map.Entry<Tuple, Double> e : keyFrequencies.entrySet()) {
+            int redCount = (int) Math.min(totalReducers, Math.ceil(e.getValue() * totalReducers));
+            if (redCount <= 1) {
+                continue;
+            }
+            Tuple t = tf.newTuple(e.getKey().getAll());
+            t.append(currentIndex);
+            currentIndex = (currentIndex + redCount - 1) % totalReducers;
+            t.append(currentIndex);
+            currentIndex = (currentIndex + 1) % totalReducers;
+            partitionList.add(t);
+        }
+        Map<String, Object> distMap = new HashMap<String, Object>();
+        distMap.put(PartitionSkewedKeys.PARTITION_LIST, new NonSpillableDataBag(partitionList));
+        distMap.put(PartitionSkewedKeys.TOTAL_REDUCERS, Integer.valueOf(totalReducers));
+        return distMap;
+    }
+
     /**
      * Loads the key distribution sampler file
      *
@@ -104,17 +176,22 @@ public class MapRedUtil {
 
         ReadToEndLoader loader = new ReadToEndLoader(Utils.getTmpFileStorageObject(PigMapReduce.sJobConfInternal.get()), conf,
                 keyDistFile, 0);
-        DataBag partitionList;
         Tuple t = loader.getNext();
         if (t == null) {
             // this could happen if the input directory for sampling is empty
             log.warn("Empty dist file: " + keyDistFile);
             return reducerMap;
         }
+        return getReducerMap((Map<String, Object>) t.get (0), totalReducers, keyType);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> Map<E, Pair<Integer, Integer>> getReducerMap(Map<String, Object> distMap,
+            Integer[] totalReducers, byte keyType) throws IOException {
+        Map<E, Pair<Integer, Integer>> reducerMap = new HashMap<E, Pair<Integer, Integer>>();
         // The keydist file is structured as (key, min, max)
         // min, max being the index of the reducers
-        Map<String, Object > distMap = (Map<String, Object>) t.get (0);
-        partitionList = (DataBag) distMap.get(PartitionSkewedKeys.PARTITION_LIST);
+        DataBag partitionList = (DataBag) distMap.get(PartitionSkewedKeys.PARTITION_LIST);
         totalReducers[0] = Integer.valueOf(""+distMap.get(PartitionSkewedKeys.TOTAL_REDUCERS));
         Iterator<Tuple> it = partitionList.iterator();
         while (it.hasNext()) {
@@ -327,6 +404,121 @@ public class MapRedUtil {
         }
     }
 
+    /**
+     * Writes an object built by a task attempt in a directory shared by the
+     * tasks of the job. The object is only read by
+     * {@link #readTaskSideFiles} once the attempt is committed with
+     * {@link #commitTaskSideFile}, so that the objects of failed or
+     * speculative attempts are left out.
+     *
+     * @param dir the directory
+     * @param obj the object
+     * @param context the context of the task attempt
+     * @throws IOException
+     */
+    public static void writeTaskSideFile(String dir, Serializable obj, TaskAttemptContext context)
+            throws IOException {
+        Path path = getTaskAttemptSideFile(dir, context);
+        FileSystem fs = path.getFileSystem(context.getConfiguration());
+        ObjectOutputStream out = new ObjectOutputStream(fs.create(path, true));
+        try {
+            out.writeObject(obj);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * @return true if the task attempt wrote an object in the directory
+     * with {@link #writeTaskSideFile}
+     */
+    public static boolean hasTaskSideFile(String dir, TaskAttemptContext context)
+            throws IOException {
+        Path path = getTaskAttemptSideFile(dir, context);
+        return path.getFileSystem(context.getConfiguration()).exists(path);
+    }
+
+    /**
+     * Moves the object written by a task attempt, if any, to a file named
+     * after the task, when the attempt is committed.
+     *
+     * @param dir the directory
+     * @param context the context of the task attempt
+     * @throws IOException
+     */
+    public static void commitTaskSideFile(String dir, TaskAttemptContext context)
+            throws IOException {
+        Path attemptPath = getTaskAttemptSideFile(dir, context);
+        FileSystem fs = attemptPath.getFileSystem(context.getConfiguration());
+        if (!fs.exists(attemptPath)) {
+            return;
+        }
+        Path path = new Path(dir, context.getTaskAttemptID().getTaskID().toString());
+        fs.delete(path, false);
+        if (!fs.rename(attemptPath, path)) {
+            throw new IOException("Unable to rename " + attemptPath + " to " + path);
+        }
+    }
+
+    /**
+     * Deletes the object written by a task attempt, if any, when the attempt
+     * is aborted.
+     *
+     * @param dir the directory
+     * @param context the context of the task attempt
+     * @throws IOException
+     */
+    public static void abortTaskSideFile(String dir, TaskAttemptContext context)
+            throws IOException {
+        Path attemptPath = getTaskAttemptSideFile(dir, context);
+        attemptPath.getFileSystem(context.getConfiguration()).delete(attemptPath, false);
+    }
+
+    private static Path getTaskAttemptSideFile(String dir, TaskAttemptContext context) {
+        return new Path(new Path(dir, TASK_SIDE_FILE_TEMP_DIR), context.getTaskAttemptID().toString());
+    }
+
+    /**
+     * Reads the objects written by the committed task attempts with
+     * {@link #writeTaskSideFile}, for them to be merged. The files which can
+     * not be read are skipped.
+     *
+     * @param dir the directory
+     * @param conf the configuration
+     * @return the objects, none if the directory does not exist
+     * @throws IOException
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends Serializable> List<T> readTaskSideFiles(String dir, Configuration conf)
+            throws IOException {
+        List<T> objs = new ArrayList<T>();
+        Path path = new Path(dir);
+        FileSystem fs = path.getFileSystem(conf);
+        if (!fs.exists(path)) {
+            return objs;
+        }
+        for (FileStatus status : fs.listStatus(path)) {
+            if (status.isDir()) {
+                // the objects of the attempts which were not committed
+                continue;
+            }
+            ObjectInputStream in = null;
+            try {
+                in = new ObjectInputStream(fs.open(status.getPath()));
+                objs.add((T) in.readObject());
+            } catch (IOException e) {
+                log.warn("Unable to read " + status.getPath() + ", skipping it", e);
+            } catch (ClassNotFoundException e) {
+                log.warn("Unable to read " + status.getPath() + ", skipping it", e);
+            } finally {
+                if (in != null) {
+                    in.close();
+                }
+            }
+        }
+        return objs;
+    }
+
     /* The following codes are for split combination: see PIG-1518
      *
      */
@@ -23,9 +23,11 @@ import java.util.Iterator;
 import java.util.List;
 
 import org.apache.pig.Accumulator;
+import org.apache.pig.AggregationStates;
 import org.apache.pig.Algebraic;
 import org.apache.pig.EvalFunc;
 import org.apache.pig.FuncSpec;
+import org.apache.pig.IncrementalIntermediate;
 import org.apache.pig.PigException;
 import org.apache.pig.backend.executionengine.ExecException;
 import org.apache.pig.data.DataBag;
@@ -134,7 +136,12 @@ public class AVG extends EvalFunc<Double> implements Algebraic, Accumulator<Doub
         }
     }
 
-    static public class Intermediate extends EvalFunc<Tuple> {
+    static public class Intermediate extends EvalFunc<Tuple> implements IncrementalIntermediate {
+        @Override
+        public AggregationStates newStates() {
+            return new NumericAggregationStates.DoubleAvgStates();
+        }
+
         @Override
         public Tuple exec(Tuple input) throws IOException {
             try {
@@ -21,7 +21,9 @@ import java.io.IOException;
 import java.util.Iterator;
 
 import org.apache.pig.Accumulator;
+import org.apache.pig.AggregationStates;
 import org.apache.pig.EvalFunc;
+import org.apache.pig.IncrementalIntermediate;
 import org.apache.pig.PigException;
 import org.apache.pig.backend.executionengine.ExecException;
 import org.apache.pig.data.DataBag;
@@ -111,9 +113,15 @@ public abstract class AlgebraicByteArrayMathBase extends AlgebraicMathBase<Doubl
         }
     }
 
-    static public abstract class Intermediate extends AlgebraicMathBase.Intermediate {
+    static public abstract class Intermediate extends AlgebraicMathBase.Intermediate
+            implements IncrementalIntermediate {
         private static TupleFactory tfact = TupleFactory.getInstance();
 
+        @Override
+        public AggregationStates newStates() {
+            return new NumericAggregationStates.DoubleStates(getOp());
+        }
+
         @Override
         public Tuple exec(Tuple input) throws IOException {
             try {
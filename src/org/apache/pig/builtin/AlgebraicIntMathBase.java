@@ -21,6 +21,8 @@ import java.io.IOException;
 import java.util.Iterator;
 
 import org.apache.pig.Accumulator;
+import org.apache.pig.AggregationStates;
+import org.apache.pig.IncrementalIntermediate;
 import org.apache.pig.PigException;
 import org.apache.pig.backend.executionengine.ExecException;
 import org.apache.pig.data.DataBag;
@@ -97,9 +99,15 @@ public abstract class AlgebraicIntMathBase extends AlgebraicMathBase<Integer> im
     }
 
 
-    static public abstract class Intermediate extends AlgebraicMathBase.Intermediate {
+    static public abstract class Intermediate extends AlgebraicMathBase.Intermediate
+            implements IncrementalIntermediate {
         private static TupleFactory tfact = TupleFactory.getInstance();
 
+        @Override
+        public AggregationStates newStates() {
+            return new NumericAggregationStates.IntStates(getOp());
+        }
+
         @Override
         public Tuple exec(Tuple input) throws IOException {
             try {
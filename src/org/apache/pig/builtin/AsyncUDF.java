@@ -0,0 +1,49 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pig.builtin;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+import org.apache.pig.classification.InterfaceAudience;
+import org.apache.pig.classification.InterfaceStability;
+
+/**
+ * Marks a UDF whose exec() can be called from several threads at once, such as
+ * a UDF which looks up a remote service. When such a UDF is the outermost
+ * expression of a GENERATE, the FOREACH reads ahead of the tuple it outputs
+ * and calls the UDF for up to {@link #concurrency()} input tuples at the same
+ * time. The output keeps the order of the input.
+ * <p>
+ * Only applies to FOREACH statements without nested blocks, on the MapReduce
+ * and Tez execution engines. Ignored when the Accumulator interface is used.
+ */
+@InterfaceAudience.Public
+@InterfaceStability.Evolving
+@Documented
+@Inherited
+@Retention(value=RetentionPolicy.RUNTIME)
+public @interface AsyncUDF {
+    /**
+     * Maximum number of calls to the UDF in flight.
+     * @return maximum number of calls to the UDF in flight.
+     */
+    int concurrency() default 16;
+}
@@ -65,6 +65,7 @@ import org.apache.pig.ResourceSchema;
 import org.apache.pig.ResourceStatistics;
 import org.apache.pig.StoreFunc;
 import org.apache.pig.StoreFuncInterface;
+import org.apache.pig.StoreMetadata;
 import org.apache.pig.StoreResources;
 import org.apache.pig.backend.hadoop.executionengine.mapReduceLayer.PigSplit;
 import org.apache.pig.data.Tuple;
@@ -86,7 +87,7 @@ import com.google.common.collect.Maps;
  *
  */
 public class AvroStorage extends LoadFunc
-    implements StoreFuncInterface, LoadMetadata, LoadPushDown, StoreResources {
+    implements StoreFuncInterface, LoadMetadata, StoreMetadata, LoadPushDown, StoreResources {
 
   /**
    *  Creates new instance of Pig Storage function, without specifying
@@ -362,7 +363,28 @@ public class AvroStorage extends LoadFunc
   @Override
   public final ResourceStatistics getStatistics(final String location,
       final Job job) throws IOException {
-    return null;
+    // written when the data was stored with pig.store.statistics set
+    return new JsonMetadata().getStatistics(location, job);
+  }
+
+  /*
+   * The schema is stored in the Avro files.
+   * @see org.apache.pig.StoreMetadata#storeSchema(org.apache.pig.ResourceSchema,
+   * java.lang.String, org.apache.hadoop.mapreduce.Job)
+   */
+  @Override
+  public final void storeSchema(final ResourceSchema schema,
+      final String location, final Job job) throws IOException {
+  }
+
+  /*
+   * @see org.apache.pig.StoreMetadata#storeStatistics(org.apache.pig.ResourceStatistics,
+   * java.lang.String, org.apache.hadoop.mapreduce.Job)
+   */
+  @Override
+  public final void storeStatistics(final ResourceStatistics stats,
+      final String location, final Job job) throws IOException {
+    new JsonMetadata().storeStatistics(stats, location, job);
   }
 
   /*
@@ -22,8 +22,10 @@ import java.util.Iterator;
 import java.util.Map;
 
 import org.apache.pig.Accumulator;
+import org.apache.pig.AggregationStates;
 import org.apache.pig.Algebraic;
 import org.apache.pig.EvalFunc;
+import org.apache.pig.IncrementalIntermediate;
 import org.apache.pig.PigException;
 import org.apache.pig.backend.executionengine.ExecException;
 import org.apache.pig.data.DataBag;
@@ -96,7 +98,12 @@ public class COUNT_STAR extends EvalFunc<Long> implements Algebraic, Accumulator
         }
     }
 
-    static public class Intermediate extends EvalFunc<Tuple> {
+    static public class Intermediate extends EvalFunc<Tuple> implements IncrementalIntermediate {
+
+        @Override
+        public AggregationStates newStates() {
+            return new NumericAggregationStates.LongStates(AlgebraicMathBase.KNOWN_OP.SUM);
+        }
 
         @Override
         public Tuple exec(Tuple input) throws IOException {
@@ -21,8 +21,10 @@ import java.io.IOException;
 import java.util.Iterator;
 
 import org.apache.pig.Accumulator;
+import org.apache.pig.AggregationStates;
 import org.apache.pig.Algebraic;
 import org.apache.pig.EvalFunc;
+import org.apache.pig.IncrementalIntermediate;
 import org.apache.pig.PigException;
 import org.apache.pig.backend.executionengine.ExecException;
 import org.apache.pig.data.DataBag;
@@ -105,7 +107,12 @@ public class FloatAvg extends EvalFunc<Double> implements Algebraic, Accumulator
         }
     }
 
-    static public class Intermediate extends EvalFunc<Tuple> {
+    static public class Intermediate extends EvalFunc<Tuple> implements IncrementalIntermediate {
+        @Override
+        public AggregationStates newStates() {
+            return new NumericAggregationStates.DoubleAvgStates();
+        }
+
         @Override
         public Tuple exec(Tuple input) throws IOException {
             try {
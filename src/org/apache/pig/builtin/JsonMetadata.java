@@ -247,7 +247,7 @@ public class JsonMetadata implements LoadMetadata, StoreMetadata {
         if (!statFileSet.isEmpty()) {
             statFile = statFileSet.iterator().next();
         } else {
-            log.warn("Could not find stat file for "+location);
+            log.debug("Could not find stat file for "+location);
             return null;
         }
         log.debug("Found stat file "+statFile.toString());
@@ -0,0 +1,360 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pig.builtin;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.apache.pig.AggregationStates;
+import org.apache.pig.PigException;
+import org.apache.pig.backend.executionengine.ExecException;
+import org.apache.pig.builtin.AlgebraicMathBase.KNOWN_OP;
+import org.apache.pig.data.Tuple;
+import org.apache.pig.data.TupleFactory;
+
+/**
+ * The states of the Intermediate functions of the builtin SUM, COUNT, MIN,
+ * MAX and AVG functions, held in primitive arrays. The results are the same
+ * as the Intermediate functions would return for bags of the merged tuples.
+ */
+abstract class NumericAggregationStates extends AggregationStates {
+    private static final TupleFactory tfact = TupleFactory.getInstance();
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    // the groups for which a non null value was merged
+    protected final BitSet sawNonNull = new BitSet();
+    private int size;
+    private int capacity;
+
+    @Override
+    public final void merge(int group, Tuple input) throws ExecException {
+        if (group >= size) {
+            if (group >= capacity) {
+                capacity = Math.max(Math.max(INITIAL_CAPACITY, group + 1), capacity * 2);
+                grow(capacity);
+            }
+            init(group);
+            size = group + 1;
+        }
+        try {
+            mergeValue(group, input);
+        } catch (RuntimeException e) {
+            throw new ExecException("Error while merging into aggregation state", 2106,
+                    PigException.BUG, e);
+        }
+    }
+
+    @Override
+    public void clear() {
+        sawNonNull.clear();
+        size = 0;
+    }
+
+    /**
+     * Grows the arrays of states to the given capacity.
+     */
+    protected abstract void grow(int capacity);
+
+    /**
+     * Initializes the state of a new group.
+     */
+    protected void init(int group) {
+    }
+
+    protected abstract void mergeValue(int group, Tuple input) throws ExecException;
+
+    protected static Tuple newTuple(Object value) {
+        return tfact.newTuple(value);
+    }
+
+    protected static Tuple newTuple(Object sum, long count) throws ExecException {
+        Tuple t = tfact.newTuple(2);
+        t.set(0, sum);
+        t.set(1, count);
+        return t;
+    }
+
+    /**
+     * The states of SUM, MIN and MAX on longs, and of COUNT.
+     */
+    static class LongStates extends NumericAggregationStates {
+        private final KNOWN_OP op;
+        private long[] values = new long[0];
+
+        LongStates(KNOWN_OP op) {
+            this.op = op;
+        }
+
+        @Override
+        protected void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        protected void mergeValue(int group, Tuple input) throws ExecException {
+            Number n = (Number) input.get(0);
+            if (n == null) {
+                return;
+            }
+            long l = n.longValue();
+            if (!sawNonNull.get(group)) {
+                sawNonNull.set(group);
+                values[group] = l;
+                return;
+            }
+            switch (op) {
+            case MAX: values[group] = Math.max(values[group], l); break;
+            case MIN: values[group] = Math.min(values[group], l); break;
+            default: values[group] += l; break;
+            }
+        }
+
+        @Override
+        public Tuple getResult(int group) {
+            return newTuple(sawNonNull.get(group) ? Long.valueOf(values[group]) : null);
+        }
+
+        @Override
+        public int getStateSize() {
+            return 8;
+        }
+    }
+
+    /**
+     * The states of MIN and MAX on integers.
+     */
+    static class IntStates extends NumericAggregationStates {
+        private final KNOWN_OP op;
+        private int[] values = new int[0];
+
+        IntStates(KNOWN_OP op) {
+            this.op = op;
+        }
+
+        @Override
+        protected void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        protected void mergeValue(int group, Tuple input) throws ExecException {
+            Number n = (Number) input.get(0);
+            if (n == null) {
+                return;
+            }
+            int i = n.intValue();
+            if (!sawNonNull.get(group)) {
+                sawNonNull.set(group);
+                values[group] = i;
+                return;
+            }
+            switch (op) {
+            case MAX: values[group] = Math.max(values[group], i); break;
+            case MIN: values[group] = Math.min(values[group], i); break;
+            default: values[group] += i; break;
+            }
+        }
+
+        @Override
+        public Tuple getResult(int group) {
+            return newTuple(sawNonNull.get(group) ? Integer.valueOf(values[group]) : null);
+        }
+
+        @Override
+        public int getStateSize() {
+            return 4;
+        }
+    }
+
+    /**
+     * The states of SUM, MIN and MAX on doubles, including those of the
+     * functions on bytearrays, whose Initial functions return doubles.
+     */
+    static class DoubleStates extends NumericAggregationStates {
+        private final KNOWN_OP op;
+        private double[] values = new double[0];
+
+        DoubleStates(KNOWN_OP op) {
+            this.op = op;
+        }
+
+        @Override
+        protected void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        protected void init(int group) {
+            values[group] = AlgebraicDoubleMathBase.getSeed(op);
+        }
+
+        @Override
+        protected void mergeValue(int group, Tuple input) throws ExecException {
+            Number n = (Number) input.get(0);
+            if (n == null) {
+                return;
+            }
+            double d = n.doubleValue();
+            sawNonNull.set(group);
+            switch (op) {
+            case MAX: values[group] = Math.max(values[group], d); break;
+            case MIN: values[group] = Math.min(values[group], d); break;
+            default: values[group] += d; break;
+            }
+        }
+
+        @Override
+        public Tuple getResult(int group) {
+            return newTuple(sawNonNull.get(group) ? Double.valueOf(values[group]) : null);
+        }
+
+        @Override
+        public int getStateSize() {
+            return 8;
+        }
+    }
+
+    /**
+     * The states of SUM, MIN and MAX on floats, computed in float precision.
+     */
+    static class FloatStates extends NumericAggregationStates {
+        private final KNOWN_OP op;
+        private float[] values = new float[0];
+
+        FloatStates(KNOWN_OP op) {
+            this.op = op;
+        }
+
+        @Override
+        protected void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        protected void init(int group) {
+            values[group] = AlgebraicFloatMathBase.getSeed(op);
+        }
+
+        @Override
+        protected void mergeValue(int group, Tuple input) throws ExecException {
+            Number n = (Number) input.get(0);
+            if (n == null) {
+                return;
+            }
+            float f = n.floatValue();
+            sawNonNull.set(group);
+            switch (op) {
+            case MAX: values[group] = Math.max(values[group], f); break;
+            case MIN: values[group] = Math.min(values[group], f); break;
+            default: values[group] += f; break;
+            }
+        }
+
+        @Override
+        public Tuple getResult(int group) {
+            return newTuple(sawNonNull.get(group) ? Float.valueOf(values[group]) : null);
+        }
+
+        @Override
+        public int getStateSize() {
+            return 4;
+        }
+    }
+
+    /**
+     * The states of AVG on longs and integers: a sum of longs and a count.
+     */
+    static class LongAvgStates extends NumericAggregationStates {
+        private long[] sums = new long[0];
+        private long[] counts = new long[0];
+
+        @Override
+        protected void grow(int capacity) {
+            sums = Arrays.copyOf(sums, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+        }
+
+        @Override
+        protected void init(int group) {
+            sums[group] = 0L;
+            counts[group] = 0L;
+        }
+
+        @Override
+        protected void mergeValue(int group, Tuple input) throws ExecException {
+            Number n = (Number) input.get(0);
+            if (n != null) {
+                sawNonNull.set(group);
+                sums[group] += n.longValue();
+            }
+            counts[group] += ((Number) input.get(1)).longValue();
+        }
+
+        @Override
+        public Tuple getResult(int group) throws ExecException {
+            return newTuple(sawNonNull.get(group) ? Long.valueOf(sums[group]) : null, counts[group]);
+        }
+
+        @Override
+        public int getStateSize() {
+            return 16;
+        }
+    }
+
+    /**
+     * The states of AVG on doubles, floats and bytearrays: a sum of doubles
+     * and a count.
+     */
+    static class DoubleAvgStates extends NumericAggregationStates {
+        private double[] sums = new double[0];
+        private long[] counts = new long[0];
+
+        @Override
+        protected void grow(int capacity) {
+            sums = Arrays.copyOf(sums, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+        }
+
+        @Override
+        protected void init(int group) {
+            sums[group] = 0.0;
+            counts[group] = 0L;
+        }
+
+        @Override
+        protected void mergeValue(int group, Tuple input) throws ExecException {
+            Number n = (Number) input.get(0);
+            if (n != null) {
+                sawNonNull.set(group);
+                sums[group] += n.doubleValue();
+            }
+            counts[group] += ((Number) input.get(1)).longValue();
+        }
+
+        @Override
+        public Tuple getResult(int group) throws ExecException {
+            return newTuple(sawNonNull.get(group) ? Double.valueOf(sums[group]) : null, counts[group]);
+        }
+
+        @Override
+        public int getStateSize() {
+            return 16;
+        }
+    }
+}
@@ -565,7 +565,8 @@ LoadPushDown, LoadMetadata, StoreMetadata, OverwritableStoreFunc {
     @Override
     public ResourceStatistics getStatistics(String location,
             Job job) throws IOException {
-        return null;
+        // written when the data was stored with pig.store.statistics set
+        return new JsonMetadata().getStatistics(location, job);
     }
 
     @Override
@@ -597,7 +598,7 @@ LoadPushDown, LoadMetadata, StoreMetadata, OverwritableStoreFunc {
     @Override
     public void storeStatistics(ResourceStatistics stats, String location,
             Job job) throws IOException {
-
+        new JsonMetadata().storeStatistics(stats, location, job);
     }
 
     @Override
@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pig.data;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.pig.classification.InterfaceAudience;
+import org.apache.pig.classification.InterfaceStability;
+
+/**
+ * A buffered OutputStream which writes full blocks to the underlying stream
+ * from a background thread. Two blocks are used, so the caller serializes
+ * into one block while the other one is being written (and compressed, if
+ * the underlying stream compresses). Errors of the background writes are
+ * thrown by the next call to write, flush or close.
+ */
+@InterfaceAudience.Private
+@InterfaceStability.Evolving
+public class AsyncSpillOutputStream extends OutputStream {
+
+    public static final int DEFAULT_BLOCK_SIZE = 128 * 1024;
+
+    // A single daemon thread shared by all spill streams of the task.
+    private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "Pig-Spill-Writer");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+
+    private final OutputStream out;
+    private final int blockSize;
+
+    // Block currently being filled
+    private byte[] buf;
+    private int count;
+    // Block handed to the writer thread, free for reuse once pending is done
+    private byte[] inFlight;
+    private Future<Void> pending;
+    private boolean closed;
+
+    public AsyncSpillOutputStream(OutputStream out) {
+        this(out, DEFAULT_BLOCK_SIZE);
+    }
+
+    public AsyncSpillOutputStream(OutputStream out, int blockSize) {
+        this.out = out;
+        this.blockSize = blockSize;
+        buf = new byte[blockSize];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (count == buf.length) {
+            writeBlock();
+        }
+        buf[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (count == buf.length) {
+                writeBlock();
+            }
+            int n = Math.min(len, buf.length - count);
+            System.arraycopy(b, off, buf, count, n);
+            count += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Hand the current block to the writer thread once the previous one has
+     * been written, and continue with the block freed by that write.
+     */
+    private void writeBlock() throws IOException {
+        waitForPending();
+        final byte[] block = buf;
+        final int len = count;
+        pending = WRITER.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws IOException {
+                out.write(block, 0, len);
+                return null;
+            }
+        });
+        buf = inFlight == null ? new byte[blockSize] : inFlight;
+        inFlight = block;
+        count = 0;
+    }
+
+    private void waitForPending() throws IOException {
+        if (pending == null) {
+            return;
+        }
+        try {
+            pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for spill write");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Unable to write spill block", cause);
+        } finally {
+            pending = null;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (count > 0) {
+            writeBlock();
+        }
+        waitForPending();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            flush();
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -125,6 +125,12 @@ public class BinInterSedes implements InterSedes {
 
     public static final byte DATETIME = 48;
 
+    // only written by DictionaryInterSedes
+    public static final byte INTEGER_VARINT = 49;
+    public static final byte LONG_VARINT = 50;
+    public static final byte DICTIONARY_CHARARRAY = 51;
+    public static final byte DICTIONARY_REFERENCE = 52;
+
     private static TupleFactory mTupleFactory = TupleFactory.getInstance();
     private static BagFactory mBagFactory = BagFactory.getInstance();
     public static final int UNSIGNED_SHORT_MAX = 65535;
@@ -493,42 +499,11 @@ public class BinInterSedes implements InterSedes {
         }
 
         case DataType.INTEGER:
-            int i = (Integer) val;
-            if (i == 0) {
-                out.writeByte(INTEGER_0);
-            } else if (i == 1) {
-                out.writeByte(INTEGER_1);
-            } else if (Byte.MIN_VALUE <= i && i <= Byte.MAX_VALUE) {
-                out.writeByte(INTEGER_INBYTE);
-                out.writeByte(i);
-            } else if (Short.MIN_VALUE <= i && i <= Short.MAX_VALUE) {
-                out.writeByte(INTEGER_INSHORT);
-                out.writeShort(i);
-            } else {
-                out.writeByte(INTEGER);
-                out.writeInt(i);
-            }
+            writeInteger(out, (Integer) val);
             break;
 
         case DataType.LONG:
-            long lng = (Long) val;
-            if (lng == 0) {
-                out.writeByte(LONG_0);
-            } else if (lng == 1) {
-                out.writeByte(LONG_1);
-            } else if (Byte.MIN_VALUE <= lng && lng <= Byte.MAX_VALUE) {
-                out.writeByte(LONG_INBYTE);
-                out.writeByte((int)lng);
-            } else if (Short.MIN_VALUE <= lng && lng <= Short.MAX_VALUE) {
-                out.writeByte(LONG_INSHORT);
-                out.writeShort((int)lng);
-            } else if (Integer.MIN_VALUE <= lng && lng <= Integer.MAX_VALUE) {
-                out.writeByte(LONG_ININT);
-                out.writeInt((int)lng);
-            } else {
-            out.writeByte(LONG);
-                out.writeLong(lng);
-            }
+            writeLong(out, (Long) val);
             break;
 
         case DataType.DATETIME:
@@ -598,6 +573,43 @@ public class BinInterSedes implements InterSedes {
         }
     }
 
+    private static void writeInteger(DataOutput out, int i) throws IOException {
+        if (i == 0) {
+            out.writeByte(INTEGER_0);
+        } else if (i == 1) {
+            out.writeByte(INTEGER_1);
+        } else if (Byte.MIN_VALUE <= i && i <= Byte.MAX_VALUE) {
+            out.writeByte(INTEGER_INBYTE);
+            out.writeByte(i);
+        } else if (Short.MIN_VALUE <= i && i <= Short.MAX_VALUE) {
+            out.writeByte(INTEGER_INSHORT);
+            out.writeShort(i);
+        } else {
+            out.writeByte(INTEGER);
+            out.writeInt(i);
+        }
+    }
+
+    private static void writeLong(DataOutput out, long lng) throws IOException {
+        if (lng == 0) {
+            out.writeByte(LONG_0);
+        } else if (lng == 1) {
+            out.writeByte(LONG_1);
+        } else if (Byte.MIN_VALUE <= lng && lng <= Byte.MAX_VALUE) {
+            out.writeByte(LONG_INBYTE);
+            out.writeByte((int)lng);
+        } else if (Short.MIN_VALUE <= lng && lng <= Short.MAX_VALUE) {
+            out.writeByte(LONG_INSHORT);
+            out.writeShort((int)lng);
+        } else if (Integer.MIN_VALUE <= lng && lng <= Integer.MAX_VALUE) {
+            out.writeByte(LONG_ININT);
+            out.writeInt((int)lng);
+        } else {
+            out.writeByte(LONG);
+            out.writeLong(lng);
+        }
+    }
+
     private void writeMap(DataOutput out, Map<String, Object> m) throws IOException {
 
         final int sz = m.size();
@@ -646,11 +658,181 @@ public class BinInterSedes implements InterSedes {
     private void writeTuple(DataOutput out, Tuple t) throws IOException {
         if (t instanceof TypeAwareTuple) {
             t.write(out);
+        } else if (t instanceof PrimitiveTuple) {
+            writePrimitiveTuple(out, (PrimitiveTuple) t);
+        } else if (t instanceof LazyBinSedesTuple) {
+            t.write(out);
         } else {
             SedesHelper.writeGenericTuple(out, t);
     }
     }
 
+    /**
+     * Writes a PrimitiveTuple in the same format as a generic tuple, encoding the
+     * fields held in its slab without boxing them.
+     */
+    private void writePrimitiveTuple(DataOutput out, PrimitiveTuple t) throws IOException {
+        int sz = t.size();
+        SedesHelper.writeTupleSize(out, sz);
+        for (int i = 0; i < sz; i++) {
+            long bits = t.getPrimitiveBits(i);
+            switch (t.getPrimitiveType(i)) {
+            case DataType.INTEGER:
+                writeInteger(out, (int) bits);
+                break;
+            case DataType.LONG:
+                writeLong(out, bits);
+                break;
+            case DataType.FLOAT:
+                out.writeByte(FLOAT);
+                out.writeFloat(Float.intBitsToFloat((int) bits));
+                break;
+            case DataType.DOUBLE:
+                out.writeByte(DOUBLE);
+                out.writeDouble(Double.longBitsToDouble(bits));
+                break;
+            case DataType.BOOLEAN:
+                out.writeByte(bits != 0 ? BOOLEAN_TRUE : BOOLEAN_FALSE);
+                break;
+            default:
+                writeDatum(out, t.getObject(i));
+            }
+        }
+    }
+
+    /**
+     * Reads sz fields written as a generic tuple into the given PrimitiveTuple,
+     * decoding the numeric and boolean fields straight into its slab.
+     */
+    public void readPrimitiveTupleFields(DataInput in, PrimitiveTuple t, int sz) throws IOException {
+        t.reset(sz);
+        for (int i = 0; i < sz; i++) {
+            byte type = in.readByte();
+            switch (type) {
+            case INTEGER_0: t.setInt(i, 0); break;
+            case INTEGER_1: t.setInt(i, 1); break;
+            case INTEGER_INBYTE: t.setInt(i, in.readByte()); break;
+            case INTEGER_INSHORT: t.setInt(i, in.readShort()); break;
+            case INTEGER: t.setInt(i, in.readInt()); break;
+            case LONG_0: t.setLong(i, 0); break;
+            case LONG_1: t.setLong(i, 1); break;
+            case LONG_INBYTE: t.setLong(i, in.readByte()); break;
+            case LONG_INSHORT: t.setLong(i, in.readShort()); break;
+            case LONG_ININT: t.setLong(i, in.readInt()); break;
+            case LONG: t.setLong(i, in.readLong()); break;
+            case FLOAT: t.setFloat(i, in.readFloat()); break;
+            case DOUBLE: t.setDouble(i, in.readDouble()); break;
+            case BOOLEAN_TRUE: t.setBoolean(i, true); break;
+            case BOOLEAN_FALSE: t.setBoolean(i, false); break;
+            default: t.setObject(i, readDatum(in, type));
+            }
+        }
+    }
+
+    /**
+     * Computes the length of the datum serialized at the given offset without
+     * deserializing it.
+     * @return the length in bytes, or -1 if the datum holds a type whose length
+     *  is only known by deserializing it (schema tuples and writables)
+     */
+    static int getSerializedLength(byte[] buf, int offset) {
+        int pos = offset + 1;
+        switch (buf[offset]) {
+        case BOOLEAN_TRUE:
+        case BOOLEAN_FALSE:
+        case INTEGER_0:
+        case INTEGER_1:
+        case LONG_0:
+        case LONG_1:
+        case NULL:
+            return 1;
+        case BYTE:
+        case INTEGER_INBYTE:
+        case LONG_INBYTE:
+            return 2;
+        case INTEGER_INSHORT:
+        case LONG_INSHORT:
+            return 3;
+        case INTEGER:
+        case LONG_ININT:
+        case FLOAT:
+            return 5;
+        case LONG:
+        case DOUBLE:
+            return 9;
+        case DATETIME:
+            return 11;
+        case TINYBYTEARRAY:
+            return 2 + (buf[pos] & 0xff);
+        case SMALLBYTEARRAY:
+        case SMALLCHARARRAY:
+            return 3 + readUnsignedShort(buf, pos);
+        case BYTEARRAY:
+        case CHARARRAY:
+            return 5 + readInt(buf, pos);
+        case BIGINTEGER:
+        case BIGDECIMAL: {
+            int len = getSerializedLength(buf, pos);
+            return len < 0 ? -1 : 1 + len;
+        }
+        case TUPLE_0:
+        case TUPLE_1:
+        case TUPLE_2:
+        case TUPLE_3:
+        case TUPLE_4:
+        case TUPLE_5:
+        case TUPLE_6:
+        case TUPLE_7:
+        case TUPLE_8:
+        case TUPLE_9:
+            return getSerializedLength(buf, offset, pos, buf[offset] - TUPLE_0);
+        case TINYTUPLE:
+            return getSerializedLength(buf, offset, pos + 1, buf[pos] & 0xff);
+        case SMALLTUPLE:
+            return getSerializedLength(buf, offset, pos + 2, readUnsignedShort(buf, pos));
+        case TUPLE:
+            return getSerializedLength(buf, offset, pos + 4, readInt(buf, pos));
+        case TINYBAG:
+            return getSerializedLength(buf, offset, pos + 1, buf[pos] & 0xff);
+        case SMALLBAG:
+            return getSerializedLength(buf, offset, pos + 2, readUnsignedShort(buf, pos));
+        case BAG:
+            return getSerializedLength(buf, offset, pos + 8, ByteBuffer.wrap(buf, pos, 8).getLong());
+        case TINYMAP:
+            return getSerializedLength(buf, offset, pos + 1, 2L * (buf[pos] & 0xff));
+        case SMALLMAP:
+            return getSerializedLength(buf, offset, pos + 2, 2L * readUnsignedShort(buf, pos));
+        case MAP:
+        case INTERNALMAP:
+            return getSerializedLength(buf, offset, pos + 4, 2L * readInt(buf, pos));
+        default:
+            return -1;
+        }
+    }
+
+    /**
+     * @return the length from offset to the end of the count datums which start at pos
+     */
+    private static int getSerializedLength(byte[] buf, int offset, int pos, long count) {
+        for (long i = 0; i < count; i++) {
+            int len = getSerializedLength(buf, pos);
+            if (len < 0) {
+                return -1;
+            }
+            pos += len;
+        }
+        return pos - offset;
+    }
+
+    private static int readUnsignedShort(byte[] buf, int pos) {
+        return ((buf[pos] & 0xff) << 8) | (buf[pos + 1] & 0xff);
+    }
+
+    private static int readInt(byte[] buf, int pos) {
+        return ((buf[pos] & 0xff) << 24) | ((buf[pos + 1] & 0xff) << 16)
+                | ((buf[pos + 2] & 0xff) << 8) | (buf[pos + 3] & 0xff);
+    }
+
     /*
      * (non-Javadoc)
      *
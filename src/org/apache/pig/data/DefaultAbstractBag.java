@@ -17,12 +17,11 @@
  */
 package org.apache.pig.data;
 
-import java.io.BufferedOutputStream;
 import java.io.DataInput;
+import java.io.DataInputStream;
 import java.io.DataOutput;
 import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.Iterator;
@@ -51,6 +50,10 @@ public abstract class DefaultAbstractBag implements DataBag {
     // If we grow past 100K, may be worthwhile to register.
     private static final int SPILL_REGISTER_THRESHOLD = 100 * 1024;
 
+    // Number of tuples added between updates of the memory reservation
+    // when the SpillableMemoryManager runs with a memory budget.
+    private static final int RESERVATION_UPDATE_FREQUENCY = 1024;
+
     private static PigLogger pigLogger;
 
     private static InterSedes sedes = InterSedesFactory.getInterSedesInstance();
@@ -65,16 +68,13 @@ public abstract class DefaultAbstractBag implements DataBag {
     // to run through the disk when people ask.
     protected long mSize = 0;
 
-    // Number of tuples to sample per bag, to get an estimate of tuple size
-    private static final int SPILL_SAMPLE_SIZE = 100;
-    private static final int SPILL_SAMPLE_FREQUENCY = 10;
-
-    long aggSampleTupleSize = 0;
-
-    int sampled = 0;
+    // Estimates the average size of the tuples added, created on the first one
+    private MemorySizeSampler sizeSampler;
 
     private boolean spillableRegistered = false;
 
+    private int addedSinceReservation = 0;
+
     /**
      * Get the number of elements in the bag, both in memory and on disk.
      */
@@ -85,24 +85,22 @@ public abstract class DefaultAbstractBag implements DataBag {
 
 
     /**
-     * Sample every SPILL_SAMPLE_FREQUENCYth tuple
-     * until we reach a max of SPILL_SAMPLE_SIZE
-     * to get an estimate of the tuple sizes.
+     * @return the estimator of the average size of the tuples added to the bag
      */
-    protected void sampleContents() {
-        synchronized (mContents) {
-            Iterator<Tuple> iter = mContents.iterator();
-            for (int i = 0; i < sampled * SPILL_SAMPLE_FREQUENCY && iter.hasNext(); i++) {
-                iter.next();
-            }
-            for (int i = sampled; iter.hasNext() && sampled < SPILL_SAMPLE_SIZE; i++) {
-                Tuple t = iter.next();
-                if (t != null && i % SPILL_SAMPLE_FREQUENCY == 0) {
-                    aggSampleTupleSize += t.getMemorySize();
-                    sampled += 1;
-                }
-            }
+    protected MemorySizeSampler getMemorySizeSampler() {
+        if (sizeSampler == null) {
+            sizeSampler = new MemorySizeSampler();
         }
+        return sizeSampler;
+    }
+
+    /**
+     * All bag implementations should call this method every time they add
+     * a tuple to mContents, so that {@link #getMemorySize()} does not have to
+     * go through the tuples.
+     */
+    protected void sampleMemorySize(Tuple t) {
+        getMemorySizeSampler().add(t);
     }
 
     /**
@@ -114,6 +112,7 @@ public abstract class DefaultAbstractBag implements DataBag {
         synchronized (mContents) {
             mSize++;
             mContents.add(t);
+            sampleMemorySize(t);
         }
         markSpillableIfNecessary();
     }
@@ -128,6 +127,13 @@ public abstract class DefaultAbstractBag implements DataBag {
             if ( estimate >= SPILL_REGISTER_THRESHOLD) {
                 SpillableMemoryManager.getInstance().registerSpillable(this);
                 spillableRegistered = true;
+                SpillableMemoryManager.getInstance().updateMemoryReservation(this, estimate);
+            }
+        } else if (++addedSinceReservation >= RESERVATION_UPDATE_FREQUENCY) {
+            addedSinceReservation = 0;
+            SpillableMemoryManager manager = SpillableMemoryManager.getInstance();
+            if (manager.isMemoryBudgetEnabled()) {
+                manager.updateMemoryReservation(this, getMemorySize());
             }
         }
     }
@@ -163,24 +169,19 @@ public abstract class DefaultAbstractBag implements DataBag {
 
         synchronized (mContents) {
             numInMem = mContents.size();
-
-            // If we've already gotten the estimate
-            // and the number of tuples hasn't changed, or was above
-            // the sample size and is still above the sample size, we can
-            // produce a new estimate without sampling the tuples again.
-            if (sampled != 0 && (sampled == numInMem ||
-                    sampled > SPILL_SAMPLE_SIZE && numInMem > SPILL_SAMPLE_SIZE)) {
-                return totalSizeFromAvgTupleSize(aggSampleTupleSize/sampled, numInMem);
-            }
-            sampleContents();
-            int avgTupleSize;
-            if (sampled != 0) {
-                avgTupleSize = (int) (aggSampleTupleSize / sampled);
-            } else {
-                avgTupleSize = 0;
+            if (numInMem == 0 && sizeSampler == null) {
+                return totalSizeFromAvgTupleSize(0, 0);
             }
 
-           return totalSizeFromAvgTupleSize(avgTupleSize, numInMem);
+            MemorySizeSampler sampler = getMemorySizeSampler();
+            if (sampler.getCount() < numInMem) {
+                // the contents were not added through add(), sample them once
+                for (Tuple t : mContents) {
+                    sampler.add(t);
+                }
+            }
+            return MemorySizeSampler.MEMORY_SIZE
+                    + totalSizeFromAvgTupleSize(sampler.getAverageSize(), numInMem);
         }
     }
 
@@ -194,7 +195,7 @@ public abstract class DefaultAbstractBag implements DataBag {
 
         // the fixed overhead for this object and other object variables = 84 bytes
         // 8 - object header
-        // 4 + 8 + 8 - sampled + aggSampleTupleSize + mSize
+        // 8 + 8 + 4 - sizeSampler ref + mSize + padding
         // 8 + 8 - mContents ref  + mSpillFiles ref
         // 4 - spillableRegistered +4 instead of 1 to round it to eight
         // 36 - mContents fixed
@@ -245,10 +246,14 @@ public abstract class DefaultAbstractBag implements DataBag {
                 mSpillFiles.clear();
             }
             mSize = 0;
-            aggSampleTupleSize = 0;
-            sampled = 0;
+            if (sizeSampler != null) {
+                sizeSampler.reset();
+            }
             // not changing spillableRegistered -- clear doesn't change that.
         }
+        if (spillableRegistered) {
+            SpillableMemoryManager.getInstance().releaseMemoryReservation(this);
+        }
     }
 
     /**
@@ -376,6 +381,25 @@ public abstract class DefaultAbstractBag implements DataBag {
      * @return stream to write tuples to.
      */
     protected DataOutputStream getSpillFile() throws IOException {
+        File f = createSpillFile();
+        return SpillStreams.createOutputStream(f);
+    }
+
+    /**
+     * Open a spill file written through {@link #getSpillFile()} for reading.
+     * @param f the spill file
+     * @return stream to read tuples from.
+     */
+    protected DataInputStream openSpillFile(File f) throws IOException {
+        return SpillStreams.createInputStream(f);
+    }
+
+    /**
+     * Create a new, empty file to spill contents to.  The file will be
+     * registered in the mSpillFiles array.
+     * @return the spill file.
+     */
+    protected File createSpillFile() throws IOException {
         if (mSpillFiles == null) {
             // We want to keep the list as small as possible.
             mSpillFiles = new FileList(1);
@@ -411,8 +435,7 @@ public abstract class DefaultAbstractBag implements DataBag {
         File f = File.createTempFile("pigbag", null);
         f.deleteOnExit();
         mSpillFiles.add(f);
-        return new DataOutputStream(new BufferedOutputStream(
-            new FileOutputStream(f)));
+        return f;
     }
 
     /**
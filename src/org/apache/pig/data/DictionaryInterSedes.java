@@ -0,0 +1,309 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pig.data;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.pig.backend.executionengine.ExecException;
+import org.apache.pig.classification.InterfaceAudience;
+import org.apache.pig.classification.InterfaceStability;
+import org.apache.pig.data.utils.SedesHelper;
+
+/**
+ * A {@link BinInterSedes} for a single stream of records, which replaces the chararrays
+ * already seen in the stream by their index in a dictionary, and writes the integers and
+ * longs which would take more than a short with a zig-zag variable length encoding when
+ * it is shorter. Both the writer and the reader of a stream build the same dictionary as
+ * they go, so it never has to be written out, and both have to {@link #reset()} it at
+ * the same positions of the stream, for instance at every sync marker, so that a reader
+ * can start in the middle of a stream.
+ * <p>
+ * As it is stateful, an instance must not be shared between streams. It reads everything
+ * written by {@link BinInterSedes}, but {@link BinInterSedes} can not read what it writes.
+ * Obtained from {@link InterSedesFactory#newDictionaryInterSedes()}.
+ */
+@InterfaceAudience.Private
+@InterfaceStability.Evolving
+public class DictionaryInterSedes extends BinInterSedes {
+    /**
+     * Longer chararrays are unlikely to repeat and are written as is.
+     */
+    static final int MAX_ENTRY_LENGTH = 64;
+
+    /**
+     * Keeps the dictionary references within two bytes.
+     */
+    static final int MAX_ENTRIES = 1 << 14;
+
+    private static final TupleFactory mTupleFactory = TupleFactory.getInstance();
+    private static final BagFactory mBagFactory = BagFactory.getInstance();
+
+    // used when writing
+    private final Map<String, Integer> ids = new HashMap<String, Integer>();
+    // used when reading
+    private final List<String> entries = new ArrayList<String>();
+
+    DictionaryInterSedes() {
+    }
+
+    /**
+     * Empties the dictionary.
+     */
+    public void reset() {
+        ids.clear();
+        entries.clear();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void writeDatum(DataOutput out, Object val, byte type) throws IOException {
+        switch (type) {
+        case DataType.TUPLE:
+            writeTuple(out, (Tuple) val);
+            break;
+
+        case DataType.BAG:
+            writeBag(out, (DataBag) val);
+            break;
+
+        case DataType.INTEGER: {
+            int i = (Integer) val;
+            if (i < Short.MIN_VALUE || i > Short.MAX_VALUE) {
+                long zigZag = zigZag(i);
+                if (varLongSize(zigZag) < 4) {
+                    out.writeByte(INTEGER_VARINT);
+                    writeVarLong(out, zigZag);
+                    break;
+                }
+            }
+            super.writeDatum(out, val, type);
+            break;
+        }
+
+        case DataType.LONG: {
+            long lng = (Long) val;
+            if (lng < Short.MIN_VALUE || lng > Short.MAX_VALUE) {
+                long zigZag = zigZag(lng);
+                int fixedSize = Integer.MIN_VALUE <= lng && lng <= Integer.MAX_VALUE ? 4 : 8;
+                if (varLongSize(zigZag) < fixedSize) {
+                    out.writeByte(LONG_VARINT);
+                    writeVarLong(out, zigZag);
+                    break;
+                }
+            }
+            super.writeDatum(out, val, type);
+            break;
+        }
+
+        case DataType.CHARARRAY:
+            writeChararray(out, (String) val);
+            break;
+
+        default:
+            // maps, internal maps and writables write their content through writeDatum
+            super.writeDatum(out, val, type);
+        }
+    }
+
+    private void writeChararray(DataOutput out, String s) throws IOException {
+        if (s.length() > MAX_ENTRY_LENGTH) {
+            SedesHelper.writeChararray(out, s);
+            return;
+        }
+        Integer id = ids.get(s);
+        if (id != null) {
+            out.writeByte(DICTIONARY_REFERENCE);
+            writeVarLong(out, id);
+            return;
+        }
+        if (ids.size() >= MAX_ENTRIES) {
+            SedesHelper.writeChararray(out, s);
+            return;
+        }
+        ids.put(s, ids.size());
+        byte[] utfBytes = s.getBytes(UTF8);
+        out.writeByte(DICTIONARY_CHARARRAY);
+        writeVarLong(out, utfBytes.length);
+        out.write(utfBytes);
+    }
+
+    private void writeTuple(DataOutput out, Tuple t) throws IOException {
+        if (t instanceof TypeAwareTuple || t instanceof PrimitiveTuple || t instanceof LazyBinSedesTuple) {
+            // they serialize some or all of their fields themselves, in the
+            // plain format, which is read back as well
+            super.writeDatum(out, t, DataType.TUPLE);
+            return;
+        }
+        int sz = t.size();
+        SedesHelper.writeTupleSize(out, sz);
+        for (int i = 0; i < sz; i++) {
+            writeDatum(out, t.get(i));
+        }
+    }
+
+    private void writeBag(DataOutput out, DataBag bag) throws IOException {
+        final long sz = bag.size();
+        if (sz < UNSIGNED_BYTE_MAX) {
+            out.writeByte(TINYBAG);
+            out.writeByte((int) sz);
+        } else if (sz < UNSIGNED_SHORT_MAX) {
+            out.writeByte(SMALLBAG);
+            out.writeShort((int) sz);
+        } else {
+            out.writeByte(BAG);
+            out.writeLong(sz);
+        }
+
+        Iterator<Tuple> it = bag.iterator();
+        while (it.hasNext()) {
+            writeTuple(out, it.next());
+        }
+    }
+
+    @Override
+    public Object readDatum(DataInput in, byte type) throws IOException, ExecException {
+        switch (type) {
+        case TUPLE_0:
+        case TUPLE_1:
+        case TUPLE_2:
+        case TUPLE_3:
+        case TUPLE_4:
+        case TUPLE_5:
+        case TUPLE_6:
+        case TUPLE_7:
+        case TUPLE_8:
+        case TUPLE_9:
+        case TUPLE:
+        case TINYTUPLE:
+        case SMALLTUPLE:
+            return readGenericTuple(in, type);
+
+        case BAG:
+        case TINYBAG:
+        case SMALLBAG:
+            return readBag(in, type);
+
+        case INTEGER_VARINT:
+            return Integer.valueOf((int) unZigZag(readVarLong(in)));
+
+        case LONG_VARINT:
+            return Long.valueOf(unZigZag(readVarLong(in)));
+
+        case DICTIONARY_CHARARRAY: {
+            byte[] buf = new byte[(int) readVarLong(in)];
+            in.readFully(buf);
+            String s = new String(buf, UTF8);
+            entries.add(s);
+            return s;
+        }
+
+        case DICTIONARY_REFERENCE: {
+            int id = (int) readVarLong(in);
+            if (id >= entries.size()) {
+                throw new IOException("Invalid dictionary reference " + id + ", dictionary has "
+                        + entries.size() + " entries");
+            }
+            return entries.get(id);
+        }
+
+        default:
+            // maps, internal maps and writables read their content through readDatum
+            return super.readDatum(in, type);
+        }
+    }
+
+    @Override
+    public Tuple readTuple(DataInput in, byte type) throws IOException {
+        if (type == SCHEMA_TUPLE_BYTE_INDEX || type == SCHEMA_TUPLE_SHORT_INDEX || type == SCHEMA_TUPLE) {
+            return super.readTuple(in, type);
+        }
+        return readGenericTuple(in, type);
+    }
+
+    private Tuple readGenericTuple(DataInput in, byte type) throws IOException {
+        int sz = getTupleSize(in, type);
+        Tuple t = mTupleFactory.newTuple(sz);
+        for (int i = 0; i < sz; i++) {
+            t.set(i, readDatum(in));
+        }
+        return t;
+    }
+
+    private DataBag readBag(DataInput in, byte type) throws IOException {
+        long size;
+        switch (type) {
+        case TINYBAG:
+            size = in.readUnsignedByte();
+            break;
+        case SMALLBAG:
+            size = in.readUnsignedShort();
+            break;
+        default:
+            size = in.readLong();
+        }
+        DataBag bag = mBagFactory.newDefaultBag();
+        for (long i = 0; i < size; i++) {
+            bag.add((Tuple) readDatum(in));
+        }
+        return bag;
+    }
+
+    private static long zigZag(long l) {
+        return (l << 1) ^ (l >> 63);
+    }
+
+    private static long unZigZag(long l) {
+        return (l >>> 1) ^ -(l & 1);
+    }
+
+    private static int varLongSize(long l) {
+        int size = 1;
+        while ((l & ~0x7FL) != 0) {
+            l >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static void writeVarLong(DataOutput out, long l) throws IOException {
+        while ((l & ~0x7FL) != 0) {
+            out.writeByte((int) ((l & 0x7F) | 0x80));
+            l >>>= 7;
+        }
+        out.writeByte((int) l);
+    }
+
+    private static long readVarLong(DataInput in) throws IOException {
+        long l = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            l |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return l;
+            }
+        }
+        throw new IOException("Malformed variable length number");
+    }
+}
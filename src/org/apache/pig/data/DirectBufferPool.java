@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pig.data;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.pig.PigConfiguration;
+import org.apache.pig.backend.hadoop.executionengine.mapReduceLayer.PigMapReduce;
+import org.apache.pig.classification.InterfaceAudience;
+import org.apache.pig.classification.InterfaceStability;
+
+/**
+ * A process wide pool of fixed size direct ByteBuffers. Allocating direct
+ * memory is expensive and it is only given back to the OS when the owning
+ * ByteBuffer is garbage collected, so buffers released by one bag are kept
+ * around to be handed out to the next one.
+ */
+@InterfaceAudience.Private
+@InterfaceStability.Evolving
+public class DirectBufferPool {
+
+    public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+
+    // Upper bound on the number of idle buffers retained by the pool
+    private static final int MAX_POOLED_BUFFERS = 64;
+
+    private static DirectBufferPool instance;
+
+    private final int bufferSize;
+    private final ConcurrentLinkedQueue<ByteBuffer> pool = new ConcurrentLinkedQueue<ByteBuffer>();
+    private final AtomicInteger pooled = new AtomicInteger();
+
+    DirectBufferPool(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    public static synchronized DirectBufferPool getInstance() {
+        if (instance == null) {
+            int bufferSize = DEFAULT_BUFFER_SIZE;
+            if (PigMapReduce.sJobConfInternal.get() != null) {
+                bufferSize = PigMapReduce.sJobConfInternal.get().getInt(
+                        PigConfiguration.PIG_CACHEDBAG_OFFHEAP_BUFFER_SIZE, DEFAULT_BUFFER_SIZE);
+            }
+            instance = new DirectBufferPool(bufferSize);
+        }
+        return instance;
+    }
+
+    //@StaticDataCleanup
+    public static synchronized void staticDataCleanup() {
+        instance = null;
+    }
+
+    /**
+     * @return size in bytes of the buffers handed out by {@link #acquire()}
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Get an empty buffer of {@link #getBufferSize()} bytes.
+     * @return a cleared direct buffer
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buf = pool.poll();
+        if (buf != null) {
+            pooled.decrementAndGet();
+            return buf;
+        }
+        return ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    /**
+     * Get an empty buffer which can hold at least size bytes. Buffers bigger
+     * than {@link #getBufferSize()} are allocated for the caller and are not
+     * retained once released.
+     * @param size minimum capacity of the buffer
+     * @return a cleared direct buffer
+     */
+    public ByteBuffer acquire(int size) {
+        if (size <= bufferSize) {
+            return acquire();
+        }
+        return ByteBuffer.allocateDirect(size);
+    }
+
+    /**
+     * Give a buffer back to the pool. The caller must not use the buffer,
+     * or any duplicate of it, after this call.
+     * @param buf buffer obtained from {@link #acquire()}
+     */
+    public void release(ByteBuffer buf) {
+        if (buf.capacity() != bufferSize || !buf.isDirect()) {
+            return;
+        }
+        if (pooled.incrementAndGet() > MAX_POOLED_BUFFERS) {
+            pooled.decrementAndGet();
+            return;
+        }
+        buf.clear();
+        pool.offer(buf);
+    }
+}
@@ -17,13 +17,10 @@
  */
 package org.apache.pig.data;
 
-import java.io.BufferedInputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.EOFException;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -114,6 +111,7 @@ public class DistinctDataBag extends DefaultAbstractBag {
         synchronized (mContents) {
             if (mContents.add(t)) {
                 mSize++;
+                sampleMemorySize(t);
             }
         }
         markSpillableIfNecessary();
@@ -293,21 +291,19 @@ public class DistinctDataBag extends DefaultAbstractBag {
                 // because we don't support calls to add() after calls to
                 // iterator(), and spill() won't create empty files.
                 try {
-                    in = new DataInputStream(new BufferedInputStream(
-                        new FileInputStream(mSpillFiles.get(
-                                mSpillFiles.size() - 1))));
+                    in = openSpillFile(mSpillFiles.get(mSpillFiles.size() - 1));
                     if (mStreams == null) {
                         mMergeTree = new TreeSet<TContainer>();
                         // We didn't have any files before this spill.
                         mStreams = new ArrayList<DataInputStream>(1);
                     }
                     mStreams.add(in);
-                } catch (FileNotFoundException fnfe) {
+                } catch (IOException ioe) {
                     // We can't find our own spill file?  That should never
                     // happen.
                     String msg = "Unable to find our spill file.";
-                    log.fatal(msg, fnfe);
-                    throw new RuntimeException(msg, fnfe);
+                    log.fatal(msg, ioe);
+                    throw new RuntimeException(msg, ioe);
                 }
 
                 // Fast forward past the tuples we've already put in the
@@ -356,19 +352,17 @@ public class DistinctDataBag extends DefaultAbstractBag {
                 Iterator<File> i = mSpillFiles.iterator();
                 while (i.hasNext()) {
                     try {
-                        DataInputStream in =
-                            new DataInputStream(new BufferedInputStream(
-                                new FileInputStream(i.next())));
+                        DataInputStream in = openSpillFile(i.next());
                         mStreams.add(in);
                         // Add the first tuple from this file into the
                         // merge queue.
                         addToQueue(null, mStreams.size() - 1);
-                    } catch (FileNotFoundException fnfe) {
+                    } catch (IOException ioe) {
                         // We can't find our own spill file?  That should
                         // never happen.
                         String msg = "Unable to find our spill file.";
-                        log.fatal(msg, fnfe);
-                        throw new RuntimeException(msg, fnfe);
+                        log.fatal(msg, ioe);
+                        throw new RuntimeException(msg, ioe);
                     }
                 }
 
@@ -505,20 +499,18 @@ public class DistinctDataBag extends DefaultAbstractBag {
                     for (int j = 0; j < MAX_SPILL_FILES; j++) {
                         try {
                             File f = i.next();
-                            DataInputStream in =
-                                new DataInputStream(new BufferedInputStream(
-                                    new FileInputStream(f)));
+                            DataInputStream in = openSpillFile(f);
                             mStreams.add(in);
                             addToQueue(null, mStreams.size() - 1);
                             i.remove();
                             filesToDelete.add(f);
 
-                        } catch (FileNotFoundException fnfe) {
+                        } catch (IOException ioe) {
                             // We can't find our own spill file?  That should
                             // neer happen.
                             String msg = "Unable to find our spill file.";
-                            log.fatal(msg, fnfe);
-                            throw new RuntimeException(msg, fnfe);
+                            log.fatal(msg, ioe);
+                            throw new RuntimeException(msg, ioe);
                         }
                     }
 
@@ -37,6 +37,13 @@ public class InterSedesFactory {
         }
         return instance;
     }
+
+    /**
+     * @return a new {@link DictionaryInterSedes}, which must only be used for a single stream
+     */
+    public static DictionaryInterSedes newDictionaryInterSedes() {
+        return new DictionaryInterSedes();
+    }
     
 
 }
@@ -17,13 +17,10 @@
  */
 package org.apache.pig.data;
 
-import java.io.BufferedInputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.EOFException;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -34,6 +31,7 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.pig.PigCounters;
 import org.apache.pig.classification.InterfaceAudience;
 import org.apache.pig.classification.InterfaceStability;
+import org.apache.pig.impl.util.SpillableMemoryManager;
 
 @InterfaceAudience.Private
 @InterfaceStability.Evolving
@@ -48,6 +46,10 @@ public class InternalCachedBag extends SelfSpillBag {
 
     // used to store number of tuples spilled until counter is incremented
     private transient int numTuplesSpilled = 0; 
+
+    // set when the SpillableMemoryManager memory budget is exceeded,
+    // all further tuples go to the spill file
+    private transient boolean overBudget;
  
     private static final InterSedes SEDES = InterSedesFactory.getInterSedesInstance();
 
@@ -78,11 +80,15 @@ public class InternalCachedBag extends SelfSpillBag {
             throw new IllegalStateException("InternalCachedBag is closed for adding new tuples");
         }
                 
-        if(mContents.size() < memLimit.getCacheLimit())  {
-            mContents.add(t);           
-            if(mContents.size() < 100)
-            {
-                memLimit.addNewObjSize(t.getMemorySize());
+        if(!overBudget && mContents.size() < memLimit.getCacheLimit())  {
+            mContents.add(t);
+            sampleMemorySize(t);
+            if ((mContents.size() & 0x3ff) == 0) {
+                SpillableMemoryManager manager = SpillableMemoryManager.getInstance();
+                if (manager.isMemoryBudgetEnabled()) {
+                    overBudget = manager.updateMemoryReservation(this,
+                            mContents.size() * memLimit.getAverageObjSize());
+                }
             }
         } else {
             // above cacheLimit, spill to disk
@@ -136,7 +142,9 @@ public class InternalCachedBag extends SelfSpillBag {
     	    addDone();
     	}
         super.clear();
+        SpillableMemoryManager.getInstance().releaseMemoryReservation(this);
         addDone = false;
+        overBudget = false;
         out = null;
     }
     
@@ -178,11 +186,11 @@ public class InternalCachedBag extends SelfSpillBag {
             if(mSpillFiles != null && mSpillFiles.size() > 0) {
                 File file = mSpillFiles.get(0);
                 try {
-                    in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+                    in = openSpillFile(file);
                 }
-                catch(FileNotFoundException fnfe) {
+                catch(IOException ioe) {
                     String msg = "Unable to find our spill file.";
-                    throw new RuntimeException(msg, fnfe);
+                    throw new RuntimeException(msg, ioe);
                 }
             }
         }
@@ -17,13 +17,10 @@
  */
 package org.apache.pig.data;
 
-import java.io.BufferedInputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.EOFException;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -143,12 +140,8 @@ public class InternalDistinctBag extends SortedSpillBag {
 
             if (mContents.add(t)) {
                 mSize ++;
-
-                // check how many tuples memory can hold by getting average
-                // size of first 100 tuples
-                if(mSize < 100 && (mSpillFiles == null || mSpillFiles.isEmpty())) {
-                    memLimit.addNewObjSize(t.getMemorySize());
-                }
+                // memLimit checks how many tuples memory can hold from the sampled sizes
+                sampleMemorySize(t);
             }
             markSpillableIfNecessary();
         }
@@ -259,19 +252,17 @@ public class InternalDistinctBag extends SortedSpillBag {
                 Iterator<File> i = mSpillFiles.iterator();
                 while (i.hasNext()) {
                     try {
-                        DataInputStream in =
-                            new DataInputStream(new BufferedInputStream(
-                                new FileInputStream(i.next())));
+                        DataInputStream in = openSpillFile(i.next());
                         mStreams.add(in);
                         // Add the first tuple from this file into the
                         // merge queue.
                         addToQueue(null, mStreams.size() - 1);
-                    } catch (FileNotFoundException fnfe) {
+                    } catch (IOException ioe) {
                         // We can't find our own spill file?  That should
                         // never happen.
                         String msg = "Unable to find our spill file.";
-                        log.fatal(msg, fnfe);
-                        throw new RuntimeException(msg, fnfe);
+                        log.fatal(msg, ioe);
+                        throw new RuntimeException(msg, ioe);
                     }
                 }
 
@@ -405,19 +396,17 @@ public class InternalDistinctBag extends SortedSpillBag {
                     for (int j = 0; j < MAX_SPILL_FILES; j++) {
                         try {
                             File f = i.next();
-                            DataInputStream in =
-                                new DataInputStream(new BufferedInputStream(
-                                    new FileInputStream(f)));
+                            DataInputStream in = openSpillFile(f);
                             mStreams.add(in);
                             addToQueue(null, mStreams.size() - 1);
                             i.remove();
                             filesToDelete.add(f);
-                        } catch (FileNotFoundException fnfe) {
+                        } catch (IOException ioe) {
                             // We can't find our own spill file?  That should
                             // neer happen.
                             String msg = "Unable to find our spill file.";
-                            log.fatal(msg, fnfe);
-                            throw new RuntimeException(msg, fnfe);
+                            log.fatal(msg, ioe);
+                            throw new RuntimeException(msg, ioe);
                         }
                     }
 
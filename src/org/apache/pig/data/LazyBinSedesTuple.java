@@ -0,0 +1,375 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pig.data;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.pig.backend.executionengine.ExecException;
+import org.apache.pig.classification.InterfaceAudience;
+import org.apache.pig.data.utils.SedesHelper;
+
+/**
+ * A tuple read from the {@link BinInterSedes} serialized form which keeps that form,
+ * and only deserializes a field when it is accessed. When reading from a
+ * {@link DataInputBuffer}, such as the values handed to a reducer, the serialized
+ * bytes of the tuple are copied as is, after a scan which only computes where every
+ * field starts. Fields which have not been set, and whose value could not have been
+ * modified in place, are written back by copying their bytes, so a tuple which is
+ * passed through untouched is written with a single copy.
+ * <p>
+ * Falls back to deserializing every field when the tuple holds fields whose length
+ * is only known by deserializing them, or when reading from another input.
+ */
+@InterfaceAudience.Private
+public class LazyBinSedesTuple extends AbstractTuple {
+    private static final long serialVersionUID = 1L;
+    private static final BinInterSedes sedes = (BinInterSedes) InterSedesFactory.getInterSedesInstance();
+    private static final byte[] EMPTY_BUF = new byte[0];
+    private static final int[] EMPTY_OFFSETS = new int[] { 0 };
+
+    // serialized tuple; the serialized field j is in [offsets[j], offsets[j + 1])
+    private byte[] buf = EMPTY_BUF;
+    private int[] offsets = EMPTY_OFFSETS;
+    // whether buf was read by another tuple, this one only holds some of its fields
+    private boolean sharedBuf = false;
+
+    private int size;
+    // serialized field holding the value of each field, or -1 if it is held in values
+    private int[] rawFields = new int[0];
+    // set fields, or deserialized ones
+    private Object[] values = new Object[0];
+
+    private transient DataInputBuffer fieldInput;
+
+    /**
+     * Default constructor, public so that hadoop can call it directly. Inside pig
+     * use {@link #read(DataInput)} instead.
+     */
+    public LazyBinSedesTuple() {
+    }
+
+    private LazyBinSedesTuple(byte[] buf, int[] offsets, int size) {
+        this.buf = buf;
+        this.offsets = offsets;
+        this.size = size;
+        sharedBuf = true;
+        rawFields = new int[size];
+        Arrays.fill(rawFields, -1);
+        values = new Object[size];
+    }
+
+    /**
+     * Reads a tuple written by {@link BinInterSedes}. Only generic tuples read from a
+     * {@link DataInputBuffer} are read lazily.
+     */
+    public static Tuple read(DataInput in) throws IOException {
+        if (in instanceof DataInputBuffer) {
+            DataInputBuffer dib = (DataInputBuffer) in;
+            if (dib.getPosition() < dib.getLength() && isGenericTupleByte(dib.getData()[dib.getPosition()])) {
+                LazyBinSedesTuple t = new LazyBinSedesTuple();
+                t.readFields(in);
+                return t;
+            }
+        }
+        return sedes.readTuple(in);
+    }
+
+    private static boolean isGenericTupleByte(byte b) {
+        return BinInterSedes.isTupleByte(b) && b != BinInterSedes.SCHEMA_TUPLE
+                && b != BinInterSedes.SCHEMA_TUPLE_BYTE_INDEX && b != BinInterSedes.SCHEMA_TUPLE_SHORT_INDEX;
+    }
+
+    /**
+     * @return a tuple with the given number of null fields, which can take fields of
+     *  this tuple without deserializing them through {@link #setField(int, LazyBinSedesTuple, int)}
+     */
+    public LazyBinSedesTuple newTuple(int newSize) {
+        return new LazyBinSedesTuple(buf, offsets, newSize);
+    }
+
+    /**
+     * Sets the field of this tuple to the field of the given tuple, without deserializing
+     * it if both tuples share the same serialized form.
+     */
+    public void setField(int fieldNum, LazyBinSedesTuple source, int sourceFieldNum) throws ExecException {
+        checkIndex(fieldNum);
+        source.checkIndex(sourceFieldNum);
+        if (source.buf == buf) {
+            rawFields[fieldNum] = source.rawFields[sourceFieldNum];
+            values[fieldNum] = source.values[sourceFieldNum];
+        } else {
+            set(fieldNum, source.get(sourceFieldNum));
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Object get(int fieldNum) throws ExecException {
+        checkIndex(fieldNum);
+        Object val = values[fieldNum];
+        int raw = rawFields[fieldNum];
+        if (val != null || raw < 0 || buf[offsets[raw]] == BinInterSedes.NULL) {
+            return val;
+        }
+        if (fieldInput == null) {
+            fieldInput = new DataInputBuffer();
+        }
+        fieldInput.reset(buf, offsets[raw], offsets[raw + 1] - offsets[raw]);
+        try {
+            val = sedes.readDatum(fieldInput);
+        } catch (IOException e) {
+            throw new ExecException("Unable to deserialize field " + fieldNum, e);
+        }
+        values[fieldNum] = val;
+        if (val instanceof Tuple || val instanceof DataBag || val instanceof Map || val instanceof DataByteArray) {
+            // may be modified in place, so it can not be written from buf anymore
+            rawFields[fieldNum] = -1;
+        }
+        return val;
+    }
+
+    @Override
+    public List<Object> getAll() {
+        List<Object> all = new ArrayList<Object>(size);
+        for (int i = 0; i < size; i++) {
+            try {
+                all.add(get(i));
+            } catch (ExecException e) {
+                throw new RuntimeException("Unable to get field " + i, e);
+            }
+        }
+        return all;
+    }
+
+    @Override
+    public void set(int fieldNum, Object val) throws ExecException {
+        checkIndex(fieldNum);
+        values[fieldNum] = val;
+        rawFields[fieldNum] = -1;
+    }
+
+    @Override
+    public void append(Object val) {
+        if (size == values.length) {
+            int newCapacity = Math.max(4, size * 2);
+            values = Arrays.copyOf(values, newCapacity);
+            rawFields = Arrays.copyOf(rawFields, newCapacity);
+        }
+        values[size] = val;
+        rawFields[size] = -1;
+        size++;
+    }
+
+    @Override
+    public boolean isNull(int fieldNum) throws ExecException {
+        checkIndex(fieldNum);
+        int raw = rawFields[fieldNum];
+        if (raw >= 0 && values[fieldNum] == null) {
+            return buf[offsets[raw]] == BinInterSedes.NULL;
+        }
+        return values[fieldNum] == null;
+    }
+
+    private void checkIndex(int fieldNum) throws ExecException {
+        if (fieldNum < 0 || fieldNum >= size) {
+            throw new ExecException("Index " + fieldNum + " out of bounds for tuple of size " + size);
+        }
+    }
+
+    /**
+     * @return whether the tuple is still exactly what has been read
+     */
+    private boolean isUnmodified() {
+        if (buf.length == 0 || size != offsets.length - 1) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            if (rawFields[i] != i) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public long getMemorySize() {
+        // 8 - object header, 4 - size, 1 - sharedBuf, 5 * 8 - references
+        long sum = SizeUtil.roundToEight(8 + 4 + 1 + 5 * 8);
+        if (sharedBuf) {
+            // the serialized form is counted by the tuple which read it, only
+            // count the fields held by this one
+            for (int i = 0; i < size; i++) {
+                int raw = rawFields[i];
+                if (raw >= 0) {
+                    sum += offsets[raw + 1] - offsets[raw];
+                }
+            }
+        } else {
+            // 16 - array header
+            sum += SizeUtil.roundToEight(16 + buf.length);
+            sum += SizeUtil.roundToEight(16 + 4L * offsets.length);
+        }
+        sum += SizeUtil.roundToEight(16 + 4L * rawFields.length);
+        sum += SizeUtil.roundToEight(16 + 8L * values.length);
+        for (int i = 0; i < size; i++) {
+            sum += SizeUtil.getPigObjMemSize(values[i]);
+        }
+        return sum;
+    }
+
+    @Override
+    public int compareTo(Object other) {
+        if (!(other instanceof Tuple)) {
+            return DataType.compare(this, other);
+        }
+        Tuple t = (Tuple) other;
+        int tSz = t.size();
+        if (tSz != size) {
+            return size < tSz ? -1 : 1;
+        }
+        for (int i = 0; i < size; i++) {
+            try {
+                int c = DataType.compare(get(i), t.get(i));
+                if (c != 0) {
+                    return c;
+                }
+            } catch (ExecException e) {
+                throw new RuntimeException("Unable to compare tuples", e);
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 17;
+        for (int i = 0; i < size; i++) {
+            try {
+                Object o = get(i);
+                if (o != null) {
+                    hash = 31 * hash + o.hashCode();
+                }
+            } catch (ExecException e) {
+                throw new RuntimeException("Unable to get field " + i, e);
+            }
+        }
+        return hash;
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        if (isUnmodified()) {
+            out.write(buf, 0, buf.length);
+            return;
+        }
+        SedesHelper.writeTupleSize(out, size);
+        for (int i = 0; i < size; i++) {
+            int raw = rawFields[i];
+            if (raw >= 0) {
+                out.write(buf, offsets[raw], offsets[raw + 1] - offsets[raw]);
+            } else {
+                sedes.writeDatum(out, values[i]);
+            }
+        }
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        byte type = in.readByte();
+        if (!isGenericTupleByte(type)) {
+            Tuple t = sedes.readTuple(in, type);
+            reset(EMPTY_BUF, EMPTY_OFFSETS, 0);
+            for (int i = 0; i < t.size(); i++) {
+                append(t.get(i));
+            }
+            return;
+        }
+        int sz = sedes.getTupleSize(in, type);
+        if (in instanceof DataInputBuffer) {
+            DataInputBuffer dib = (DataInputBuffer) in;
+            byte[] data = dib.getData();
+            int start = dib.getPosition();
+            int[] fieldOffsets = new int[sz + 1];
+            int pos = start;
+            for (int i = 0; i < sz; i++) {
+                fieldOffsets[i] = pos;
+                int len = BinInterSedes.getSerializedLength(data, pos);
+                if (len < 0) {
+                    fieldOffsets = null;
+                    break;
+                }
+                pos += len;
+            }
+            if (fieldOffsets != null) {
+                // keep the header, so that an unmodified tuple is written with a single copy
+                int begin = start - headerLength(type);
+                fieldOffsets[sz] = pos;
+                for (int i = 0; i <= sz; i++) {
+                    fieldOffsets[i] -= begin;
+                }
+                reset(Arrays.copyOfRange(data, begin, pos), fieldOffsets, sz);
+                for (int i = 0; i < sz; i++) {
+                    rawFields[i] = i;
+                }
+                dib.skipBytes(pos - start);
+                return;
+            }
+        }
+        reset(EMPTY_BUF, EMPTY_OFFSETS, sz);
+        for (int i = 0; i < sz; i++) {
+            values[i] = sedes.readDatum(in);
+        }
+    }
+
+    /**
+     * @return the length of the type byte and size which precede the fields
+     */
+    private static int headerLength(byte type) {
+        switch (type) {
+        case BinInterSedes.TINYTUPLE:
+            return 2;
+        case BinInterSedes.SMALLTUPLE:
+            return 3;
+        case BinInterSedes.TUPLE:
+            return 5;
+        default:
+            return 1;
+        }
+    }
+
+    private void reset(byte[] buf, int[] offsets, int size) {
+        this.buf = buf;
+        this.offsets = offsets;
+        this.size = size;
+        sharedBuf = false;
+        rawFields = new int[size];
+        Arrays.fill(rawFields, -1);
+        values = new Object[size];
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pig.data;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.apache.pig.classification.InterfaceAudience;
+
+/**
+ * Merges sorted runs using a tournament tree of losers. Each internal node
+ * keeps the run that lost the comparison at that node, so replacing the
+ * smallest element only replays the path from its leaf to the root:
+ * log2(k) comparisons per element instead of the up to 2*log2(k) of a binary
+ * heap. Equal elements are returned in the order of their runs.
+ * Runs must not contain null elements.
+ */
+@InterfaceAudience.Private
+public class LoserTree<T> implements Iterator<T> {
+
+    private final Iterator<? extends T>[] runs;
+    private final Comparator<? super T> comp;
+    // Current head of each run, null once the run is exhausted
+    private final Object[] heads;
+    // tree[0] is the run holding the smallest element, tree[1..k-1] the losers
+    private final int[] tree;
+    private final int k;
+
+    @SuppressWarnings("unchecked")
+    public LoserTree(List<? extends Iterator<? extends T>> runs, Comparator<? super T> comp) {
+        this.k = runs.size();
+        this.runs = (Iterator<? extends T>[]) runs.toArray(new Iterator<?>[k]);
+        this.comp = comp;
+        heads = new Object[k];
+        tree = new int[Math.max(k, 1)];
+        for (int i = 0; i < k; i++) {
+            heads[i] = this.runs[i].hasNext() ? this.runs[i].next() : null;
+        }
+        if (k > 1) {
+            // Play the initial tournament bottom up. Leaf i sits at
+            // position k + i of the implicit tree.
+            int[] winners = new int[2 * k];
+            for (int i = 0; i < k; i++) {
+                winners[k + i] = i;
+            }
+            for (int node = k - 1; node > 0; node--) {
+                int left = winners[2 * node];
+                int right = winners[2 * node + 1];
+                if (beats(left, right)) {
+                    winners[node] = left;
+                    tree[node] = right;
+                } else {
+                    winners[node] = right;
+                    tree[node] = left;
+                }
+            }
+            tree[0] = winners[1];
+        }
+    }
+
+    /**
+     * @return true if the head of run a has to be returned before the
+     * head of run b
+     */
+    @SuppressWarnings("unchecked")
+    private boolean beats(int a, int b) {
+        if (heads[a] == null) {
+            return false;
+        }
+        if (heads[b] == null) {
+            return true;
+        }
+        int c = comp.compare((T) heads[a], (T) heads[b]);
+        return c < 0 || (c == 0 && a < b);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return k > 0 && heads[tree[0]] != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        int winner = tree[0];
+        T result = (T) heads[winner];
+        heads[winner] = runs[winner].hasNext() ? runs[winner].next() : null;
+        // Replay the matches on the path from the leaf to the root
+        for (int node = (winner + k) >>> 1; node > 0; node >>>= 1) {
+            if (beats(tree[node], winner)) {
+                int loser = winner;
+                winner = tree[node];
+                tree[node] = loser;
+            }
+        }
+        tree[0] = winner;
+        return result;
+    }
+
+    /**
+     * Not implemented.
+     */
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pig.data;
+
+import java.io.Serializable;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.apache.pig.classification.InterfaceAudience;
+import org.apache.pig.classification.InterfaceStability;
+
+/**
+ * Keeps a running estimate of the average memory size of the objects added to a
+ * container, such as the tuples of a bag, without measuring all of them. The first
+ * {@link #SAMPLE_SIZE} objects are all measured, and the n-th object after them is
+ * measured with a probability of SAMPLE_SIZE / n, as in reservoir sampling. Every
+ * measured size is weighted by the inverse of the probability it had to be measured,
+ * so the estimate covers all the objects added so far, not only the first ones, while
+ * only measuring about SAMPLE_SIZE * (1 + ln(n / SAMPLE_SIZE)) of them. Both adding an
+ * object and getting the estimate are O(1) on average.
+ */
+@InterfaceAudience.Private
+@InterfaceStability.Evolving
+public class MemorySizeSampler implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Number of objects the estimate is based on, at any time.
+     */
+    public static final int SAMPLE_SIZE = 100;
+
+    /**
+     * Memory size of an instance of this class, for the containers to account for it.
+     * 8 - object header, 8 - count, 8 - estimatedTotal, 8 - measured
+     */
+    public static final long MEMORY_SIZE = 32;
+
+    // number of objects added
+    private long count = 0;
+    // estimate of the total memory size of the objects added
+    private double estimatedTotal = 0;
+    // number of objects actually measured
+    private long measured = 0;
+
+    /**
+     * Counts another object, and tells whether it should be measured. If so, its size
+     * has to be given to {@link #addSample(long)} before the next call.
+     */
+    public boolean sampleNext() {
+        ++count;
+        return count <= SAMPLE_SIZE || ThreadLocalRandom.current().nextDouble() * count < SAMPLE_SIZE;
+    }
+
+    /**
+     * Gives the memory size of the object for which {@link #sampleNext()} has just
+     * returned true.
+     */
+    public void addSample(long memorySize) {
+        ++measured;
+        estimatedTotal += count <= SAMPLE_SIZE ? memorySize : (double) memorySize * count / SAMPLE_SIZE;
+    }
+
+    /**
+     * Counts the given tuple, measuring it if it is sampled.
+     */
+    public void add(Tuple t) {
+        if (sampleNext()) {
+            addSample(t == null ? 0 : t.getMemorySize());
+        }
+    }
+
+    /**
+     * @return the estimated average memory size of the objects added, 0 if none were
+     */
+    public long getAverageSize() {
+        return count == 0 ? 0 : (long) (estimatedTotal / count);
+    }
+
+    /**
+     * @return the number of objects added
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the number of objects which have been measured
+     */
+    public long getMeasuredCount() {
+        return measured;
+    }
+
+    /**
+     * Forgets all the objects added.
+     */
+    public void reset() {
+        count = 0;
+        estimatedTotal = 0;
+        measured = 0;
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pig.data;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import org.apache.pig.PigException;
+import org.apache.pig.backend.executionengine.ExecException;
+import org.apache.pig.classification.InterfaceAudience;
+import org.joda.time.DateTime;
+
+/**
+ * Encodes sort keys as normalized byte strings: comparing two encoded keys
+ * as unsigned bytes gives the same result as comparing the tuples with
+ * {@link BinInterSedes.BinInterSedesTupleRawComparator} for the same sort
+ * order. Every field is written as its {@link DataType} followed by an order
+ * preserving, self delimiting encoding of its value, and all the bytes of
+ * descending fields are inverted.
+ * <p>
+ * The first byte of an encoded key is not part of the order, it is 1 if a
+ * top level field of the tuple is null and 0 otherwise.
+ * <p>
+ * Maps, bags, bigdecimals and generic writables are not supported, see
+ * {@link #isSupportedType(byte)}.
+ */
+@InterfaceAudience.Private
+public class NormalizedKeyEncoder {
+
+    private final boolean[] mAsc;
+    private final boolean mWholeTuple;
+
+    private byte[] mBuf = new byte[64];
+    private int mLen;
+
+    /**
+     * @param asc sort order of the columns of the key, or a single entry for
+     * the whole tuple
+     */
+    public NormalizedKeyEncoder(boolean[] asc) {
+        mAsc = (asc == null) ? new boolean[] {true} : asc;
+        mWholeTuple = (mAsc.length == 1);
+    }
+
+    /**
+     * @param type a {@link DataType}
+     * @return true if keys fields of this type can be encoded
+     */
+    public static boolean isSupportedType(byte type) {
+        switch (type) {
+        case DataType.NULL:
+        case DataType.BOOLEAN:
+        case DataType.BYTE:
+        case DataType.INTEGER:
+        case DataType.LONG:
+        case DataType.FLOAT:
+        case DataType.DOUBLE:
+        case DataType.DATETIME:
+        case DataType.BYTEARRAY:
+        case DataType.CHARARRAY:
+        case DataType.BIGINTEGER:
+        case DataType.TUPLE:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Encode a sort key.
+     * @param t the key, must not be null
+     * @return the normalized key
+     * @throws ExecException if a field has a type that is not supported
+     */
+    public byte[] encode(Tuple t) throws ExecException {
+        mLen = 0;
+        boolean hasNullField = false;
+        append((byte) 0);
+        int size = t.size();
+        appendInt(size ^ Integer.MIN_VALUE);
+        for (int i = 0; i < size; i++) {
+            Object o = t.get(i);
+            if (o == null) {
+                hasNullField = true;
+            }
+            int start = mLen;
+            appendDatum(o);
+            if ((mWholeTuple && !mAsc[0]) || (!mWholeTuple && !mAsc[i])) {
+                for (int j = start; j < mLen; j++) {
+                    mBuf[j] = (byte) ~mBuf[j];
+                }
+            }
+        }
+        mBuf[0] = (byte) (hasNullField ? 1 : 0);
+        return Arrays.copyOf(mBuf, mLen);
+    }
+
+    private void appendDatum(Object o) throws ExecException {
+        byte type = DataType.findType(o);
+        append(type);
+        switch (type) {
+        case DataType.NULL:
+            break;
+        case DataType.BOOLEAN:
+            append((byte) (((Boolean) o) ? 1 : 0));
+            break;
+        case DataType.BYTE:
+            append((byte) ((Byte) o ^ Byte.MIN_VALUE));
+            break;
+        case DataType.INTEGER:
+            appendInt((Integer) o ^ Integer.MIN_VALUE);
+            break;
+        case DataType.LONG:
+            appendLong((Long) o ^ Long.MIN_VALUE);
+            break;
+        case DataType.FLOAT: {
+            // Same order as Float.compare: flip the sign bit of positive
+            // numbers and all bits of negative ones
+            int bits = Float.floatToIntBits((Float) o);
+            appendInt(bits ^ ((bits >> 31) | Integer.MIN_VALUE));
+            break;
+        }
+        case DataType.DOUBLE: {
+            long bits = Double.doubleToLongBits((Double) o);
+            appendLong(bits ^ ((bits >> 63) | Long.MIN_VALUE));
+            break;
+        }
+        case DataType.DATETIME:
+            appendLong(((DateTime) o).getMillis() ^ Long.MIN_VALUE);
+            break;
+        case DataType.BYTEARRAY: {
+            DataByteArray dba = (DataByteArray) o;
+            appendEscaped(dba.get(), 0, dba.size());
+            break;
+        }
+        case DataType.CHARARRAY:
+            appendString((String) o);
+            break;
+        case DataType.BIGINTEGER:
+            appendBigInteger((BigInteger) o);
+            break;
+        case DataType.TUPLE: {
+            Tuple t = (Tuple) o;
+            int size = t.size();
+            appendInt(size ^ Integer.MIN_VALUE);
+            for (int i = 0; i < size; i++) {
+                appendDatum(t.get(i));
+            }
+            break;
+        }
+        default:
+            int errCode = 2270;
+            String msg = "Type " + DataType.findTypeName(type)
+                    + " is not supported in normalized sort keys";
+            throw new ExecException(msg, errCode, PigException.BUG);
+        }
+    }
+
+    /**
+     * Strings are compared by String.compareTo, i.e. by UTF-16 code units.
+     * Each code unit is written like UTF-8 would write a code point of the
+     * same value, which keeps that order, and the result is escaped.
+     */
+    private void appendString(String s) {
+        int len = s.length();
+        for (int i = 0; i < len; i++) {
+            char c = s.charAt(i);
+            if (c == 0) {
+                ensureCapacity(2);
+                mBuf[mLen++] = 0;
+                mBuf[mLen++] = 1;
+            } else if (c < 0x80) {
+                append((byte) c);
+            } else if (c < 0x800) {
+                ensureCapacity(2);
+                mBuf[mLen++] = (byte) (0xc0 | (c >> 6));
+                mBuf[mLen++] = (byte) (0x80 | (c & 0x3f));
+            } else {
+                ensureCapacity(3);
+                mBuf[mLen++] = (byte) (0xe0 | (c >> 12));
+                mBuf[mLen++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                mBuf[mLen++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        appendTerminator();
+    }
+
+    /**
+     * Zero bytes are written as 0x00 0x01 and the value is terminated by
+     * 0x00 0x00, so a value sorts before all values it is a prefix of.
+     */
+    private void appendEscaped(byte[] b, int off, int len) {
+        ensureCapacity(len + 2);
+        for (int i = off; i < off + len; i++) {
+            if (b[i] == 0) {
+                ensureCapacity(off + len - i + 2);
+                mBuf[mLen++] = 0;
+                mBuf[mLen++] = 1;
+            } else {
+                mBuf[mLen++] = b[i];
+            }
+        }
+        appendTerminator();
+    }
+
+    private void appendTerminator() {
+        ensureCapacity(2);
+        mBuf[mLen++] = 0;
+        mBuf[mLen++] = 0;
+    }
+
+    /**
+     * Written as the signum, the length of the magnitude and the magnitude,
+     * with the length and magnitude of negative numbers inverted.
+     */
+    private void appendBigInteger(BigInteger bi) {
+        int signum = bi.signum();
+        append((byte) (signum + 1));
+        if (signum == 0) {
+            return;
+        }
+        byte[] magnitude = bi.abs().toByteArray();
+        int start = mLen;
+        appendInt(magnitude.length);
+        ensureCapacity(magnitude.length);
+        System.arraycopy(magnitude, 0, mBuf, mLen, magnitude.length);
+        mLen += magnitude.length;
+        if (signum < 0) {
+            for (int j = start; j < mLen; j++) {
+                mBuf[j] = (byte) ~mBuf[j];
+            }
+        }
+    }
+
+    private void appendInt(int v) {
+        ensureCapacity(4);
+        mBuf[mLen++] = (byte) (v >>> 24);
+        mBuf[mLen++] = (byte) (v >>> 16);
+        mBuf[mLen++] = (byte) (v >>> 8);
+        mBuf[mLen++] = (byte) v;
+    }
+
+    private void appendLong(long v) {
+        appendInt((int) (v >>> 32));
+        appendInt((int) v);
+    }
+
+    private void append(byte b) {
+        ensureCapacity(1);
+        mBuf[mLen++] = b;
+    }
+
+    private void ensureCapacity(int n) {
+        if (mLen + n > mBuf.length) {
+            mBuf = Arrays.copyOf(mBuf, Math.max(mBuf.length * 2, mLen + n));
+        }
+    }
+}
@@ -0,0 +1,336 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pig.data;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.pig.PigCounters;
+import org.apache.pig.classification.InterfaceAudience;
+import org.apache.pig.classification.InterfaceStability;
+
+/**
+ * A cached bag which keeps its tuples serialized in direct (off-heap)
+ * ByteBuffers obtained from {@link DirectBufferPool} instead of holding
+ * Tuple objects on the heap. Tuples are deserialized lazily while iterating.
+ * Once the buffers held by the bag exceed its share of memory, all of them
+ * are appended to the spill file with a single gathering write and handed
+ * back to the pool.
+ * <p>
+ * Like {@link InternalCachedBag}, no tuples may be added once the bag has
+ * been iterated. It is selected by setting pig.cachedbag.type to offheap.
+ */
+@InterfaceAudience.Private
+@InterfaceStability.Evolving
+public class OffHeapCachedBag extends SelfSpillBag {
+    private static final long serialVersionUID = 1L;
+
+    private static final Log log = LogFactory.getLog(OffHeapCachedBag.class);
+
+    private static final InterSedes SEDES = InterSedesFactory.getInterSedesInstance();
+
+    // Buffers holding the tuples that are still in memory, in insertion order.
+    private transient List<ByteBuffer> buffers;
+    private transient long bytesInMemory;
+    private transient long tuplesInMemory;
+
+    private transient WritableByteArray serBuffer;
+    private transient DataOutputStream serOut;
+
+    private transient FileChannel spillChannel;
+    private transient boolean addDone;
+
+    public OffHeapCachedBag() {
+        this(1, -1f);
+    }
+
+    public OffHeapCachedBag(int bagCount) {
+        this(bagCount, -1f);
+    }
+
+    public OffHeapCachedBag(int bagCount, float percent) {
+        super(bagCount, percent);
+        init();
+    }
+
+    private void init() {
+        mContents = new ArrayList<Tuple>();
+        buffers = new ArrayList<ByteBuffer>();
+        serBuffer = new WritableByteArray();
+        serOut = new DataOutputStream(serBuffer);
+        addDone = false;
+    }
+
+    @Override
+    public void add(Tuple t) {
+        if (addDone) {
+            throw new IllegalStateException("OffHeapCachedBag is closed for adding new tuples");
+        }
+
+        try {
+            serBuffer.reset();
+            SEDES.writeDatum(serOut, t, DataType.TUPLE);
+            int len = serBuffer.getLength();
+
+            ByteBuffer current = buffers.isEmpty() ? null : buffers.get(buffers.size() - 1);
+            if (current == null || current.remaining() < len) {
+                current = DirectBufferPool.getInstance().acquire(len);
+                buffers.add(current);
+            }
+            current.put(serBuffer.getData(), 0, len);
+            bytesInMemory += len;
+            tuplesInMemory++;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        mSize++;
+
+        if (bytesInMemory > memLimit.getMaxMemUsage()) {
+            if (spillChannel == null) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Memory can hold " + tuplesInMemory + " records, put the rest in spill file.");
+                }
+                incSpillCount(PigCounters.PROACTIVE_SPILL_COUNT_BAGS);
+            }
+            incSpillCount(PigCounters.PROACTIVE_SPILL_COUNT_RECS, spill());
+        }
+    }
+
+    /**
+     * Append all the buffers currently held in memory to the spill file and
+     * release them to the pool. Has no effect once the bag has been iterated,
+     * as iterators may still be reading from the buffers.
+     * @return number of tuples spilled
+     */
+    @Override
+    public long spill() {
+        if (addDone || buffers.isEmpty()) {
+            return 0;
+        }
+        try {
+            if (spillChannel == null) {
+                File f = createSpillFile();
+                spillChannel = new FileOutputStream(f).getChannel();
+            }
+            ByteBuffer[] srcs = new ByteBuffer[buffers.size()];
+            for (int i = 0; i < srcs.length; i++) {
+                srcs[i] = buffers.get(i);
+                srcs[i].flip();
+            }
+            long remaining = bytesInMemory;
+            while (remaining > 0) {
+                remaining -= spillChannel.write(srcs);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to spill contents to disk", e);
+        }
+
+        long spilled = tuplesInMemory;
+        releaseBuffers();
+        reportProgress();
+        return spilled;
+    }
+
+    private void releaseBuffers() {
+        DirectBufferPool pool = DirectBufferPool.getInstance();
+        for (ByteBuffer buf : buffers) {
+            pool.release(buf);
+        }
+        buffers.clear();
+        bytesInMemory = 0;
+        tuplesInMemory = 0;
+    }
+
+    private void addDone() {
+        if (spillChannel != null) {
+            try {
+                spillChannel.close();
+            } catch (IOException e) {
+                // ignore
+            }
+            spillChannel = null;
+        }
+        addDone = true;
+    }
+
+    /**
+     * Only the bookkeeping kept on the heap is reported, the serialized
+     * tuples live in direct memory.
+     */
+    @Override
+    public long getMemorySize() {
+        return 96 + buffers.size() * 64L;
+    }
+
+    @Override
+    public void clear() {
+        if (!addDone) {
+            addDone();
+        }
+        releaseBuffers();
+        super.clear();
+        addDone = false;
+    }
+
+    @Override
+    public boolean isDistinct() {
+        return false;
+    }
+
+    @Override
+    public boolean isSorted() {
+        return false;
+    }
+
+    @Override
+    public Iterator<Tuple> iterator() {
+        if (!addDone) {
+            // close the spill file and mark adding is done
+            // so further adding is disallowed.
+            addDone();
+        }
+        return new OffHeapBagIterator();
+    }
+
+    /**
+     * An InputStream reading the written part of a ByteBuffer without
+     * disturbing its position, so several iterators can share it.
+     */
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buf;
+
+        ByteBufferInputStream(ByteBuffer src) {
+            buf = src.duplicate();
+            buf.flip();
+        }
+
+        @Override
+        public int read() {
+            return buf.hasRemaining() ? buf.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!buf.hasRemaining()) {
+                return -1;
+            }
+            len = Math.min(len, buf.remaining());
+            buf.get(b, off, len);
+            return len;
+        }
+
+        @Override
+        public int available() {
+            return buf.remaining();
+        }
+    }
+
+    private class OffHeapBagIterator implements Iterator<Tuple> {
+        DataInputStream in;
+        // whether in reads the spill file rather than a buffer
+        boolean inSpillFile = false;
+        int bufferPtr = 0;
+        Tuple next;
+
+        long numTuplesRead = 0;
+
+        public OffHeapBagIterator() {
+            if (mSpillFiles != null && mSpillFiles.size() > 0) {
+                File file = mSpillFiles.get(0);
+                try {
+                    in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+                    inSpillFile = true;
+                }
+                catch (FileNotFoundException fnfe) {
+                    String msg = "Unable to find our spill file.";
+                    throw new RuntimeException(msg, fnfe);
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next != null) {
+                return true;
+            }
+
+            while (true) {
+                if (in == null) {
+                    if (bufferPtr >= buffers.size()) {
+                        return false;
+                    }
+                    in = new DataInputStream(new ByteBufferInputStream(buffers.get(bufferPtr++)));
+                    inSpillFile = false;
+                }
+                try {
+                    next = (Tuple) SEDES.readDatum(in);
+                    return true;
+                } catch (EOFException eof) {
+                    try {
+                        in.close();
+                    } catch (IOException e) {
+                        // ignore
+                    }
+                    in = null;
+                } catch (IOException e) {
+                    String msg = inSpillFile ? "Unable to read our spill file."
+                            : "Unable to read our off-heap buffer.";
+                    throw new RuntimeException(msg, e);
+                }
+            }
+        }
+
+        @Override
+        public Tuple next() {
+            if (next == null) {
+                if (!hasNext()) {
+                    throw new NoSuchElementException("No more elements from iterator");
+                }
+            }
+            Tuple t = next;
+            next = null;
+
+            numTuplesRead++;
+            // This will report progress every 16383 records.
+            if ((numTuplesRead & 0x3fff) == 0) reportProgress();
+
+            return t;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("remove is not supported for OffHeapBagIterator");
+        }
+    }
+}
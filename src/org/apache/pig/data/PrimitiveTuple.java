@@ -0,0 +1,360 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pig.data;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.pig.backend.executionengine.ExecException;
+import org.apache.pig.classification.InterfaceAudience;
+
+/**
+ * A tuple which keeps its int, long, float, double and boolean fields unboxed in a
+ * single long[] slab, and only keeps an Object[] for the fields of the other types.
+ * A byte per field records which fields are held in the slab and with what type;
+ * fields are null unless either the slab or the Object[] holds a value for them.
+ * Values are only boxed when they are accessed through {@link #get(int)}. This saves
+ * both heap and allocations for numeric heavy schemas. Serialization goes through
+ * {@link BinInterSedes}, which writes and reads the slab without boxing, in the same
+ * format as {@link BinSedesTuple}.
+ * <p>
+ * Created by {@link PrimitiveTupleFactory}.
+ */
+@InterfaceAudience.Private
+public class PrimitiveTuple extends AbstractTuple {
+    private static final long serialVersionUID = 1L;
+    private static final BinInterSedes sedes = (BinInterSedes) InterSedesFactory.getInterSedesInstance();
+    private static final int INITIAL_CAPACITY = 4;
+    private static final byte[] EMPTY_TYPES = new byte[0];
+    private static final long[] EMPTY_SLAB = new long[0];
+
+    private int size;
+    // DataType of the value held in slab, or 0 if the field is held in objects
+    private byte[] types;
+    private long[] slab;
+    // allocated on the first non primitive field
+    private Object[] objects;
+
+    /**
+     * Default constructor, public so that hadoop can call it directly. Inside pig
+     * use {@link PrimitiveTupleFactory} instead.
+     */
+    public PrimitiveTuple() {
+        types = EMPTY_TYPES;
+        slab = EMPTY_SLAB;
+    }
+
+    /**
+     * Construct a tuple with the given number of null fields.
+     * @param size Number of fields to allocate in the tuple.
+     */
+    PrimitiveTuple(int size) {
+        this.size = size;
+        types = new byte[size];
+        slab = new long[size];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Object get(int fieldNum) throws ExecException {
+        checkIndex(fieldNum);
+        switch (types[fieldNum]) {
+        case DataType.INTEGER:
+            return Integer.valueOf((int) slab[fieldNum]);
+        case DataType.LONG:
+            return Long.valueOf(slab[fieldNum]);
+        case DataType.FLOAT:
+            return Float.valueOf(Float.intBitsToFloat((int) slab[fieldNum]));
+        case DataType.DOUBLE:
+            return Double.valueOf(Double.longBitsToDouble(slab[fieldNum]));
+        case DataType.BOOLEAN:
+            return Boolean.valueOf(slab[fieldNum] != 0);
+        default:
+            return objects == null ? null : objects[fieldNum];
+        }
+    }
+
+    /**
+     * Returns a copy of the fields of the tuple, with the primitive fields boxed.
+     * Unlike {@link DefaultTuple#getAll()}, changes to the list are not reflected
+     * in the tuple.
+     */
+    @Override
+    public List<Object> getAll() {
+        List<Object> all = new ArrayList<Object>(size);
+        for (int i = 0; i < size; i++) {
+            try {
+                all.add(get(i));
+            } catch (ExecException e) {
+                throw new RuntimeException("Unable to get field " + i, e);
+            }
+        }
+        return all;
+    }
+
+    @Override
+    public void set(int fieldNum, Object val) throws ExecException {
+        checkIndex(fieldNum);
+        setField(fieldNum, val);
+    }
+
+    @Override
+    public void append(Object val) {
+        ensureCapacity(size + 1);
+        setField(size++, val);
+    }
+
+    @Override
+    public byte getType(int fieldNum) throws ExecException {
+        checkIndex(fieldNum);
+        byte type = types[fieldNum];
+        if (type != 0) {
+            return type;
+        }
+        return DataType.findType(objects == null ? null : objects[fieldNum]);
+    }
+
+    @Override
+    public boolean isNull(int fieldNum) throws ExecException {
+        checkIndex(fieldNum);
+        return types[fieldNum] == 0 && (objects == null || objects[fieldNum] == null);
+    }
+
+    void setField(int fieldNum, Object val) {
+        if (val instanceof Integer) {
+            setInt(fieldNum, ((Integer) val).intValue());
+        } else if (val instanceof Long) {
+            setLong(fieldNum, ((Long) val).longValue());
+        } else if (val instanceof Double) {
+            setDouble(fieldNum, ((Double) val).doubleValue());
+        } else if (val instanceof Float) {
+            setFloat(fieldNum, ((Float) val).floatValue());
+        } else if (val instanceof Boolean) {
+            setBoolean(fieldNum, ((Boolean) val).booleanValue());
+        } else {
+            setObject(fieldNum, val);
+        }
+    }
+
+    void setInt(int fieldNum, int val) {
+        setPrimitive(fieldNum, DataType.INTEGER, val);
+    }
+
+    void setLong(int fieldNum, long val) {
+        setPrimitive(fieldNum, DataType.LONG, val);
+    }
+
+    void setFloat(int fieldNum, float val) {
+        setPrimitive(fieldNum, DataType.FLOAT, Float.floatToRawIntBits(val));
+    }
+
+    void setDouble(int fieldNum, double val) {
+        setPrimitive(fieldNum, DataType.DOUBLE, Double.doubleToRawLongBits(val));
+    }
+
+    void setBoolean(int fieldNum, boolean val) {
+        setPrimitive(fieldNum, DataType.BOOLEAN, val ? 1 : 0);
+    }
+
+    private void setPrimitive(int fieldNum, byte type, long bits) {
+        types[fieldNum] = type;
+        slab[fieldNum] = bits;
+        if (objects != null) {
+            objects[fieldNum] = null;
+        }
+    }
+
+    void setObject(int fieldNum, Object val) {
+        types[fieldNum] = 0;
+        if (objects == null) {
+            if (val == null) {
+                return;
+            }
+            objects = new Object[types.length];
+        }
+        objects[fieldNum] = val;
+    }
+
+    /**
+     * @return the DataType of the field if it is held in the slab, 0 otherwise
+     */
+    byte getPrimitiveType(int fieldNum) {
+        return types[fieldNum];
+    }
+
+    /**
+     * @return the raw bits held in the slab for the field: the value of int, long
+     *  and boolean fields, and the IEEE 754 bits of float and double fields
+     */
+    long getPrimitiveBits(int fieldNum) {
+        return slab[fieldNum];
+    }
+
+    /**
+     * @return the field if it is not held in the slab
+     */
+    Object getObject(int fieldNum) {
+        return objects == null ? null : objects[fieldNum];
+    }
+
+    /**
+     * Sets the number of fields of the tuple, and nulls all of them.
+     */
+    void reset(int newSize) {
+        if (types.length < newSize) {
+            types = new byte[newSize];
+            slab = new long[newSize];
+            objects = null;
+        } else {
+            Arrays.fill(types, 0, size, (byte) 0);
+            if (objects != null) {
+                Arrays.fill(objects, 0, size, null);
+            }
+        }
+        size = newSize;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (types.length >= capacity) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, Math.max(INITIAL_CAPACITY, types.length * 2));
+        types = Arrays.copyOf(types, newCapacity);
+        slab = Arrays.copyOf(slab, newCapacity);
+        if (objects != null) {
+            objects = Arrays.copyOf(objects, newCapacity);
+        }
+    }
+
+    private void checkIndex(int fieldNum) throws ExecException {
+        if (fieldNum < 0 || fieldNum >= size) {
+            throw new ExecException("Index " + fieldNum + " out of bounds for tuple of size " + size);
+        }
+    }
+
+    @Override
+    public long getMemorySize() {
+        // 8 - object header, 4 - size, 3 * 8 - array references
+        long sum = SizeUtil.roundToEight(8 + 4 + 3 * 8);
+        // 16 - array header
+        sum += SizeUtil.roundToEight(16 + types.length);
+        sum += SizeUtil.roundToEight(16 + 8L * slab.length);
+        if (objects != null) {
+            sum += SizeUtil.roundToEight(16 + 8L * objects.length);
+            for (int i = 0; i < size; i++) {
+                sum += SizeUtil.getPigObjMemSize(objects[i]);
+            }
+        }
+        return sum;
+    }
+
+    @Override
+    public int compareTo(Object other) {
+        if (!(other instanceof Tuple)) {
+            return DataType.compare(this, other);
+        }
+        Tuple t = (Tuple) other;
+        int tSz = t.size();
+        if (tSz != size) {
+            return size < tSz ? -1 : 1;
+        }
+        PrimitiveTuple pt = other instanceof PrimitiveTuple ? (PrimitiveTuple) other : null;
+        for (int i = 0; i < size; i++) {
+            int c;
+            if (pt != null && types[i] != 0 && types[i] == pt.types[i]) {
+                c = comparePrimitive(types[i], slab[i], pt.slab[i]);
+            } else {
+                try {
+                    c = DataType.compare(get(i), t.get(i));
+                } catch (ExecException e) {
+                    throw new RuntimeException("Unable to compare tuples", e);
+                }
+            }
+            if (c != 0) {
+                return c;
+            }
+        }
+        return 0;
+    }
+
+    private static int comparePrimitive(byte type, long bits1, long bits2) {
+        switch (type) {
+        case DataType.FLOAT:
+            return Float.compare(Float.intBitsToFloat((int) bits1), Float.intBitsToFloat((int) bits2));
+        case DataType.DOUBLE:
+            return Double.compare(Double.longBitsToDouble(bits1), Double.longBitsToDouble(bits2));
+        default:
+            // int and boolean values are held sign extended, so they compare as longs
+            return bits1 < bits2 ? -1 : (bits1 == bits2 ? 0 : 1);
+        }
+    }
+
+    /**
+     * Same as {@link DefaultTuple#hashCode()}, without boxing the primitive fields.
+     */
+    @Override
+    public int hashCode() {
+        int hash = 17;
+        for (int i = 0; i < size; i++) {
+            long bits = slab[i];
+            switch (types[i]) {
+            case DataType.INTEGER:
+                hash = 31 * hash + (int) bits;
+                break;
+            case DataType.LONG:
+                hash = 31 * hash + (int) (bits ^ (bits >>> 32));
+                break;
+            case DataType.FLOAT:
+                hash = 31 * hash + Float.floatToIntBits(Float.intBitsToFloat((int) bits));
+                break;
+            case DataType.DOUBLE:
+                long doubleBits = Double.doubleToLongBits(Double.longBitsToDouble(bits));
+                hash = 31 * hash + (int) (doubleBits ^ (doubleBits >>> 32));
+                break;
+            case DataType.BOOLEAN:
+                hash = 31 * hash + (bits != 0 ? 1231 : 1237);
+                break;
+            default:
+                Object o = getObject(i);
+                if (o != null) {
+                    hash = 31 * hash + o.hashCode();
+                }
+            }
+        }
+        return hash;
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        sedes.writeDatum(out, this, DataType.TUPLE);
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        byte type = in.readByte();
+        sedes.readPrimitiveTupleFields(in, this, sedes.getTupleSize(in, type));
+    }
+}
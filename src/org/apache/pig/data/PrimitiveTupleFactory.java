@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pig.data;
+
+import java.util.List;
+
+import org.apache.pig.classification.InterfaceAudience;
+
+/**
+ * TupleFactory creating {@link PrimitiveTuple}s, which keep numeric fields unboxed.
+ * It is selected by setting the system property pig.data.tuple.factory.name to
+ * org.apache.pig.data.PrimitiveTupleFactory, both on the client and in the
+ * task JVMs (e.g. through mapreduce.map.java.opts / mapreduce.reduce.java.opts).
+ * The serialized form is the same as the one of {@link BinSedesTupleFactory}.
+ */
+@InterfaceAudience.Private
+public class PrimitiveTupleFactory extends TupleFactory {
+    @Override
+    public Tuple newTuple() {
+        return new PrimitiveTuple();
+    }
+
+    @Override
+    public Tuple newTuple(int size) {
+        return new PrimitiveTuple(size);
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public Tuple newTuple(List c) {
+        PrimitiveTuple t = new PrimitiveTuple(c.size());
+        int i = 0;
+        for (Object o : c) {
+            t.setField(i++, o);
+        }
+        return t;
+    }
+
+    /**
+     * The list is copied, as the fields are not kept in a list.
+     */
+    @Override
+    @SuppressWarnings("rawtypes")
+    public Tuple newTupleNoCopy(List list) {
+        return newTuple(list);
+    }
+
+    @Override
+    public Tuple newTuple(Object datum) {
+        PrimitiveTuple t = new PrimitiveTuple(1);
+        t.setField(0, datum);
+        return t;
+    }
+
+    @Override
+    public Class<? extends Tuple> tupleClass() {
+        return PrimitiveTuple.class;
+    }
+
+    @Override
+    public Class<? extends TupleRawComparator> tupleRawComparatorClass() {
+        return BinSedesTuple.getComparatorClass();
+    }
+
+    @Override
+    public boolean isFixedSize() {
+        return false;
+    }
+}
@@ -0,0 +1,1298 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pig.data;
+
+import static org.objectweb.asm.Opcodes.ACC_FINAL;
+import static org.objectweb.asm.Opcodes.ACC_PRIVATE;
+import static org.objectweb.asm.Opcodes.ACC_PROTECTED;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ACC_STATIC;
+import static org.objectweb.asm.Opcodes.ACC_SUPER;
+import static org.objectweb.asm.Opcodes.ACONST_NULL;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.ARETURN;
+import static org.objectweb.asm.Opcodes.ARRAYLENGTH;
+import static org.objectweb.asm.Opcodes.ASTORE;
+import static org.objectweb.asm.Opcodes.ATHROW;
+import static org.objectweb.asm.Opcodes.BALOAD;
+import static org.objectweb.asm.Opcodes.BASTORE;
+import static org.objectweb.asm.Opcodes.BIPUSH;
+import static org.objectweb.asm.Opcodes.CHECKCAST;
+import static org.objectweb.asm.Opcodes.DCONST_0;
+import static org.objectweb.asm.Opcodes.DUP;
+import static org.objectweb.asm.Opcodes.FCONST_0;
+import static org.objectweb.asm.Opcodes.GETFIELD;
+import static org.objectweb.asm.Opcodes.GETSTATIC;
+import static org.objectweb.asm.Opcodes.GOTO;
+import static org.objectweb.asm.Opcodes.I2L;
+import static org.objectweb.asm.Opcodes.IADD;
+import static org.objectweb.asm.Opcodes.ICONST_0;
+import static org.objectweb.asm.Opcodes.ICONST_M1;
+import static org.objectweb.asm.Opcodes.IFEQ;
+import static org.objectweb.asm.Opcodes.IFNE;
+import static org.objectweb.asm.Opcodes.IFNONNULL;
+import static org.objectweb.asm.Opcodes.IF_ICMPEQ;
+import static org.objectweb.asm.Opcodes.IF_ICMPGE;
+import static org.objectweb.asm.Opcodes.ILOAD;
+import static org.objectweb.asm.Opcodes.INSTANCEOF;
+import static org.objectweb.asm.Opcodes.INVOKEINTERFACE;
+import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
+import static org.objectweb.asm.Opcodes.INVOKESTATIC;
+import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
+import static org.objectweb.asm.Opcodes.IRETURN;
+import static org.objectweb.asm.Opcodes.ISTORE;
+import static org.objectweb.asm.Opcodes.LADD;
+import static org.objectweb.asm.Opcodes.LCONST_0;
+import static org.objectweb.asm.Opcodes.LMUL;
+import static org.objectweb.asm.Opcodes.LRETURN;
+import static org.objectweb.asm.Opcodes.NEW;
+import static org.objectweb.asm.Opcodes.NEWARRAY;
+import static org.objectweb.asm.Opcodes.POP;
+import static org.objectweb.asm.Opcodes.PUTFIELD;
+import static org.objectweb.asm.Opcodes.PUTSTATIC;
+import static org.objectweb.asm.Opcodes.RETURN;
+import static org.objectweb.asm.Opcodes.SIPUSH;
+import static org.objectweb.asm.Opcodes.T_BOOLEAN;
+import static org.objectweb.asm.Opcodes.V1_5;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.pig.classification.InterfaceAudience;
+import org.apache.pig.classification.InterfaceStability;
+import org.apache.pig.data.SchemaTupleClassGenerator.GenContext;
+import org.apache.pig.impl.logicalLayer.schema.Schema;
+import org.apache.pig.impl.util.ObjectSerializer;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Generates the bytecode of SchemaTuple classes directly with ASM. The generated
+ * classes behave like the ones compiled from the source produced by
+ * {@link SchemaTupleClassGenerator}, but no java compiler is needed at runtime.
+ * Every class is written as SchemaTuple_id.class to the code directory, together
+ * with a SchemaTuple_id$Gen.class for its {@link SchemaTuple.SchemaTupleQuickGenerator}.
+ */
+@InterfaceAudience.Private
+@InterfaceStability.Unstable
+class SchemaTupleBytecodeGenerator {
+    private static final String SCHEMA_TUPLE = "org/apache/pig/data/SchemaTuple";
+    private static final String APPENDABLE_SCHEMA_TUPLE = "org/apache/pig/data/AppendableSchemaTuple";
+    private static final String QUICK_GENERATOR = "org/apache/pig/data/SchemaTuple$SchemaTupleQuickGenerator";
+    private static final String TUPLE = "org/apache/pig/data/Tuple";
+    private static final String DATA_BAG = "org/apache/pig/data/DataBag";
+    private static final String BYTES_HELPER = "org/apache/pig/data/utils/BytesHelper";
+    private static final String SIZE_UTIL = "org/apache/pig/data/SizeUtil";
+    private static final String SCHEMA = "org/apache/pig/impl/logicalLayer/schema/Schema";
+    private static final String FIELD_SCHEMA = "org/apache/pig/impl/logicalLayer/schema/Schema$FieldSchema";
+    private static final String EXEC_EXCEPTION = "org/apache/pig/backend/executionengine/ExecException";
+    private static final String STRING_BUILDER = "java/lang/StringBuilder";
+    private static final String DATA_INPUT = "java/io/DataInput";
+    private static final String DATA_OUTPUT = "java/io/DataOutput";
+
+    private static final String[] EXEC_EXCEPTIONS = new String[] { EXEC_EXCEPTION };
+    private static final String[] IO_EXCEPTIONS = new String[] { "java/io/IOException" };
+
+    /**
+     * Types which have their own type aware getters and setters, in the order
+     * used by {@link SchemaTupleClassGenerator}.
+     */
+    private static final byte[] TYPE_AWARE_TYPES = new byte[] {
+        DataType.INTEGER, DataType.LONG, DataType.FLOAT, DataType.DOUBLE, DataType.BYTEARRAY,
+        DataType.CHARARRAY, DataType.BOOLEAN, DataType.DATETIME, DataType.BIGDECIMAL,
+        DataType.BIGINTEGER, DataType.TUPLE, DataType.BAG, DataType.MAP };
+
+    private SchemaTupleBytecodeGenerator() {}
+
+    /**
+     * Information about one field of the Schema being generated.
+     */
+    private static class Field {
+        final int pos;
+        final byte type;
+        // the byte and bit holding the null state, for primitive fields
+        int nullByte = -1;
+        int nullBit;
+        // the byte and bit holding the value, for boolean fields
+        int booleanByte = -1;
+        int booleanBit;
+        // the generated class of nested tuples
+        String nestedClass;
+
+        Field(int pos, byte type) {
+            this.pos = pos;
+            this.type = type;
+        }
+
+        boolean isPrimitive() {
+            return type == DataType.INTEGER || type == DataType.LONG || type == DataType.FLOAT
+                    || type == DataType.DOUBLE || type == DataType.BOOLEAN;
+        }
+
+        boolean isBoolean() {
+            return type == DataType.BOOLEAN;
+        }
+
+        boolean isTuple() {
+            return type == DataType.TUPLE;
+        }
+
+        /**
+         * @return the descriptor of the pos_ field
+         */
+        String fieldDesc() {
+            return isTuple() ? "L" + nestedClass + ";" : desc(type);
+        }
+
+        /**
+         * @return the descriptor used when calling the overloaded helpers of SchemaTuple
+         */
+        String argDesc() {
+            return desc(type);
+        }
+    }
+
+    /**
+     * Generates the class for the given Schema, and the classes of nested tuples, in
+     * the given directory.
+     * @param s the Schema to generate a SchemaTuple for
+     * @param appendable whether the SchemaTuple should be appendable
+     * @param id the identifier of the class
+     * @param codeDir the directory the class files are written to
+     * @param contexts the contexts in which the SchemaTuple is intended to be instantiated
+     */
+    static void generateSchemaTuple(Schema s, boolean appendable, int id, File codeDir, GenContext... contexts) {
+        String className = "SchemaTuple_" + id;
+        List<Field> fields = Lists.newArrayList();
+        int primitives = 0;
+        int booleans = 0;
+        int pos = 0;
+        for (Schema.FieldSchema fs : s.getFields()) {
+            Field f = new Field(pos++, fs.type);
+            desc(fs.type); // fails on unsupported types
+            if (f.isPrimitive()) {
+                f.nullByte = primitives / 8;
+                f.nullBit = primitives % 8;
+                primitives++;
+            }
+            if (f.isBoolean()) {
+                f.booleanByte = booleans / 8;
+                f.booleanBit = booleans % 8;
+                booleans++;
+            }
+            if (f.isTuple()) {
+                int nestedId = SchemaTupleClassGenerator.getNextGlobalClassIdentifier();
+                generateSchemaTuple(fs.schema, appendable, nestedId, codeDir);
+                f.nestedClass = "SchemaTuple_" + nestedId;
+            }
+            fields.add(f);
+        }
+
+        String serializedSchema;
+        try {
+            serializedSchema = ObjectSerializer.serialize(s);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to serialize schema: " + s, e);
+        }
+
+        Generator g = new Generator(className, appendable, id, fields,
+                (primitives + 7) / 8, (booleans + 7) / 8, serializedSchema);
+        writeClass(codeDir, className, g.generate(contexts));
+        writeClass(codeDir, className + "$Gen", g.generateQuickGenerator());
+    }
+
+    private static void writeClass(File codeDir, String className, byte[] bytes) {
+        File f = new File(codeDir, className + ".class");
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(f);
+            out.write(bytes);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to write generated class: " + f, e);
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    throw new RuntimeException("Unable to write generated class: " + f, e);
+                }
+            }
+        }
+    }
+
+    private static class Generator {
+        private final String className;
+        private final String superName;
+        private final int id;
+        private final List<Field> fields;
+        private final int nullBytes;
+        private final int booleanBytes;
+        private final String serializedSchema;
+        private ClassWriter cw;
+
+        Generator(String className, boolean appendable, int id, List<Field> fields,
+                int nullBytes, int booleanBytes, String serializedSchema) {
+            this.className = className;
+            this.superName = appendable ? APPENDABLE_SCHEMA_TUPLE : SCHEMA_TUPLE;
+            this.id = id;
+            this.fields = fields;
+            this.nullBytes = nullBytes;
+            this.booleanBytes = booleanBytes;
+            this.serializedSchema = serializedSchema;
+        }
+
+        byte[] generate(GenContext... contexts) {
+            cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+            cw.visit(V1_5, ACC_PUBLIC + ACC_SUPER, className,
+                    "L" + superName + "<L" + className + ";>;", superName, null);
+            for (GenContext context : contexts) {
+                String annotation = context.getAnnotationCanonicalName();
+                int i = annotation.lastIndexOf('.');
+                annotation = annotation.substring(0, i) + "$" + annotation.substring(i + 1);
+                i = annotation.lastIndexOf('.', i - 1);
+                annotation = annotation.substring(0, i) + "$" + annotation.substring(i + 1);
+                cw.visitAnnotation("L" + annotation.replace('.', '/') + ";", true).visitEnd();
+            }
+
+            generateFields();
+            generateStaticInit();
+            generateConstructor();
+            for (Field f : fields) {
+                generateCheckIfNull(f);
+                generateSetNull(f);
+                generateGetPos(f);
+                generateSetPos(f);
+            }
+            generateGetSchema();
+            generateSetIterator();
+            generateSetField();
+            generateGetField();
+            generateIsFieldNull();
+            generateGetFieldType();
+            generateSetSpecific();
+            generateSet();
+            generateNullsArray();
+            generateReadFields();
+            generateWriteElements();
+            generateIntMethod("generatedCodeSize", fields.size());
+            generateIntMethod("schemaSize", fields.size());
+            generateIntMethod("getSchemaTupleIdentifier", id);
+            generateMemorySize();
+            generateHashCode();
+            generateCompareTo();
+            generateCompareToSpecific();
+            generateIsSpecificSchemaTuple();
+            for (byte type : TYPE_AWARE_TYPES) {
+                generateTypeAwareSet(type);
+                generateTypeAwareGet(type);
+            }
+            generateGetQuickGenerator();
+
+            cw.visitEnd();
+            return cw.toByteArray();
+        }
+
+        byte[] generateQuickGenerator() {
+            String genName = className + "$Gen";
+            ClassWriter gw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+            gw.visit(V1_5, ACC_PUBLIC + ACC_SUPER, genName,
+                    "L" + QUICK_GENERATOR + "<L" + className + ";>;", QUICK_GENERATOR, null);
+
+            MethodVisitor mv = gw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+            mv.visitCode();
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitMethodInsn(INVOKESPECIAL, QUICK_GENERATOR, "<init>", "()V");
+            mv.visitInsn(RETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+
+            mv = gw.visitMethod(ACC_PUBLIC, "make", "()Ljava/lang/Object;", null, null);
+            mv.visitCode();
+            mv.visitTypeInsn(NEW, className);
+            mv.visitInsn(DUP);
+            mv.visitMethodInsn(INVOKESPECIAL, className, "<init>", "()V");
+            mv.visitInsn(ARETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+
+            gw.visitEnd();
+            return gw.toByteArray();
+        }
+
+        private void generateFields() {
+            cw.visitField(ACC_PRIVATE + ACC_STATIC, "schema", "L" + SCHEMA + ";", null, null).visitEnd();
+            for (int i = 0; i < nullBytes; i++) {
+                cw.visitField(ACC_PRIVATE, "isNull_" + i, "B", null, null).visitEnd();
+            }
+            for (int i = 0; i < booleanBytes; i++) {
+                cw.visitField(ACC_PRIVATE, "booleanByte_" + i, "B", null, null).visitEnd();
+            }
+            for (Field f : fields) {
+                if (!f.isBoolean()) {
+                    cw.visitField(ACC_PRIVATE, "pos_" + f.pos, f.fieldDesc(), null, null).visitEnd();
+                }
+            }
+        }
+
+        private void generateStaticInit() {
+            MethodVisitor mv = cw.visitMethod(ACC_STATIC, "<clinit>", "()V", null, null);
+            mv.visitCode();
+            mv.visitLdcInsn(serializedSchema);
+            mv.visitMethodInsn(INVOKESTATIC, SCHEMA_TUPLE, "staticSchemaGen",
+                    "(Ljava/lang/String;)L" + SCHEMA + ";");
+            mv.visitFieldInsn(PUTSTATIC, className, "schema", "L" + SCHEMA + ";");
+            mv.visitInsn(RETURN);
+            end(mv);
+        }
+
+        private void generateConstructor() {
+            MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+            mv.visitCode();
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitMethodInsn(INVOKESPECIAL, superName, "<init>", "()V");
+            // all primitive fields start out null
+            for (int i = 0; i < nullBytes; i++) {
+                mv.visitVarInsn(ALOAD, 0);
+                mv.visitInsn(ICONST_M1);
+                mv.visitFieldInsn(PUTFIELD, className, "isNull_" + i, "B");
+            }
+            mv.visitInsn(RETURN);
+            end(mv);
+        }
+
+        private void generateCheckIfNull(Field f) {
+            MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "checkIfNull_" + f.pos, "()Z", null, null);
+            mv.visitCode();
+            if (f.isPrimitive()) {
+                mv.visitVarInsn(ALOAD, 0);
+                mv.visitFieldInsn(GETFIELD, className, "isNull_" + f.nullByte, "B");
+                push(mv, f.nullBit);
+                mv.visitMethodInsn(INVOKESTATIC, BYTES_HELPER, "getBitByPos", "(BI)Z");
+                mv.visitInsn(IRETURN);
+            } else {
+                Label isNull = new Label();
+                mv.visitVarInsn(ALOAD, 0);
+                mv.visitFieldInsn(GETFIELD, className, "pos_" + f.pos, f.fieldDesc());
+                mv.visitJumpInsn(IFNONNULL, isNull);
+                push(mv, 1);
+                mv.visitInsn(IRETURN);
+                mv.visitLabel(isNull);
+                push(mv, 0);
+                mv.visitInsn(IRETURN);
+            }
+            end(mv);
+        }
+
+        private void generateSetNull(Field f) {
+            MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "setNull_" + f.pos, "(Z)V", null, null);
+            mv.visitCode();
+            if (f.isPrimitive()) {
+                mv.visitVarInsn(ALOAD, 0);
+                mv.visitVarInsn(ALOAD, 0);
+                mv.visitFieldInsn(GETFIELD, className, "isNull_" + f.nullByte, "B");
+                mv.visitVarInsn(ILOAD, 1);
+                push(mv, f.nullBit);
+                mv.visitMethodInsn(INVOKESTATIC, BYTES_HELPER, "setBitByPos", "(BZI)B");
+                mv.visitFieldInsn(PUTFIELD, className, "isNull_" + f.nullByte, "B");
+            } else {
+                Label notNull = new Label();
+                mv.visitVarInsn(ILOAD, 1);
+                mv.visitJumpInsn(IFEQ, notNull);
+                mv.visitVarInsn(ALOAD, 0);
+                mv.visitInsn(ACONST_NULL);
+                mv.visitFieldInsn(PUTFIELD, className, "pos_" + f.pos, f.fieldDesc());
+                mv.visitLabel(notNull);
+            }
+            mv.visitInsn(RETURN);
+            end(mv);
+        }
+
+        private void generateGetPos(Field f) {
+            MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "getPos_" + f.pos, "()" + f.fieldDesc(), null, null);
+            mv.visitCode();
+            if (f.isBoolean()) {
+                mv.visitVarInsn(ALOAD, 0);
+                mv.visitFieldInsn(GETFIELD, className, "booleanByte_" + f.booleanByte, "B");
+                push(mv, f.booleanBit);
+                mv.visitMethodInsn(INVOKESTATIC, BYTES_HELPER, "getBitByPos", "(BI)Z");
+            } else {
+                mv.visitVarInsn(ALOAD, 0);
+                mv.visitFieldInsn(GETFIELD, className, "pos_" + f.pos, f.fieldDesc());
+            }
+            mv.visitInsn(Type.getType(f.fieldDesc()).getOpcode(IRETURN));
+            end(mv);
+        }
+
+        private void generateSetPos(Field f) {
+            if (f.isTuple()) {
+                MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "setPos_" + f.pos, "(" + f.fieldDesc() + ")V", null, null);
+                mv.visitCode();
+                mv.visitVarInsn(ALOAD, 0);
+                mv.visitVarInsn(ALOAD, 1);
+                mv.visitFieldInsn(PUTFIELD, className, "pos_" + f.pos, f.fieldDesc());
+                mv.visitInsn(RETURN);
+                end(mv);
+                // Copy SchemaTuples and Tuples into a new instance of the nested class
+                generateSetNestedPos(f, "L" + SCHEMA_TUPLE + ";");
+                generateSetNestedPos(f, "L" + TUPLE + ";");
+                return;
+            }
+            MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "setPos_" + f.pos, "(" + f.fieldDesc() + ")V", null, null);
+            mv.visitCode();
+            if (f.isPrimitive()) {
+                mv.visitVarInsn(ALOAD, 0);
+                push(mv, 0);
+                mv.visitMethodInsn(INVOKEVIRTUAL, className, "setNull_" + f.pos, "(Z)V");
+            }
+            mv.visitVarInsn(ALOAD, 0);
+            if (f.isBoolean()) {
+                mv.visitVarInsn(ALOAD, 0);
+                mv.visitFieldInsn(GETFIELD, className, "booleanByte_" + f.booleanByte, "B");
+                mv.visitVarInsn(ILOAD, 1);
+                push(mv, f.booleanBit);
+                mv.visitMethodInsn(INVOKESTATIC, BYTES_HELPER, "setBitByPos", "(BZI)B");
+                mv.visitFieldInsn(PUTFIELD, className, "booleanByte_" + f.booleanByte, "B");
+            } else {
+                mv.visitVarInsn(Type.getType(f.fieldDesc()).getOpcode(ILOAD), 1);
+                mv.visitFieldInsn(PUTFIELD, className, "pos_" + f.pos, f.fieldDesc());
+            }
+            mv.visitInsn(RETURN);
+            end(mv);
+        }
+
+        private void generateSetNestedPos(Field f, String argDesc) {
+            MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "setPos_" + f.pos, "(" + argDesc + ")V", null, null);
+            mv.visitCode();
+            Label notNull = new Label();
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitFieldInsn(GETFIELD, className, "pos_" + f.pos, f.fieldDesc());
+            mv.visitJumpInsn(IFNONNULL, notNull);
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitTypeInsn(NEW, f.nestedClass);
+            mv.visitInsn(DUP);
+            mv.visitMethodInsn(INVOKESPECIAL, f.nestedClass, "<init>", "()V");
+            mv.visitFieldInsn(PUTFIELD, className, "pos_" + f.pos, f.fieldDesc());
+            mv.visitLabel(notNull);
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitFieldInsn(GETFIELD, className, "pos_" + f.pos, f.fieldDesc());
+            mv.visitVarInsn(ALOAD, 1);
+            mv.visitMethodInsn(INVOKEVIRTUAL, SCHEMA_TUPLE, "setAndCatch", "(" + argDesc + ")V");
+            mv.visitInsn(RETURN);
+            end(mv);
+        }
+
+        private void generateGetSchema() {
+            MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "getSchema", "()L" + SCHEMA + ";", null, null);
+            mv.visitCode();
+            mv.visitFieldInsn(GETSTATIC, className, "schema", "L" + SCHEMA + ";");
+            mv.visitInsn(ARETURN);
+            end(mv);
+        }
+
+        private void generateSetIterator() {
+            MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "generatedCodeSetIterator",
+                    "(Ljava/util/Iterator;)V", null, EXEC_EXCEPTIONS);
+            mv.visitCode();
+            for (Field f : fields) {
+                mv.visitVarInsn(ALOAD, 0);
+                mv.visitVarInsn(ALOAD, 0);
+                mv.visitVarInsn(ALOAD, 1);
+                mv.visitMethodInsn(INVOKEINTERFACE, "java/util/Iterator", "next", "()Ljava/lang/Object;");
+                unboxAndSet(mv, f);
+            }
+            mv.visitInsn(RETURN);
+            end(mv);
+        }
+
+        /**
+         * Expects this, this and an Object on the stack, and sets the field to the Object.
+         */
+        private void unboxAndSet(MethodVisitor mv, Field f) {
+            pushDummy(mv, f.type);
+            mv.visitMethodInsn(INVOKEVIRTUAL, SCHEMA_TUPLE, "unbox",
+                    "(Ljava/lang/Object;" + f.argDesc() + ")" + f.argDesc());
+            mv.visitMethodInsn(INVOKEVIRTUAL, className, "setPos_" + f.pos, "(" + f.argDesc() + ")V");
+        }
+
+        private void generateSetField() {
+            MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "generatedCodeSetField",
+                    "(ILjava/lang/Object;)V", null, EXEC_EXCEPTIONS);
+            mv.visitCode();
+            Label dflt = new Label();
+            Label[] labels = fieldSwitch(mv, dflt);
+            for (Field f : fields) {
+                mv.visitLabel(labels[f.pos]);
+                Label notNull = new Label();
+                mv.visitVarInsn(ALOAD, 2);
+                mv.visitJumpInsn(IFNONNULL, notNull);
+                mv.visitVarInsn(ALOAD, 0);
+                push(mv, 1);
+                mv.visitMethodInsn(INVOKEVIRTUAL, className, "setNull_" + f.pos, "(Z)V");
+                mv.visitInsn(RETURN);
+                mv.visitLabel(notNull);
+                mv.visitVarInsn(ALOAD, 0);
+                mv.visitVarInsn(ALOAD, 0);
+                mv.visitVarInsn(ALOAD, 2);
+                unboxAndSet(mv, f);
+                mv.visitInsn(RETURN);
+            }
+            mv.visitLabel(dflt);
+            throwInvalidIndex(mv, "Invalid index given to set: ");
+            end(mv);
+        }
+
+        private void generateGetField() {
+            MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "generatedCodeGetField",
+                    "(I)Ljava/lang/Object;", null, EXEC_EXCEPTIONS);
+            mv.visitCode();
+            Label dflt = new Label();
+            Label[] labels = fieldSwitch(mv, dflt);
+            for (Field f : fields) {
+                mv.visitLabel(labels[f.pos]);
+                Label notNull = new Label();
+                mv.visitVarInsn(ALOAD, 0);
+                mv.visitMethodInsn(INVOKEVIRTUAL, className, "checkIfNull_" + f.pos, "()Z");
+                mv.visitJumpInsn(IFEQ, notNull);
+                mv.visitInsn(ACONST_NULL);
+                mv.visitInsn(ARETURN);
+                mv.visitLabel(notNull);
+                mv.visitVarInsn(ALOAD, 0);
+                mv.visitVarInsn(ALOAD, 0);
+                getPos(mv, f);
+                mv.visitMethodInsn(INVOKEVIRTUAL, SCHEMA_TUPLE, "box", "(" + f.argDesc() + ")" + boxedDesc(f.type));
+                mv.visitInsn(ARETURN);
+            }
+            mv.visitLabel(dflt);
+            throwInvalidIndex(mv, "Invalid index given to get: ");
+            end(mv);
+        }
+
+        private void generateIsFieldNull() {
+            MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "isGeneratedCodeFieldNull", "(I)Z", null, EXEC_EXCEPTIONS);
+            mv.visitCode();
+            Label dflt = new Label();
+            Label[] labels = fieldSwitch(mv, dflt);
+            for (Field f : fields) {
+                mv.visitLabel(labels[f.pos]);
+                mv.visitVarInsn(ALOAD, 0);
+                mv.visitMethodInsn(INVOKEVIRTUAL, className, "checkIfNull_" + f.pos, "()Z");
+                mv.visitInsn(IRETURN);
+            }
+            mv.visitLabel(dflt);
+            throwInvalidIndex(mv, "Invalid index given: ");
+            end(mv);
+        }
+
+        private void generateGetFieldType() {
+            MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "getGeneratedCodeFieldType", "(I)B", null, EXEC_EXCEPTIONS);
+            mv.visitCode();
+            Label dflt = new Label();
+            Label[] labels = fieldSwitch(mv, dflt);
+            for (Field f : fields) {
+                mv.visitLabel(labels[f.pos]);
+                push(mv, f.type);
+                mv.visitInsn(IRETURN);
+            }
+            mv.visitLabel(dflt);
+            throwInvalidIndex(mv, "Invalid index given: ");
+            end(mv);
+        }
+
+        private void generateSetSpecific() {
+            MethodVisitor mv = cw.visitMethod(ACC_PROTECTED, "generatedCodeSetSpecific",
+                    "(L" + SCHEMA_TUPLE + ";)L" + SCHEMA_TUPLE + ";", null, null);
+            mv.visitCode();
+            mv.visitVarInsn(ALOAD, 1);
+            mv.visitTypeInsn(CHECKCAST, className);
+            mv.visitVarInsn(ASTORE, 2);
+            for (Field f : fields) {
+                Label notNull = new Label();
+                Label next = new Label();
+                mv.visitVarInsn(ALOAD, 2);
+                mv.visitMethodInsn(INVOKEVIRTUAL, className, "checkIfNull_" + f.pos, "()Z");
+                mv.visitJumpInsn(IFEQ, notNull);
+                mv.visitVarInsn(ALOAD, 0);
+                push(mv, 1);
+                mv.visitMethodInsn(INVOKEVIRTUAL, className, "setNull_" + f.pos, "(Z)V");
+                mv.visitJumpInsn(GOTO, next);
+                mv.visitLabel(notNull);
+                mv.visitVarInsn(ALOAD, 0);
+                mv.visitVarInsn(ALOAD, 2);
+                getPos(mv, f);
+                mv.visitMethodInsn(INVOKEVIRTUAL, className, "setPos_" + f.pos, "(" + f.fieldDesc() + ")V");
+                mv.visitLabel(next);
+            }
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitInsn(ARETURN);
+            end(mv);
+        }
+
+        private void generateSet() {
+            MethodVisitor mv = cw.visitMethod(ACC_PROTECTED, "generatedCodeSet",
+                    "(L" + SCHEMA_TUPLE + ";Z)L" + SCHEMA_TUPLE + ";", null, EXEC_EXCEPTIONS);
+            mv.visitCode();
+            Label notSpecific = new Label();
+            mv.visitVarInsn(ILOAD, 2);
+            mv.visitJumpInsn(IFEQ, notSpecific);
+            mv.visitVarInsn(ALOAD, 1);
+            mv.visitTypeInsn(INSTANCEOF, className);
+            mv.visitJumpInsn(IFEQ, notSpecific);
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitVarInsn(ALOAD, 1);
+            mv.visitMethodInsn(INVOKEVIRTUAL, SCHEMA_TUPLE, "setSpecific",
+                    "(L" + SCHEMA_TUPLE + ";)L" + SCHEMA_TUPLE + ";");
+            mv.visitInsn(ARETURN);
+            mv.visitLabel(notSpecific);
+
+            Label bigEnough = new Label();
+            mv.visitVarInsn(ALOAD, 1);
+            mv.visitMethodInsn(INVOKEVIRTUAL, SCHEMA_TUPLE, "size", "()I");
+            push(mv, fields.size());
+            mv.visitJumpInsn(IF_ICMPGE, bigEnough);
+            newExecException(mv);
+            newStringBuilder(mv, "Given SchemaTuple does not have as many fields as ");
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/Object", "getClass", "()Ljava/lang/Class;");
+            append(mv, "Ljava/lang/Object;");
+            append(mv, " (");
+            mv.visitVarInsn(ALOAD, 1);
+            mv.visitMethodInsn(INVOKEVIRTUAL, SCHEMA_TUPLE, "size", "()I");
+            append(mv, "I");
+            append(mv, " vs " + fields.size() + ")");
+            throwExecException(mv);
+            mv.visitLabel(bigEnough);
+
+            // List<Schema.FieldSchema> theirFS = t.getSchema().getFields();
+            mv.visitVarInsn(ALOAD, 1);
+            mv.visitMethodInsn(INVOKEVIRTUAL, SCHEMA_TUPLE, "getSchema", "()L" + SCHEMA + ";");
+            mv.visitMethodInsn(INVOKEVIRTUAL, SCHEMA, "getFields", "()Ljava/util/List;");
+            mv.visitVarInsn(ASTORE, 3);
+
+            for (Field f : fields) {
+                Label typeMatches = new Label();
+                mv.visitVarInsn(ALOAD, 3);
+                push(mv, f.pos);
+                mv.visitMethodInsn(INVOKEINTERFACE, "java/util/List", "get", "(I)Ljava/lang/Object;");
+                mv.visitTypeInsn(CHECKCAST, FIELD_SCHEMA);
+                mv.visitFieldInsn(GETFIELD, FIELD_SCHEMA, "type", "B");
+                mv.visitVarInsn(ISTORE, 4);
+                mv.visitVarInsn(ILOAD, 4);
+                push(mv, f.type);
+                mv.visitJumpInsn(IF_ICMPEQ, typeMatches);
+                newExecException(mv);
+                newStringBuilder(mv, "Given SchemaTuple does not match current in field " + f.pos
+                        + ". Expected type: " + f.type + ", found: ");
+                mv.visitVarInsn(ILOAD, 4);
+                append(mv, "I");
+                throwExecException(mv);
+                mv.visitLabel(typeMatches);
+
+                Label notNull = new Label();
+                Label next = new Label();
+                mv.visitVarInsn(ALOAD, 1);
+                push(mv, f.pos);
+                mv.visitMethodInsn(INVOKEVIRTUAL, SCHEMA_TUPLE, "isNull", "(I)Z");
+                mv.visitJumpInsn(IFEQ, notNull);
+                mv.visitVarInsn(ALOAD, 0);
+                push(mv, 1);
+                mv.visitMethodInsn(INVOKEVIRTUAL, className, "setNull_" + f.pos, "(Z)V");
+                mv.visitJumpInsn(GOTO, next);
+                mv.visitLabel(notNull);
+                mv.visitVarInsn(ALOAD, 0);
+                mv.visitVarInsn(ALOAD, 1);
+                push(mv, f.pos);
+                if (f.isTuple()) {
+                    mv.visitMethodInsn(INVOKEVIRTUAL, SCHEMA_TUPLE, "get", "(I)Ljava/lang/Object;");
+                    mv.visitTypeInsn(CHECKCAST, TUPLE);
+                } else {
+                    mv.visitMethodInsn(INVOKEVIRTUAL, SCHEMA_TUPLE, "get" + properName(f.type),
+                            "(I)" + f.argDesc());
+                }
+                mv.visitMethodInsn(INVOKEVIRTUAL, className, "setPos_" + f.pos, "(" + f.argDesc() + ")V");
+                mv.visitLabel(next);
+            }
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitInsn(ARETURN);
+            end(mv);
+        }
+
+        private void generateNullsArray() {
+            MethodVisitor mv = cw.visitMethod(ACC_PROTECTED, "generatedCodeNullsArray", "()[Z", null, IO_EXCEPTIONS);
+            mv.visitCode();
+            push(mv, fields.size());
+            mv.visitIntInsn(NEWARRAY, T_BOOLEAN);
+            for (Field f : fields) {
+                mv.visitInsn(DUP);
+                push(mv, f.pos);
+                mv.visitVarInsn(ALOAD, 0);
+                mv.visitMethodInsn(INVOKEVIRTUAL, className, "checkIfNull_" + f.pos, "()Z");
+                mv.visitInsn(BASTORE);
+            }
+            mv.visitInsn(ARETURN);
+            end(mv);
+        }
+
+        private void generateReadFields() {
+            MethodVisitor mv = cw.visitMethod(ACC_PROTECTED, "generatedCodeReadFields",
+                    "(Ljava/io/DataInput;[Z)V", null, IO_EXCEPTIONS);
+            mv.visitCode();
+            for (Field f : fields) {
+                if (f.isBoolean()) {
+                    mv.visitVarInsn(ALOAD, 0);
+                    mv.visitVarInsn(ALOAD, 2);
+                    push(mv, f.pos);
+                    mv.visitInsn(BALOAD);
+                    mv.visitMethodInsn(INVOKEVIRTUAL, className, "setNull_" + f.pos, "(Z)V");
+                    continue;
+                }
+                Label notNull = new Label();
+                Label next = new Label();
+                mv.visitVarInsn(ALOAD, 2);
+                push(mv, f.pos);
+                mv.visitInsn(BALOAD);
+                mv.visitJumpInsn(IFEQ, notNull);
+                mv.visitVarInsn(ALOAD, 0);
+                push(mv, 1);
+                mv.visitMethodInsn(INVOKEVIRTUAL, className, "setNull_" + f.pos, "(Z)V");
+                mv.visitJumpInsn(GOTO, next);
+                mv.visitLabel(notNull);
+                if (f.isTuple()) {
+                    mv.visitTypeInsn(NEW, f.nestedClass);
+                    mv.visitInsn(DUP);
+                    mv.visitMethodInsn(INVOKESPECIAL, f.nestedClass, "<init>", "()V");
+                    mv.visitVarInsn(ASTORE, 3);
+                    mv.visitVarInsn(ALOAD, 3);
+                    mv.visitVarInsn(ALOAD, 1);
+                    mv.visitMethodInsn(INVOKEVIRTUAL, f.nestedClass, "readFields", "(Ljava/io/DataInput;)V");
+                    mv.visitVarInsn(ALOAD, 0);
+                    mv.visitVarInsn(ALOAD, 3);
+                } else {
+                    mv.visitVarInsn(ALOAD, 0);
+                    mv.visitVarInsn(ALOAD, 1);
+                    pushDummy(mv, f.type);
+                    mv.visitMethodInsn(INVOKESTATIC, SCHEMA_TUPLE, "read",
+                            "(Ljava/io/DataInput;" + f.argDesc() + ")" + f.argDesc());
+                }
+                mv.visitMethodInsn(INVOKEVIRTUAL, className, "setPos_" + f.pos, "(" + f.fieldDesc() + ")V");
+                mv.visitLabel(next);
+            }
+            for (int i = 0; i < booleanBytes; i++) {
+                mv.visitVarInsn(ALOAD, 0);
+                mv.visitVarInsn(ALOAD, 1);
+                mv.visitMethodInsn(INVOKEINTERFACE, DATA_INPUT, "readByte", "()B");
+                mv.visitFieldInsn(PUTFIELD, className, "booleanByte_" + i, "B");
+            }
+            mv.visitInsn(RETURN);
+            end(mv);
+        }
+
+        private void generateWriteElements() {
+            MethodVisitor mv = cw.visitMethod(ACC_PROTECTED, "generatedCodeWriteElements",
+                    "(Ljava/io/DataOutput;)V", null, IO_EXCEPTIONS);
+            mv.visitCode();
+            for (Field f : fields) {
+                if (f.isBoolean()) {
+                    continue;
+                }
+                Label isNull = new Label();
+                mv.visitVarInsn(ALOAD, 0);
+                mv.visitMethodInsn(INVOKEVIRTUAL, className, "checkIfNull_" + f.pos, "()Z");
+                mv.visitJumpInsn(IFNE, isNull);
+                mv.visitVarInsn(ALOAD, 1);
+                mv.visitVarInsn(ALOAD, 0);
+                mv.visitFieldInsn(GETFIELD, className, "pos_" + f.pos, f.fieldDesc());
+                String writeDesc = f.isTuple() ? "L" + SCHEMA_TUPLE + ";" : f.argDesc();
+                mv.visitMethodInsn(INVOKESTATIC, SCHEMA_TUPLE, "write", "(Ljava/io/DataOutput;" + writeDesc + ")V");
+                mv.visitLabel(isNull);
+            }
+            for (int i = 0; i < booleanBytes; i++) {
+                mv.visitVarInsn(ALOAD, 1);
+                mv.visitVarInsn(ALOAD, 0);
+                mv.visitFieldInsn(GETFIELD, className, "booleanByte_" + i, "B");
+                mv.visitMethodInsn(INVOKEINTERFACE, DATA_OUTPUT, "writeByte", "(I)V");
+            }
+            mv.visitInsn(RETURN);
+            end(mv);
+        }
+
+        private void generateIntMethod(String name, int value) {
+            MethodVisitor mv = cw.visitMethod(name.startsWith("get") ? ACC_PUBLIC : ACC_PROTECTED,
+                    name, "()I", null, null);
+            mv.visitCode();
+            push(mv, value);
+            mv.visitInsn(IRETURN);
+            end(mv);
+        }
+
+        /**
+         * Same estimate as the generated source: the size of the fields, plus the
+         * size of the objects they point to.
+         */
+        private void generateMemorySize() {
+            MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "getGeneratedCodeMemorySize", "()J", null, null);
+            mv.visitCode();
+            int size = 0;
+            int booleans = 0;
+            int primitives = 0;
+            mv.visitInsn(LCONST_0);
+            for (Field f : fields) {
+                switch (f.type) {
+                case DataType.INTEGER:
+                case DataType.FLOAT:
+                    size += 4;
+                    break;
+                case DataType.LONG:
+                case DataType.DOUBLE:
+                    size += 8;
+                    break;
+                case DataType.BOOLEAN:
+                    if (booleans++ % 8 == 0) {
+                        size++;
+                    }
+                    break;
+                case DataType.DATETIME:
+                    size += 10;
+                    break;
+                case DataType.BYTEARRAY: {
+                    size += 8;
+                    Label notNull = new Label();
+                    Label next = new Label();
+                    getField(mv, f);
+                    mv.visitJumpInsn(IFNONNULL, notNull);
+                    mv.visitInsn(LCONST_0);
+                    mv.visitJumpInsn(GOTO, next);
+                    mv.visitLabel(notNull);
+                    push(mv, 12);
+                    getField(mv, f);
+                    mv.visitInsn(ARRAYLENGTH);
+                    mv.visitInsn(IADD);
+                    mv.visitInsn(I2L);
+                    mv.visitMethodInsn(INVOKESTATIC, SIZE_UTIL, "roundToEight", "(J)J");
+                    mv.visitLdcInsn(Long.valueOf(8));
+                    mv.visitInsn(LMUL);
+                    mv.visitLabel(next);
+                    mv.visitInsn(LADD);
+                    break;
+                }
+                case DataType.BAG:
+                case DataType.MAP:
+                case DataType.CHARARRAY:
+                case DataType.BIGDECIMAL:
+                case DataType.BIGINTEGER:
+                case DataType.TUPLE: {
+                    size += 8;
+                    Label notNull = new Label();
+                    Label next = new Label();
+                    getField(mv, f);
+                    mv.visitJumpInsn(IFNONNULL, notNull);
+                    if (f.isTuple()) {
+                        mv.visitLdcInsn(Long.valueOf(8));
+                    } else {
+                        mv.visitInsn(LCONST_0);
+                    }
+                    mv.visitJumpInsn(GOTO, next);
+                    mv.visitLabel(notNull);
+                    getField(mv, f);
+                    if (f.type == DataType.BAG) {
+                        mv.visitMethodInsn(INVOKEINTERFACE, DATA_BAG, "getMemorySize", "()J");
+                    } else if (f.isTuple()) {
+                        mv.visitMethodInsn(INVOKEVIRTUAL, f.nestedClass, "getMemorySize", "()J");
+                    } else {
+                        mv.visitMethodInsn(INVOKESTATIC, SIZE_UTIL, "getPigObjMemSize", "(Ljava/lang/Object;)J");
+                    }
+                    mv.visitLabel(next);
+                    mv.visitInsn(LADD);
+                    break;
+                }
+                default:
+                    throw new RuntimeException("Unsupported type found: " + DataType.findTypeName(f.type));
+                }
+                if (f.isPrimitive() && primitives++ % 8 == 0) {
+                    size++;
+                }
+            }
+            mv.visitLdcInsn(Long.valueOf(size));
+            mv.visitInsn(LADD);
+            mv.visitMethodInsn(INVOKESTATIC, SIZE_UTIL, "roundToEight", "(J)J");
+            mv.visitInsn(LRETURN);
+            end(mv);
+        }
+
+        private void generateHashCode() {
+            MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "generatedCodeHashCode", "()I", null, null);
+            mv.visitCode();
+            push(mv, 17);
+            for (Field f : fields) {
+                // h is kept on the stack
+                mv.visitVarInsn(ISTORE, 1);
+                mv.visitVarInsn(ALOAD, 0);
+                mv.visitVarInsn(ILOAD, 1);
+                mv.visitVarInsn(ALOAD, 0);
+                getPos(mv, f);
+                mv.visitVarInsn(ALOAD, 0);
+                mv.visitMethodInsn(INVOKEVIRTUAL, className, "checkIfNull_" + f.pos, "()Z");
+                mv.visitMethodInsn(INVOKEVIRTUAL, SCHEMA_TUPLE, "hashCodePiece", "(I" + f.argDesc() + "Z)I");
+            }
+            mv.visitInsn(IRETURN);
+            end(mv);
+        }
+
+        private void generateCompareTo() {
+            MethodVisitor mv = cw.visitMethod(ACC_PROTECTED, "generatedCodeCompareTo",
+                    "(L" + SCHEMA_TUPLE + ";Z)I", null, null);
+            mv.visitCode();
+            for (Field f : fields) {
+                mv.visitVarInsn(ALOAD, 0);
+                mv.visitVarInsn(ALOAD, 0);
+                mv.visitMethodInsn(INVOKEVIRTUAL, className, "checkIfNull_" + f.pos, "()Z");
+                mv.visitVarInsn(ALOAD, 0);
+                getPos(mv, f);
+                mv.visitVarInsn(ALOAD, 1);
+                push(mv, f.pos);
+                String valDesc = f.isTuple() ? "L" + SCHEMA_TUPLE + ";" : f.argDesc();
+                mv.visitMethodInsn(INVOKEVIRTUAL, SCHEMA_TUPLE, "compareWithElementAtPos",
+                        "(Z" + valDesc + "L" + SCHEMA_TUPLE + ";I)I");
+                returnUnlessZero(mv);
+            }
+            push(mv, 0);
+            mv.visitInsn(IRETURN);
+            end(mv);
+        }
+
+        private void generateCompareToSpecific() {
+            MethodVisitor mv = cw.visitMethod(ACC_PROTECTED, "generatedCodeCompareToSpecific",
+                    "(L" + SCHEMA_TUPLE + ";)I", null, null);
+            mv.visitCode();
+            mv.visitVarInsn(ALOAD, 1);
+            mv.visitTypeInsn(CHECKCAST, className);
+            mv.visitVarInsn(ASTORE, 2);
+            for (Field f : fields) {
+                mv.visitVarInsn(ALOAD, 0);
+                mv.visitVarInsn(ALOAD, 0);
+                mv.visitMethodInsn(INVOKEVIRTUAL, className, "checkIfNull_" + f.pos, "()Z");
+                mv.visitVarInsn(ALOAD, 0);
+                getPos(mv, f);
+                mv.visitVarInsn(ALOAD, 2);
+                mv.visitMethodInsn(INVOKEVIRTUAL, className, "checkIfNull_" + f.pos, "()Z");
+                mv.visitVarInsn(ALOAD, 2);
+                getPos(mv, f);
+                String desc = f.isTuple()
+                        ? "(ZL" + SCHEMA_TUPLE + ";ZLjava/lang/Object;)I"
+                        : "(Z" + f.argDesc() + "Z" + f.argDesc() + ")I";
+                mv.visitMethodInsn(INVOKEVIRTUAL, SCHEMA_TUPLE, "compare", desc);
+                returnUnlessZero(mv);
+            }
+            push(mv, 0);
+            mv.visitInsn(IRETURN);
+            end(mv);
+        }
+
+        private void generateIsSpecificSchemaTuple() {
+            MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "isSpecificSchemaTuple", "(Ljava/lang/Object;)Z", null, null);
+            mv.visitCode();
+            mv.visitVarInsn(ALOAD, 1);
+            mv.visitTypeInsn(INSTANCEOF, className);
+            mv.visitInsn(IRETURN);
+            end(mv);
+        }
+
+        private void generateTypeAwareSet(byte type) {
+            String desc = desc(type);
+            MethodVisitor mv = cw.visitMethod(ACC_PROTECTED, "generatedCodeSet" + properName(type),
+                    "(I" + desc + ")V", null, EXEC_EXCEPTIONS);
+            mv.visitCode();
+            Label dflt = new Label();
+            List<Field> matching = fieldsOfType(type);
+            Label[] labels = lookupSwitch(mv, matching, dflt);
+            for (int i = 0; i < matching.size(); i++) {
+                Field f = matching.get(i);
+                mv.visitLabel(labels[i]);
+                mv.visitVarInsn(ALOAD, 0);
+                mv.visitVarInsn(Type.getType(desc).getOpcode(ILOAD), 2);
+                mv.visitMethodInsn(INVOKEVIRTUAL, className, "setPos_" + f.pos, "(" + desc + ")V");
+                mv.visitInsn(RETURN);
+            }
+            mv.visitLabel(dflt);
+            // setTypeAwareBase(fieldNum, val, name) throws
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitVarInsn(ILOAD, 1);
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitVarInsn(Type.getType(desc).getOpcode(ILOAD), 2);
+            mv.visitMethodInsn(INVOKEVIRTUAL, SCHEMA_TUPLE, "box", "(" + desc + ")" + boxedDesc(type));
+            mv.visitLdcInsn(typeName(type));
+            mv.visitMethodInsn(INVOKEVIRTUAL, SCHEMA_TUPLE, "setTypeAwareBase",
+                    "(ILjava/lang/Object;Ljava/lang/String;)V");
+            mv.visitInsn(RETURN);
+            end(mv);
+        }
+
+        private void generateTypeAwareGet(byte type) {
+            String desc = desc(type);
+            int returnOpcode = Type.getType(desc).getOpcode(IRETURN);
+            MethodVisitor mv = cw.visitMethod(ACC_PROTECTED, "generatedCodeGet" + properName(type),
+                    "(I)" + desc, null, EXEC_EXCEPTIONS);
+            mv.visitCode();
+            Label dflt = new Label();
+            List<Field> matching = fieldsOfType(type);
+            Label[] labels = lookupSwitch(mv, matching, dflt);
+            for (int i = 0; i < matching.size(); i++) {
+                Field f = matching.get(i);
+                mv.visitLabel(labels[i]);
+                mv.visitVarInsn(ALOAD, 0);
+                mv.visitVarInsn(ALOAD, 0);
+                mv.visitMethodInsn(INVOKEVIRTUAL, className, "checkIfNull_" + f.pos, "()Z");
+                mv.visitVarInsn(ALOAD, 0);
+                getPos(mv, f);
+                mv.visitMethodInsn(INVOKEVIRTUAL, SCHEMA_TUPLE, "returnUnlessNull", "(Z" + desc + ")" + desc);
+                mv.visitInsn(returnOpcode);
+            }
+            mv.visitLabel(dflt);
+            // return unboxX(getTypeAwareBase(fieldNum, name));
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitVarInsn(ILOAD, 1);
+            mv.visitLdcInsn(typeName(type));
+            mv.visitMethodInsn(INVOKEVIRTUAL, SCHEMA_TUPLE, "getTypeAwareBase",
+                    "(ILjava/lang/String;)Ljava/lang/Object;");
+            mv.visitMethodInsn(INVOKEVIRTUAL, SCHEMA_TUPLE, "unbox" + properName(type),
+                    "(Ljava/lang/Object;)" + desc);
+            mv.visitInsn(returnOpcode);
+            end(mv);
+        }
+
+        private void generateGetQuickGenerator() {
+            MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "getQuickGenerator", "()L" + QUICK_GENERATOR + ";", null, null);
+            mv.visitCode();
+            mv.visitTypeInsn(NEW, className + "$Gen");
+            mv.visitInsn(DUP);
+            mv.visitMethodInsn(INVOKESPECIAL, className + "$Gen", "<init>", "()V");
+            mv.visitInsn(ARETURN);
+            end(mv);
+        }
+
+        private List<Field> fieldsOfType(byte type) {
+            List<Field> matching = Lists.newArrayList();
+            for (Field f : fields) {
+                if (f.type == type) {
+                    matching.add(f);
+                }
+            }
+            return matching;
+        }
+
+        /**
+         * Switches on the field number in local 1, with one label per field.
+         */
+        private Label[] fieldSwitch(MethodVisitor mv, Label dflt) {
+            if (fields.isEmpty()) {
+                return lookupSwitch(mv, fields, dflt);
+            }
+            Label[] labels = new Label[fields.size()];
+            for (int i = 0; i < labels.length; i++) {
+                labels[i] = new Label();
+            }
+            mv.visitVarInsn(ILOAD, 1);
+            mv.visitTableSwitchInsn(0, labels.length - 1, dflt, labels);
+            return labels;
+        }
+
+        /**
+         * Switches on the field number in local 1, with one label per given field.
+         */
+        private Label[] lookupSwitch(MethodVisitor mv, List<Field> matching, Label dflt) {
+            int[] keys = new int[matching.size()];
+            Label[] labels = new Label[matching.size()];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = matching.get(i).pos;
+                labels[i] = new Label();
+            }
+            mv.visitVarInsn(ILOAD, 1);
+            mv.visitLookupSwitchInsn(dflt, keys, labels);
+            return labels;
+        }
+
+        /**
+         * Expects an object on the stack, and pushes the value of the field.
+         */
+        private void getPos(MethodVisitor mv, Field f) {
+            mv.visitMethodInsn(INVOKEVIRTUAL, className, "getPos_" + f.pos, "()" + f.fieldDesc());
+        }
+
+        private void getField(MethodVisitor mv, Field f) {
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitFieldInsn(GETFIELD, className, "pos_" + f.pos, f.fieldDesc());
+        }
+
+        private void throwInvalidIndex(MethodVisitor mv, String message) {
+            newExecException(mv);
+            newStringBuilder(mv, message);
+            mv.visitVarInsn(ILOAD, 1);
+            append(mv, "I");
+            throwExecException(mv);
+        }
+    }
+
+    private static void end(MethodVisitor mv) {
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private static void returnUnlessZero(MethodVisitor mv) {
+        Label zero = new Label();
+        mv.visitInsn(DUP);
+        mv.visitJumpInsn(IFEQ, zero);
+        mv.visitInsn(IRETURN);
+        mv.visitLabel(zero);
+        mv.visitInsn(POP);
+    }
+
+    private static void newExecException(MethodVisitor mv) {
+        mv.visitTypeInsn(NEW, EXEC_EXCEPTION);
+        mv.visitInsn(DUP);
+    }
+
+    private static void newStringBuilder(MethodVisitor mv, String s) {
+        mv.visitTypeInsn(NEW, STRING_BUILDER);
+        mv.visitInsn(DUP);
+        mv.visitLdcInsn(s);
+        mv.visitMethodInsn(INVOKESPECIAL, STRING_BUILDER, "<init>", "(Ljava/lang/String;)V");
+    }
+
+    private static void append(MethodVisitor mv, String descOrString) {
+        if (descOrString.equals("I") || descOrString.equals("Ljava/lang/Object;")) {
+            mv.visitMethodInsn(INVOKEVIRTUAL, STRING_BUILDER, "append",
+                    "(" + descOrString + ")L" + STRING_BUILDER + ";");
+        } else {
+            mv.visitLdcInsn(descOrString);
+            mv.visitMethodInsn(INVOKEVIRTUAL, STRING_BUILDER, "append",
+                    "(Ljava/lang/String;)L" + STRING_BUILDER + ";");
+        }
+    }
+
+    /**
+     * Expects a new ExecException (twice) and a StringBuilder with the message on the stack.
+     */
+    private static void throwExecException(MethodVisitor mv) {
+        mv.visitMethodInsn(INVOKEVIRTUAL, STRING_BUILDER, "toString", "()Ljava/lang/String;");
+        mv.visitMethodInsn(INVOKESPECIAL, EXEC_EXCEPTION, "<init>", "(Ljava/lang/String;)V");
+        mv.visitInsn(ATHROW);
+    }
+
+    private static void push(MethodVisitor mv, int value) {
+        if (value >= -1 && value <= 5) {
+            mv.visitInsn(ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            mv.visitIntInsn(BIPUSH, value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            mv.visitIntInsn(SIPUSH, value);
+        } else {
+            mv.visitLdcInsn(Integer.valueOf(value));
+        }
+    }
+
+    /**
+     * Pushes a value of the given type, which is only used to pick the right
+     * overload of a SchemaTuple helper.
+     */
+    private static void pushDummy(MethodVisitor mv, byte type) {
+        switch (type) {
+        case DataType.INTEGER:
+        case DataType.BOOLEAN:
+            mv.visitInsn(ICONST_0);
+            break;
+        case DataType.LONG:
+            mv.visitInsn(LCONST_0);
+            break;
+        case DataType.FLOAT:
+            mv.visitInsn(FCONST_0);
+            break;
+        case DataType.DOUBLE:
+            mv.visitInsn(DCONST_0);
+            break;
+        default:
+            mv.visitInsn(ACONST_NULL);
+        }
+    }
+
+    private static String desc(byte type) {
+        switch (type) {
+        case DataType.INTEGER: return "I";
+        case DataType.LONG: return "J";
+        case DataType.FLOAT: return "F";
+        case DataType.DOUBLE: return "D";
+        case DataType.BOOLEAN: return "Z";
+        case DataType.BYTEARRAY: return "[B";
+        case DataType.CHARARRAY: return "Ljava/lang/String;";
+        case DataType.DATETIME: return "Lorg/joda/time/DateTime;";
+        case DataType.BIGDECIMAL: return "Ljava/math/BigDecimal;";
+        case DataType.BIGINTEGER: return "Ljava/math/BigInteger;";
+        case DataType.TUPLE: return "L" + TUPLE + ";";
+        case DataType.BAG: return "L" + DATA_BAG + ";";
+        case DataType.MAP: return "Ljava/util/Map;";
+        default: throw new RuntimeException("Can't return descriptor for given type " + DataType.findTypeName(type));
+        }
+    }
+
+    /**
+     * @return the return type of the SchemaTuple.box method for the type
+     */
+    private static String boxedDesc(byte type) {
+        switch (type) {
+        case DataType.INTEGER: return "Ljava/lang/Integer;";
+        case DataType.LONG: return "Ljava/lang/Long;";
+        case DataType.FLOAT: return "Ljava/lang/Float;";
+        case DataType.DOUBLE: return "Ljava/lang/Double;";
+        case DataType.BOOLEAN: return "Ljava/lang/Boolean;";
+        case DataType.BYTEARRAY: return "Lorg/apache/pig/data/DataByteArray;";
+        default: return desc(type);
+        }
+    }
+
+    private static String typeName(byte type) {
+        switch (type) {
+        case DataType.INTEGER: return "int";
+        case DataType.LONG: return "long";
+        case DataType.FLOAT: return "float";
+        case DataType.DOUBLE: return "double";
+        case DataType.BYTEARRAY: return "byte[]";
+        case DataType.CHARARRAY: return "String";
+        case DataType.BOOLEAN: return "boolean";
+        case DataType.DATETIME: return "DateTime";
+        case DataType.BIGDECIMAL: return "BigDecimal";
+        case DataType.BIGINTEGER: return "BigInteger";
+        case DataType.TUPLE: return "Tuple";
+        case DataType.BAG: return "DataBag";
+        case DataType.MAP: return "Map";
+        default: throw new RuntimeException("Can't return String for given type " + DataType.findTypeName(type));
+        }
+    }
+
+    private static String properName(byte type) {
+        if (type == DataType.BYTEARRAY) {
+            return "Bytes";
+        }
+        String s = typeName(type);
+        return s.substring(0, 1).toUpperCase() + s.substring(1);
+    }
+}
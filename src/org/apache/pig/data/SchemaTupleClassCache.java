@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pig.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.pig.PigConfiguration;
+import org.apache.pig.classification.InterfaceAudience;
+import org.apache.pig.classification.InterfaceStability;
+import org.apache.pig.data.SchemaTupleClassGenerator.GenContext;
+import org.apache.pig.impl.logicalLayer.schema.Schema;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+/**
+ * A local, persistent cache of generated SchemaTuple classes. Every entry is a directory
+ * named after the fingerprint of the generation request, which holds the class files
+ * of the SchemaTuple and of its nested SchemaTuples, as well as the global class
+ * identifier to continue with once the classes have been reused. As the identifiers
+ * are part of the fingerprint, the cache hits when the same script is run again.
+ */
+@InterfaceAudience.Private
+@InterfaceStability.Unstable
+class SchemaTupleClassCache {
+    private static final Log LOG = LogFactory.getLog(SchemaTupleClassCache.class);
+
+    /**
+     * Must be changed whenever the generated classes change, so that stale classes
+     * are not reused.
+     */
+    private static final int VERSION = 1;
+
+    private static final String NEXT_ID_FILE = "next_id";
+
+    private static final Pattern CLASS_FILE = Pattern.compile("SchemaTuple_(\\d+)(\\$.*)?\\.class");
+
+    private final File cacheDir;
+
+    private SchemaTupleClassCache(File cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+    /**
+     * @return the cache configured by {@link PigConfiguration#PIG_SCHEMA_TUPLE_CACHE_DIR},
+     *  or null if there is none
+     */
+    static SchemaTupleClassCache get(Configuration conf) {
+        String dir = conf.get(PigConfiguration.PIG_SCHEMA_TUPLE_CACHE_DIR);
+        if (dir == null || dir.isEmpty()) {
+            return null;
+        }
+        File cacheDir = new File(dir);
+        if (!cacheDir.isDirectory() && !cacheDir.mkdirs()) {
+            LOG.warn("Unable to create SchemaTuple class cache directory " + cacheDir + ", cache is disabled");
+            return null;
+        }
+        return new SchemaTupleClassCache(cacheDir);
+    }
+
+    /**
+     * Computes the key of a generation request. Everything which ends up in the
+     * generated classes has to be part of it.
+     */
+    static String fingerprint(Schema s, boolean appendable, int id, int firstNestedId, boolean useJavac,
+            GenContext... contexts) {
+        GenContext[] sorted = contexts.clone();
+        Arrays.sort(sorted);
+        StringBuilder sb = new StringBuilder();
+        sb.append(VERSION).append('\n')
+                .append(useJavac ? "javac" : "bytecode").append('\n')
+                .append(s).append('\n')
+                .append(appendable).append('\n')
+                .append(id).append('\n')
+                .append(firstNestedId).append('\n')
+                .append(Arrays.toString(sorted));
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(sb.toString().getBytes(Charsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("Unable to compute SchemaTuple fingerprint", e);
+        }
+    }
+
+    /**
+     * Copies the cached classes of the given fingerprint into codeDir.
+     * @return the next global class identifier to use, or null if the entry is not cached
+     */
+    Integer load(String fingerprint, File codeDir) {
+        File entry = new File(cacheDir, fingerprint);
+        File nextIdFile = new File(entry, NEXT_ID_FILE);
+        if (!nextIdFile.isFile()) {
+            return null;
+        }
+        try {
+            int nextId = Integer.parseInt(Files.toString(nextIdFile, Charsets.UTF_8).trim());
+            for (File f : entry.listFiles()) {
+                if (CLASS_FILE.matcher(f.getName()).matches()) {
+                    Files.copy(f, new File(codeDir, f.getName()));
+                }
+            }
+            return nextId;
+        } catch (IOException e) {
+            LOG.warn("Unable to read SchemaTuple class cache entry " + entry, e);
+        } catch (NumberFormatException e) {
+            LOG.warn("Corrupt SchemaTuple class cache entry " + entry, e);
+        }
+        return null;
+    }
+
+    /**
+     * Stores the classes just generated into codeDir for the given fingerprint: the class
+     * with the given id, and the nested classes with ids from firstNestedId to nextId.
+     * Failing to do so only logs a warning, as the classes have been generated anyway.
+     */
+    void store(String fingerprint, File codeDir, int id, int firstNestedId, int nextId) {
+        File entry = new File(cacheDir, fingerprint);
+        if (entry.exists()) {
+            return;
+        }
+        File tmp = new File(cacheDir, fingerprint + ".tmp" + System.nanoTime());
+        try {
+            if (!tmp.mkdirs()) {
+                throw new IOException("Unable to create directory " + tmp);
+            }
+            for (File f : codeDir.listFiles()) {
+                Matcher m = CLASS_FILE.matcher(f.getName());
+                if (!m.matches()) {
+                    continue;
+                }
+                int classId = Integer.parseInt(m.group(1));
+                if (classId == id || (classId >= firstNestedId && classId < nextId)) {
+                    Files.copy(f, new File(tmp, f.getName()));
+                }
+            }
+            // written last, as it marks the entry as complete
+            Files.write(Integer.toString(nextId), new File(tmp, NEXT_ID_FILE), Charsets.UTF_8);
+            if (!tmp.renameTo(entry)) {
+                // another process stored the same entry concurrently
+                deleteQuietly(tmp);
+            }
+        } catch (IOException e) {
+            LOG.warn("Unable to store SchemaTuple classes in cache " + cacheDir, e);
+            deleteQuietly(tmp);
+        }
+    }
+
+    private static void deleteQuietly(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+}
@@ -171,6 +171,50 @@ public class SchemaTupleClassGenerator {
      * @param   contexts which are a list of contexts in which the SchemaTuple is intended to be instantiated
      */
     protected static void generateSchemaTuple(Schema s, boolean appendable, int id, File codeDir, GenContext... contexts) {
+        generateSchemaTuple(s, appendable, id, codeDir, new Configuration(false), contexts);
+    }
+
+    /**
+     * Generates the SchemaTuple for the given Schema, as well as the SchemaTuples of any
+     * nested tuples. The classes are emitted directly as bytecode unless
+     * {@link PigConfiguration#PIG_SCHEMA_TUPLE_USE_JAVAC} is set, and are taken from the
+     * {@link SchemaTupleClassCache} if {@link PigConfiguration#PIG_SCHEMA_TUPLE_CACHE_DIR} is set.
+     * @param   s as Schema
+     * @param   appendable as boolean, true or false depending on whether it should be appendable
+     * @param   id as int, id means identifier
+     * @param   codeDir the directory the generated classes are written to
+     * @param   conf the configuration of the job
+     * @param   contexts which are a list of contexts in which the SchemaTuple is intended to be instantiated
+     */
+    protected static void generateSchemaTuple(Schema s, boolean appendable, int id, File codeDir,
+            Configuration conf, GenContext... contexts) {
+        boolean useJavac = conf.getBoolean(PigConfiguration.PIG_SCHEMA_TUPLE_USE_JAVAC, false);
+        SchemaTupleClassCache cache = SchemaTupleClassCache.get(conf);
+        int firstNestedId = nextGlobalClassIdentifier;
+        String fingerprint = null;
+        if (cache != null) {
+            fingerprint = SchemaTupleClassCache.fingerprint(s, appendable, id, firstNestedId, useJavac, contexts);
+            Integer nextId = cache.load(fingerprint, codeDir);
+            if (nextId != null) {
+                LOG.info("Loaded class SchemaTuple_" + id + " from cache for Schema: " + s);
+                nextGlobalClassIdentifier = nextId;
+                return;
+            }
+        }
+
+        if (useJavac) {
+            compileSchemaTuple(s, appendable, id, codeDir, contexts);
+        } else {
+            LOG.info("Generating class SchemaTuple_" + id + " for Schema: " + s + ", and appendability: " + appendable);
+            SchemaTupleBytecodeGenerator.generateSchemaTuple(s, appendable, id, codeDir, contexts);
+        }
+
+        if (cache != null) {
+            cache.store(fingerprint, codeDir, id, firstNestedId, nextGlobalClassIdentifier);
+        }
+    }
+
+    private static void compileSchemaTuple(Schema s, boolean appendable, int id, File codeDir, GenContext... contexts) {
         StringBuilder contextAnnotations = new StringBuilder();
         for (GenContext context : contexts) {
             LOG.info("Including context: " + context);
@@ -189,7 +233,7 @@ public class SchemaTupleClassGenerator {
     private static int generateSchemaTuple(Schema s, boolean appendable, File codeDir, GenContext... contexts) {
         int id = SchemaTupleClassGenerator.getNextGlobalClassIdentifier();
 
-        generateSchemaTuple(s, appendable, id, codeDir, contexts);
+        compileSchemaTuple(s, appendable, id, codeDir, contexts);
 
         return id;
     }
@@ -224,7 +268,6 @@ public class SchemaTupleClassGenerator {
      * @param String of generated code
      * @param name of class
      */
-    //TODO in the future, we can use ASM to generate the bytecode directly.
     private static void compileCodeString(String className, String generatedCodeString, File codeDir) {
         JavaCompilerHelper compiler = new JavaCompilerHelper();
         String tempDir = codeDir.getAbsolutePath();
@@ -35,11 +35,11 @@ public abstract class SelfSpillBag extends DefaultAbstractBag {
     protected MemoryLimits memLimit;
 
     public SelfSpillBag(int bagCount) {
-        memLimit = new MemoryLimits(bagCount, -1);
+        this(bagCount, -1);
     }
 
     public SelfSpillBag(int bagCount, float percent) {
-        memLimit = new MemoryLimits(bagCount, percent);
+        memLimit = new MemoryLimits(bagCount, percent, getMemorySizeSampler());
     }
 
     /**
@@ -49,7 +49,7 @@ public abstract class SelfSpillBag extends DefaultAbstractBag {
      * is allowed to use, and number of similar objects that share this limit.
      * The number of objects that will fit into this memory limit is computed
      * using the average memory size of the objects whose size is given to this
-     * class.
+     * class, and the one estimated by the {@link MemorySizeSampler} it is given.
      * In spark mode, MemoryLimits needs implement Serializable interface otherwise NotSerializableExecption will be thrown (See PIG-4611)
      */
     @InterfaceAudience.Private
@@ -60,6 +60,7 @@ public abstract class SelfSpillBag extends DefaultAbstractBag {
         private long cacheLimit = Integer.MAX_VALUE;
         private long memUsage = 0;
         private long numObjsSizeChecked = 0;
+        private final MemorySizeSampler sampler;
 
         private static float cachedMemUsage = 0.2F;
         private static long maxMem = 0;
@@ -79,6 +80,17 @@ public abstract class SelfSpillBag extends DefaultAbstractBag {
          * @param percent
          */
         public MemoryLimits(int bagCount, float percent) {
+            this(bagCount, percent, null);
+        }
+
+        /**
+         * @param bagCount
+         * @param percent
+         * @param sampler estimates the size of the objects of the user of this class
+         *  in addition to the sizes given to {@link #addNewObjSize(long)}, may be null
+         */
+        public MemoryLimits(int bagCount, float percent, MemorySizeSampler sampler) {
+            this.sampler = sampler;
             init(bagCount, percent);
         }
 
@@ -104,11 +116,9 @@ public abstract class SelfSpillBag extends DefaultAbstractBag {
          * @return number of objects limit
          */
         public long getCacheLimit() {
-            if (numObjsSizeChecked > 0) {
-                long avgUsage = memUsage / numObjsSizeChecked;
-                if (avgUsage > 0) {
-                    cacheLimit = maxMemUsage / avgUsage;
-                }
+            long avgUsage = getAverageObjSize();
+            if (avgUsage > 0) {
+                cacheLimit = maxMemUsage / avgUsage;
             }
             return cacheLimit;
         }
@@ -123,11 +133,33 @@ public abstract class SelfSpillBag extends DefaultAbstractBag {
             ++numObjsSizeChecked;
         }
 
+        /**
+         * @return average size of the objects whose size was submitted, 0 if none were
+         */
+        public long getAverageObjSize() {
+            long count = getNumObjectsSizeAdded();
+            if (count == 0) {
+                return 0;
+            }
+            long total = memUsage;
+            if (sampler != null) {
+                total += sampler.getAverageSize() * sampler.getCount();
+            }
+            return total / count;
+        }
+
+        /**
+         * @return the number of bytes this object is allowed to hold in memory
+         */
+        public long getMaxMemUsage() {
+            return maxMemUsage;
+        }
+
         /**
          * @return the size of
          */
         public long getNumObjectsSizeAdded() {
-            return numObjsSizeChecked;
+            return numObjsSizeChecked + (sampler == null ? 0 : sampler.getCount());
         }
     }
 
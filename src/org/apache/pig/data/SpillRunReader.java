@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pig.data;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.pig.classification.InterfaceAudience;
+
+/**
+ * Reads the tuples of a sorted spill file in batches. When sorted bags may
+ * use more than one thread (see {@link TupleSorter#getSortThreads()}) the
+ * next batch is read in the background while the current one is merged.
+ * The stream is closed once the end of the file is reached.
+ */
+@InterfaceAudience.Private
+public abstract class SpillRunReader implements Iterator<Tuple> {
+
+    private static final Log log = LogFactory.getLog(SpillRunReader.class);
+
+    static final int BATCH_SIZE = 256;
+
+    private static final Tuple[] EMPTY = new Tuple[0];
+
+    private final DataInputStream in;
+    private Tuple[] batch = EMPTY;
+    private int pos = 0;
+    private boolean eof = false;
+    private Future<Tuple[]> prefetched = null;
+
+    public SpillRunReader(DataInputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Read one tuple from the spill file.
+     * @throws EOFException at the end of the file
+     */
+    protected abstract Tuple read(DataInputStream in) throws IOException;
+
+    @Override
+    public boolean hasNext() {
+        if (pos < batch.length) {
+            return true;
+        }
+        fill();
+        return pos < batch.length;
+    }
+
+    @Override
+    public Tuple next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Tuple t = batch[pos];
+        batch[pos++] = null;
+        return t;
+    }
+
+    /**
+     * Not implemented.
+     */
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    private void fill() {
+        if (prefetched != null) {
+            try {
+                batch = prefetched.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while reading spill file.", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new RuntimeException("Unable to read spill file.", e.getCause());
+            } finally {
+                prefetched = null;
+            }
+        } else if (!eof) {
+            batch = readBatch();
+        } else {
+            batch = EMPTY;
+        }
+        pos = 0;
+        if (!eof) {
+            prefetched = TupleSorter.submit(new Callable<Tuple[]>() {
+                @Override
+                public Tuple[] call() {
+                    return readBatch();
+                }
+            });
+        }
+    }
+
+    private Tuple[] readBatch() {
+        Tuple[] tuples = new Tuple[BATCH_SIZE];
+        int n = 0;
+        try {
+            while (n < BATCH_SIZE) {
+                tuples[n] = read(in);
+                n++;
+            }
+        } catch (EOFException eof) {
+            // Out of tuples in this file.
+            this.eof = true;
+            try {
+                in.close();
+            } catch (IOException e) {
+                log.warn("Failed to close spill file.", e);
+            }
+        } catch (IOException ioe) {
+            String msg = "Unable to find our spill file.";
+            log.fatal(msg, ioe);
+            throw new RuntimeException(msg, ioe);
+        }
+        return n == BATCH_SIZE ? tuples : Arrays.copyOf(tuples, n);
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pig.data;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.compress.CodecPool;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.io.compress.Compressor;
+import org.apache.hadoop.io.compress.Decompressor;
+import org.apache.pig.PigConfiguration;
+import org.apache.pig.backend.hadoop.executionengine.mapReduceLayer.PigMapReduce;
+import org.apache.pig.classification.InterfaceAudience;
+
+/**
+ * Creates the streams used by bags to write and read their spill files.
+ * Depending on {@link PigConfiguration#PIG_SPILL_COMPRESSION_CODEC} and
+ * {@link PigConfiguration#PIG_SPILL_ASYNC_WRITE} spill files are compressed
+ * with a Hadoop codec and written from a background thread.
+ */
+@InterfaceAudience.Private
+public class SpillStreams {
+
+    private static final Log log = LogFactory.getLog(SpillStreams.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static boolean initialized = false;
+    private static CompressionCodec codec;
+    private static boolean asyncWrite;
+
+    private SpillStreams() {
+    }
+
+    private static synchronized void init() {
+        if (initialized) {
+            return;
+        }
+        Configuration conf = PigMapReduce.sJobConfInternal.get();
+        if (conf != null) {
+            String codecName = conf.get(PigConfiguration.PIG_SPILL_COMPRESSION_CODEC);
+            if (codecName != null && !codecName.isEmpty()) {
+                codec = new CompressionCodecFactory(conf).getCodecByName(codecName);
+                if (codec == null) {
+                    log.warn("Unknown spill compression codec " + codecName
+                            + ". Spill files will not be compressed");
+                }
+            }
+            asyncWrite = conf.getBoolean(PigConfiguration.PIG_SPILL_ASYNC_WRITE, false);
+        }
+        initialized = true;
+    }
+
+    //@StaticDataCleanup
+    public static synchronized void staticDataCleanup() {
+        initialized = false;
+        codec = null;
+        asyncWrite = false;
+    }
+
+    /**
+     * @param f spill file, will be overwritten
+     * @return stream to write tuples to
+     */
+    public static DataOutputStream createOutputStream(File f) throws IOException {
+        init();
+        OutputStream out = new FileOutputStream(f);
+        if (codec != null) {
+            final Compressor compressor = CodecPool.getCompressor(codec);
+            out = new FilterOutputStream(codec.createOutputStream(out, compressor)) {
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        CodecPool.returnCompressor(compressor);
+                    }
+                }
+            };
+        }
+        if (asyncWrite) {
+            out = new AsyncSpillOutputStream(out);
+        } else {
+            out = new BufferedOutputStream(out);
+        }
+        return new DataOutputStream(out);
+    }
+
+    /**
+     * @param f spill file written through {@link #createOutputStream(File)}
+     * @return stream to read tuples from
+     */
+    public static DataInputStream createInputStream(File f) throws IOException {
+        init();
+        InputStream in = new BufferedInputStream(new FileInputStream(f));
+        if (codec != null) {
+            Decompressor decompressor = CodecPool.getDecompressor(codec);
+            in = new BufferedInputStream(new DecompressorReturningInputStream(
+                    codec.createInputStream(in, decompressor), decompressor), BUFFER_SIZE);
+        }
+        return new DataInputStream(in);
+    }
+
+    /**
+     * Returns the decompressor to the pool once the whole spill file is read,
+     * as bag iterators are not always closed.
+     */
+    private static class DecompressorReturningInputStream extends FilterInputStream {
+        private Decompressor decompressor;
+
+        DecompressorReturningInputStream(InputStream in, Decompressor decompressor) {
+            super(in);
+            this.decompressor = decompressor;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (decompressor == null) {
+                return -1;
+            }
+            int b = super.read();
+            if (b == -1) {
+                close();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (decompressor == null) {
+                return -1;
+            }
+            int n = super.read(b, off, len);
+            if (n == -1) {
+                close();
+            }
+            return n;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return decompressor == null ? 0 : super.available();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (decompressor == null) {
+                return;
+            }
+            try {
+                super.close();
+            } finally {
+                CodecPool.returnDecompressor(decompressor);
+                decompressor = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pig.data;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.pig.PigConfiguration;
+import org.apache.pig.backend.hadoop.executionengine.mapReduceLayer.PigMapReduce;
+import org.apache.pig.classification.InterfaceAudience;
+
+/**
+ * Sorts tuples for the sorted bags. When {@link PigConfiguration#PIG_SORT_THREADS}
+ * is greater than 1, large arrays are sorted as a parallel merge sort on a
+ * fork-join pool and the same pool is used to prefetch spill files during
+ * merges. Comparators such as the ones of ORDER BY run plans which are not
+ * thread safe, so an array sorted with a comparator is only sorted in parallel
+ * if the comparator is a {@link CopyableComparator}, and each thread then
+ * uses its own copy. The sort is stable, like
+ * {@link java.util.Collections#sort(List)}.
+ */
+@InterfaceAudience.Private
+public class TupleSorter {
+
+    /**
+     * Arrays smaller than this are sorted on the calling thread
+     */
+    static final int MIN_PARALLEL_SORT_SIZE = 1 << 13;
+
+    private static final Comparator<Tuple> NATURAL_ORDER = new Comparator<Tuple>() {
+        @SuppressWarnings("unchecked")
+        @Override
+        public int compare(Tuple t1, Tuple t2) {
+            return t1.compareTo(t2);
+        }
+    };
+
+    /**
+     * A comparator which is not thread safe, but can make copies of itself
+     * for the threads of a parallel sort.
+     */
+    public interface CopyableComparator extends Comparator<Tuple> {
+        /**
+         * @return a comparator of the same order, which can be used on
+         * another thread than this one
+         * @throws CloneNotSupportedException if the comparator can not be
+         * copied, in which case the array is sorted on the calling thread
+         */
+        Comparator<Tuple> copy() throws CloneNotSupportedException;
+    }
+
+    private static int sortThreads = -1;
+    private static ForkJoinPool pool;
+
+    private TupleSorter() {
+    }
+
+    /**
+     * @return the number of threads sorted bags may use
+     */
+    public static synchronized int getSortThreads() {
+        if (sortThreads < 0) {
+            sortThreads = 1;
+            Configuration conf = PigMapReduce.sJobConfInternal.get();
+            if (conf != null) {
+                sortThreads = Math.max(1, conf.getInt(PigConfiguration.PIG_SORT_THREADS, 1));
+            }
+        }
+        return sortThreads;
+    }
+
+    private static synchronized ForkJoinPool getPool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(getSortThreads());
+        }
+        return pool;
+    }
+
+    //@StaticDataCleanup
+    public static synchronized void staticDataCleanup() {
+        if (pool != null) {
+            pool.shutdownNow();
+            pool = null;
+        }
+        sortThreads = -1;
+    }
+
+    /**
+     * Run a task in the background if sorted bags are allowed to use more
+     * than one thread.
+     * @return the future result of the task, or null if it has to be run
+     * by the caller
+     */
+    static <T> Future<T> submit(Callable<T> task) {
+        if (getSortThreads() <= 1) {
+            return null;
+        }
+        return getPool().submit(task);
+    }
+
+    /**
+     * Sort an array of tuples.
+     * @param array tuples to sort
+     * @param comp comparator to use, if null the natural order of tuples is used
+     */
+    public static void sort(Tuple[] array, Comparator<Tuple> comp) {
+        if (comp == null) {
+            comp = NATURAL_ORDER;
+        }
+        int threads = getSortThreads();
+        BlockingQueue<Comparator<Tuple>> comps = null;
+        if (threads > 1 && array.length >= MIN_PARALLEL_SORT_SIZE) {
+            comps = getComparators(comp, threads);
+        }
+        if (comps == null) {
+            Arrays.sort(array, comp);
+            return;
+        }
+        // A few chunks per thread keep all threads busy when some of the
+        // chunks are faster to sort than others
+        int chunkSize = Math.max(MIN_PARALLEL_SORT_SIZE / 2, array.length / (threads * 4));
+        getPool().invoke(new MergeSortTask(array, new Tuple[array.length],
+                0, array.length, chunkSize, comps));
+    }
+
+    /**
+     * @return a comparator for each thread of a parallel sort, or null if
+     * the array has to be sorted on the calling thread
+     */
+    private static BlockingQueue<Comparator<Tuple>> getComparators(Comparator<Tuple> comp, int threads) {
+        BlockingQueue<Comparator<Tuple>> comps = new ArrayBlockingQueue<Comparator<Tuple>>(threads);
+        comps.add(comp);
+        for (int i = 1; i < threads; i++) {
+            if (comp == NATURAL_ORDER) {
+                comps.add(comp);
+            } else if (comp instanceof CopyableComparator) {
+                try {
+                    comps.add(((CopyableComparator) comp).copy());
+                } catch (CloneNotSupportedException e) {
+                    return null;
+                }
+            } else {
+                return null;
+            }
+        }
+        return comps;
+    }
+
+    /**
+     * Sort a list of tuples in place.
+     * @param list tuples to sort
+     * @param comp comparator to use, if null the natural order of tuples is used
+     */
+    public static void sort(List<Tuple> list, Comparator<Tuple> comp) {
+        Tuple[] array = list.toArray(new Tuple[list.size()]);
+        sort(array, comp);
+        ListIterator<Tuple> it = list.listIterator();
+        for (Tuple t : array) {
+            it.next();
+            it.set(t);
+        }
+    }
+
+    private static class MergeSortTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Tuple[] array;
+        private final Tuple[] buffer;
+        private final int from;
+        private final int to;
+        private final int chunkSize;
+        // The comparators not in use. A task takes one only while it sorts or
+        // merges, and never while it waits for other tasks.
+        private final BlockingQueue<Comparator<Tuple>> comps;
+
+        MergeSortTask(Tuple[] array, Tuple[] buffer, int from, int to,
+                int chunkSize, BlockingQueue<Comparator<Tuple>> comps) {
+            this.array = array;
+            this.buffer = buffer;
+            this.from = from;
+            this.to = to;
+            this.chunkSize = chunkSize;
+            this.comps = comps;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > chunkSize) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new MergeSortTask(array, buffer, from, mid, chunkSize, comps),
+                        new MergeSortTask(array, buffer, mid, to, chunkSize, comps));
+                Comparator<Tuple> comp = takeComparator();
+                try {
+                    merge(mid, comp);
+                } finally {
+                    comps.add(comp);
+                }
+            } else {
+                Comparator<Tuple> comp = takeComparator();
+                try {
+                    Arrays.sort(array, from, to, comp);
+                } finally {
+                    comps.add(comp);
+                }
+            }
+        }
+
+        private Comparator<Tuple> takeComparator() {
+            try {
+                return comps.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while sorting", e);
+            }
+        }
+
+        private void merge(int mid, Comparator<Tuple> comp) {
+            if (comp.compare(array[mid - 1], array[mid]) <= 0) {
+                // Both halves are already in order
+                return;
+            }
+            // Merge the left half, moved to the buffer, with the right half.
+            // Ties are taken from the left half to keep the sort stable.
+            System.arraycopy(array, from, buffer, from, mid - from);
+            int left = from;
+            int right = mid;
+            int dest = from;
+            while (left < mid && right < to) {
+                if (comp.compare(buffer[left], array[right]) <= 0) {
+                    array[dest++] = buffer[left++];
+                } else {
+                    array[dest++] = array[right++];
+                }
+            }
+            System.arraycopy(buffer, left, array, dest, mid - left);
+        }
+    }
+}
@@ -23,6 +23,7 @@ import java.io.IOException;
 
 import org.apache.pig.classification.InterfaceAudience;
 import org.apache.pig.data.BinInterSedes;
+import org.apache.pig.data.PrimitiveTuple;
 import org.apache.pig.data.Tuple;
 import org.apache.pig.data.TupleFactory;
 
@@ -87,6 +88,17 @@ public class SedesHelper {
 
     public static void writeGenericTuple(DataOutput out, Tuple t) throws IOException {
         int sz = t.size();
+        writeTupleSize(out, sz);
+
+        for (int i = 0; i < sz; i++) {
+            pigSerializer.writeDatum(out, t.get(i));
+        }
+    }
+
+    /**
+     * Writes the type byte and size which precede the fields of a generic tuple.
+     */
+    public static void writeTupleSize(DataOutput out, int sz) throws IOException {
         switch (sz) {
         case 0:
             out.writeByte(BinInterSedes.TUPLE_0);
@@ -130,16 +142,16 @@ public class SedesHelper {
             out.writeInt(sz);
         }
         }
-
-        for (int i = 0; i < sz; i++) {
-            pigSerializer.writeDatum(out, t.get(i));
-        }
     }
 
     public static Tuple readGenericTuple(DataInput in, byte type) throws IOException {
         int sz = pigSerializer.getTupleSize(in, type);
 
         Tuple t = mTupleFactory.newTuple(sz);
+        if (t instanceof PrimitiveTuple) {
+            pigSerializer.readPrimitiveTupleFields(in, (PrimitiveTuple) t, sz);
+            return t;
+        }
         for (int i = 0; i < sz; i++) {
             t.set(i, pigSerializer.readDatum(in));
         }
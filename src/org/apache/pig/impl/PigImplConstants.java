@@ -65,6 +65,13 @@ public class PigImplConstants {
     public static final String REDUCER_REQUESTED_PARALLELISM = "pig.info.reducers.requested.parallel";
     public static final String REDUCER_ESTIMATED_PARALLELISM = "pig.info.reducers.estimated.parallel";
 
+    /**
+     * Signature of a job or vertex under which its statistics are recorded in the
+     * history of the script, and the size of its input files when it was estimated
+     */
+    public static final String STATS_HISTORY_SIGNATURE = "pig.info.stats.history.signature";
+    public static final String STATS_HISTORY_INPUT_BYTES = "pig.info.stats.history.input.bytes";
+
     /**
      * Parallelism to be used for CROSS operation by GFCross UDF
      */
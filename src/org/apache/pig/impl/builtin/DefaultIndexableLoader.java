@@ -79,6 +79,9 @@ public class DefaultIndexableLoader extends LoadFunc implements IndexableLoadFun
     private transient TupleFactory mTupleFactory;
 
     private String inpLocation;
+    // signature of the right side load, which the wrapped loader needs to
+    // find the properties it set in the front end, like its schema
+    private String signature;
 
     public DefaultIndexableLoader(
             String loaderFuncSpec,
@@ -218,7 +221,7 @@ public class DefaultIndexableLoader extends LoadFunc implements IndexableLoadFun
 
         //create ReadToEndLoader that will read the given splits in order
         loader = new ReadToEndLoader((LoadFunc)PigContext.instantiateFuncFromSpec(rightLoaderFuncSpec),
-                conf, inpLocation, splitsToBeRead);
+                conf, inpLocation, splitsToBeRead, signature);
     }
 
     private Object extractKeysFromIdxTuple(Tuple idxTuple) throws ExecException{
@@ -276,6 +279,11 @@ public class DefaultIndexableLoader extends LoadFunc implements IndexableLoadFun
         // nothing to do
     }
 
+    @Override
+    public void setUDFContextSignature(String signature) {
+        this.signature = signature;
+    }
+
     public void setIndexFile(String indexFile) {
         this.indexFile = indexFile;
     }
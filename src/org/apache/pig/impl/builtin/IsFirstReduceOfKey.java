@@ -37,16 +37,9 @@ public class IsFirstReduceOfKey extends EvalFunc<Boolean> {
     /* Loads the key distribution file obtained from the sampler */
     protected void init() {
         Configuration conf = PigMapReduce.sJobConfInternal.get();
-        String keyDistFile = conf.get("pig.keyDistFile", "");
-        if (keyDistFile.length() == 0) {
-            throw new RuntimeException(this.getClass().getSimpleName() +
-                    " used but no key distribution found");
-        }
-
         try {
             Integer [] redCnt = new Integer[1]; 
-            reducerMap = MapRedUtil.loadPartitionFileFromLocalCache(
-                    keyDistFile, redCnt, DataType.TUPLE, conf);
+            reducerMap = MapRedUtil.loadPartitionFile(conf, redCnt, DataType.TUPLE);
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
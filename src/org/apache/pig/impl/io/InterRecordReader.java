@@ -31,13 +31,14 @@ import org.apache.hadoop.mapreduce.TaskAttemptContext;
 import org.apache.hadoop.mapreduce.lib.input.FileSplit;
 import org.apache.pig.backend.executionengine.ExecException;
 import org.apache.pig.data.BinInterSedes;
-import org.apache.pig.data.InterSedes;
+import org.apache.pig.data.DictionaryInterSedes;
 import org.apache.pig.data.InterSedesFactory;
 import org.apache.pig.data.Tuple;
 
 /**
  * A record reader used to read data written using {@link InterRecordWriter}
- * It uses the default InterSedes object for deserialization.
+ * It uses a {@link DictionaryInterSedes} for deserialization, which reads both
+ * plain and dictionary encoded records.
  */
 public class InterRecordReader extends RecordReader<Text, Tuple> {
 
@@ -47,7 +48,7 @@ public class InterRecordReader extends RecordReader<Text, Tuple> {
   private BufferedPositionedInputStream in;
   private Tuple value = null;
   private DataInputStream inData = null;
-  private static InterSedes sedes = InterSedesFactory.getInterSedesInstance();
+  private final DictionaryInterSedes sedes = InterSedesFactory.newDictionaryInterSedes();
 
   private byte[] syncMarker;
   private long lastSyncPos = -1;
@@ -119,6 +120,7 @@ outer:while (b != -1) {
               ++i;
           }
           lastSyncPos = in.getPosition();
+          sedes.reset();
           return true;
       }
       return false;
@@ -147,6 +149,7 @@ outer:while (b != -1) {
           ++i;
       }
       lastSyncPos = in.getPosition();
+      sedes.reset();
       return true;
 
   }
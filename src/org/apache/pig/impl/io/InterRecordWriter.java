@@ -27,6 +27,7 @@ import org.apache.hadoop.io.WritableComparable;
 import org.apache.hadoop.mapreduce.RecordWriter;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
 import org.apache.hadoop.util.Time;
+import org.apache.pig.data.DictionaryInterSedes;
 import org.apache.pig.data.InterSedes;
 import org.apache.pig.data.InterSedesFactory;
 import org.apache.pig.data.Tuple;
@@ -34,12 +35,16 @@ import org.apache.pig.data.Tuple;
 
 /**
  * A record reader used to write data compatible with {@link InterRecordWriter}
- * It uses the default InterSedes object for serialization.
+ * It uses the default InterSedes object for serialization, or a
+ * {@link DictionaryInterSedes} restarted at every sync marker if dictionary
+ * encoding is enabled.
  */
 public class InterRecordWriter extends
         RecordWriter<org.apache.hadoop.io.WritableComparable, Tuple> {
 
-    private static InterSedes sedes = InterSedesFactory.getInterSedesInstance();
+    private final InterSedes sedes;
+    // null unless dictionary encoding is enabled
+    private final DictionaryInterSedes dictionarySedes;
 
     private byte[] syncMarker;
     private long lastSyncPos = -1;
@@ -53,7 +58,22 @@ public class InterRecordWriter extends
      * 
      */
     public InterRecordWriter(FSDataOutputStream out, int syncMarkerLength, long syncMarkerInterval) {
+        this(out, syncMarkerLength, syncMarkerInterval, false);
+    }
+
+    /**
+     * @param dictionaryEncoding whether to write the records with a {@link DictionaryInterSedes}
+     */
+    public InterRecordWriter(FSDataOutputStream out, int syncMarkerLength, long syncMarkerInterval,
+            boolean dictionaryEncoding) {
         this.out = out;
+        if (dictionaryEncoding) {
+            dictionarySedes = InterSedesFactory.newDictionaryInterSedes();
+            sedes = dictionarySedes;
+        } else {
+            dictionarySedes = null;
+            sedes = InterSedesFactory.getInterSedesInstance();
+        }
         this.syncMarkerInterval = syncMarkerInterval;
         syncMarker = new byte[syncMarkerLength];
 
@@ -88,6 +108,10 @@ public class InterRecordWriter extends
         if (lastSyncPos == -1 || out.getPos() >= (lastSyncPos + syncMarkerInterval)) {
             out.write(syncMarker);
             lastSyncPos = out.getPos();
+            if (dictionarySedes != null) {
+                // readers may start at any sync marker
+                dictionarySedes.reset();
+            }
         }
         sedes.writeDatum(out, t);
         
@@ -146,7 +146,8 @@ implements StoreFuncInterface, LoadMetadata {
             FSDataOutputStream fileOut = fs.create(file, false);
             return new InterRecordWriter(fileOut,
                     retrieveMarkerLengthFromConf(job.getConfiguration()),
-                    retrieveMarkerIntervalFromConf(job.getConfiguration())
+                    retrieveMarkerIntervalFromConf(job.getConfiguration()),
+                    conf.getBoolean(PigConfiguration.PIG_INTERSTORAGE_DICTIONARY_ENCODING, false)
             );
         }
     }
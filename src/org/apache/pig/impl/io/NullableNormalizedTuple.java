@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pig.impl.io;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.pig.backend.executionengine.ExecException;
+import org.apache.pig.classification.InterfaceAudience;
+import org.apache.pig.data.BinInterSedes;
+import org.apache.pig.data.NormalizedKeyEncoder;
+import org.apache.pig.data.Tuple;
+
+/**
+ * A NullableTuple that is serialized together with its normalized sort key
+ * (see {@link NormalizedKeyEncoder}), so that it can be sorted by comparing
+ * bytes. The serialized form of a non null tuple is the null flag, the
+ * length of the normalized key as a vint, the normalized key, the tuple and
+ * the index.
+ */
+@InterfaceAudience.Private
+public class NullableNormalizedTuple extends NullableTuple {
+
+    private static final BinInterSedes bis = new BinInterSedes();
+
+    private byte[] mKey;
+
+    public NullableNormalizedTuple() {
+    }
+
+    /**
+     * @param t the key
+     * @param encoder encoder for the sort order of the key
+     */
+    public NullableNormalizedTuple(Tuple t, NormalizedKeyEncoder encoder) throws ExecException {
+        super(t);
+        mKey = encoder.encode(t);
+    }
+
+    /**
+     * @return the normalized key, null if the tuple is null
+     */
+    public byte[] getNormalizedKey() {
+        return isNull() ? null : mKey;
+    }
+
+    @Override
+    public NullableNormalizedTuple clone() throws CloneNotSupportedException {
+        NullableNormalizedTuple clone = (NullableNormalizedTuple) super.clone();
+        clone.mKey = mKey;
+        return clone;
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        boolean nullness = in.readBoolean();
+        setNull(nullness);
+        // Free up the previous value for GC
+        mValue = null;
+        mKey = null;
+        if (!nullness) {
+            mKey = new byte[WritableUtils.readVInt(in)];
+            in.readFully(mKey);
+            mValue = bis.readTuple(in);
+        }
+        setIndex(in.readByte());
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        out.writeBoolean(isNull());
+        if (!isNull()) {
+            WritableUtils.writeVInt(out, mKey.length);
+            out.write(mKey);
+            mValue.write(out);
+        }
+        out.writeByte(getIndex());
+    }
+}
@@ -21,6 +21,7 @@ import java.io.DataInput;
 import java.io.IOException;
 
 import org.apache.pig.data.BinInterSedes;
+import org.apache.pig.data.LazyBinSedesTuple;
 import org.apache.pig.data.Tuple;
 import org.apache.pig.data.TupleFactory;
 
@@ -31,6 +32,7 @@ public class NullableTuple extends PigNullableWritable {
 
     private TupleFactory mFactory = null;
     private static final BinInterSedes bis = new BinInterSedes();
+    private static boolean lazyDeserialization = false;
 
     public NullableTuple() {
     }
@@ -48,6 +50,19 @@ public class NullableTuple extends PigNullableWritable {
         setIndex(copy.getIndex());
     }
 
+    /**
+     * Sets whether the tuples are read as {@link LazyBinSedesTuple}s, which only
+     * deserialize the fields which are accessed.
+     */
+    public static void setLazyDeserialization(boolean lazy) {
+        lazyDeserialization = lazy;
+    }
+
+    //@StaticDataCleanup
+    public static void staticDataCleanup() {
+        lazyDeserialization = false;
+    }
+
     @Override
     public Object getValueAsPigType() {
         return isNull() ? null : (Tuple)mValue;
@@ -60,7 +75,7 @@ public class NullableTuple extends PigNullableWritable {
         // Free up the previous value for GC
         mValue = null;
         if (!nullness) {
-            mValue = bis.readTuple(in);
+            mValue = lazyDeserialization ? LazyBinSedesTuple.read(in) : bis.readTuple(in);
         }
         setIndex(in.readByte());
     }
@@ -154,6 +154,18 @@ public class ReadToEndLoader extends LoadFunc implements LoadMetadata {
         init();
     }
 
+    public ReadToEndLoader(LoadFunc wrappedLoadFunc, Configuration conf,
+            String inputLocation, int[] toReadSplitIdxs, String signature) throws IOException {
+        this.udfContextSignature = signature;
+        this.wrappedLoadFunc = wrappedLoadFunc;
+        this.inputLocation = inputLocation;
+        this.toReadSplits = toReadSplitIdxs;
+        this.conf = conf;
+        this.curSplitIndex =
+            toReadSplitIdxs.length > 0 ? toReadSplitIdxs[0] : Integer.MAX_VALUE;
+        init();
+    }
+
     @SuppressWarnings("unchecked")
     private void init() throws IOException {
         if (conf != null) {
@@ -247,6 +259,28 @@ public class ReadToEndLoader extends LoadFunc implements LoadMetadata {
     }
 
 
+    /**
+     * @return the number of splits of the input
+     */
+    public int getNumSplits() {
+        return inpSplits.size();
+    }
+
+    /**
+     * Makes the next call to getNext() read from the beginning of the given
+     * split, and then the splits after it.
+     * @param splitIndex
+     * @throws IOException
+     */
+    public void seekToSplit(int splitIndex) throws IOException {
+        if (reader != null) {
+            reader.close();
+            reader = null;
+        }
+        toReadSplits = null;
+        curSplitIndex = splitIndex;
+    }
+
     /**
      * Updates curSplitIndex , just increment if splitIndexes is null,
      * else get next split in splitIndexes
@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pig.impl.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the most frequent items of a stream in bounded memory, with the
+ * Space-Saving algorithm: it keeps a counter for at most capacity items, and
+ * an item not counted replaces the item with the smallest count, taking over
+ * its count as the overestimation of its own. Any item whose frequency is
+ * above 1 / capacity is guaranteed to be counted.
+ *
+ * @param <T> the type of the items, which must implement equals and hashCode
+ */
+public class HeavyHitters<T> {
+
+    private final int capacity;
+    private final Map<T, Counter> counters;
+    private long total;
+
+    private static class Counter {
+        long count;
+        // the count of the item replaced by this one, by which count may be
+        // an overestimation
+        long error;
+    }
+
+    /**
+     * @param capacity maximum number of items counted
+     */
+    public HeavyHitters(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        counters = new HashMap<T, Counter>(capacity * 2);
+    }
+
+    public void add(T item) {
+        total++;
+        Counter c = counters.get(item);
+        if (c != null) {
+            c.count++;
+            return;
+        }
+        if (counters.size() < capacity) {
+            c = new Counter();
+            c.count = 1;
+            counters.put(item, c);
+            return;
+        }
+        T minItem = null;
+        Counter min = null;
+        for (Map.Entry<T, Counter> e : counters.entrySet()) {
+            if (min == null || e.getValue().count < min.count) {
+                minItem = e.getKey();
+                min = e.getValue();
+            }
+        }
+        counters.remove(minItem);
+        min.error = min.count;
+        min.count++;
+        counters.put(item, min);
+    }
+
+    /**
+     * @return number of items added
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * @param minFrequency the minimum fraction of the items added
+     * @return the items which are guaranteed to be at least minFrequency of
+     *  the items added, with the lower bound of their frequency, from the
+     *  most frequent
+     */
+    public Map<T, Double> getFrequentItems(double minFrequency) {
+        List<Map.Entry<T, Counter>> entries = new ArrayList<Map.Entry<T, Counter>>();
+        for (Map.Entry<T, Counter> e : counters.entrySet()) {
+            if (e.getValue().count - e.getValue().error >= minFrequency * total) {
+                entries.add(e);
+            }
+        }
+        Collections.sort(entries, new Comparator<Map.Entry<T, Counter>>() {
+            @Override
+            public int compare(Map.Entry<T, Counter> e1, Map.Entry<T, Counter> e2) {
+                long c1 = e1.getValue().count - e1.getValue().error;
+                long c2 = e2.getValue().count - e2.getValue().error;
+                return c1 < c2 ? 1 : (c1 == c2 ? 0 : -1);
+            }
+        });
+        Map<T, Double> items = new LinkedHashMap<T, Double>();
+        for (Map.Entry<T, Counter> e : entries) {
+            items.put(e.getKey(), (double) (e.getValue().count - e.getValue().error) / total);
+        }
+        return items;
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pig.impl.util;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Estimates the quantiles of a stream in bounded memory, with the KLL
+ * algorithm: the items are kept in levels, where an item of level h stands
+ * for 2^h items of the stream. When a level is full, it is sorted and every
+ * other item, starting at random from the first or the second, is promoted
+ * to the next level. Lower levels have smaller capacities, so that about
+ * 3 * k items are kept, and the rank of an item is estimated within about
+ * 1.7 / k of the number of items added. Sketches built on parts of a stream
+ * can be merged.
+ *
+ * @param <T> the type of the items
+ */
+public class QuantileSketch<T> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int k;
+    // must be serializable for the sketch to be serializable
+    private final Comparator<? super T> comparator;
+    private final List<ArrayList<T>> levels = new ArrayList<ArrayList<T>>();
+    private final Random random = new Random();
+    private long n;
+    private int size;
+
+    /**
+     * @param k capacity of the highest level, which sets the accuracy
+     * @param comparator order of the items
+     */
+    public QuantileSketch(int k, Comparator<? super T> comparator) {
+        if (k < 2) {
+            throw new IllegalArgumentException("Capacity must be at least 2: " + k);
+        }
+        this.k = k;
+        this.comparator = comparator;
+        levels.add(new ArrayList<T>());
+    }
+
+    public void add(T item) {
+        levels.get(0).add(item);
+        n++;
+        size++;
+        compress();
+    }
+
+    /**
+     * Adds the items of another sketch of the same order to this one
+     */
+    public void merge(QuantileSketch<T> other) {
+        for (int h = 0; h < other.levels.size(); h++) {
+            if (h == levels.size()) {
+                levels.add(new ArrayList<T>());
+            }
+            levels.get(h).addAll(other.levels.get(h));
+        }
+        n += other.n;
+        size += other.size;
+        compress();
+    }
+
+    /**
+     * @return number of items added
+     */
+    public long getN() {
+        return n;
+    }
+
+    /**
+     * @return number of items kept
+     */
+    public int getNumRetained() {
+        return size;
+    }
+
+    /**
+     * @param sampleSize the number of items to return
+     * @return sampleSize items at evenly spaced ranks of the items added, in
+     *  order, or all the items if there are fewer
+     */
+    public List<T> getSample(int sampleSize) {
+        List<Weighted<T>> items = new ArrayList<Weighted<T>>(size);
+        for (int h = 0; h < levels.size(); h++) {
+            for (T item : levels.get(h)) {
+                items.add(new Weighted<T>(item, 1L << h));
+            }
+        }
+        Collections.sort(items, new Comparator<Weighted<T>>() {
+            @Override
+            public int compare(Weighted<T> w1, Weighted<T> w2) {
+                return comparator.compare(w1.item, w2.item);
+            }
+        });
+        int count = (int) Math.min(sampleSize, n);
+        List<T> sample = new ArrayList<T>(count);
+        long rank = 0;
+        int i = 0;
+        for (Weighted<T> w : items) {
+            rank += w.weight;
+            // the item of rank (i + 0.5) * n / count
+            while (i < count && (2 * i + 1) * n <= 2 * rank * count) {
+                sample.add(w.item);
+                i++;
+            }
+        }
+        return sample;
+    }
+
+    private int capacity(int h) {
+        // k * (2/3)^(depth of the level below the highest one)
+        int depth = levels.size() - 1 - h;
+        return Math.max(2, (int) Math.ceil(k * Math.pow(2.0 / 3.0, depth)));
+    }
+
+    private int maxSize() {
+        int maxSize = 0;
+        for (int h = 0; h < levels.size(); h++) {
+            maxSize += capacity(h);
+        }
+        return maxSize;
+    }
+
+    private void compress() {
+        while (size >= maxSize()) {
+            for (int h = 0; h < levels.size(); h++) {
+                if (levels.get(h).size() >= capacity(h)) {
+                    if (h + 1 == levels.size()) {
+                        levels.add(new ArrayList<T>());
+                    }
+                    compact(h);
+                    break;
+                }
+            }
+        }
+    }
+
+    private void compact(int h) {
+        ArrayList<T> level = levels.get(h);
+        Collections.sort(level, comparator);
+        // an odd item out stays in this level
+        T last = level.size() % 2 == 1 ? level.remove(level.size() - 1) : null;
+        ArrayList<T> next = levels.get(h + 1);
+        for (int i = random.nextBoolean() ? 1 : 0; i < level.size(); i += 2) {
+            next.add(level.get(i));
+        }
+        size -= level.size() / 2;
+        level.clear();
+        if (last != null) {
+            level.add(last);
+        }
+    }
+
+    private static class Weighted<T> {
+        final T item;
+        final long weight;
+
+        Weighted(T item, long weight) {
+            this.item = item;
+            this.weight = weight;
+        }
+    }
+}
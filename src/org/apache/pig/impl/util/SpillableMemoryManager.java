@@ -27,6 +27,7 @@ import java.util.Comparator;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import javax.management.Notification;
 import javax.management.NotificationEmitter;
@@ -38,6 +39,8 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.pig.PigConfiguration;
 
+import com.google.common.collect.MapMaker;
+
 /**
  * This class Tracks the tenured pool and a list of Spillable objects. When memory gets low, this
  * class will start requesting Spillable objects to free up memory.
@@ -45,6 +48,11 @@ import org.apache.pig.PigConfiguration;
  * Low memory is defined as more than 50% of the tenured pool being allocated. Spillable objects are
  * tracked using WeakReferences so that the objects can be GCed even though this class has a reference
  * to them.
+ * <p>
+ * When {@link PigConfiguration#PIG_SPILL_MEMORY_BUDGET_ENABLED} is set, GC notifications are ignored.
+ * Instead bags and operators holding large amounts of data report the memory they use through
+ * {@link #updateMemoryReservation(Object, long)} and the caller which pushes the total over the
+ * budget synchronously spills the biggest Spillable objects.
  *
  */
 public class SpillableMemoryManager implements NotificationListener {
@@ -54,6 +62,23 @@ public class SpillableMemoryManager implements NotificationListener {
     private static final int UNUSED_MEMORY_THRESHOLD_DEFAULT = 350 * 1024 * 1024;
     private static final float MEMORY_THRESHOLD_FRACTION_DEFAULT = 0.7f;
     private static final float COLLECTION_THRESHOLD_FRACTION_DEFAULT = 0.7f;
+    private static final float MEMORY_BUDGET_FRACTION_DEFAULT = 0.6f;
+
+    private static final Comparator<SpillablePtr> SPILLABLE_SIZE_COMPARATOR = new Comparator<SpillablePtr>() {
+        @Override
+        public int compare(SpillablePtr o1Ref, SpillablePtr o2Ref) {
+            long o1Size = o1Ref.getMemorySize();
+            long o2Size = o2Ref.getMemorySize();
+
+            if (o1Size == o2Size) {
+                return 0;
+            }
+            if (o1Size < o2Size) {
+                return 1;
+            }
+            return -1;
+        }
+    };
 
     private LinkedList<WeakReference<Spillable>> spillables = new LinkedList<WeakReference<Spillable>>();
     // References to spillables with size
@@ -92,12 +117,26 @@ public class SpillableMemoryManager implements NotificationListener {
 
     private MemoryPoolMXBean tenuredHeap;
 
+    // Memory budget mode. Bytes reserved by each owner are tracked in a map
+    // with weak keys so that owners can be GCed without releasing explicitly.
+    // Owners are compared by identity, as the hash code of a bag walks its
+    // contents and changes as it grows.
+    private volatile boolean memoryBudgetEnabled = false;
+    private long memoryBudget = 0L;
+    private final Map<Object, Long> reservations = new MapMaker().weakKeys().makeMap();
+    private long reservedSize = 0L;
+    private boolean spillingForBudget = false;
+
     private static final SpillableMemoryManager manager = new SpillableMemoryManager();
 
     //@StaticDataCleanup
     public static void staticDataCleanup() {
         manager.spillables.clear();
         manager.accumulatedFreeSize = 0L;
+        synchronized (manager.reservations) {
+            manager.reservations.clear();
+            manager.reservedSize = 0L;
+        }
     }
 
     private SpillableMemoryManager() {
@@ -181,16 +220,158 @@ public class SpillableMemoryManager implements NotificationListener {
 
     public void configure(Configuration conf) {
 
-        spillFileSizeThreshold = conf.getLong("pig.spill.size.threshold", spillFileSizeThreshold);
+        spillFileSizeThreshold = conf.getLong(PigConfiguration.PIG_SPILL_SIZE_THRESHOLD, spillFileSizeThreshold);
         gcActivationSize = conf.getLong("pig.spill.gc.activation.size", gcActivationSize);
         float memoryThresholdFraction = conf.getFloat(PigConfiguration.PIG_SPILL_MEMORY_USAGE_THRESHOLD_FRACTION, MEMORY_THRESHOLD_FRACTION_DEFAULT);
         float collectionThresholdFraction = conf.getFloat(PigConfiguration.PIG_SPILL_COLLECTION_THRESHOLD_FRACTION, COLLECTION_THRESHOLD_FRACTION_DEFAULT);
         long unusedMemoryThreshold = conf.getLong(PigConfiguration.PIG_SPILL_UNUSED_MEMORY_THRESHOLD_SIZE, UNUSED_MEMORY_THRESHOLD_DEFAULT);
         configureMemoryThresholds(memoryThresholdFraction, collectionThresholdFraction, unusedMemoryThreshold);
+
+        memoryBudgetEnabled = conf.getBoolean(PigConfiguration.PIG_SPILL_MEMORY_BUDGET_ENABLED, false);
+        if (memoryBudgetEnabled) {
+            float budgetFraction = conf.getFloat(PigConfiguration.PIG_SPILL_MEMORY_BUDGET_FRACTION, MEMORY_BUDGET_FRACTION_DEFAULT);
+            memoryBudget = (long) (Runtime.getRuntime().maxMemory() * budgetFraction);
+            log.info("Using memory budget of " + memoryBudget + " bytes for spillable objects."
+                    + " Memory threshold notifications will be ignored");
+        }
+    }
+
+    /**
+     * @return true if spills are driven by memory reservations instead of GC notifications
+     */
+    public boolean isMemoryBudgetEnabled() {
+        return memoryBudgetEnabled;
+    }
+
+    /**
+     * Set the number of bytes held by owner against the memory budget. If the
+     * total reserved by all owners exceeds the budget, the biggest Spillable
+     * objects are spilled in the calling thread before returning. Does nothing
+     * if memory budget mode is not enabled.
+     *
+     * @param owner
+     *            object holding the memory. Reservations are dropped when the owner is GCed.
+     * @param bytes
+     *            total number of bytes currently held by owner
+     * @return true if the budget is still exceeded, in which case the owner
+     *         should free up memory it holds
+     */
+    public boolean updateMemoryReservation(Object owner, long bytes) {
+        if (!memoryBudgetEnabled) {
+            return false;
+        }
+        long toFree;
+        synchronized (reservations) {
+            Long prev = reservations.put(owner, bytes);
+            reservedSize += bytes - (prev == null ? 0 : prev);
+            // Do not recurse into another spill from objects updating
+            // their reservation while being spilled
+            if (reservedSize <= memoryBudget || spillingForBudget) {
+                return false;
+            }
+            // The running total still includes owners that have been GCed
+            reservedSize = 0;
+            for (Long size : reservations.values()) {
+                reservedSize += size;
+            }
+            if (reservedSize <= memoryBudget) {
+                return false;
+            }
+            // Free up to a fifth of the budget more than needed so that
+            // we do not spill again on the very next reservation
+            toFree = reservedSize - memoryBudget + (long) (memoryBudget * 0.2);
+            spillingForBudget = true;
+        }
+        try {
+            spillForBudget(toFree);
+        } finally {
+            synchronized (reservations) {
+                spillingForBudget = false;
+            }
+        }
+        synchronized (reservations) {
+            return reservedSize > memoryBudget;
+        }
+    }
+
+    /**
+     * Drop the reservation held by owner.
+     * @param owner object which reserved memory
+     */
+    public void releaseMemoryReservation(Object owner) {
+        if (!memoryBudgetEnabled) {
+            return;
+        }
+        synchronized (reservations) {
+            Long prev = reservations.remove(owner);
+            if (prev != null) {
+                reservedSize -= prev;
+            }
+        }
+    }
+
+    private void spillForBudget(long toFree) {
+        synchronized (spillLock) {
+            List<SpillablePtr> candidates = new LinkedList<SpillablePtr>();
+            synchronized (spillables) {
+                for (Iterator<WeakReference<Spillable>> i = spillables.iterator(); i.hasNext();) {
+                    Spillable s = i.next().get();
+                    if (s == null) {
+                        i.remove();
+                        continue;
+                    }
+                    // GroupingSpillables wait for the task thread to aggregate, which
+                    // is the thread we are running in. They free memory on their own
+                    // when their reservation reports that the budget is exceeded.
+                    if (s instanceof GroupingSpillable) {
+                        continue;
+                    }
+                    candidates.add(new SpillablePtr(s, s.getMemorySize()));
+                }
+            }
+            Collections.sort(candidates, SPILLABLE_SIZE_COMPARATOR);
+
+            long estimatedFreed = 0;
+            int numObjSpilled = 0;
+            for (SpillablePtr sPtr : candidates) {
+                Spillable s = sPtr.get();
+                if (s == null) {
+                    continue;
+                }
+                long toBeFreed = sPtr.getMemorySize();
+                if (toBeFreed < spillFileSizeThreshold) {
+                    log.debug("spilling small files - getting out of memory budget handler");
+                    break;
+                }
+                if (s.spill() > 0) {
+                    numObjSpilled++;
+                    estimatedFreed += toBeFreed;
+                    synchronized (reservations) {
+                        Long prev = reservations.get(s);
+                        if (prev != null) {
+                            long remaining = s.getMemorySize();
+                            reservations.put(s, remaining);
+                            reservedSize += remaining - prev;
+                        }
+                    }
+                }
+                if (estimatedFreed > toFree) {
+                    break;
+                }
+            }
+            if (estimatedFreed > 0) {
+                log.info("Memory budget of " + memoryBudget + " bytes exceeded. Spilled an estimate of "
+                        + estimatedFreed + " bytes from " + numObjSpilled + " objects");
+            }
+        }
     }
 
     @Override
     public void handleNotification(Notification n, Object o) {
+        if (memoryBudgetEnabled) {
+            // Spills are triggered by memory reservations
+            return;
+        }
         CompositeData cd = (CompositeData) n.getUserData();
         MemoryNotificationInfo info = MemoryNotificationInfo.from(cd);
         // free the amount exceeded over the threshold and then a further half
@@ -243,21 +424,7 @@ public class SpillableMemoryManager implements NotificationListener {
                     spillablesSR.add(new SpillablePtr(s, s.getMemorySize()));
                 }
                 log.debug("Spillables list size: " + spillablesSR.size());
-                Collections.sort(spillablesSR, new Comparator<SpillablePtr>() {
-                    @Override
-                    public int compare(SpillablePtr o1Ref, SpillablePtr o2Ref) {
-                        long o1Size = o1Ref.getMemorySize();
-                        long o2Size = o2Ref.getMemorySize();
-
-                        if (o1Size == o2Size) {
-                            return 0;
-                        }
-                        if (o1Size < o2Size) {
-                            return 1;
-                        }
-                        return -1;
-                    }
-                });
+                Collections.sort(spillablesSR, SPILLABLE_SIZE_COMPARATOR);
                 // Block new bags from being registered
                 blockRegisterOnSpill = true;
             }
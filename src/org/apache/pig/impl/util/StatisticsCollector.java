@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pig.impl.util;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.pig.ResourceStatistics;
+import org.apache.pig.ResourceStatistics.ResourceFieldStatistics;
+import org.apache.pig.backend.executionengine.ExecException;
+import org.apache.pig.data.DataByteArray;
+import org.apache.pig.data.DataType;
+import org.apache.pig.data.Tuple;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+/**
+ * Collects the statistics of the tuples written by a store: the number of
+ * records, and for each of the first {@link #MAX_FIELDS} fields, its number
+ * of distinct values and, if all of its values have the same simple type,
+ * its smallest and largest values. The statistics collected by the tasks of
+ * a job are merged when it is committed.
+ */
+public class StatisticsCollector implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final HashFunction hf = Hashing.murmur3_128();
+
+    public static final int MAX_FIELDS = 100;
+    // about 1.6% of error on the number of distinct values
+    private static final int PRECISION = 12;
+
+    private long numRecords;
+    private final List<FieldCollector> fields = new ArrayList<FieldCollector>();
+
+    private static class FieldCollector implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        HyperLogLog distinctValues = new HyperLogLog(PRECISION);
+        byte type = DataType.UNKNOWN;
+        // set to false if the field has values of different or complex types
+        boolean hasRange = true;
+        Object min;
+        Object max;
+
+        void add(Object o) {
+            if (o == null) {
+                return;
+            }
+            distinctValues.addHash(hash(o));
+            if (hasRange) {
+                byte t = DataType.findType(o);
+                if (!isRangeType(t) || (type != DataType.UNKNOWN && type != t)) {
+                    hasRange = false;
+                    min = max = null;
+                    return;
+                }
+                type = t;
+                if (min == null || DataType.compare(o, min, t, t) < 0) {
+                    min = o;
+                }
+                if (max == null || DataType.compare(o, max, t, t) > 0) {
+                    max = o;
+                }
+            }
+        }
+
+        void merge(FieldCollector other) {
+            distinctValues.merge(other.distinctValues);
+            if (!other.hasRange || (type != DataType.UNKNOWN && other.type != DataType.UNKNOWN
+                    && type != other.type)) {
+                hasRange = false;
+                min = max = null;
+            } else if (hasRange && other.min != null) {
+                if (min == null || DataType.compare(other.min, min, other.type, type) < 0) {
+                    min = other.min;
+                }
+                if (max == null || DataType.compare(other.max, max, other.type, type) > 0) {
+                    max = other.max;
+                }
+                type = other.type;
+            }
+        }
+    }
+
+    private static boolean isRangeType(byte type) {
+        switch (type) {
+        case DataType.BOOLEAN:
+        case DataType.INTEGER:
+        case DataType.LONG:
+        case DataType.FLOAT:
+        case DataType.DOUBLE:
+        case DataType.CHARARRAY:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    private static long hash(Object o) {
+        if (o instanceof DataByteArray) {
+            return hf.hashBytes(((DataByteArray) o).get()).asLong();
+        } else if (o instanceof Integer || o instanceof Long) {
+            return hf.hashLong(((Number) o).longValue()).asLong();
+        } else if (o instanceof Float || o instanceof Double) {
+            return hf.hashLong(Double.doubleToLongBits(((Number) o).doubleValue())).asLong();
+        }
+        return hf.hashString(o.toString()).asLong();
+    }
+
+    public void add(Tuple t) throws ExecException {
+        numRecords++;
+        int size = Math.min(t.size(), MAX_FIELDS);
+        for (int i = 0; i < size; i++) {
+            if (fields.size() == i) {
+                fields.add(new FieldCollector());
+            }
+            fields.get(i).add(t.get(i));
+        }
+    }
+
+    public void merge(StatisticsCollector other) {
+        numRecords += other.numRecords;
+        for (int i = 0; i < other.fields.size(); i++) {
+            if (fields.size() == i) {
+                fields.add(other.fields.get(i));
+            } else {
+                fields.get(i).merge(other.fields.get(i));
+            }
+        }
+    }
+
+    public long getNumRecords() {
+        return numRecords;
+    }
+
+    /**
+     * @param bytes the size of the output, or -1 if unknown
+     * @return the statistics collected
+     */
+    public ResourceStatistics toResourceStatistics(long bytes) {
+        ResourceStatistics stats = new ResourceStatistics();
+        stats.setNumRecords(numRecords);
+        if (bytes >= 0) {
+            stats.setSizeInBytes(bytes);
+            stats.setAvgRecordSize(numRecords == 0 ? 0 : bytes / numRecords);
+        }
+        ResourceFieldStatistics[] fieldStats = new ResourceFieldStatistics[fields.size()];
+        for (int i = 0; i < fieldStats.length; i++) {
+            FieldCollector field = fields.get(i);
+            fieldStats[i] = new ResourceFieldStatistics()
+                    .setNumDistinctValues(Math.min(field.distinctValues.estimate(), numRecords))
+                    .setMinValue(field.min)
+                    .setMaxValue(field.max);
+        }
+        stats.setFields(fieldStats);
+        return stats;
+    }
+}
@@ -0,0 +1,588 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pig.newplan.logical.optimizer;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.pig.LoadFunc;
+import org.apache.pig.LoadMetadata;
+import org.apache.pig.ResourceStatistics;
+import org.apache.pig.ResourceStatistics.ResourceFieldStatistics;
+import org.apache.pig.backend.hadoop.executionengine.util.MapRedUtil;
+import org.apache.pig.data.DataType;
+import org.apache.pig.impl.logicalLayer.FrontendException;
+import org.apache.pig.impl.util.UriUtil;
+import org.apache.pig.newplan.DependencyOrderWalker;
+import org.apache.pig.newplan.Operator;
+import org.apache.pig.newplan.OperatorPlan;
+import org.apache.pig.newplan.logical.expression.AndExpression;
+import org.apache.pig.newplan.logical.expression.BinaryExpression;
+import org.apache.pig.newplan.logical.expression.CastExpression;
+import org.apache.pig.newplan.logical.expression.ConstantExpression;
+import org.apache.pig.newplan.logical.expression.EqualExpression;
+import org.apache.pig.newplan.logical.expression.GreaterThanEqualExpression;
+import org.apache.pig.newplan.logical.expression.GreaterThanExpression;
+import org.apache.pig.newplan.logical.expression.IsNullExpression;
+import org.apache.pig.newplan.logical.expression.LessThanEqualExpression;
+import org.apache.pig.newplan.logical.expression.LessThanExpression;
+import org.apache.pig.newplan.logical.expression.LogicalExpression;
+import org.apache.pig.newplan.logical.expression.LogicalExpressionPlan;
+import org.apache.pig.newplan.logical.expression.NotEqualExpression;
+import org.apache.pig.newplan.logical.expression.NotExpression;
+import org.apache.pig.newplan.logical.expression.OrExpression;
+import org.apache.pig.newplan.logical.expression.ProjectExpression;
+import org.apache.pig.newplan.logical.relational.LOCogroup;
+import org.apache.pig.newplan.logical.relational.LOCross;
+import org.apache.pig.newplan.logical.relational.LOCube;
+import org.apache.pig.newplan.logical.relational.LODistinct;
+import org.apache.pig.newplan.logical.relational.LOFilter;
+import org.apache.pig.newplan.logical.relational.LOForEach;
+import org.apache.pig.newplan.logical.relational.LOGenerate;
+import org.apache.pig.newplan.logical.relational.LOJoin;
+import org.apache.pig.newplan.logical.relational.LOLimit;
+import org.apache.pig.newplan.logical.relational.LOLoad;
+import org.apache.pig.newplan.logical.relational.LONative;
+import org.apache.pig.newplan.logical.relational.LORank;
+import org.apache.pig.newplan.logical.relational.LOSort;
+import org.apache.pig.newplan.logical.relational.LOSplit;
+import org.apache.pig.newplan.logical.relational.LOSplitOutput;
+import org.apache.pig.newplan.logical.relational.LOStore;
+import org.apache.pig.newplan.logical.relational.LOStream;
+import org.apache.pig.newplan.logical.relational.LOUnion;
+import org.apache.pig.newplan.logical.relational.LogicalRelationalNodesVisitor;
+import org.apache.pig.newplan.logical.relational.LogicalSchema;
+import org.apache.pig.newplan.logical.rules.OptimizerUtils;
+
+/**
+ * Estimates the number of records and bytes output by each operator of a
+ * logical plan, and the number of distinct values and range of its columns,
+ * from the {@link ResourceStatistics} of the loaders which implement
+ * {@link LoadMetadata}, such as PigStorage and AvroStorage when the data was
+ * stored with pig.store.statistics set, or else from the size of the input
+ * files. The selectivity of filters is derived from the number of distinct
+ * values and range of the columns compared to constants, and the size of
+ * joins and groups from the number of distinct values of their keys. Where
+ * nothing is known, the usual default selectivities are assumed. Estimates
+ * are -1 if the size of an input they depend on is unknown.
+ */
+public class CardinalityEstimator extends LogicalRelationalNodesVisitor {
+    private static final Log LOG = LogFactory.getLog(CardinalityEstimator.class);
+
+    private static final String STATISTICS_ANNOTATION = "CardinalityEstimator:statistics";
+
+    // the width of a field when only the size of the input files is known
+    static final long DEFAULT_FIELD_SIZE = 10;
+    static final double DEFAULT_SELECTIVITY = 0.5;
+    static final double EQUAL_SELECTIVITY = 0.1;
+    static final double RANGE_SELECTIVITY = 1.0 / 3;
+    static final double NULL_SELECTIVITY = 0.1;
+    static final double FLATTEN_FACTOR = 10;
+    static final double GROUP_FACTOR = 0.7;
+    static final double DISTINCT_FACTOR = 0.9;
+
+    private final Map<Operator, Long> records = new HashMap<Operator, Long>();
+    private final Map<Operator, Long> recordSizes = new HashMap<Operator, Long>();
+    // the statistics of the columns read by the loaders, by uid
+    private final Map<Long, ResourceFieldStatistics> columns = new HashMap<Long, ResourceFieldStatistics>();
+
+    public CardinalityEstimator(OperatorPlan plan) throws FrontendException {
+        super(plan, new DependencyOrderWalker(plan));
+    }
+
+    /**
+     * @return the estimated number of records output by the operator, or -1
+     *  if unknown
+     */
+    public long getRecords(Operator op) {
+        Long r = records.get(op);
+        return r == null ? -1 : r;
+    }
+
+    /**
+     * @return the estimated number of bytes output by the operator, or -1 if
+     *  unknown
+     */
+    public long getBytes(Operator op) {
+        long r = getRecords(op);
+        Long size = recordSizes.get(op);
+        return r < 0 || size == null ? -1 : r * size;
+    }
+
+    /**
+     * @return the estimated number of distinct values of the column at the
+     *  output of the operator, or -1 if unknown
+     */
+    public long getDistinctValues(Operator op, long uid) {
+        ResourceFieldStatistics stats = columns.get(uid);
+        if (stats == null || stats.getNumDistinctValues() == null) {
+            return -1;
+        }
+        long r = getRecords(op);
+        return r < 0 ? stats.getNumDistinctValues() : Math.min(stats.getNumDistinctValues(), r);
+    }
+
+    /**
+     * @return the estimated number of distinct values of the key of a join
+     *  or group input, or -1 if unknown
+     */
+    public long getDistinctValues(Operator op, Collection<LogicalExpressionPlan> keyPlans)
+            throws FrontendException {
+        long ndv = 1;
+        for (LogicalExpressionPlan keyPlan : keyPlans) {
+            long uid = getProjectedUid(keyPlan.getSources().get(0));
+            long columnNdv = uid < 0 ? -1 : getDistinctValues(op, uid);
+            if (columnNdv < 0) {
+                return -1;
+            }
+            ndv *= columnNdv;
+        }
+        long r = getRecords(op);
+        return r < 0 ? ndv : Math.min(ndv, r);
+    }
+
+    /**
+     * @param left the number of records of the left input
+     * @param right the number of records of the right input
+     * @param leftNdv the number of distinct keys of the left input, or -1
+     * @param rightNdv the number of distinct keys of the right input, or -1
+     * @return the estimated number of records of the inner join of both
+     *  inputs, assuming that the keys of the input with the fewest distinct
+     *  keys are all in the other. If neither is known, the keys of the
+     *  smaller input are assumed to be unique.
+     */
+    public static long estimateJoin(long left, long right, long leftNdv, long rightNdv) {
+        if (left < 0 || right < 0) {
+            return -1;
+        }
+        long ndv = Math.max(leftNdv, rightNdv);
+        if (ndv <= 0) {
+            return Math.max(left, right);
+        }
+        return (long) Math.ceil((double) left * right / ndv);
+    }
+
+    private void set(Operator op, long r, long recordSize) {
+        records.put(op, r);
+        if (recordSize >= 0) {
+            recordSizes.put(op, recordSize);
+        }
+    }
+
+    private Operator getInput(Operator op) {
+        return plan.getPredecessors(op).get(0);
+    }
+
+    private long getRecordSize(Operator op) {
+        Long size = recordSizes.get(op);
+        return size == null ? -1 : size;
+    }
+
+    private void passThrough(Operator op, double factor) {
+        Operator input = getInput(op);
+        long r = getRecords(input);
+        set(op, r < 0 ? -1 : (long) Math.ceil(r * factor), getRecordSize(input));
+    }
+
+    @Override
+    public void visit(LOLoad load) throws FrontendException {
+        ResourceStatistics stats = getStatistics(load);
+        LogicalSchema schema = load.getSchema();
+        long numFields = schema == null ? 1 : Math.max(1, schema.size());
+        if (stats != null && stats.getNumRecords() != null) {
+            long recordSize = stats.getAvgRecordSize() == null ? numFields * DEFAULT_FIELD_SIZE
+                    : stats.getAvgRecordSize();
+            set(load, stats.getNumRecords(), recordSize);
+            ResourceFieldStatistics[] fields = stats.getFields();
+            if (schema != null && fields != null) {
+                List<Integer> requiredFields = load.getRequiredFields();
+                for (int i = 0; i < schema.size(); i++) {
+                    int index = requiredFields == null ? i : requiredFields.get(i);
+                    if (index < fields.length && fields[index] != null) {
+                        columns.put(schema.getField(i).uid, fields[index]);
+                    }
+                }
+            }
+            return;
+        }
+        long bytes = stats != null && stats.getSizeInBytes() != null ? stats.getSizeInBytes()
+                : getInputSize(load);
+        if (bytes < 0) {
+            set(load, -1, numFields * DEFAULT_FIELD_SIZE);
+        } else {
+            set(load, (long) Math.ceil((double) bytes / (numFields * DEFAULT_FIELD_SIZE)),
+                    numFields * DEFAULT_FIELD_SIZE);
+        }
+    }
+
+    /**
+     * @return the statistics of the loader, which are looked up once per load
+     */
+    private static ResourceStatistics getStatistics(LOLoad load) throws FrontendException {
+        if (load.getAnnotation(STATISTICS_ANNOTATION) != null) {
+            Object stats = load.getAnnotation(STATISTICS_ANNOTATION);
+            return stats instanceof ResourceStatistics ? (ResourceStatistics) stats : null;
+        }
+        ResourceStatistics stats = null;
+        LoadFunc loadFunc = load.getLoadFunc();
+        if (loadFunc instanceof LoadMetadata && load.getConfiguration() != null) {
+            try {
+                stats = ((LoadMetadata) loadFunc).getStatistics(load.getFileSpec().getFileName(),
+                        new Job(load.getConfiguration()));
+            } catch (Exception e) {
+                LOG.debug("Unable to get the statistics of " + load.getFileSpec(), e);
+            }
+        }
+        load.annotate(STATISTICS_ANNOTATION, stats == null ? Boolean.FALSE : stats);
+        return stats;
+    }
+
+    /**
+     * @return the total size of the files read by the load, or -1 if unknown
+     */
+    private static long getInputSize(LOLoad load) {
+        Configuration conf = load.getConfiguration();
+        if (conf == null || load.getFileSpec() == null) {
+            return -1;
+        }
+        long size = 0;
+        try {
+            for (String location : LoadFunc.getPathStrings(load.getFileSpec().getFileName())) {
+                if (!UriUtil.isHDFSFileOrLocalOrS3N(location, conf)) {
+                    return -1;
+                }
+                Path path = new Path(location);
+                FileSystem fs = path.getFileSystem(conf);
+                FileStatus[] status = fs.globStatus(path);
+                if (status == null) {
+                    return -1;
+                }
+                for (FileStatus s : status) {
+                    size += MapRedUtil.getPathLength(fs, s);
+                }
+            }
+        } catch (IOException e) {
+            LOG.debug("Unable to get the size of " + load.getFileSpec(), e);
+            return -1;
+        }
+        return size;
+    }
+
+    @Override
+    public void visit(LOFilter filter) throws FrontendException {
+        Operator input = getInput(filter);
+        double selectivity;
+        LogicalExpression root = (LogicalExpression) filter.getFilterPlan().getSources().get(0);
+        if (filter.isSample() && root instanceof BinaryExpression
+                && ((BinaryExpression) root).getRhs() instanceof ConstantExpression
+                && ((ConstantExpression) ((BinaryExpression) root).getRhs()).getValue() instanceof Number) {
+            selectivity = ((Number) ((ConstantExpression) ((BinaryExpression) root).getRhs()).getValue()).doubleValue();
+        } else {
+            selectivity = getSelectivity(input, root);
+        }
+        passThrough(filter, selectivity);
+    }
+
+    @Override
+    public void visit(LOSplit split) throws FrontendException {
+        passThrough(split, 1);
+    }
+
+    @Override
+    public void visit(LOSplitOutput splitOutput) throws FrontendException {
+        Operator input = getInput(splitOutput);
+        passThrough(splitOutput, getSelectivity(input,
+                (LogicalExpression) splitOutput.getFilterPlan().getSources().get(0)));
+        // the outputs of a split have new uids
+        LogicalSchema schema = splitOutput.getSchema();
+        if (schema != null) {
+            for (LogicalSchema.LogicalFieldSchema fs : schema.getFields()) {
+                ResourceFieldStatistics stats = columns.get(splitOutput.getInputUids(fs.uid));
+                if (stats != null) {
+                    columns.put(fs.uid, stats);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the estimated fraction of the records of the input for which
+     *  the condition is true
+     */
+    double getSelectivity(Operator input, LogicalExpression exp) throws FrontendException {
+        if (exp instanceof AndExpression) {
+            return getSelectivity(input, ((AndExpression) exp).getLhs())
+                    * getSelectivity(input, ((AndExpression) exp).getRhs());
+        } else if (exp instanceof OrExpression) {
+            double lhs = getSelectivity(input, ((OrExpression) exp).getLhs());
+            double rhs = getSelectivity(input, ((OrExpression) exp).getRhs());
+            return lhs + rhs - lhs * rhs;
+        } else if (exp instanceof NotExpression) {
+            return 1 - getSelectivity(input, ((NotExpression) exp).getExpression());
+        } else if (exp instanceof ConstantExpression && ((ConstantExpression) exp).getValue() instanceof Boolean) {
+            // such as the conditions of the outputs of implicit splits
+            return (Boolean) ((ConstantExpression) exp).getValue() ? 1 : 0;
+        } else if (exp instanceof IsNullExpression) {
+            return NULL_SELECTIVITY;
+        } else if (exp instanceof EqualExpression) {
+            return getEqualSelectivity(input, (BinaryExpression) exp);
+        } else if (exp instanceof NotEqualExpression) {
+            return 1 - getEqualSelectivity(input, (BinaryExpression) exp);
+        } else if (exp instanceof LessThanExpression || exp instanceof LessThanEqualExpression) {
+            return getRangeSelectivity(input, (BinaryExpression) exp, true);
+        } else if (exp instanceof GreaterThanExpression || exp instanceof GreaterThanEqualExpression) {
+            return getRangeSelectivity(input, (BinaryExpression) exp, false);
+        }
+        return DEFAULT_SELECTIVITY;
+    }
+
+    private double getEqualSelectivity(Operator input, BinaryExpression exp) throws FrontendException {
+        long lhs = getProjectedUid(exp.getLhs());
+        long rhs = getProjectedUid(exp.getRhs());
+        long ndv = Math.max(lhs < 0 ? -1 : getDistinctValues(input, lhs),
+                rhs < 0 ? -1 : getDistinctValues(input, rhs));
+        return ndv > 0 ? 1.0 / ndv : EQUAL_SELECTIVITY;
+    }
+
+    /**
+     * @param lessThan whether the condition is true for the values of the
+     *  left operand which are smaller than the right operand
+     */
+    private double getRangeSelectivity(Operator input, BinaryExpression exp, boolean lessThan)
+            throws FrontendException {
+        long uid = getProjectedUid(exp.getLhs());
+        LogicalExpression constant = exp.getRhs();
+        if (uid < 0) {
+            // the constant is on the left
+            uid = getProjectedUid(exp.getRhs());
+            constant = exp.getLhs();
+            lessThan = !lessThan;
+        }
+        while (constant instanceof CastExpression) {
+            constant = ((CastExpression) constant).getExpression();
+        }
+        ResourceFieldStatistics stats = uid < 0 ? null : columns.get(uid);
+        if (stats == null || !(constant instanceof ConstantExpression)
+                || !(stats.getMinValue() instanceof Number) || !(stats.getMaxValue() instanceof Number)) {
+            return RANGE_SELECTIVITY;
+        }
+        Object value = ((ConstantExpression) constant).getValue();
+        if (value instanceof String) {
+            try {
+                value = Double.valueOf((String) value);
+            } catch (NumberFormatException e) {
+                return RANGE_SELECTIVITY;
+            }
+        }
+        if (!(value instanceof Number)) {
+            return RANGE_SELECTIVITY;
+        }
+        double min = ((Number) stats.getMinValue()).doubleValue();
+        double max = ((Number) stats.getMaxValue()).doubleValue();
+        double v = ((Number) value).doubleValue();
+        double below;
+        if (v < min) {
+            below = 0;
+        } else if (v >= max) {
+            below = 1;
+        } else {
+            below = (v - min) / (max - min);
+        }
+        return lessThan ? below : 1 - below;
+    }
+
+    /**
+     * @return the uid of the column projected by the expression, possibly
+     *  cast, or -1 if it is not a projection of a column
+     */
+    private static long getProjectedUid(Operator exp) throws FrontendException {
+        while (exp instanceof CastExpression) {
+            exp = ((CastExpression) exp).getExpression();
+        }
+        if (exp instanceof ProjectExpression && !((ProjectExpression) exp).isProjectStar()
+                && !((ProjectExpression) exp).isRangeProject()) {
+            LogicalSchema.LogicalFieldSchema fs = ((ProjectExpression) exp).getFieldSchema();
+            return fs == null ? -1 : fs.uid;
+        }
+        return -1;
+    }
+
+    @Override
+    public void visit(LOForEach foreach) throws FrontendException {
+        LOGenerate gen = OptimizerUtils.findGenerate(foreach);
+        boolean[] flatten = gen.getFlattenFlags();
+        double factor = 1;
+        for (int i = 0; i < flatten.length; i++) {
+            if (flatten[i]) {
+                LogicalExpression exp = (LogicalExpression) gen.getOutputPlans().get(i).getSources().get(0);
+                byte type = exp.getFieldSchema() == null ? DataType.UNKNOWN : exp.getFieldSchema().type;
+                if (type == DataType.BAG || type == DataType.MAP || type == DataType.UNKNOWN
+                        || type == DataType.BYTEARRAY) {
+                    factor *= FLATTEN_FACTOR;
+                }
+            }
+        }
+        passThrough(foreach, factor);
+    }
+
+    @Override
+    public void visit(LOCogroup cogroup) throws FrontendException {
+        List<Operator> inputs = plan.getPredecessors(cogroup);
+        long total = 0;
+        long bytes = 0;
+        long groups = -1;
+        for (int i = 0; i < inputs.size(); i++) {
+            Operator input = inputs.get(i);
+            long r = getRecords(input);
+            if (r < 0) {
+                set(cogroup, -1, -1);
+                return;
+            }
+            total += r;
+            bytes += Math.max(0, getBytes(input));
+            long ndv = getDistinctValues(input, cogroup.getExpressionPlans().get(i));
+            groups = Math.max(groups, ndv < 0 ? (long) Math.ceil(r * GROUP_FACTOR) : ndv);
+        }
+        if (isGroupAll(cogroup)) {
+            groups = 1;
+        }
+        groups = Math.max(1, Math.min(groups, total));
+        set(cogroup, groups, Math.max(1, bytes / groups));
+    }
+
+    private static boolean isGroupAll(LOCogroup cogroup) throws FrontendException {
+        for (LogicalExpressionPlan keyPlan : cogroup.getExpressionPlans().get(0)) {
+            if (!(keyPlan.getSources().get(0) instanceof ConstantExpression)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void visit(LOJoin join) throws FrontendException {
+        List<Operator> inputs = plan.getPredecessors(join);
+        Operator first = inputs.get(0);
+        long r = getRecords(first);
+        long ndv = getDistinctValues(first, join.getJoinPlan(0));
+        long recordSize = Math.max(0, getRecordSize(first));
+        boolean[] inner = join.getInnerFlags();
+        for (int i = 1; i < inputs.size(); i++) {
+            Operator input = inputs.get(i);
+            long inputRecords = getRecords(input);
+            long inputNdv = getDistinctValues(input, join.getJoinPlan(i));
+            long joined = estimateJoin(r, inputRecords, ndv, inputNdv);
+            if (joined >= 0 && inner != null) {
+                // the unmatched records of the outer inputs are kept
+                if (!inner[0]) {
+                    joined = Math.max(joined, r);
+                }
+                if (!inner[i]) {
+                    joined = Math.max(joined, inputRecords);
+                }
+            }
+            r = joined;
+            ndv = ndv < 0 || inputNdv < 0 ? Math.max(ndv, inputNdv) : Math.min(ndv, inputNdv);
+            recordSize += Math.max(0, getRecordSize(input));
+        }
+        set(join, r, recordSize);
+    }
+
+    @Override
+    public void visit(LOCross cross) throws FrontendException {
+        long r = 1;
+        long recordSize = 0;
+        for (Operator input : plan.getPredecessors(cross)) {
+            long inputRecords = getRecords(input);
+            r = r < 0 || inputRecords < 0 ? -1 : r * inputRecords;
+            recordSize += Math.max(0, getRecordSize(input));
+        }
+        set(cross, r, recordSize);
+    }
+
+    @Override
+    public void visit(LOUnion union) throws FrontendException {
+        long r = 0;
+        long bytes = 0;
+        for (Operator input : plan.getPredecessors(union)) {
+            long inputRecords = getRecords(input);
+            if (inputRecords < 0) {
+                set(union, -1, -1);
+                return;
+            }
+            r += inputRecords;
+            bytes += Math.max(0, getBytes(input));
+        }
+        set(union, r, r == 0 ? 0 : bytes / r);
+    }
+
+    @Override
+    public void visit(LODistinct distinct) throws FrontendException {
+        passThrough(distinct, DISTINCT_FACTOR);
+    }
+
+    @Override
+    public void visit(LOLimit limit) throws FrontendException {
+        Operator input = getInput(limit);
+        long r = getRecords(input);
+        if (limit.getLimitPlan() == null && limit.getLimit() >= 0) {
+            r = r < 0 ? limit.getLimit() : Math.min(r, limit.getLimit());
+        }
+        set(limit, r, getRecordSize(input));
+    }
+
+    @Override
+    public void visit(LOSort sort) throws FrontendException {
+        passThrough(sort, 1);
+    }
+
+    @Override
+    public void visit(LORank rank) throws FrontendException {
+        passThrough(rank, 1);
+    }
+
+    @Override
+    public void visit(LOStream stream) throws FrontendException {
+        passThrough(stream, 1);
+    }
+
+    @Override
+    public void visit(LOCube cube) throws FrontendException {
+        passThrough(cube, 1);
+    }
+
+    @Override
+    public void visit(LONative nativeMR) throws FrontendException {
+        set(nativeMR, -1, -1);
+    }
+
+    @Override
+    public void visit(LOStore store) throws FrontendException {
+        passThrough(store, 1);
+    }
+}
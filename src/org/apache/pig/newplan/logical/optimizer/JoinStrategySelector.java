@@ -0,0 +1,302 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pig.newplan.logical.optimizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.pig.IndexableLoadFunc;
+import org.apache.pig.LoadFunc;
+import org.apache.pig.LoadMetadata;
+import org.apache.pig.OrderedLoadFunc;
+import org.apache.pig.PigConfiguration;
+import org.apache.pig.ResourceSchema;
+import org.apache.pig.backend.hadoop.executionengine.mapReduceLayer.PigReducerEstimator;
+import org.apache.pig.impl.logicalLayer.FrontendException;
+import org.apache.pig.impl.util.MultiMap;
+import org.apache.pig.newplan.Operator;
+import org.apache.pig.newplan.logical.Util;
+import org.apache.pig.newplan.logical.expression.LogicalExpressionPlan;
+import org.apache.pig.newplan.logical.expression.ProjectExpression;
+import org.apache.pig.newplan.logical.relational.LOForEach;
+import org.apache.pig.newplan.logical.relational.LOGenerate;
+import org.apache.pig.newplan.logical.relational.LOInnerLoad;
+import org.apache.pig.newplan.logical.relational.LOJoin;
+import org.apache.pig.newplan.logical.relational.LOJoin.JOINTYPE;
+import org.apache.pig.newplan.logical.relational.LOLoad;
+import org.apache.pig.newplan.logical.relational.LogicalPlan;
+import org.apache.pig.newplan.logical.relational.LogicalRelationalOperator;
+
+/**
+ * Chooses the strategy of the joins which have no USING clause, from the
+ * sizes of their inputs estimated by {@link CardinalityEstimator}, once the
+ * logical plan is optimized and before it is translated to a physical plan.
+ * In order of preference:
+ * <ul>
+ * <li>replicated, if the inputs other than the first fit in
+ * {@link PigConfiguration#PIG_JOIN_AUTO_REPLICATED_MAX_BYTES}. The inputs of
+ * a two-way inner join whose first input is the small one are swapped, and
+ * followed by a FOREACH which restores the order of the columns.</li>
+ * <li>merge, if both inputs of a two-way inner join are loaded by an
+ * {@link OrderedLoadFunc} whose {@link LoadMetadata} schema says that they
+ * are sorted on the join keys.</li>
+ * <li>skewed, if the average key of an input of a two-way join is more than
+ * the bytes one reducer is given.</li>
+ * <li>hash otherwise, and if the size of an input is unknown.</li>
+ * </ul>
+ * Joins whose strategy is set by the script are left as they are.
+ */
+public class JoinStrategySelector {
+    private static final Log LOG = LogFactory.getLog(JoinStrategySelector.class);
+
+    private final LogicalPlan plan;
+    private final long replicatedMaxBytes;
+    private final long bytesPerReducer;
+
+    public JoinStrategySelector(LogicalPlan plan, Properties properties) {
+        this.plan = plan;
+        replicatedMaxBytes = Long.parseLong(properties.getProperty(
+                PigConfiguration.PIG_JOIN_AUTO_REPLICATED_MAX_BYTES, "100000000"));
+        bytesPerReducer = Long.parseLong(properties.getProperty(
+                PigReducerEstimator.BYTES_PER_REDUCER_PARAM,
+                Long.toString(PigReducerEstimator.DEFAULT_BYTES_PER_REDUCER)));
+    }
+
+    /**
+     * Sets the strategy of the joins of the plan
+     *
+     * @return a description of each choice, for explain
+     */
+    public List<String> selectStrategies() throws FrontendException {
+        List<LOJoin> joins = new ArrayList<LOJoin>();
+        for (LOJoin join : Util.getLogicalRelationalOperators(plan, LOJoin.class)) {
+            if (!join.isPinnedOption(LOJoin.OPTION_JOIN) && join.getJoinType() == JOINTYPE.HASH
+                    && join.getCustomPartitioner() == null) {
+                joins.add(join);
+            }
+        }
+        List<String> choices = new ArrayList<String>();
+        if (joins.isEmpty()) {
+            return choices;
+        }
+        CardinalityEstimator estimator = new CardinalityEstimator(plan);
+        estimator.visit();
+        // the plan is only changed once all the estimates are made
+        List<LOJoin> swapped = new ArrayList<LOJoin>();
+        for (LOJoin join : joins) {
+            String choice = select(join, estimator, swapped);
+            LOG.info("Strategy of join " + choice);
+            choices.add(choice);
+        }
+        for (LOJoin join : swapped) {
+            swapInputs(join);
+        }
+        return choices;
+    }
+
+    /**
+     * @return a description of the choice
+     */
+    private String select(LOJoin join, CardinalityEstimator estimator, List<LOJoin> swapped)
+            throws FrontendException {
+        List<Operator> inputs = plan.getPredecessors(join);
+        boolean[] inner = join.getInnerFlags();
+        boolean twoWayInner = inputs.size() == 2 && inner[0] && inner[1];
+        String alias = join.getAlias();
+        long[] bytes = new long[inputs.size()];
+        int unknown = -1;
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = estimator.getBytes(inputs.get(i));
+            if (bytes[i] < 0) {
+                unknown = i;
+            }
+        }
+
+        if (unknown < 0) {
+            // the first input of a replicated join is the fragment
+            long replicated = 0;
+            for (int i = 1; i < bytes.length; i++) {
+                replicated += bytes[i];
+            }
+            if (inner[0] && replicated <= replicatedMaxBytes) {
+                join.setJoinType(JOINTYPE.REPLICATED);
+                return alias + ": REPLICATED, the estimated size of the replicated inputs is "
+                        + replicated + " bytes";
+            }
+            if (twoWayInner && bytes[0] <= replicatedMaxBytes && canSwap(join)) {
+                join.setJoinType(JOINTYPE.REPLICATED);
+                swapped.add(join);
+                return alias + ": REPLICATED on the first input, whose estimated size is "
+                        + bytes[0] + " bytes";
+            }
+        }
+
+        if (twoWayInner && isSorted(join, 0) && isSorted(join, 1)) {
+            join.setJoinType(JOINTYPE.MERGE);
+            return alias + ": MERGE, both inputs are sorted on the join keys";
+        }
+
+        if (unknown >= 0) {
+            return alias + ": HASH, the size of input " + unknown + " is unknown";
+        }
+        if (inputs.size() == 2) {
+            for (int i = 0; i < bytes.length; i++) {
+                long keys = estimator.getDistinctValues(inputs.get(i), join.getJoinPlan(i));
+                if (keys > 0 && bytes[i] / keys > bytesPerReducer) {
+                    join.setJoinType(JOINTYPE.SKEWED);
+                    return alias + ": SKEWED, the estimated size of a key of input " + i
+                            + " is " + (bytes[i] / keys) + " bytes";
+                }
+            }
+        }
+        return alias + ": HASH, the estimated sizes of the inputs are "
+                + Arrays.toString(bytes) + " bytes";
+    }
+
+    /**
+     * @return whether the input of the join is loaded sorted in ascending
+     *  order on the join keys, by a loader which supports merge joins
+     */
+    private boolean isSorted(LOJoin join, int input) throws FrontendException {
+        Operator pred = plan.getPredecessors(join).get(input);
+        if (!(pred instanceof LOLoad)) {
+            return false;
+        }
+        LOLoad load = (LOLoad) pred;
+        LoadFunc loadFunc = load.getLoadFunc();
+        if (!(loadFunc instanceof LoadMetadata)
+                || !(loadFunc instanceof OrderedLoadFunc || loadFunc instanceof IndexableLoadFunc)
+                || load.getConfiguration() == null) {
+            return false;
+        }
+        ResourceSchema schema;
+        try {
+            schema = ((LoadMetadata) loadFunc).getSchema(load.getFileSpec().getFileName(),
+                    new Job(load.getConfiguration()));
+        } catch (Exception e) {
+            LOG.debug("Unable to get the schema of " + load.getFileSpec(), e);
+            return false;
+        }
+        if (schema == null || schema.getSortKeys() == null) {
+            return false;
+        }
+        int[] sortKeys = schema.getSortKeys();
+        ResourceSchema.Order[] orders = schema.getSortKeyOrders();
+        List<LogicalExpressionPlan> keyPlans = new ArrayList<LogicalExpressionPlan>(join.getJoinPlan(input));
+        if (keyPlans.size() > sortKeys.length) {
+            return false;
+        }
+        List<Integer> requiredFields = load.getRequiredFields();
+        for (int i = 0; i < keyPlans.size(); i++) {
+            Operator key = keyPlans.get(i).getSources().get(0);
+            if (!(key instanceof ProjectExpression) || ((ProjectExpression) key).isProjectStar()
+                    || ((ProjectExpression) key).isRangeProject()) {
+                return false;
+            }
+            int col = ((ProjectExpression) key).getColNum();
+            if (requiredFields != null) {
+                col = requiredFields.get(col);
+            }
+            if (sortKeys[i] != col || orders[i] != ResourceSchema.Order.ASCENDING) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return whether the columns of the join can be put back in order once
+     *  its inputs are swapped
+     */
+    private boolean canSwap(LOJoin join) throws FrontendException {
+        for (Operator input : plan.getPredecessors(join)) {
+            if (((LogicalRelationalOperator) input).getSchema() == null) {
+                return false;
+            }
+        }
+        return join.getSchema() != null && plan.getSuccessors(join) != null;
+    }
+
+    /**
+     * Swaps the inputs of a two-way join, so that the first is replicated,
+     * and adds a FOREACH after it which puts the columns back in the order
+     * of the original join.
+     */
+    private void swapInputs(LOJoin join) throws FrontendException {
+        List<Operator> inputs = new ArrayList<Operator>(plan.getPredecessors(join));
+        int size0 = ((LogicalRelationalOperator) inputs.get(0)).getSchema().size();
+        int size1 = ((LogicalRelationalOperator) inputs.get(1)).getSchema().size();
+
+        Integer from0 = plan.disconnect(inputs.get(0), join).first;
+        Integer from1 = plan.disconnect(inputs.get(1), join).first;
+        plan.connect(inputs.get(1), from1, join, 0);
+        plan.connect(inputs.get(0), from0, join, 1);
+
+        MultiMap<Integer, LogicalExpressionPlan> joinPlans = new MultiMap<Integer, LogicalExpressionPlan>();
+        for (int i = 0; i < 2; i++) {
+            for (LogicalExpressionPlan keyPlan : join.getJoinPlan(1 - i)) {
+                Iterator<Operator> it = keyPlan.getOperators();
+                while (it.hasNext()) {
+                    Operator op = it.next();
+                    if (op instanceof ProjectExpression) {
+                        ((ProjectExpression) op).setInputNum(i);
+                    }
+                }
+                joinPlans.put(i, keyPlan);
+            }
+        }
+        join.setJoinPlans(joinPlans);
+        join.resetSchema();
+
+        // the columns of the original first input are now after those of
+        // the second
+        List<Integer> columns = new ArrayList<Integer>();
+        for (int i = 0; i < size0; i++) {
+            columns.add(size1 + i);
+        }
+        for (int i = 0; i < size1; i++) {
+            columns.add(i);
+        }
+        LOForEach foreach = new LOForEach(plan);
+        foreach.setAlias(join.getAlias());
+        foreach.setLocation(join.getLocation());
+        plan.add(foreach);
+        for (Operator succ : new ArrayList<Operator>(plan.getSuccessors(join))) {
+            plan.insertBetween(join, foreach, succ);
+        }
+        LogicalPlan innerPlan = new LogicalPlan();
+        foreach.setInnerPlan(innerPlan);
+        List<LogicalExpressionPlan> exps = new ArrayList<LogicalExpressionPlan>();
+        LOGenerate gen = new LOGenerate(innerPlan, exps, new boolean[columns.size()]);
+        innerPlan.add(gen);
+        for (int i = 0; i < columns.size(); i++) {
+            LOInnerLoad innerLoad = new LOInnerLoad(innerPlan, foreach, columns.get(i));
+            innerPlan.add(innerLoad);
+            innerPlan.connect(innerLoad, gen);
+            LogicalExpressionPlan exp = new LogicalExpressionPlan();
+            exp.add(new ProjectExpression(exp, i, -1, gen));
+            exps.add(exp);
+        }
+    }
+}
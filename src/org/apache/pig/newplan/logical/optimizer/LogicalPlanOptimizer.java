@@ -24,6 +24,7 @@ import java.util.Set;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.pig.PigConfiguration;
 import org.apache.pig.impl.PigContext;
 import org.apache.pig.newplan.OperatorPlan;
 import org.apache.pig.newplan.logical.rules.AddForEach;
@@ -32,6 +33,7 @@ import org.apache.pig.newplan.logical.rules.FilterAboveForeach;
 import org.apache.pig.newplan.logical.rules.FilterConstantCalculator;
 import org.apache.pig.newplan.logical.rules.ForEachConstantCalculator;
 import org.apache.pig.newplan.logical.rules.GroupByConstParallelSetter;
+import org.apache.pig.newplan.logical.rules.JoinReorder;
 import org.apache.pig.newplan.logical.rules.LimitOptimizer;
 import org.apache.pig.newplan.logical.rules.LoadTypeCastInserter;
 import org.apache.pig.newplan.logical.rules.MergeFilter;
@@ -159,6 +161,18 @@ public class LogicalPlanOptimizer extends PlanOptimizer {
         if (!s.isEmpty())
             ls.add(s);
 
+        // Join reorder set
+        // This set of rules reorders inner joins from the estimated size of
+        // their inputs, once filters are pushed up
+        if (pc != null && Boolean.parseBoolean(
+                pc.getProperties().getProperty(PigConfiguration.PIG_JOIN_REORDER, "false"))) {
+            s = new HashSet<Rule>();
+            r = new JoinReorder("JoinReorder");
+            checkAndAddRule(s, r);
+            if (!s.isEmpty())
+                ls.add(s);
+        }
+
         // PushDownForEachFlatten set
         s = new HashSet<Rule>();
         // Add the PushDownForEachFlatten
@@ -119,6 +119,14 @@ public class LOLoad extends LogicalRelationalOperator {
     public void setRequiredFields(List<Integer> requiredFields) {
         this.requiredFields = requiredFields;
     }
+
+    /**
+     * @return the positions of the fields of the loader which are read, or
+     *  null if all are
+     */
+    public List<Integer> getRequiredFields() {
+        return requiredFields;
+    }
     
     /**
      * Get the schema for this load.  The schema will be either be what was
@@ -30,7 +30,9 @@ import java.util.Random;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.pig.ExecType;
 import org.apache.pig.FuncSpec;
+import org.apache.pig.PigConfiguration;
 import org.apache.pig.PigException;
 import org.apache.pig.ResourceSchema;
 import org.apache.pig.StoreResources;
@@ -58,6 +60,7 @@ import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOpe
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators.PONative;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators.POPackage;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators.PORank;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators.POReplicatedCross;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators.POSkewedJoin;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators.POSort;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators.POSplit;
@@ -95,6 +98,7 @@ import org.apache.pig.newplan.logical.Util;
 import org.apache.pig.newplan.logical.expression.ExpToPhyTranslationVisitor;
 import org.apache.pig.newplan.logical.expression.LogicalExpressionPlan;
 import org.apache.pig.newplan.logical.expression.ProjectExpression;
+import org.apache.pig.newplan.logical.optimizer.CardinalityEstimator;
 import org.apache.pig.parser.SourceLocation;
 
 public class LogToPhyTranslationVisitor extends LogicalRelationalNodesVisitor {
@@ -117,6 +121,9 @@ public class LogToPhyTranslationVisitor extends LogicalRelationalNodesVisitor {
 
     protected PigContext pc;
 
+    // the estimated sizes of the inputs of replicated crosses
+    private CardinalityEstimator crossEstimator;
+
     public void setPigContext(PigContext pc) {
         this.pc = pc;
     }
@@ -563,6 +570,7 @@ public class LogToPhyTranslationVisitor extends LogicalRelationalNodesVisitor {
     public void visit(LOCross cross) throws FrontendException {
         String scope = DEFAULT_SCOPE;
         List<Operator> inputs = cross.getPlan().getPredecessors(cross);
+        int fragment = cross.isNested() ? -1 : getReplicatedCrossFragment(cross, inputs);
                 if (cross.isNested()) {
             POCross physOp = new POCross(new OperatorKey(scope,nodeGen.getNextNodeId(scope)), cross.getRequestedParallelism());
             physOp.addOriginalLocation(physOp.getAlias(), physOp.getOriginalLocations());
@@ -579,6 +587,29 @@ public class LogToPhyTranslationVisitor extends LogicalRelationalNodesVisitor {
                     throw new LogicalToPhysicalTranslatorException(msg, errCode, PigException.BUG, e);
                 }
             }
+        } else if (fragment >= 0) {
+            POReplicatedCross physOp;
+            try {
+                physOp = new POReplicatedCross(new OperatorKey(scope, nodeGen.getNextNodeId(scope)),
+                        cross.getRequestedParallelism(), new ArrayList<PhysicalOperator>(), fragment);
+            } catch (ExecException e) {
+                int errCode = 2058;
+                String msg = "Unable to set up the replicated cross.";
+                throw new VisitorException(msg, errCode, PigException.BUG, e);
+            }
+            physOp.addOriginalLocation(cross.getAlias(), cross.getLocation());
+            physOp.setResultType(DataType.TUPLE);
+            currentPlan.add(physOp);
+            for (Operator op : inputs) {
+                try {
+                    currentPlan.connect(logToPhyMap.get(op), physOp);
+                } catch (PlanException e) {
+                    int errCode = 2015;
+                    String msg = "Invalid physical operators in the physical plan" ;
+                    throw new LogicalToPhysicalTranslatorException(msg, errCode, PigException.BUG, e);
+                }
+            }
+            logToPhyMap.put(cross, physOp);
         } else {
             POGlobalRearrange poGlobal = new POGlobalRearrange(new OperatorKey(
                     scope, nodeGen.getNextNodeId(scope)), cross
@@ -1185,13 +1216,18 @@ public class LogToPhyTranslationVisitor extends LogicalRelationalNodesVisitor {
             keyTypes.add(tupleKeyMemberTypes);
         }
 
-        if (loj.getJoinType() == LOJoin.JOINTYPE.SKEWED) {
+        // the skewed keys of the first input are found when the job is
+        // launched, so that no data is read here
+        boolean autoSkewed = loj.getJoinType() == LOJoin.JOINTYPE.HASH && isAutoSkewedJoin(loj, inputs);
+
+        if (loj.getJoinType() == LOJoin.JOINTYPE.SKEWED || autoSkewed) {
             POSkewedJoin skj;
             try {
                 skj = new POSkewedJoin(new OperatorKey(scope,nodeGen.getNextNodeId(scope)),
                                         parallel,inp, innerFlags);
                 skj.addOriginalLocation(alias, location);
                 skj.setJoinPlans(joinPlans);
+                skj.setDetectKeysAtLaunch(autoSkewed);
             }
             catch (Exception e) {
                 int errCode = 2015;
@@ -1444,6 +1480,59 @@ public class LogToPhyTranslationVisitor extends LogicalRelationalNodesVisitor {
         translateSoftLinks(loj);
     }
 
+    /**
+     * @return the input of a CROSS which is not replicated, the larger one,
+     *  if the other one is replicated as of
+     *  {@link PigConfiguration#PIG_CROSS_REPLICATED}, or -1. The sizes of the
+     *  inputs are estimated as for the choice of join strategies, and the
+     *  CROSS keeps GFCross if one of them is unknown or if the smaller one is
+     *  larger than {@link PigConfiguration#PIG_CROSS_REPLICATED_MAX_BYTES}.
+     */
+    private int getReplicatedCrossFragment(LOCross cross, List<Operator> inputs)
+            throws FrontendException {
+        if (pc == null || pc.inIllustrator
+                || (pc.getExecType() != ExecType.MAPREDUCE && pc.getExecType() != ExecType.LOCAL)
+                || !Boolean.parseBoolean(pc.getProperties().getProperty(PigConfiguration.PIG_CROSS_REPLICATED, "false"))
+                || inputs.size() != 2) {
+            return -1;
+        }
+        if (crossEstimator == null) {
+            crossEstimator = new CardinalityEstimator(cross.getPlan());
+            crossEstimator.visit();
+        }
+        long maxSize = Long.parseLong(pc.getProperties().getProperty(
+                PigConfiguration.PIG_CROSS_REPLICATED_MAX_BYTES, "1000000000"));
+        long size0 = crossEstimator.getBytes(inputs.get(0));
+        long size1 = crossEstimator.getBytes(inputs.get(1));
+        if (size0 < 0 || size1 < 0 || Math.min(size0, size1) > maxSize) {
+            LOG.info("CROSS " + cross.getAlias() + " is not replicated, the estimated sizes of its inputs are "
+                    + size0 + " and " + size1 + " bytes");
+            return -1;
+        }
+        return size0 >= size1 ? 0 : 1;
+    }
+
+    /**
+     * @return whether a hash join is compiled as a skewed join, whose
+     *  skewed keys are found when its job is launched
+     */
+    private boolean isAutoSkewedJoin(LOJoin loj, List<Operator> inputs) throws FrontendException {
+        if (pc == null || pc.inIllustrator
+                || (pc.getExecType() != ExecType.MAPREDUCE && pc.getExecType() != ExecType.LOCAL)
+                || !Boolean.parseBoolean(pc.getProperties().getProperty(PigConfiguration.PIG_SKEWEDJOIN_AUTO, "false"))
+                || inputs.size() != 2 || loj.getCustomPartitioner() != null) {
+            return false;
+        }
+        // a skewed outer join needs the schemas of its outer inputs
+        boolean[] innerFlags = loj.getInnerFlags();
+        for (int i = 0; i < inputs.size(); i++) {
+            if (!innerFlags[i] && ((LogicalRelationalOperator)inputs.get(i)).getSchema() == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private POPackage compileToLR_GR_PackTrio(LogicalRelationalOperator relationalOp, String customPartitioner,
             boolean[] innerFlags, MultiMap<Integer, LogicalExpressionPlan> innerPlans) throws FrontendException {
 
@@ -267,6 +267,7 @@ public class LogicalPlan extends BaseOperatorPlan {
             disabledOptimizerRules.add("ColumnMapKeyPrune");
             disabledOptimizerRules.add("AddForEach");
             disabledOptimizerRules.add("GroupByConstParallelSetter");
+            disabledOptimizerRules.add("JoinReorder");
         }
 
         try {
@@ -0,0 +1,574 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pig.newplan.logical.rules;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.pig.impl.logicalLayer.FrontendException;
+import org.apache.pig.impl.util.MultiMap;
+import org.apache.pig.newplan.Operator;
+import org.apache.pig.newplan.OperatorPlan;
+import org.apache.pig.newplan.logical.expression.LogicalExpressionPlan;
+import org.apache.pig.newplan.logical.expression.ProjectExpression;
+import org.apache.pig.newplan.logical.optimizer.CardinalityEstimator;
+import org.apache.pig.newplan.logical.relational.LOForEach;
+import org.apache.pig.newplan.logical.relational.LOGenerate;
+import org.apache.pig.newplan.logical.relational.LOInnerLoad;
+import org.apache.pig.newplan.logical.relational.LOJoin;
+import org.apache.pig.newplan.logical.relational.LOJoin.JOINTYPE;
+import org.apache.pig.newplan.logical.relational.LogicalPlan;
+import org.apache.pig.newplan.logical.relational.LogicalRelationalOperator;
+import org.apache.pig.newplan.logical.relational.LogicalSchema;
+import org.apache.pig.newplan.logical.relational.LogicalSchema.LogicalFieldSchema;
+import org.apache.pig.newplan.optimizer.Rule;
+import org.apache.pig.newplan.optimizer.Transformer;
+
+/**
+ * Reorders trees of inner equi-joins from the cardinalities estimated by
+ * {@link CardinalityEstimator}. The joins of a tree are the joins without a
+ * USING clause whose keys are columns, and the joins feeding them; an outer
+ * join or a join with a hint ends the tree, and is never moved. So does a
+ * join with a PARALLEL clause which feeds another join, as the joins of the
+ * tree are replaced, and the new joins take the PARALLEL of the last one.
+ * <ul>
+ * <li>If the tree has several joins, it is rebuilt as a chain of two-way
+ * joins, starting with the pair of inputs which gives the fewest records and
+ * adding at each step the input which keeps the intermediate result the
+ * smallest, provided the records of the intermediate results are expected to
+ * be fewer than with the joins of the script.</li>
+ * <li>The input with the most records is made the last of each join, as it is
+ * the one which is not held in memory.</li>
+ * </ul>
+ * A FOREACH is added after the new joins, which puts the columns back in the
+ * order of the script, so that the operators after them are unchanged. The
+ * columns keep their names, except for the prefixes of the joins which are
+ * gone, like J1 in J1::A::x.
+ */
+public class JoinReorder extends Rule {
+    private static final Log LOG = LogFactory.getLog(JoinReorder.class);
+    // set on the joins built by the rule, so that they are not reordered
+    // again from slightly different estimates
+    private static final String REORDERED_ANNOTATION = "JoinReorder:reordered";
+
+    public JoinReorder(String n) {
+        super(n, false);
+    }
+
+    @Override
+    protected OperatorPlan buildPattern() {
+        LogicalPlan plan = new LogicalPlan();
+        LogicalRelationalOperator op = new LOJoin(plan);
+        plan.add(op);
+        return plan;
+    }
+
+    @Override
+    public Transformer getNewTransformer() {
+        return new JoinReorderTransformer();
+    }
+
+    public class JoinReorderTransformer extends Transformer {
+        // the last join of the tree
+        private LOJoin root;
+        private List<LOJoin> joins;
+        // the inputs of the tree, in the order of the script
+        private List<Operator> inputs;
+        // the columns which the keys of the joins make equal, by class
+        private List<List<Long>> keyClasses;
+        private Map<Long, Integer> uidToInput;
+        private long[] records;
+        private long[][] distinctValues;
+        // the new order of the inputs, and the records of each join of it
+        private List<Integer> order;
+        private List<Long> joinRecords;
+
+        @Override
+        public boolean check(OperatorPlan matched) throws FrontendException {
+            root = (LOJoin) matched.getSources().get(0);
+            if (root.getAnnotation(REORDERED_ANNOTATION) != null || !isReorderable(root)) {
+                return false;
+            }
+            List<Operator> succs = currentPlan.getSuccessors(root);
+            if (succs == null || (succs.size() == 1 && isReorderable(succs.get(0))
+                    && root.getRequestedParallelism() <= 0)) {
+                // the join is reordered with the one it feeds
+                return false;
+            }
+            joins = new ArrayList<LOJoin>();
+            inputs = new ArrayList<Operator>();
+            collect(root);
+            if (new HashSet<Operator>(inputs).size() != inputs.size() || !findKeyClasses()) {
+                return false;
+            }
+
+            CardinalityEstimator estimator = new CardinalityEstimator(currentPlan);
+            estimator.visit();
+            records = new long[inputs.size()];
+            distinctValues = new long[inputs.size()][keyClasses.size()];
+            for (int i = 0; i < records.length; i++) {
+                records[i] = estimator.getRecords(inputs.get(i));
+                if (records[i] < 0) {
+                    return false;
+                }
+                for (int c = 0; c < keyClasses.size(); c++) {
+                    Long uid = getColumn(c, i);
+                    distinctValues[i][c] = uid == null ? -1
+                            : estimator.getDistinctValues(inputs.get(i), uid);
+                }
+            }
+
+            if (joins.size() == 1) {
+                return orderSingleJoin();
+            }
+            long cost = 0;
+            for (LOJoin join : joins) {
+                long r = estimator.getRecords(join);
+                if (r < 0) {
+                    return false;
+                }
+                if (join != root) {
+                    cost += r;
+                }
+            }
+            long newCost = orderJoins();
+            if (newCost < 0 || newCost >= cost) {
+                return false;
+            }
+            LOG.info("Reordering the joins of " + root.getAlias()
+                    + ", which are expected to output " + newCost + " intermediate records instead of "
+                    + cost);
+            return true;
+        }
+
+        /**
+         * @return whether the join can be moved: an inner join on columns
+         *  without a hint
+         */
+        private boolean isReorderable(Operator op) throws FrontendException {
+            if (!(op instanceof LOJoin)) {
+                return false;
+            }
+            LOJoin join = (LOJoin) op;
+            if (currentPlan.getPredecessors(join) == null) {
+                return false;
+            }
+            if (join.isPinnedOption(LOJoin.OPTION_JOIN) || join.getJoinType() != JOINTYPE.HASH
+                    || join.getCustomPartitioner() != null || join.getSchema() == null) {
+                return false;
+            }
+            for (boolean inner : join.getInnerFlags()) {
+                if (!inner) {
+                    return false;
+                }
+            }
+            for (Operator input : currentPlan.getPredecessors(join)) {
+                if (((LogicalRelationalOperator) input).getSchema() == null) {
+                    return false;
+                }
+            }
+            for (LogicalExpressionPlan keyPlan : join.getExpressionPlanValues()) {
+                if (keyPlan.size() != 1 || !(keyPlan.getSources().get(0) instanceof ProjectExpression)) {
+                    return false;
+                }
+                ProjectExpression project = (ProjectExpression) keyPlan.getSources().get(0);
+                if (project.isRangeOrStarProject()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void collect(LOJoin join) throws FrontendException {
+            joins.add(join);
+            for (Operator input : currentPlan.getPredecessors(join)) {
+                if (isReorderable(input) && currentPlan.getSuccessors(input).size() == 1
+                        && ((LOJoin) input).getRequestedParallelism() <= 0) {
+                    collect((LOJoin) input);
+                } else {
+                    inputs.add(input);
+                }
+            }
+        }
+
+        /**
+         * Groups the columns of the inputs which the keys of the joins make
+         * equal
+         *
+         * @return false if the keys cannot be moved, because they compare
+         *  columns of different types or two columns of the same input
+         */
+        private boolean findKeyClasses() throws FrontendException {
+            uidToInput = new HashMap<Long, Integer>();
+            Map<Long, Byte> types = new HashMap<Long, Byte>();
+            for (int i = 0; i < inputs.size(); i++) {
+                for (LogicalFieldSchema fs : ((LogicalRelationalOperator) inputs.get(i)).getSchema().getFields()) {
+                    uidToInput.put(fs.uid, i);
+                    types.put(fs.uid, fs.type);
+                }
+            }
+            // union find of the uids of the keys
+            Map<Long, Long> parents = new LinkedHashMap<Long, Long>();
+            for (LOJoin join : joins) {
+                List<Operator> preds = currentPlan.getPredecessors(join);
+                int keys = join.getJoinPlan(0).size();
+                for (int k = 0; k < keys; k++) {
+                    Long first = null;
+                    for (int i = 0; i < preds.size(); i++) {
+                        LogicalExpressionPlan keyPlan = new ArrayList<LogicalExpressionPlan>(join.getJoinPlan(i)).get(k);
+                        ProjectExpression project = (ProjectExpression) keyPlan.getSources().get(0);
+                        long uid = ((LogicalRelationalOperator) preds.get(i)).getSchema()
+                                .getField(project.getColNum()).uid;
+                        if (!uidToInput.containsKey(uid)) {
+                            return false;
+                        }
+                        if (!parents.containsKey(uid)) {
+                            parents.put(uid, uid);
+                        }
+                        if (first == null) {
+                            first = uid;
+                        } else {
+                            parents.put(find(parents, uid), find(parents, first));
+                        }
+                    }
+                }
+            }
+            Map<Long, List<Long>> classes = new LinkedHashMap<Long, List<Long>>();
+            for (Long uid : parents.keySet()) {
+                Long parent = find(parents, uid);
+                if (!classes.containsKey(parent)) {
+                    classes.put(parent, new ArrayList<Long>());
+                }
+                classes.get(parent).add(uid);
+            }
+            keyClasses = new ArrayList<List<Long>>(classes.values());
+            for (List<Long> keyClass : keyClasses) {
+                Set<Integer> classInputs = new HashSet<Integer>();
+                for (Long uid : keyClass) {
+                    if (!classInputs.add(uidToInput.get(uid))
+                            || !types.get(uid).equals(types.get(keyClass.get(0)))) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        private Long find(Map<Long, Long> parents, Long uid) {
+            while (!parents.get(uid).equals(uid)) {
+                uid = parents.get(uid);
+            }
+            return uid;
+        }
+
+        /**
+         * @return the column of the input in the class, or null
+         */
+        private Long getColumn(int keyClass, int input) {
+            for (Long uid : keyClasses.get(keyClass)) {
+                if (uidToInput.get(uid) == input) {
+                    return uid;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Moves the input with the most records last
+         *
+         * @return false if it already is
+         */
+        private boolean orderSingleJoin() {
+            int last = inputs.size() - 1;
+            int largest = last;
+            for (int i = 0; i < last; i++) {
+                if (records[i] > records[largest]) {
+                    largest = i;
+                }
+            }
+            if (largest == last) {
+                return false;
+            }
+            order = new ArrayList<Integer>();
+            for (int i = 0; i < inputs.size(); i++) {
+                if (i != largest) {
+                    order.add(i);
+                }
+            }
+            order.add(largest);
+            LOG.info("Moving input " + largest + " of join " + root.getAlias()
+                    + " last, as it is expected to have the most records");
+            return true;
+        }
+
+        /**
+         * Chooses the order of the two-way joins greedily
+         *
+         * @return the records of the intermediate results, or -1 if the
+         *  inputs cannot all be joined on their keys
+         */
+        private long orderJoins() {
+            order = new ArrayList<Integer>();
+            joinRecords = new ArrayList<Long>();
+            long best = -1;
+            int first = -1;
+            int second = -1;
+            for (int i = 0; i < inputs.size(); i++) {
+                List<Integer> joined = new ArrayList<Integer>();
+                joined.add(i);
+                for (int j = i + 1; j < inputs.size(); j++) {
+                    long r = estimateJoin(joined, records[i], j);
+                    if (r >= 0 && (best < 0 || r < best)) {
+                        best = r;
+                        first = i;
+                        second = j;
+                    }
+                }
+            }
+            if (best < 0) {
+                return -1;
+            }
+            order.add(first);
+            order.add(second);
+            joinRecords.add(best);
+            long cost = 0;
+            while (order.size() < inputs.size()) {
+                long current = joinRecords.get(joinRecords.size() - 1);
+                cost += current;
+                best = -1;
+                int next = -1;
+                for (int i = 0; i < inputs.size(); i++) {
+                    if (!order.contains(i)) {
+                        long r = estimateJoin(order, current, i);
+                        if (r >= 0 && (best < 0 || r < best)) {
+                            best = r;
+                            next = i;
+                        }
+                    }
+                }
+                if (best < 0) {
+                    return -1;
+                }
+                order.add(next);
+                joinRecords.add(best);
+            }
+            return cost;
+        }
+
+        /**
+         * @return the records of the join of the joined inputs with another
+         *  input, or -1 if they have no key in common
+         */
+        private long estimateJoin(List<Integer> joined, long joinedRecords, int input) {
+            long joinedNdv = 1;
+            long inputNdv = 1;
+            boolean connected = false;
+            for (int c = 0; c < keyClasses.size(); c++) {
+                if (getColumn(c, input) == null) {
+                    continue;
+                }
+                long ndv = -1;
+                for (int i : joined) {
+                    if (getColumn(c, i) != null && distinctValues[i][c] >= 0) {
+                        ndv = ndv < 0 ? distinctValues[i][c] : Math.min(ndv, distinctValues[i][c]);
+                    }
+                }
+                boolean inJoined = false;
+                for (int i : joined) {
+                    inJoined |= getColumn(c, i) != null;
+                }
+                if (!inJoined) {
+                    continue;
+                }
+                connected = true;
+                joinedNdv = joinedNdv < 0 || ndv < 0 ? -1 : joinedNdv * ndv;
+                inputNdv = inputNdv < 0 || distinctValues[input][c] < 0 ? -1
+                        : inputNdv * distinctValues[input][c];
+            }
+            if (!connected) {
+                return -1;
+            }
+            return CardinalityEstimator.estimateJoin(joinedRecords, records[input],
+                    joinedNdv < 0 ? -1 : Math.min(joinedNdv, joinedRecords),
+                    inputNdv < 0 ? -1 : Math.min(inputNdv, records[input]));
+        }
+
+        @Override
+        public void transform(OperatorPlan matched) throws FrontendException {
+            LogicalPlan plan = (LogicalPlan) currentPlan;
+            LogicalSchema schema = root.getSchema();
+
+            LOForEach foreach = new LOForEach(plan);
+            foreach.setAlias(root.getAlias());
+            foreach.setLocation(root.getLocation());
+            plan.add(foreach);
+            for (Operator succ : new ArrayList<Operator>(plan.getSuccessors(root))) {
+                plan.insertBetween(root, foreach, succ);
+            }
+            plan.disconnect(root, foreach);
+            for (LOJoin join : joins) {
+                for (Operator pred : new ArrayList<Operator>(plan.getPredecessors(join))) {
+                    plan.disconnect(pred, join);
+                }
+            }
+
+            Operator last;
+            List<Long> columns = new ArrayList<Long>();
+            if (joins.size() == 1) {
+                last = reorderInputs(plan, columns);
+            } else {
+                for (LOJoin join : joins) {
+                    plan.remove(join);
+                }
+                last = buildJoins(plan, columns);
+            }
+            plan.connect(last, foreach);
+            restoreColumns(foreach, schema, columns);
+        }
+
+        /**
+         * Connects the inputs of the root join in the new order
+         *
+         * @return the join
+         */
+        private LOJoin reorderInputs(LogicalPlan plan, List<Long> columns) throws FrontendException {
+            MultiMap<Integer, LogicalExpressionPlan> joinPlans = new MultiMap<Integer, LogicalExpressionPlan>();
+            for (int i = 0; i < order.size(); i++) {
+                int input = order.get(i);
+                plan.connect(inputs.get(input), root);
+                addColumns(input, columns);
+                for (LogicalExpressionPlan keyPlan : root.getJoinPlan(input)) {
+                    ((ProjectExpression) keyPlan.getSources().get(0)).setInputNum(i);
+                    joinPlans.put(i, keyPlan);
+                }
+            }
+            root.setJoinPlans(joinPlans);
+            root.resetSchema();
+            root.annotate(REORDERED_ANNOTATION, Boolean.TRUE);
+            return root;
+        }
+
+        /**
+         * Adds the chain of two-way joins of the new order
+         *
+         * @return the last join
+         */
+        private LOJoin buildJoins(LogicalPlan plan, List<Long> columns) throws FrontendException {
+            Operator current = inputs.get(order.get(0));
+            addColumns(order.get(0), columns);
+            long currentRecords = records[order.get(0)];
+            LOJoin join = null;
+            for (int step = 1; step < order.size(); step++) {
+                int input = order.get(step);
+                List<Long> inputColumns = new ArrayList<Long>();
+                addColumns(input, inputColumns);
+
+                MultiMap<Integer, LogicalExpressionPlan> joinPlans = new MultiMap<Integer, LogicalExpressionPlan>();
+                join = new LOJoin(plan, joinPlans, JOINTYPE.HASH, new boolean[] { true, true });
+                join.setAlias(root.getAlias());
+                join.setLocation(root.getLocation());
+                join.setRequestedParallelism(root.getRequestedParallelism());
+                join.annotate(REORDERED_ANNOTATION, Boolean.TRUE);
+                plan.add(join);
+                // the input with the most records is streamed
+                boolean inputFirst = currentRecords > records[input];
+                int currentNum = inputFirst ? 1 : 0;
+                if (inputFirst) {
+                    plan.connect(inputs.get(input), join);
+                    plan.connect(current, join);
+                } else {
+                    plan.connect(current, join);
+                    plan.connect(inputs.get(input), join);
+                }
+                for (int c = 0; c < keyClasses.size(); c++) {
+                    Long inputUid = getColumn(c, input);
+                    Long joinedUid = null;
+                    for (int i = 0; i < step && joinedUid == null; i++) {
+                        joinedUid = getColumn(c, order.get(i));
+                    }
+                    if (inputUid == null || joinedUid == null) {
+                        continue;
+                    }
+                    joinPlans.put(currentNum, project(join, currentNum, columns.indexOf(joinedUid)));
+                    joinPlans.put(1 - currentNum, project(join, 1 - currentNum, inputColumns.indexOf(inputUid)));
+                }
+                if (inputFirst) {
+                    inputColumns.addAll(columns);
+                    columns.clear();
+                    columns.addAll(inputColumns);
+                } else {
+                    columns.addAll(inputColumns);
+                }
+                current = join;
+                currentRecords = joinRecords.get(step - 1);
+            }
+            return join;
+        }
+
+        private LogicalExpressionPlan project(LOJoin join, int input, int column) {
+            LogicalExpressionPlan keyPlan = new LogicalExpressionPlan();
+            new ProjectExpression(keyPlan, input, column, join);
+            return keyPlan;
+        }
+
+        private void addColumns(int input, List<Long> columns) throws FrontendException {
+            for (LogicalFieldSchema fs : ((LogicalRelationalOperator) inputs.get(input)).getSchema().getFields()) {
+                columns.add(fs.uid);
+            }
+        }
+
+        /**
+         * Sets the inner plan of the FOREACH, which projects the columns of
+         * the joins in the order of the original schema, under its names
+         */
+        private void restoreColumns(LOForEach foreach, LogicalSchema schema, List<Long> columns)
+                throws FrontendException {
+            LogicalPlan innerPlan = new LogicalPlan();
+            foreach.setInnerPlan(innerPlan);
+            List<LogicalExpressionPlan> exps = new ArrayList<LogicalExpressionPlan>();
+            List<LogicalSchema> userSchemas = new ArrayList<LogicalSchema>();
+            LOGenerate gen = new LOGenerate(innerPlan, exps, new boolean[schema.size()]);
+            innerPlan.add(gen);
+            for (int i = 0; i < schema.size(); i++) {
+                LogicalFieldSchema fs = schema.getField(i);
+                LOInnerLoad innerLoad = new LOInnerLoad(innerPlan, foreach, columns.indexOf(fs.uid));
+                innerPlan.add(innerLoad);
+                innerPlan.connect(innerLoad, gen);
+                LogicalExpressionPlan exp = new LogicalExpressionPlan();
+                new ProjectExpression(exp, i, -1, gen);
+                exps.add(exp);
+                LogicalSchema userSchema = new LogicalSchema();
+                userSchema.addField(fs.deepCopy());
+                userSchemas.add(userSchema);
+            }
+            gen.setUserDefinedSchema(userSchemas);
+        }
+
+        @Override
+        public OperatorPlan reportChanges() {
+            return currentPlan;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pig.tools.pigstats;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.pig.PigConfiguration;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.PhysicalOperator;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.plans.PhysicalPlan;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.hash.Hashing;
+
+/**
+ * A local store of the statistics of the jobs or vertices of the previous
+ * runs of scripts, used to estimate the parallelism of the next runs. The
+ * statistics of a script are kept in a properties file of
+ * {@link PigConfiguration#PIG_STATS_HISTORY_DIR} named after the signature
+ * of its logical plan, which does not depend on the input and output
+ * locations, and those of a job or vertex are keyed by the signature of its
+ * physical plans. Only the last run of a job is kept.
+ */
+public class RuntimeStatsStore {
+    private static final Log LOG = LogFactory.getLog(RuntimeStatsStore.class);
+
+    /** Size of the input files, as estimated when the job was compiled */
+    public static final String INPUT_BYTES = "inputBytes";
+    public static final String INPUT_RECORDS = "inputRecords";
+    public static final String SHUFFLE_BYTES = "shuffleBytes";
+    public static final String SHUFFLE_RECORDS = "shuffleRecords";
+    public static final String OUTPUT_BYTES = "outputBytes";
+    public static final String OUTPUT_RECORDS = "outputRecords";
+    public static final String PARALLELISM = "parallelism";
+
+    public static final String SCRIPT_SIGNATURE = "pig.logical.plan.signature";
+
+    private final File dir;
+
+    public RuntimeStatsStore(Configuration conf) {
+        dir = new File(conf.get(PigConfiguration.PIG_STATS_HISTORY_DIR,
+                System.getProperty("user.home") + File.separator + ".pig" + File.separator + "stats"));
+    }
+
+    /**
+     * @return the statistics of the last run of the job or vertex, or null
+     *  if there are none
+     */
+    public Map<String, Long> get(String scriptSignature, String signature) throws IOException {
+        Properties props = load(scriptSignature);
+        Map<String, Long> stats = new HashMap<String, Long>();
+        String prefix = signature + ".";
+        for (String key : props.stringPropertyNames()) {
+            if (key.startsWith(prefix)) {
+                stats.put(key.substring(prefix.length()), Long.parseLong(props.getProperty(key)));
+            }
+        }
+        return stats.isEmpty() ? null : stats;
+    }
+
+    /**
+     * Replaces the statistics of the job or vertex. The statistics with a
+     * negative value are unknown and not kept.
+     */
+    public synchronized void put(String scriptSignature, String signature, Map<String, Long> stats)
+            throws IOException {
+        Properties props = load(scriptSignature);
+        String prefix = signature + ".";
+        for (String key : props.stringPropertyNames()) {
+            if (key.startsWith(prefix)) {
+                props.remove(key);
+            }
+        }
+        for (Map.Entry<String, Long> e : stats.entrySet()) {
+            if (e.getValue() != null && e.getValue() >= 0) {
+                props.setProperty(prefix + e.getKey(), e.getValue().toString());
+            }
+        }
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Unable to create statistics directory " + dir);
+        }
+        // Written aside and renamed, so that concurrent runs read either version
+        File tmp = File.createTempFile(scriptSignature, ".tmp", dir);
+        OutputStream out = new FileOutputStream(tmp);
+        try {
+            props.store(out, null);
+        } finally {
+            out.close();
+        }
+        File file = getFile(scriptSignature);
+        if (!tmp.renameTo(file)) {
+            file.delete();
+            if (!tmp.renameTo(file)) {
+                tmp.delete();
+                throw new IOException("Unable to write statistics file " + file);
+            }
+        }
+        LOG.info("Recorded statistics " + stats + " of " + signature + " in " + file);
+    }
+
+    private Properties load(String scriptSignature) throws IOException {
+        Properties props = new Properties();
+        File file = getFile(scriptSignature);
+        if (file.exists()) {
+            InputStream in = new FileInputStream(file);
+            try {
+                props.load(in);
+            } finally {
+                in.close();
+            }
+        }
+        return props;
+    }
+
+    private File getFile(String scriptSignature) {
+        return new File(dir, scriptSignature + ".properties");
+    }
+
+    /**
+     * Returns the signature of the physical plans of a job or vertex, which
+     * is the same on every run of the script: it only depends on the types
+     * and aliases of the operators, and not on their locations or keys.
+     *
+     * @param plans the plans of the job or vertex
+     * @return the signature
+     */
+    public static String getSignature(Collection<PhysicalPlan> plans) {
+        List<String> ops = new ArrayList<String>();
+        for (PhysicalPlan plan : plans) {
+            for (PhysicalOperator op : plan) {
+                ops.add(op.getClass().getSimpleName() + ":" + op.getAlias());
+            }
+        }
+        Collections.sort(ops);
+        return Integer.toString(Hashing.murmur3_32(0).hashString(Joiner.on(',').join(ops),
+                Charsets.UTF_8).asInt());
+    }
+}
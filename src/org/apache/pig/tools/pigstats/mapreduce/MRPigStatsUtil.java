@@ -19,10 +19,12 @@
 package org.apache.pig.tools.pigstats.mapreduce;
 
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.Map;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.mapred.Counters;
 import org.apache.hadoop.mapred.JobClient;
 import org.apache.hadoop.mapred.RunningJob;
@@ -30,15 +32,18 @@ import org.apache.hadoop.mapred.jobcontrol.Job;
 import org.apache.hadoop.mapred.jobcontrol.JobControl;
 import org.apache.hadoop.mapreduce.JobID;
 import org.apache.pig.backend.hadoop.executionengine.mapReduceLayer.JobControlCompiler;
+import org.apache.pig.backend.hadoop.executionengine.mapReduceLayer.MRConfiguration;
 import org.apache.pig.backend.hadoop.executionengine.mapReduceLayer.MapReduceOper;
 import org.apache.pig.backend.hadoop.executionengine.mapReduceLayer.NativeMapReduceOper;
 import org.apache.pig.backend.hadoop.executionengine.mapReduceLayer.plans.MROperPlan;
 import org.apache.pig.classification.InterfaceAudience.Private;
 import org.apache.pig.impl.PigContext;
+import org.apache.pig.impl.PigImplConstants;
 import org.apache.pig.tools.pigstats.JobStats;
 import org.apache.pig.tools.pigstats.PigStats;
 import org.apache.pig.tools.pigstats.PigStats.JobGraph;
 import org.apache.pig.tools.pigstats.PigStatsUtil;
+import org.apache.pig.tools.pigstats.RuntimeStatsStore;
 
 
 
@@ -52,6 +57,9 @@ public class MRPigStatsUtil extends PigStatsUtil {
     public static final String FS_COUNTER_GROUP
             = "org.apache.hadoop.mapreduce.FileSystemCounter";
 
+    private static final String MAP_OUTPUT_BYTES = "MAP_OUTPUT_BYTES";
+    private static final String REDUCE_SHUFFLE_BYTES = "REDUCE_SHUFFLE_BYTES";
+
     private static final Log LOG = LogFactory.getLog(MRPigStatsUtil.class);
 
     /**
@@ -199,6 +207,40 @@ public class MRPigStatsUtil extends PigStatsUtil {
         return js;
     }
 
+    /**
+     * Records the statistics of a job whose reducers were estimated by
+     * {@link org.apache.pig.backend.hadoop.executionengine.mapReduceLayer.HistoryReducerEstimator},
+     * for the next runs of the script.
+     */
+    private static void recordRuntimeStats(Job job, MRJobStats js) {
+        Configuration conf = job.getJobConf();
+        String signature = conf.get(PigImplConstants.STATS_HISTORY_SIGNATURE);
+        String scriptSignature = conf.get(RuntimeStatsStore.SCRIPT_SIGNATURE);
+        Counters counters = js.getHadoopCounters();
+        if (signature == null || scriptSignature == null || counters == null) {
+            return;
+        }
+        Counters.Group taskgroup = counters.getGroup(TASK_COUNTER_GROUP);
+        long shuffleBytes = taskgroup.getCounterForName(REDUCE_SHUFFLE_BYTES).getCounter();
+        if (shuffleBytes <= 0) {
+            shuffleBytes = taskgroup.getCounterForName(MAP_OUTPUT_BYTES).getCounter();
+        }
+        Map<String, Long> stats = new HashMap<String, Long>();
+        stats.put(RuntimeStatsStore.INPUT_BYTES, conf.getLong(PigImplConstants.STATS_HISTORY_INPUT_BYTES, -1));
+        stats.put(RuntimeStatsStore.INPUT_RECORDS, js.getMapInputRecords());
+        stats.put(RuntimeStatsStore.SHUFFLE_BYTES, shuffleBytes);
+        stats.put(RuntimeStatsStore.SHUFFLE_RECORDS, js.getReduceInputRecords());
+        stats.put(RuntimeStatsStore.OUTPUT_BYTES, js.getHdfsBytesWritten() > 0
+                ? js.getHdfsBytesWritten() : js.getBytesWritten());
+        stats.put(RuntimeStatsStore.OUTPUT_RECORDS, js.getReduceOutputRecords());
+        stats.put(RuntimeStatsStore.PARALLELISM, (long) conf.getInt(MRConfiguration.REDUCE_TASKS, -1));
+        try {
+            new RuntimeStatsStore(conf).put(scriptSignature, signature, stats);
+        } catch (IOException e) {
+            LOG.warn("Unable to record the statistics of job " + js.getJobId(), e);
+        }
+    }
+
     public static MRJobStats addNativeJobStats(PigStats ps, NativeMapReduceOper mr,
             boolean success) {
         return addNativeJobStats(ps, mr, success, null);
@@ -236,6 +278,8 @@ public class MRPigStatsUtil extends PigStatsUtil {
             js.addOutputStatistics();
 
             js.addInputStatistics();
+
+            recordRuntimeStats(job, js);
         }
         return js;
     }
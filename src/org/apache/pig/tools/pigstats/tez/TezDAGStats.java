@@ -35,6 +35,7 @@ import org.apache.pig.backend.hadoop.executionengine.tez.plan.TezOperPlan;
 import org.apache.pig.backend.hadoop.executionengine.tez.plan.TezOperator;
 import org.apache.pig.backend.hadoop.executionengine.tez.plan.TezPlanContainerNode;
 import org.apache.pig.backend.hadoop.executionengine.tez.plan.TezPrinter;
+import org.apache.pig.impl.PigImplConstants;
 import org.apache.pig.impl.logicalLayer.FrontendException;
 import org.apache.pig.impl.plan.DependencyOrderWalker;
 import org.apache.pig.impl.plan.VisitorException;
@@ -44,6 +45,7 @@ import org.apache.pig.tools.pigstats.OutputStats;
 import org.apache.pig.tools.pigstats.PigStats.JobGraph;
 import org.apache.pig.tools.pigstats.PigStats.JobGraphPrinter;
 import org.apache.pig.tools.pigstats.PigStatsUtil;
+import org.apache.pig.tools.pigstats.RuntimeStatsStore;
 import org.apache.pig.tools.pigstats.tez.TezScriptState.TezDAGScriptInfo;
 import org.apache.tez.common.TezUtils;
 import org.apache.tez.common.counters.CounterGroup;
@@ -236,6 +238,7 @@ public class TezDAGStats extends JobStats {
                     continue;
                 }
                 vertexStats.accumulateStats(status, v.getParallelism());
+                recordRuntimeStats(vertexStats, conf);
                 if(vertexStats.getInputs() != null && !vertexStats.getInputs().isEmpty()) {
                     inputs.addAll(vertexStats.getInputs());
                 }
@@ -291,6 +294,34 @@ public class TezDAGStats extends JobStats {
         }
     }
 
+    /**
+     * Records the statistics of a vertex whose parallelism was estimated by
+     * {@link org.apache.pig.backend.hadoop.executionengine.tez.plan.optimizer.HistoryTezParallelismEstimator},
+     * for the next runs of the script.
+     */
+    private void recordRuntimeStats(TezVertexStats vertexStats, Configuration conf) {
+        String signature = conf.get(PigImplConstants.STATS_HISTORY_SIGNATURE);
+        String scriptSignature = conf.get(RuntimeStatsStore.SCRIPT_SIGNATURE);
+        Map<String, Long> taskCounters = vertexStats.getCounters() == null ? null
+                : vertexStats.getCounters().get(TASK_COUNTER_GROUP);
+        if (signature == null || scriptSignature == null || taskCounters == null) {
+            return;
+        }
+        Map<String, Long> stats = new HashMap<String, Long>();
+        stats.put(RuntimeStatsStore.INPUT_BYTES, conf.getLong(PigImplConstants.STATS_HISTORY_INPUT_BYTES, -1));
+        stats.put(RuntimeStatsStore.INPUT_RECORDS, taskCounters.get(TaskCounter.INPUT_RECORDS_PROCESSED.name()));
+        stats.put(RuntimeStatsStore.SHUFFLE_BYTES, taskCounters.get(TaskCounter.SHUFFLE_BYTES.name()));
+        stats.put(RuntimeStatsStore.SHUFFLE_RECORDS, taskCounters.get(TaskCounter.REDUCE_INPUT_RECORDS.name()));
+        stats.put(RuntimeStatsStore.OUTPUT_BYTES, taskCounters.get(TaskCounter.OUTPUT_BYTES.name()));
+        stats.put(RuntimeStatsStore.OUTPUT_RECORDS, taskCounters.get(TaskCounter.OUTPUT_RECORDS.name()));
+        stats.put(RuntimeStatsStore.PARALLELISM, (long) vertexStats.getParallelism());
+        try {
+            new RuntimeStatsStore(conf).put(scriptSignature, signature, stats);
+        } catch (IOException e) {
+            LOG.warn("Unable to record the statistics of vertex " + vertexStats.getJobId(), e);
+        }
+    }
+
     private Counters covertToHadoopCounters(TezCounters tezCounters) {
         Counters counters = new Counters();
         for (CounterGroup tezGrp : tezCounters) {
@@ -43,6 +43,7 @@ import java.util.Properties;
 import java.util.Random;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileUtil;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.FSDataOutputStream;
 import org.apache.hadoop.mapreduce.InputSplit;
@@ -69,6 +70,8 @@ import org.junit.Before;
 import org.junit.Test;
 
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.io.Files;
 
 public class TestSchemaTuple {
     private Properties props;
@@ -88,6 +91,36 @@ public class TestSchemaTuple {
 
     @Test
     public void testCompileAndResolve() throws Exception {
+        compileAndResolve();
+    }
+
+    @Test
+    public void testCompileAndResolveWithJavac() throws Exception {
+        props.setProperty(PigConfiguration.PIG_SCHEMA_TUPLE_USE_JAVAC, "true");
+        conf = ConfigurationUtil.toConfiguration(props);
+        compileAndResolve();
+    }
+
+    @Test
+    public void testCompileAndResolveWithClassCache() throws Exception {
+        File cacheDir = Files.createTempDir();
+        try {
+            props.setProperty(PigConfiguration.PIG_SCHEMA_TUPLE_CACHE_DIR, cacheDir.getAbsolutePath());
+            conf = ConfigurationUtil.toConfiguration(props);
+            compileAndResolve();
+            String[] entries = cacheDir.list();
+            assertTrue(entries.length > 0);
+
+            // the second run must reuse the cached classes, without adding entries
+            conf = ConfigurationUtil.toConfiguration(props);
+            compileAndResolve();
+            assertEquals(Sets.newHashSet(entries), Sets.newHashSet(cacheDir.list()));
+        } finally {
+            FileUtil.fullyDelete(cacheDir);
+        }
+    }
+
+    private void compileAndResolve() throws Exception {
         //frontend
         Schema udfSchema = Utils.getSchemaFromString("a:int");
         boolean isAppendable = false;
@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pig.test;
+
+import static org.apache.pig.builtin.mock.Storage.resetData;
+import static org.apache.pig.builtin.mock.Storage.tuple;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.pig.EvalFunc;
+import org.apache.pig.PigServer;
+import org.apache.pig.builtin.AsyncUDF;
+import org.apache.pig.builtin.PigStorage;
+import org.apache.pig.builtin.mock.Storage.Data;
+import org.apache.pig.data.Tuple;
+import org.apache.pig.data.TupleFactory;
+import org.junit.Test;
+
+public class TestAsyncUDF {
+
+    private static final AtomicInteger inFlight = new AtomicInteger();
+    private static final AtomicInteger maxInFlight = new AtomicInteger();
+
+    @AsyncUDF(concurrency = 8)
+    public static class SlowLookup extends EvalFunc<String> {
+        @Override
+        public String exec(Tuple input) throws IOException {
+            int n = inFlight.incrementAndGet();
+            while (true) {
+                int max = maxInFlight.get();
+                if (n <= max || maxInFlight.compareAndSet(max, n)) {
+                    break;
+                }
+            }
+            try {
+                Integer i = (Integer) input.get(0);
+                if (i == null) {
+                    return null;
+                }
+                if (i < 0) {
+                    throw new IOException("Negative input " + i);
+                }
+                // the later inputs complete first
+                Thread.sleep(i % 2 == 0 ? 5 : 1);
+                return "v" + i;
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+
+    @Test
+    public void testOrderPreserved() throws Exception {
+        maxInFlight.set(0);
+        PigServer pigServer = new PigServer(Util.getLocalTestMode());
+        Data data = resetData(pigServer);
+        List<Tuple> input = new ArrayList<Tuple>();
+        for (int i = 0; i < 300; i++) {
+            input.add(tuple(i % 10 == 0 ? null : i));
+        }
+        data.set("input", input);
+        pigServer.registerQuery("A = LOAD 'input' USING mock.Storage() AS (i:int);");
+        pigServer.registerQuery("B = FOREACH A GENERATE i, " + SlowLookup.class.getName() + "(i), i + 1;");
+        pigServer.registerQuery("STORE B INTO 'output' USING mock.Storage();");
+        List<Tuple> output = data.get("output");
+        assertEquals(input.size(), output.size());
+        for (int i = 0; i < input.size(); i++) {
+            Integer in = (Integer) input.get(i).get(0);
+            assertEquals(tuple(in, in == null ? null : "v" + in, in == null ? null : in + 1), output.get(i));
+        }
+        assertTrue("max in flight: " + maxInFlight.get(), maxInFlight.get() > 1);
+        assertTrue("max in flight: " + maxInFlight.get(), maxInFlight.get() <= 8);
+    }
+
+    @Test
+    public void testError() throws Exception {
+        PigServer pigServer = new PigServer(Util.getLocalTestMode());
+        Data data = resetData(pigServer);
+        data.set("input", tuple(1), tuple(-1), tuple(2));
+        pigServer.registerQuery("A = LOAD 'input' USING mock.Storage() AS (i:int);");
+        pigServer.registerQuery("B = FOREACH A GENERATE " + SlowLookup.class.getName() + "(i);");
+        try {
+            pigServer.openIterator("B");
+            fail("Expected the error of the UDF");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Returns the same tuple for every line
+     */
+    public static class ReusingLoader extends PigStorage {
+        private Tuple reused;
+
+        @Override
+        public Tuple getNext() throws IOException {
+            Tuple t = super.getNext();
+            if (t == null) {
+                return null;
+            }
+            if (reused == null) {
+                reused = TupleFactory.getInstance().newTuple(t.size());
+            }
+            for (int i = 0; i < t.size(); i++) {
+                reused.set(i, t.get(i));
+            }
+            return reused;
+        }
+    }
+
+    @Test
+    public void testReusedInput() throws Exception {
+        String[] lines = new String[100];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = Integer.toString(i);
+        }
+        File input = Util.createInputFile("async", ".txt", lines);
+        PigServer pigServer = new PigServer(Util.getLocalTestMode());
+        Data data = resetData(pigServer);
+        pigServer.registerQuery("A = LOAD '" + Util.encodeEscape(input.getAbsolutePath()) + "' USING "
+                + ReusingLoader.class.getName() + "();");
+        pigServer.registerQuery("B = FOREACH A GENERATE (int) $0, " + SlowLookup.class.getName() + "((int) $0);");
+        pigServer.registerQuery("STORE B INTO 'output' USING mock.Storage();");
+        List<Tuple> output = data.get("output");
+        assertEquals(lines.length, output.size());
+        for (int i = 0; i < lines.length; i++) {
+            assertEquals(tuple(i, "v" + i), output.get(i));
+        }
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pig.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.MRJobConfig;
+import org.apache.pig.PigConfiguration;
+import org.apache.pig.PigServer;
+import org.apache.pig.backend.hadoop.datastorage.ConfigurationUtil;
+import org.apache.pig.backend.hadoop.executionengine.mapReduceLayer.JobControlCompiler;
+import org.apache.pig.backend.hadoop.executionengine.mapReduceLayer.MapReduceOper;
+import org.apache.pig.backend.hadoop.executionengine.mapReduceLayer.partitioners.SkewedPartitioner;
+import org.apache.pig.backend.hadoop.executionengine.mapReduceLayer.plans.MROperPlan;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.plans.PhysicalPlan;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators.POLocalRearrange;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators.POPartitionRearrange;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators.POSkewedJoin;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.util.PlanHelper;
+import org.apache.pig.backend.hadoop.executionengine.util.MapRedUtil;
+import org.apache.pig.data.DataBag;
+import org.apache.pig.data.Tuple;
+import org.apache.pig.impl.PigContext;
+import org.apache.pig.impl.builtin.PartitionSkewedKeys;
+import org.apache.pig.impl.util.HeavyHitters;
+import org.apache.pig.impl.util.ObjectSerializer;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestAutoSkewedJoin {
+
+    private static File left;
+    private static File right;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void oneTimeSetUp() throws Exception {
+        String[] leftData = new String[1000];
+        for (int i = 0; i < leftData.length; i++) {
+            // half of the rows have the key 1
+            leftData[i] = (i % 2 == 0 ? 1 : i % 100) + "\tl" + i;
+        }
+        left = Util.createInputFile("left", ".txt", leftData);
+        String[] rightData = new String[200];
+        for (int i = 0; i < rightData.length; i++) {
+            rightData[i] = (i % 110) + "\tr" + i;
+        }
+        right = Util.createInputFile("right", ".txt", rightData);
+    }
+
+    @Test
+    public void testHeavyHitters() throws Exception {
+        HeavyHitters<Integer> heavyHitters = new HeavyHitters<Integer>(10);
+        for (int i = 0; i < 10000; i++) {
+            heavyHitters.add(i % 3 == 0 ? -1 : i);
+        }
+        assertEquals(10000, heavyHitters.getTotal());
+        Map<Integer, Double> items = heavyHitters.getFrequentItems(0.2);
+        assertEquals(1, items.size());
+        assertTrue(items.get(-1) > 0.2 && items.get(-1) <= 0.3334);
+    }
+
+    @Test
+    public void testKeyDistribution() throws Exception {
+        Map<Tuple, Double> keyFrequencies = new LinkedHashMap<Tuple, Double>();
+        keyFrequencies.put(Util.createTuple(new String[] {"a"}), 0.5);
+        keyFrequencies.put(Util.createTuple(new String[] {"b"}), 0.25);
+        // on a single reducer
+        keyFrequencies.put(Util.createTuple(new String[] {"c"}), 0.05);
+        Map<String, Object> distMap = MapRedUtil.getKeyDistribution(keyFrequencies, 10);
+        assertEquals(10, distMap.get(PartitionSkewedKeys.TOTAL_REDUCERS));
+        Iterator<Tuple> it = ((DataBag) distMap.get(PartitionSkewedKeys.PARTITION_LIST)).iterator();
+        assertEquals(Util.createTuple(new Object[] {"a", 0, 4}), it.next());
+        assertEquals(Util.createTuple(new Object[] {"b", 5, 7}), it.next());
+        assertFalse(it.hasNext());
+    }
+
+    private static List<Tuple> runJoin(boolean auto, String joinType) throws Exception {
+        return runJoin(auto, joinType, new Properties());
+    }
+
+    private static List<Tuple> runJoin(boolean auto, String joinType, Properties conf) throws Exception {
+        Properties props = new Properties();
+        props.putAll(conf);
+        props.setProperty(PigConfiguration.PIG_SKEWEDJOIN_AUTO, String.valueOf(auto));
+        PigServer pigServer = new PigServer(Util.getLocalTestMode(), props);
+        String query = "A = LOAD '" + Util.encodeEscape(left.getAbsolutePath()) + "' AS (k:int, v:chararray);"
+                + "B = LOAD '" + Util.encodeEscape(right.getAbsolutePath()) + "' AS (k:int, v:chararray);"
+                + "A1 = FILTER A BY v != 'l1';"
+                + "C = JOIN A1 BY k " + joinType + ", B BY k PARALLEL 4;";
+        PhysicalPlan pp = Util.buildPp(pigServer, query + "STORE C INTO 'output';");
+        assertEquals(auto, !PlanHelper.getPhysicalOperators(pp, POSkewedJoin.class).isEmpty());
+
+        pigServer.registerQuery(query);
+        List<Tuple> result = new ArrayList<Tuple>();
+        Iterator<Tuple> it = pigServer.openIterator("C");
+        while (it.hasNext()) {
+            result.add(it.next());
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    @Test
+    public void testPlan() throws Exception {
+        Properties props = new Properties();
+        props.setProperty(PigConfiguration.PIG_SKEWEDJOIN_AUTO, "true");
+        PigServer pigServer = new PigServer(Util.getLocalTestMode(), props);
+        // no data is read when the plan is compiled
+        String query = "A = LOAD 'does_not_exist' AS (k:int, v:chararray);"
+                + "B = LOAD '" + Util.encodeEscape(right.getAbsolutePath()) + "' AS (k:int, v:chararray);"
+                + "C = JOIN A BY k, B BY k;"
+                + "STORE C INTO 'output';";
+        MROperPlan mrPlan = Util.buildMRPlan(Util.buildPp(pigServer, query), pigServer.getPigContext());
+        assertEquals(1, mrPlan.size());
+        MapReduceOper mro = mrPlan.getRoots().get(0);
+        assertTrue(mro.isSkewedJoin());
+        assertNotNull(mro.getSkewedJoinRearrange());
+        assertNull(mro.getSkewedJoinPartitionFile());
+    }
+
+    @Test
+    public void testKeysInLaterSplit() throws Exception {
+        File dir = folder.newFolder();
+        String[] data = new String[1000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = i + "\tv" + i;
+        }
+        Util.writeToFile(new File(dir, "part-0"), data);
+        for (int i = 0; i < data.length; i++) {
+            data[i] = 7 + "\tv" + i;
+        }
+        Util.writeToFile(new File(dir, "part-1"), data);
+
+        Properties props = new Properties();
+        props.setProperty(PigConfiguration.PIG_SKEWEDJOIN_AUTO, "true");
+        props.setProperty(PigConfiguration.PIG_SKEWEDJOIN_AUTO_SAMPLE_SIZE, "200");
+        PigServer pigServer = new PigServer(Util.getLocalTestMode(), props);
+        String query = "A = LOAD '" + Util.encodeEscape(dir.getAbsolutePath()) + "' AS (k:int, v:chararray);"
+                + "B = LOAD '" + Util.encodeEscape(right.getAbsolutePath()) + "' AS (k:int, v:chararray);"
+                + "C = JOIN A BY k, B BY k PARALLEL 4;"
+                + "STORE C INTO 'output';";
+        PigContext pc = pigServer.getPigContext();
+        MROperPlan mrPlan = Util.buildMRPlan(Util.buildPp(pigServer, query), pc);
+        JobControlCompiler jcc = new JobControlCompiler(pc, ConfigurationUtil.toConfiguration(pc.getProperties()));
+        Configuration conf = jcc.compile(mrPlan, "Test").getWaitingJobs().get(0).getJobConf();
+        assertEquals(SkewedPartitioner.class.getName(), conf.get(MRJobConfig.PARTITIONER_CLASS_ATTR));
+
+        // the first rows of both files are read, and only the key of the
+        // second file is skewed
+        @SuppressWarnings("unchecked")
+        Map<String, Object> distMap = (Map<String, Object>) ObjectSerializer.deserialize(
+                conf.get(MapRedUtil.KEY_DIST));
+        Iterator<Tuple> it = ((DataBag) distMap.get(PartitionSkewedKeys.PARTITION_LIST)).iterator();
+        Tuple t = it.next();
+        assertEquals(7, t.get(0));
+        // spread over more than one reducer
+        assertTrue((Integer) t.get(2) > 0);
+        assertFalse(it.hasNext());
+    }
+
+    @Test
+    public void testNoSkewedKeys() throws Exception {
+        Properties props = new Properties();
+        props.setProperty(PigConfiguration.PIG_SKEWEDJOIN_AUTO, "true");
+        props.setProperty(PigConfiguration.PIG_SKEWEDJOIN_AUTO_THRESHOLD, "0.9");
+        PigServer pigServer = new PigServer(Util.getLocalTestMode(), props);
+        String query = "A = LOAD '" + Util.encodeEscape(left.getAbsolutePath()) + "' AS (k:int, v:chararray);"
+                + "B = LOAD '" + Util.encodeEscape(right.getAbsolutePath()) + "' AS (k:int, v:chararray);"
+                + "C = JOIN A BY k, B BY k PARALLEL 4;"
+                + "STORE C INTO 'output';";
+        PigContext pc = pigServer.getPigContext();
+        MROperPlan mrPlan = Util.buildMRPlan(Util.buildPp(pigServer, query), pc);
+        MapReduceOper mro = mrPlan.getRoots().get(0);
+        assertTrue(mro.isSkewedJoin());
+        JobControlCompiler jcc = new JobControlCompiler(pc, ConfigurationUtil.toConfiguration(pc.getProperties()));
+        Configuration conf = jcc.compile(mrPlan, "Test").getWaitingJobs().get(0).getJobConf();
+
+        // the join is run as a hash join
+        assertFalse(mro.isSkewedJoin());
+        assertTrue(PlanHelper.getPhysicalOperators(mro.mapPlan, POPartitionRearrange.class).isEmpty());
+        assertEquals(2, PlanHelper.getPhysicalOperators(mro.mapPlan, POLocalRearrange.class).size());
+        assertFalse(SkewedPartitioner.class.getName().equals(conf.get(MRJobConfig.PARTITIONER_CLASS_ATTR)));
+        @SuppressWarnings("unchecked")
+        Map<String, Object> distMap = (Map<String, Object>) ObjectSerializer.deserialize(
+                conf.get(MapRedUtil.KEY_DIST));
+        assertEquals(0, ((DataBag) distMap.get(PartitionSkewedKeys.PARTITION_LIST)).size());
+
+        props.remove(PigConfiguration.PIG_SKEWEDJOIN_AUTO);
+        assertEquals(runJoin(false, "", props), runJoin(true, "", props));
+        assertEquals(runJoin(false, "LEFT OUTER", props), runJoin(true, "LEFT OUTER", props));
+    }
+
+    @Test
+    public void testInnerJoin() throws Exception {
+        List<Tuple> expected = runJoin(false, "");
+        assertEquals(1948, expected.size());
+        assertEquals(expected, runJoin(true, ""));
+    }
+
+    @Test
+    public void testLeftOuterJoin() throws Exception {
+        assertEquals(runJoin(false, "LEFT OUTER"), runJoin(true, "LEFT OUTER"));
+    }
+}
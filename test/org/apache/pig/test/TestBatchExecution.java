@@ -0,0 +1,253 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pig.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.pig.PigConfiguration;
+import org.apache.pig.backend.executionengine.ExecException;
+import org.apache.pig.backend.hadoop.executionengine.mapReduceLayer.PigMapReduce;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.POStatus;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.PhysicalOperator;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.Result;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.TupleBatch;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators.Add;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators.POProject;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.plans.PhyPlanVisitor;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.plans.PhysicalPlan;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators.POFilter;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators.POForEach;
+import org.apache.pig.data.DataType;
+import org.apache.pig.data.Tuple;
+import org.apache.pig.data.TupleFactory;
+import org.apache.pig.test.utils.GenPhyOp;
+import org.junit.After;
+import org.junit.Test;
+
+public class TestBatchExecution {
+    private static final TupleFactory mTupleFactory = TupleFactory.getInstance();
+
+    private static final String[] INPUT = new String[] {
+            "1\t10\t1.5\tpig", "2\t\t2.5\thadoop", "3\t0\t\tpig", "\t4\t4.5\t",
+            "5\t5\t-5.5\tjava", "6\t-6\t6.5\tpig", "7\t7\t0.0\ttez", "8\t\t8.5\tspark",
+            "9\t9\t9.5\tpig" };
+
+    @After
+    public void tearDown() {
+        PigMapReduce.sJobConfInternal.set(null);
+    }
+
+    private static void setBatchSize(int size) {
+        Configuration conf = new Configuration(false);
+        conf.setInt(PigConfiguration.PIG_EXEC_BATCH_SIZE, size);
+        PigMapReduce.sJobConfInternal.set(conf);
+    }
+
+    private static TupleBatch batchOf(int capacity, int... values) throws Exception {
+        TupleBatch batch = new TupleBatch(capacity);
+        for (int i = 0; i < values.length; i++) {
+            Tuple t = mTupleFactory.newTuple(2);
+            t.set(0, i);
+            t.set(1, values[i]);
+            batch.add(t);
+        }
+        return batch;
+    }
+
+    @Test
+    public void testFilterOnAttachedBatch() throws Exception {
+        setBatchSize(4);
+        POFilter filter = GenPhyOp.topFilterOpWithProj(1, 50);
+        assertTrue(filter.supportsBatch());
+
+        // larger than the batches of the filter
+        filter.attachInputBatch(batchOf(10, 60, 10, 70, 80, 20, 90, 30, 51, 50, 100));
+        List<Integer> passed = new ArrayList<Integer>();
+        while (true) {
+            Result res = filter.getNextTuple();
+            if (res.returnStatus == POStatus.STATUS_EOP) {
+                break;
+            }
+            assertEquals(POStatus.STATUS_OK, res.returnStatus);
+            passed.add((Integer) ((Tuple) res.result).get(1));
+        }
+        assertEquals(6, passed.size());
+        assertEquals("[60, 70, 80, 90, 51, 100]", passed.toString());
+
+        // a single attached tuple still goes through row mode
+        Tuple t = mTupleFactory.newTuple(2);
+        t.set(1, 40);
+        filter.attachInput(t);
+        assertEquals(POStatus.STATUS_EOP, filter.getNextTuple().returnStatus);
+    }
+
+    @Test
+    public void testForEachPullsBatches() throws Exception {
+        setBatchSize(4);
+        POFilter filter = GenPhyOp.topFilterOpWithProj(1, 50);
+        // generate b, a + b
+        POProject b = GenPhyOp.exprProject(1);
+        b.setResultType(DataType.INTEGER);
+        PhysicalPlan first = new PhysicalPlan();
+        first.add(b);
+        POProject a = GenPhyOp.exprProject(0);
+        a.setResultType(DataType.INTEGER);
+        POProject b2 = GenPhyOp.exprProject(1);
+        b2.setResultType(DataType.INTEGER);
+        Add add = new Add(GenPhyOp.getOK());
+        add.setResultType(DataType.INTEGER);
+        add.setLhs(a);
+        add.setRhs(b2);
+        PhysicalPlan second = new PhysicalPlan();
+        second.add(a);
+        second.add(b2);
+        second.add(add);
+        second.connect(a, add);
+        second.connect(b2, add);
+        POForEach foreach = GenPhyOp.topForEachOp();
+        foreach.setInputPlans(Arrays.asList(first, second));
+        foreach.setToBeFlattened(Arrays.asList(false, false));
+        foreach.setInputs(Collections.singletonList((PhysicalOperator) filter));
+        assertTrue(foreach.supportsBatch());
+
+        filter.attachInputBatch(batchOf(9, 60, 10, 70, 80, 20, 90, 30, 51, 50));
+        TupleBatch out = new TupleBatch(4);
+        List<Tuple> generated = new ArrayList<Tuple>();
+        while (true) {
+            Result res = foreach.getNextBatch(out);
+            if (res.returnStatus == POStatus.STATUS_EOP) {
+                break;
+            }
+            assertEquals(POStatus.STATUS_OK, res.returnStatus);
+            for (int i = 0; i < out.size(); i++) {
+                generated.add(out.get(i));
+            }
+            if (out.isEndOfInput()) {
+                break;
+            }
+        }
+        assertEquals(5, generated.size());
+        assertEquals(60, generated.get(0).get(0));
+        assertEquals(60, generated.get(0).get(1));
+        assertEquals(51, generated.get(4).get(0));
+        assertEquals(58, generated.get(4).get(1));
+    }
+
+    @Test
+    public void testDefaultBatchCopiesTuples() throws Exception {
+        // returns the same tuple each time, as loaders may do
+        PhysicalOperator reusing = new PhysicalOperator(GenPhyOp.getOK()) {
+            private static final long serialVersionUID = 1L;
+            private final Tuple t = mTupleFactory.newTuple(1);
+            private int i = 0;
+
+            @Override
+            public Result getNextTuple() throws ExecException {
+                if (i == 3) {
+                    return RESULT_EOP;
+                }
+                t.set(0, i++);
+                return new Result(POStatus.STATUS_OK, t);
+            }
+
+            @Override
+            public void visit(PhyPlanVisitor v) {
+            }
+
+            @Override
+            public boolean supportsMultipleInputs() {
+                return false;
+            }
+
+            @Override
+            public boolean supportsMultipleOutputs() {
+                return false;
+            }
+
+            @Override
+            public String name() {
+                return "Reusing";
+            }
+
+            @Override
+            public Tuple illustratorMarkup(Object in, Object out, int eqClassIndex) {
+                return null;
+            }
+        };
+        TupleBatch batch = new TupleBatch(4);
+        assertEquals(POStatus.STATUS_OK, reusing.getNextBatch(batch).returnStatus);
+        assertEquals(3, batch.size());
+        assertTrue(batch.isEndOfInput());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(i, batch.get(i).get(0));
+        }
+    }
+
+    @Test
+    public void testBatchDisabledByDefault() throws Exception {
+        POFilter filter = GenPhyOp.topFilterOpWithProj(1, 50);
+        assertFalse(TupleBatch.getConfiguredSize() > 0);
+        setBatchSize(1);
+        assertEquals(0, TupleBatch.getConfiguredSize());
+        assertTrue(filter.supportsBatch());
+    }
+
+    private static Properties properties(int batchSize, boolean fetch) {
+        Properties props = new Properties();
+        // without fetch, the batches are built from the map input
+        props.setProperty(PigConfiguration.PIG_OPT_FETCH, Boolean.toString(fetch));
+        if (batchSize > 0) {
+            props.setProperty(PigConfiguration.PIG_EXEC_BATCH_SIZE, Integer.toString(batchSize));
+        }
+        return props;
+    }
+
+    private static void checkSameResults(String... queries) throws Exception {
+        File input = Util.createInputFile("batchExecution", "", INPUT);
+        List<Tuple> result = Util.checkSameResults(input, "a:int, b:long, c:double, d:chararray",
+                Arrays.asList(properties(0, true), properties(4, true), properties(1000, true),
+                        properties(4, false)), queries);
+        assertFalse(result.isEmpty());
+    }
+
+    @Test
+    public void testFilterQuery() throws Exception {
+        checkSameResults("B = FILTER A BY a + b > 8 OR c * 2.0 < 0.0;",
+                "R = FOREACH B GENERATE a, b, c;");
+        checkSameResults("B = FILTER A BY (a % 2 == 1 AND b IS NOT NULL) OR NOT (c >= 5.0);",
+                "R = FOREACH B GENERATE a, -b, (int) c, d;");
+        checkSameResults("B = FILTER A BY d == 'pig' AND b != 0;",
+                "R = FOREACH B GENERATE d, a;");
+    }
+
+    @Test
+    public void testForEachQuery() throws Exception {
+        checkSameResults("R = FOREACH A GENERATE a / b, a % 2, b - a, c / 0.0, (long) c, (double) a,"
+                + " -c, 7, a * c, b + 1L;");
+    }
+}
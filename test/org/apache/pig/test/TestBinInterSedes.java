@@ -18,6 +18,7 @@
 package org.apache.pig.test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -26,8 +27,11 @@ import java.io.DataOutput;
 import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Random;
@@ -38,6 +42,7 @@ import org.apache.pig.data.BagFactory;
 import org.apache.pig.data.BinInterSedes;
 import org.apache.pig.data.DataBag;
 import org.apache.pig.data.DataByteArray;
+import org.apache.pig.data.DictionaryInterSedes;
 import org.apache.pig.data.InterSedes;
 import org.apache.pig.data.InterSedesFactory;
 import org.apache.pig.data.Tuple;
@@ -246,9 +251,11 @@ public class TestBinInterSedes {
      * @throws IOException
      */
     private void testTupleSedes(Tuple tuple) throws IOException {
-        
-        InterSedes sedes = InterSedesFactory.getInterSedesInstance();
-        
+        testTupleSedes(tuple, InterSedesFactory.getInterSedesInstance(), InterSedesFactory.getInterSedesInstance());
+        testTupleSedes(tuple, InterSedesFactory.newDictionaryInterSedes(), InterSedesFactory.newDictionaryInterSedes());
+    }
+
+    private void testTupleSedes(Tuple tuple, InterSedes sedes, InterSedes readSedes) throws IOException {
         //write the tuple into a DataOutputStream on bytearray 
         ByteArrayOutputStream bout = new ByteArrayOutputStream(10*1024*1024);// 10 MB
         DataOutputStream out = new DataOutputStream(bout);
@@ -258,7 +265,7 @@ public class TestBinInterSedes {
         //read tuple back 
         ByteArrayInputStream bin = new ByteArrayInputStream(bout.toByteArray());
         DataInputStream in = new DataInputStream(bin);
-        Tuple tupleout = (Tuple)sedes.readDatum(in);
+        Tuple tupleout = (Tuple)readSedes.readDatum(in);
         
         assertEquals(" Tuple before and after serialization are same ",
                 tuple, tupleout);
@@ -302,6 +309,56 @@ public class TestBinInterSedes {
     }
 
 
+    /**
+     * Repeated chararrays are written as dictionary references and large integers and longs
+     * with a variable length encoding, until the dictionary is reset.
+     */
+    @Test
+    public void testDictionaryEncoding() throws Exception {
+        DictionaryInterSedes writeSedes = InterSedesFactory.newDictionaryInterSedes();
+        DictionaryInterSedes readSedes = InterSedesFactory.newDictionaryInterSedes();
+        ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        List<Tuple> tuples = new ArrayList<Tuple>();
+        for (int i = 0; i < 1000; i++) {
+            Tuple t = mTupleFactory.newTuple();
+            t.append("country_" + (i % 10));
+            t.append(100000 + i);
+            t.append(1400000000000L + i);
+            Map<String, Object> m = new HashMap<String, Object>();
+            m.put("key", "value_" + (i % 3));
+            t.append(m);
+            DataBag bag = BagFactory.getInstance().newDefaultBag();
+            bag.add(mTupleFactory.newTuple(Arrays.<Object>asList("country_" + (i % 7), -i)));
+            t.append(bag);
+            tuples.add(t);
+            bis.writeDatum(new DataOutputStream(plain), t);
+            if (i == 500) {
+                writeSedes.reset();
+            }
+            writeSedes.writeDatum(new DataOutputStream(encoded), t);
+        }
+        assertTrue(encoded.size() < plain.size() / 2);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(encoded.toByteArray()));
+        for (int i = 0; i < tuples.size(); i++) {
+            if (i == 500) {
+                readSedes.reset();
+            }
+            assertEquals(tuples.get(i), readSedes.readDatum(in));
+        }
+        assertEquals(-1, in.read());
+    }
+
+    @Test
+    public void testSyncMarkerWithDictionaryEncoding() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty(PigConfiguration.PIG_INTERSTORAGE_DICTIONARY_ENCODING, "true");
+        testInterStorageSyncMarker(32, 10, 2000L, properties);
+        testInterStorageSyncMarker(48, 16, 10L, properties);
+        testInterStorageSyncMarker(8, 4, 20L, properties);
+    }
+
     /*
       The following tests are intended to verify the reading and writing of intermediate files of Pig (of InterStorage)
       The test records are 11,14,22,14 bytes long.
@@ -391,7 +448,12 @@ public class TestBinInterSedes {
     }
 
     private void testInterStorageSyncMarker(int maxSplitSize, int syncSize, long syncInterval) throws Exception {
-        PigServer pigServer = new PigServer(Util.getLocalTestMode(), new Properties());
+        testInterStorageSyncMarker(maxSplitSize, syncSize, syncInterval, new Properties());
+    }
+
+    private void testInterStorageSyncMarker(int maxSplitSize, int syncSize, long syncInterval,
+            Properties properties) throws Exception {
+        PigServer pigServer = new PigServer(Util.getLocalTestMode(), properties);
 
         Properties pigProperties = pigServer.getPigContext().getProperties();
         pigProperties.setProperty("mapreduce.input.fileinputformat.split.maxsize", String.valueOf(maxSplitSize));
@@ -23,18 +23,32 @@ import static org.junit.Assert.assertTrue;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.PriorityQueue;
 import java.util.Random;
+import java.util.Set;
 import java.util.TreeSet;
-
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.compress.CodecPool;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.pig.PigConfiguration;
 import org.apache.pig.backend.executionengine.ExecException;
+import org.apache.pig.backend.hadoop.executionengine.mapReduceLayer.PigMapReduce;
 import org.apache.pig.data.BagFactory;
 import org.apache.pig.data.DataBag;
 import org.apache.pig.data.DefaultDataBag;
@@ -44,11 +58,15 @@ import org.apache.pig.data.InternalCachedBag;
 import org.apache.pig.data.InternalDistinctBag;
 import org.apache.pig.data.InternalSortedBag;
 import org.apache.pig.data.LimitedSortedDataBag;
+import org.apache.pig.data.MemorySizeSampler;
 import org.apache.pig.data.NonSpillableDataBag;
+import org.apache.pig.data.OffHeapCachedBag;
 import org.apache.pig.data.SingleTupleBag;
 import org.apache.pig.data.SortedDataBag;
+import org.apache.pig.data.SpillStreams;
 import org.apache.pig.data.Tuple;
 import org.apache.pig.data.TupleFactory;
+import org.apache.pig.data.TupleSorter;
 import org.apache.pig.impl.util.Spillable;
 import org.junit.After;
 import org.junit.Test;
@@ -925,6 +943,214 @@ public class TestDataBag  {
         assertEquals(bg4.size(), 0);
     }
 
+    @Test
+    public void testOffHeapCachedBag() throws Exception {
+        // check adding empty tuple
+        DataBag bg0 = new OffHeapCachedBag();
+        bg0.add(TupleFactory.getInstance().newTuple());
+        bg0.add(TupleFactory.getInstance().newTuple());
+        assertEquals(2, bg0.size());
+
+        String[][] tupleContents = new String[][] {{"a", "b"},{"c", "d" }, { "e", "f"} };
+        DataBag bg1 = new OffHeapCachedBag(1, 0.5f);
+        for (int i = 0; i < tupleContents.length; i++) {
+            bg1.add(Util.createTuple(tupleContents[i]));
+        }
+        assertEquals(3, bg1.size());
+        assertFalse(bg1.isSorted());
+        assertFalse(bg1.isDistinct());
+
+        // check bag with all data written to disk
+        DataBag bg2 = new OffHeapCachedBag(1, 0.0f);
+        tupleContents = new String[][] {{ "e", "f"}, {"c", "d" }, {"a", "b"}};
+        for (int i = 0; i < tupleContents.length; i++) {
+            bg2.add(Util.createTuple(tupleContents[i]));
+        }
+        assertEquals(bg1, bg2);
+
+        // insertion order is preserved across several buffers, iterators
+        // do not interfere with each other
+        DataBag bg3 = new OffHeapCachedBag(1, 0.5f);
+        for (int i = 0; i < 100000; i++) {
+            bg3.add(Util.createTuple(new Integer[] {i, i * 2}));
+        }
+        Iterator<Tuple> iter1 = bg3.iterator();
+        Iterator<Tuple> iter2 = bg3.iterator();
+        for (int i = 0; i < 100000; i++) {
+            assertTrue(iter1.hasNext());
+            assertEquals(Util.createTuple(new Integer[] {i, i * 2}), iter1.next());
+        }
+        assertFalse(iter1.hasNext());
+        assertEquals(Util.createTuple(new Integer[] {0, 0}), iter2.next());
+        assertEquals(100000, bg3.size());
+
+        bg3.clear();
+        assertEquals(0, bg3.size());
+    }
+
+    @Test
+    public void testCompressedAsyncSpill() throws Exception {
+        Configuration conf = new Configuration(false);
+        conf.set(PigConfiguration.PIG_SPILL_COMPRESSION_CODEC, "default");
+        conf.setBoolean(PigConfiguration.PIG_SPILL_ASYNC_WRITE, true);
+        PigMapReduce.sJobConfInternal.set(conf);
+        SpillStreams.staticDataCleanup();
+        try {
+            DataBag defaultBag = new DefaultDataBag();
+            DataBag sortedBag = new SortedDataBag(null);
+            DataBag cachedBag = new InternalCachedBag(1, 0.0f);
+            for (int j = 0; j < 3; j++) {
+                for (int i = 0; i < 50000; i++) {
+                    Tuple t = Util.createTuple(new Integer[] {(i * 7919) % 50000, j});
+                    defaultBag.add(t);
+                    sortedBag.add(t);
+                    cachedBag.add(t);
+                }
+                assertEquals(50000, defaultBag.spill());
+                assertEquals(50000, sortedBag.spill());
+            }
+
+            Iterator<Tuple> it = defaultBag.iterator();
+            for (int j = 0; j < 3; j++) {
+                for (int i = 0; i < 50000; i++) {
+                    assertEquals(Util.createTuple(new Integer[] {(i * 7919) % 50000, j}), it.next());
+                }
+            }
+            assertFalse(it.hasNext());
+
+            it = sortedBag.iterator();
+            Tuple prev = null;
+            int count = 0;
+            while (it.hasNext()) {
+                Tuple t = it.next();
+                if (prev != null) {
+                    assertTrue(prev.compareTo(t) <= 0);
+                }
+                prev = t;
+                count++;
+            }
+            assertEquals(150000, count);
+            assertEquals(defaultBag, cachedBag);
+
+            // the decompressor is returned once the file is read, even if
+            // the stream is not closed
+            CompressionCodec codec = new CompressionCodecFactory(conf).getCodecByName("default");
+            int leased = CodecPool.getLeasedDecompressorsCount(codec);
+            File f = File.createTempFile("spill", ".tmp");
+            f.deleteOnExit();
+            DataOutputStream out = SpillStreams.createOutputStream(f);
+            out.writeInt(1);
+            out.close();
+            DataInputStream in = SpillStreams.createInputStream(f);
+            assertEquals(leased + 1, CodecPool.getLeasedDecompressorsCount(codec));
+            assertEquals(1, in.readInt());
+            assertEquals(-1, in.read());
+            assertEquals(leased, CodecPool.getLeasedDecompressorsCount(codec));
+            in.close();
+            assertEquals(leased, CodecPool.getLeasedDecompressorsCount(codec));
+        } finally {
+            PigMapReduce.sJobConfInternal.remove();
+            SpillStreams.staticDataCleanup();
+        }
+    }
+
+    @Test
+    public void testParallelSort() throws Exception {
+        Configuration conf = new Configuration(false);
+        conf.setInt(PigConfiguration.PIG_SORT_THREADS, 4);
+        PigMapReduce.sJobConfInternal.set(conf);
+        TupleSorter.staticDataCleanup();
+        try {
+            assertEquals(4, TupleSorter.getSortThreads());
+            // Equal tuples check stability, through their position before the sort
+            int n = 100000;
+            Tuple[] array = new Tuple[n];
+            Map<Tuple, Integer> positions = new IdentityHashMap<Tuple, Integer>();
+            for (int i = 0; i < n; i++) {
+                array[i] = Util.createTuple(new Integer[] {rand.nextInt(1000)});
+                positions.put(array[i], i);
+            }
+            TupleSorter.sort(array, null);
+            for (int i = 1; i < n; i++) {
+                int c = array[i - 1].compareTo(array[i]);
+                assertTrue(c < 0 || (c == 0 && positions.get(array[i - 1]) < positions.get(array[i])));
+            }
+
+            // Comparators may have state, and are only called by the sorting thread
+            final Thread thread = Thread.currentThread();
+            Comparator<Tuple> comp = new Comparator<Tuple>() {
+                @Override
+                public int compare(Tuple t1, Tuple t2) {
+                    assertEquals(thread, Thread.currentThread());
+                    return t1.compareTo(t2);
+                }
+            };
+            Collections.shuffle(Arrays.asList(array), rand);
+            TupleSorter.sort(array, comp);
+            for (int i = 1; i < n; i++) {
+                assertTrue(array[i - 1].compareTo(array[i]) <= 0);
+            }
+
+            // Copyable comparators are copied, and each copy is only called
+            // by one thread at a time
+            final Set<Thread> threads = Collections.synchronizedSet(new HashSet<Thread>());
+            final AtomicInteger copies = new AtomicInteger();
+            class StatefulComparator implements TupleSorter.CopyableComparator {
+                private final AtomicBoolean inUse = new AtomicBoolean();
+
+                @Override
+                public int compare(Tuple t1, Tuple t2) {
+                    assertTrue(inUse.compareAndSet(false, true));
+                    threads.add(Thread.currentThread());
+                    int c = t1.compareTo(t2);
+                    inUse.set(false);
+                    return c;
+                }
+
+                @Override
+                public Comparator<Tuple> copy() {
+                    copies.incrementAndGet();
+                    return new StatefulComparator();
+                }
+            }
+            Collections.shuffle(Arrays.asList(array), rand);
+            TupleSorter.sort(array, new StatefulComparator());
+            for (int i = 1; i < n; i++) {
+                assertTrue(array[i - 1].compareTo(array[i]) <= 0);
+            }
+            assertEquals(3, copies.get());
+            assertTrue(threads.size() > 1);
+
+            // More spill files than MAX_SPILL_FILES to go through the pre merge
+            DataBag bag = new SortedDataBag(null);
+            DataBag internalBag = new InternalSortedBag(null);
+            for (int j = 0; j < 120; j++) {
+                for (int i = 0; i < 300; i++) {
+                    Tuple t = Util.createTuple(new Integer[] {rand.nextInt(), j});
+                    bag.add(t);
+                    internalBag.add(t);
+                }
+                bag.spill();
+                internalBag.spill();
+            }
+            for (DataBag b : new DataBag[] {bag, internalBag}) {
+                Iterator<Tuple> it = b.iterator();
+                Tuple prev = it.next();
+                int count = 1;
+                while (it.hasNext()) {
+                    Tuple t = it.next();
+                    assertTrue(prev.compareTo(t) <= 0);
+                    prev = t;
+                    count++;
+                }
+                assertEquals(36000, count);
+            }
+        } finally {
+            PigMapReduce.sJobConfInternal.remove();
+            TupleSorter.staticDataCleanup();
+        }
+    }
+
     @Test
     public void testInternalSortedBag() throws Exception {
 
@@ -1277,4 +1503,47 @@ public class TestDataBag  {
         bag1.clear();
         assertEquals(bag1.size(), 0);
     }
+
+    /**
+     * The memory size of a bag whose tuples grow must account for the later, larger
+     * tuples, while only measuring a fraction of them.
+     */
+    @Test
+    public void testMemorySizeOfSkewedBag() throws Exception {
+        DataBag bag = BagFactory.getInstance().newDefaultBag();
+        long exactTuplesSize = 0;
+        for (int i = 0; i < 20000; i++) {
+            Tuple t = TupleFactory.getInstance().newTuple();
+            int fields = i < 10000 ? 1 : 50;
+            for (int j = 0; j < fields; j++) {
+                t.append(Long.valueOf(j));
+            }
+            exactTuplesSize += t.getMemorySize();
+            bag.add(t);
+        }
+        long estimate = bag.getMemorySize();
+        assertTrue("estimate " + estimate + " for " + exactTuplesSize,
+                estimate > exactTuplesSize * 0.6 && estimate < exactTuplesSize * 1.6);
+    }
+
+    @Test
+    public void testMemorySizeSampler() throws Exception {
+        MemorySizeSampler sampler = new MemorySizeSampler();
+        for (int i = 0; i < 100000; i++) {
+            if (sampler.sampleNext()) {
+                sampler.addSample(100);
+            }
+        }
+        assertEquals(100000, sampler.getCount());
+        assertTrue(sampler.getMeasuredCount() < 2000);
+        assertTrue(Math.abs(sampler.getAverageSize() - 100) < 30);
+
+        sampler.reset();
+        assertEquals(0, sampler.getAverageSize());
+        for (int i = 0; i < MemorySizeSampler.SAMPLE_SIZE; i++) {
+            assertTrue(sampler.sampleNext());
+            sampler.addSample(i);
+        }
+        assertEquals((MemorySizeSampler.SAMPLE_SIZE - 1) / 2, sampler.getAverageSize());
+    }
 }
@@ -0,0 +1,256 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pig.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.pig.PigConfiguration;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.PhysicalOperator;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.codegen.CompiledExpressions;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.codegen.ExpressionCompiler;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators.BinaryComparisonOperator;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators.BinaryExpressionOperator;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators.ConstantExpression;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators.Divide;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators.EqualToExpr;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators.ExpressionOperator;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators.GTOrEqualToExpr;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators.GreaterThanExpr;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators.LTOrEqualToExpr;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators.LessThanExpr;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators.Mod;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators.Multiply;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators.NotEqualToExpr;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators.POAnd;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators.POProject;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators.Subtract;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.plans.PhysicalPlan;
+import org.apache.pig.data.DataType;
+import org.apache.pig.data.Tuple;
+import org.apache.pig.data.TupleFactory;
+import org.apache.pig.test.utils.GenPhyOp;
+import org.junit.Test;
+
+public class TestExpressionCompiler {
+    private static final TupleFactory mTupleFactory = TupleFactory.getInstance();
+
+    private static POProject project(int col, byte type) {
+        POProject proj = GenPhyOp.exprProject(col);
+        proj.setResultType(type);
+        return proj;
+    }
+
+    private static PhysicalPlan binaryPlan(BinaryExpressionOperator op, PhysicalPlan lhs, PhysicalPlan rhs)
+            throws Exception {
+        PhysicalOperator lhsLeaf = lhs.getLeaves().get(0);
+        PhysicalOperator rhsLeaf = rhs.getLeaves().get(0);
+        op.setLhs((ExpressionOperator) lhsLeaf);
+        op.setRhs((ExpressionOperator) rhsLeaf);
+        PhysicalPlan plan = new PhysicalPlan();
+        plan.merge(lhs);
+        plan.merge(rhs);
+        plan.add(op);
+        plan.connect(lhsLeaf, op);
+        plan.connect(rhsLeaf, op);
+        return plan;
+    }
+
+    private static PhysicalPlan greaterThan(int col, int value) throws Exception {
+        ConstantExpression constant = GenPhyOp.exprConst();
+        constant.setValue(value);
+        constant.setResultType(DataType.INTEGER);
+        GreaterThanExpr gt = GenPhyOp.compGreaterThanExpr();
+        gt.setOperandType(DataType.INTEGER);
+        gt.setResultType(DataType.BOOLEAN);
+        return binaryPlan(gt, leafPlan(project(col, DataType.INTEGER)), leafPlan(constant));
+    }
+
+    private static PhysicalPlan leafPlan(PhysicalOperator op) throws Exception {
+        PhysicalPlan plan = new PhysicalPlan();
+        plan.add(op);
+        return plan;
+    }
+
+    private static Tuple tuple(Object... fields) {
+        return mTupleFactory.newTuple(Arrays.asList(fields));
+    }
+
+    @Test
+    public void testCompileAndEvaluate() throws Exception {
+        // a / b, and (a > 50) AND (b > 50), and a as is
+        Divide divide = new Divide(GenPhyOp.getOK());
+        divide.setResultType(DataType.INTEGER);
+        PhysicalPlan dividePlan = binaryPlan(divide, leafPlan(project(0, DataType.INTEGER)),
+                leafPlan(project(1, DataType.INTEGER)));
+        POAnd and = new POAnd(GenPhyOp.getOK());
+        and.setResultType(DataType.BOOLEAN);
+        PhysicalPlan andPlan = binaryPlan(and, greaterThan(0, 50), greaterThan(1, 50));
+        PhysicalPlan projectPlan = leafPlan(project(0, DataType.INTEGER));
+
+        List<PhysicalPlan> plans = Arrays.asList(dividePlan, andPlan, projectPlan);
+        CompiledExpressions compiled = ExpressionCompiler.compile(plans);
+        assertNotNull(compiled);
+        Object[] results = new Object[3];
+
+        compiled.evaluate(tuple(100, 60), results);
+        assertEquals(Arrays.asList((Object) 1, true, 100), Arrays.asList(results));
+        compiled.evaluate(tuple(100, 0), results);
+        assertEquals(Arrays.asList((Object) null, false, 100), Arrays.asList(results));
+        compiled.evaluate(tuple(null, 60), results);
+        assertEquals(Arrays.asList((Object) null, null, null), Arrays.asList(results));
+        compiled.evaluate(tuple(40, null), results);
+        assertEquals(Arrays.asList((Object) null, false, 40), Arrays.asList(results));
+        // a missing field is null
+        compiled.evaluate(tuple(70), results);
+        assertEquals(Arrays.asList((Object) null, null, 70), Arrays.asList(results));
+
+        // plans of the same shape share their generated class
+        CompiledExpressions other = ExpressionCompiler.compile(plans);
+        assertSame(compiled.getClass(), other.getClass());
+        assertFalse(compiled == other);
+    }
+
+    @Test
+    public void testUnsupportedPlan() throws Exception {
+        assertNull(ExpressionCompiler.compile(Collections.singletonList(leafPlan(project(0, DataType.BAG)))));
+        ConstantExpression constant = GenPhyOp.exprConst();
+        constant.setValue(new ArrayList<Object>());
+        constant.setResultType(DataType.BAG);
+        assertNull(ExpressionCompiler.compile(Collections.singletonList(leafPlan(constant))));
+    }
+
+    /**
+     * The generated code gives the results of the interpreter on the edge
+     * cases of floating point comparisons, of divisions and of nulls
+     */
+    @Test
+    public void testEdgeValues() throws Exception {
+        Object[] doubles = new Object[] { null, 0.0, -0.0, Double.NaN, 1.0, -1.0, Double.POSITIVE_INFINITY };
+        Object[] floats = new Object[] { null, 0.0f, -0.0f, Float.NaN, 1.0f, Float.NEGATIVE_INFINITY };
+        Object[] ints = new Object[] { null, 0, 1, -1, 7, Integer.MIN_VALUE };
+        Object[] longs = new Object[] { null, 0L, 1L, -1L, 7L, Long.MIN_VALUE };
+
+        for (BinaryExpressionOperator op : Arrays.asList(new EqualToExpr(GenPhyOp.getOK()),
+                new NotEqualToExpr(GenPhyOp.getOK()), new GreaterThanExpr(GenPhyOp.getOK()),
+                new GTOrEqualToExpr(GenPhyOp.getOK()), new LessThanExpr(GenPhyOp.getOK()),
+                new LTOrEqualToExpr(GenPhyOp.getOK()))) {
+            checkSameResults(comparison((BinaryComparisonOperator) op, DataType.DOUBLE), doubles);
+            checkSameResults(comparison((BinaryComparisonOperator) op, DataType.FLOAT), floats);
+            checkSameResults(comparison((BinaryComparisonOperator) op, DataType.INTEGER), ints);
+        }
+        for (byte type : new byte[] { DataType.DOUBLE, DataType.FLOAT }) {
+            checkSameResults(arithmetic(new Divide(GenPhyOp.getOK()), type),
+                    type == DataType.DOUBLE ? doubles : floats);
+        }
+        for (byte type : new byte[] { DataType.INTEGER, DataType.LONG }) {
+            Object[] values = type == DataType.INTEGER ? ints : longs;
+            checkSameResults(arithmetic(new Divide(GenPhyOp.getOK()), type), values);
+            checkSameResults(arithmetic(new Mod(GenPhyOp.getOK()), type), values);
+            checkSameResults(arithmetic(new Multiply(GenPhyOp.getOK()), type), values);
+            checkSameResults(arithmetic(new Subtract(GenPhyOp.getOK()), type), values);
+        }
+    }
+
+    private static PhysicalPlan comparison(BinaryComparisonOperator op, byte type) throws Exception {
+        op.setOperandType(type);
+        op.setResultType(DataType.BOOLEAN);
+        return binaryPlan(op, leafPlan(project(0, type)), leafPlan(project(1, type)));
+    }
+
+    private static PhysicalPlan arithmetic(BinaryExpressionOperator op, byte type) throws Exception {
+        op.setResultType(type);
+        return binaryPlan(op, leafPlan(project(0, type)), leafPlan(project(1, type)));
+    }
+
+    /**
+     * Evaluates the plan on every pair of the values, with and without
+     * compiling it
+     */
+    private static void checkSameResults(PhysicalPlan plan, Object[] values) throws Exception {
+        CompiledExpressions compiled = ExpressionCompiler.compile(Collections.singletonList(plan));
+        assertNotNull(compiled);
+        ExpressionOperator leaf = (ExpressionOperator) plan.getLeaves().get(0);
+        Object[] results = new Object[1];
+        for (Object lhs : values) {
+            for (Object rhs : values) {
+                Tuple t = tuple(lhs, rhs);
+                Object expected;
+                try {
+                    plan.attachInput(t);
+                    expected = leaf.getNext(leaf.getResultType()).result;
+                } catch (Exception e) {
+                    expected = getRootCause(e).getClass();
+                }
+                Object result;
+                try {
+                    compiled.evaluate(t, results);
+                    result = results[0];
+                } catch (Exception e) {
+                    result = getRootCause(e).getClass();
+                }
+                assertEquals(leaf.getClass().getSimpleName() + " of " + t, expected, result);
+            }
+        }
+    }
+
+    private static Throwable getRootCause(Throwable t) {
+        while (t.getCause() != null) {
+            t = t.getCause();
+        }
+        return t;
+    }
+
+    @Test
+    public void testQueries() throws Exception {
+        File input = Util.createInputFile("expressionCompiler", "", new String[] {
+                "1\t10\t1.5\t0.0", "2\t\t-0.0\t0.0", "3\t0\tNaN\tNaN", "\t4\t4.5\t",
+                "5\t5\t-5.5\tInfinity", "6\t-6\t0.0\t-0.0", "7\t0\t-Infinity\t1.0", "8\t\t8.5\tNaN",
+                "9\t9\t\t-1.0" });
+        List<Properties> variants = new ArrayList<Properties>();
+        for (boolean codegen : new boolean[] { false, true }) {
+            for (boolean fetch : new boolean[] { true, false }) {
+                Properties props = new Properties();
+                props.setProperty(PigConfiguration.PIG_OPT_FETCH, Boolean.toString(fetch));
+                props.setProperty(PigConfiguration.PIG_EXEC_CODEGEN, Boolean.toString(codegen));
+                variants.add(props);
+            }
+        }
+
+        int generated = ExpressionCompiler.getNumGeneratedClasses();
+        assertEquals(7, Util.checkSameResults(input, "a:int, b:long, c:double, d:double", variants,
+                "B = FILTER A BY c == d OR c < d OR (a % 2 == 1 AND b IS NOT NULL);",
+                "R = FOREACH B GENERATE a, b, c, d;").size());
+        assertEquals(9, Util.checkSameResults(input, "a:int, b:long, c:double, d:double", variants,
+                "R = FOREACH A GENERATE a / b, b / a, a % 2, c / d, d / 0.0, -c, (long) c, (int) d,"
+                + " (double) a, c * d, b - a, a + 1;").size());
+        // the plans were compiled, rather than interpreted
+        assertTrue(ExpressionCompiler.getNumGeneratedClasses() > generated);
+    }
+}
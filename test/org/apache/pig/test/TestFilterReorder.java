@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pig.test;
+
+import static org.apache.pig.builtin.mock.Storage.resetData;
+import static org.apache.pig.builtin.mock.Storage.tuple;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.pig.FilterFunc;
+import org.apache.pig.PigConfiguration;
+import org.apache.pig.PigServer;
+import org.apache.pig.builtin.mock.Storage.Data;
+import org.apache.pig.data.Tuple;
+import org.junit.Test;
+
+public class TestFilterReorder {
+
+    private static final AtomicInteger numCalls = new AtomicInteger();
+
+    /**
+     * A slow predicate which is true for most inputs.
+     */
+    public static class SlowFilter extends FilterFunc {
+        @Override
+        public Boolean exec(Tuple input) throws IOException {
+            numCalls.incrementAndGet();
+            long end = System.nanoTime() + 20000;
+            while (System.nanoTime() < end) {
+                // busy wait
+            }
+            Integer i = (Integer) input.get(0);
+            return i == null ? null : i % 10 != 3;
+        }
+    }
+
+    private static List<Tuple> runQuery(boolean reorder, String condition) throws Exception {
+        Properties props = new Properties();
+        props.setProperty(PigConfiguration.PIG_EXEC_FILTER_REORDER, Boolean.toString(reorder));
+        PigServer pigServer = new PigServer(Util.getLocalTestMode(), props);
+        Data data = resetData(pigServer);
+        List<Tuple> input = new ArrayList<Tuple>();
+        for (int i = 0; i < 10000; i++) {
+            input.add(tuple(i % 97 == 0 ? null : i, "s" + (i % 50)));
+        }
+        data.set("input", input);
+        pigServer.registerQuery("A = LOAD 'input' USING mock.Storage() AS (i:int, s:chararray);");
+        pigServer.registerQuery("B = FILTER A BY " + condition + ";");
+        pigServer.registerQuery("STORE B INTO 'output' USING mock.Storage();");
+        List<Tuple> output = data.get("output");
+        pigServer.shutdown();
+        return output;
+    }
+
+    private static void checkReorder(String condition, int maxCalls) throws Exception {
+        numCalls.set(0);
+        List<Tuple> expected = runQuery(false, condition);
+        int numCallsInOrder = numCalls.get();
+        numCalls.set(0);
+        List<Tuple> output = runQuery(true, condition);
+        // the order of the output does not change
+        assertEquals(expected, output);
+        assertTrue("calls: " + numCalls.get() + " in order: " + numCallsInOrder,
+                numCalls.get() < maxCalls && numCalls.get() < numCallsInOrder);
+    }
+
+    @Test
+    public void testAnd() throws Exception {
+        checkReorder(SlowFilter.class.getName() + "(i) AND s == 's7' AND i > 100", 4000);
+    }
+
+    @Test
+    public void testOr() throws Exception {
+        checkReorder(SlowFilter.class.getName() + "(i) OR s != 's7'", 4000);
+    }
+
+    @Test
+    public void testNested() throws Exception {
+        checkReorder("(" + SlowFilter.class.getName() + "(i) OR i is null) AND (s == 's1' OR s == 's2')", 4000);
+    }
+}
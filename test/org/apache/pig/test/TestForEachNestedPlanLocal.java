@@ -19,19 +19,24 @@
 package org.apache.pig.test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.text.DecimalFormat;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Properties;
 import java.util.Random;
 
+import org.apache.pig.PigConfiguration;
 import org.apache.pig.PigServer;
 import org.apache.pig.builtin.mock.Storage;
 import org.apache.pig.data.Tuple;
+import org.apache.pig.data.TupleSorter;
 import org.apache.pig.test.utils.TestHelper;
 import org.junit.Test;
 
@@ -68,6 +73,43 @@ public class TestForEachNestedPlanLocal {
         }
     }
 
+    @Test
+    public void testInnerOrderByParallelSort() throws Exception {
+        Properties props = new Properties();
+        props.setProperty(PigConfiguration.PIG_SORT_THREADS, "4");
+        // the nested order by is done by a POSort, not by the shuffle
+        props.setProperty(PigConfiguration.PIG_EXEC_NO_SECONDARY_KEY, "true");
+        PigServer pigServer = new PigServer(Util.getLocalTestMode(), props);
+        Storage.Data data = Storage.resetData(pigServer);
+        // more tuples than TupleSorter.MIN_PARALLEL_SORT_SIZE
+        int n = 30000;
+        Random r = new Random(42);
+        List<Tuple> input = new ArrayList<Tuple>(n);
+        for (int i = 0; i < n; i++) {
+            input.add(Storage.tuple(r.nextInt(1000), "v" + i));
+        }
+        data.set("input", input);
+        pigServer.setBatchOn();
+        pigServer.registerQuery("a = load 'input' using mock.Storage() as (k:int, v:chararray);");
+        pigServer.registerQuery("b = group a all;");
+        pigServer.registerQuery("c = foreach b { c1 = order a by k desc, v; generate flatten(c1); };");
+        pigServer.registerQuery("store c into 'output' using mock.Storage();");
+        TupleSorter.staticDataCleanup();
+        try {
+            pigServer.executeBatch();
+        } finally {
+            TupleSorter.staticDataCleanup();
+        }
+        List<Tuple> output = data.get("output");
+        assertEquals(n, output.size());
+        for (int i = 1; i < n; i++) {
+            Tuple t1 = output.get(i - 1);
+            Tuple t2 = output.get(i);
+            int c = ((Integer) t2.get(0)).compareTo((Integer) t1.get(0));
+            assertTrue(c < 0 || (c == 0 && ((String) t1.get(1)).compareTo((String) t2.get(1)) < 0));
+        }
+    }
+
     @Test
     public void testInnerLimit() throws Exception {
         File tmpFile = genDataSetFileOneGroup();
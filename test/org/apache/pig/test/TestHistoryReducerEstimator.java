@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pig.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.pig.ExecType;
+import org.apache.pig.PigConfiguration;
+import org.apache.pig.PigServer;
+import org.apache.pig.backend.executionengine.ExecJob.JOB_STATUS;
+import org.apache.pig.backend.hadoop.executionengine.mapReduceLayer.HistoryReducerEstimator;
+import org.apache.pig.backend.hadoop.executionengine.mapReduceLayer.PigReducerEstimator;
+import org.apache.pig.backend.hadoop.executionengine.tez.plan.optimizer.HistoryTezParallelismEstimator;
+import org.apache.pig.newplan.logical.expression.LogicalExpression;
+import org.apache.pig.tools.pigstats.RuntimeStatsStore;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestHistoryReducerEstimator {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File input;
+    private Configuration conf;
+
+    @Before
+    public void setUp() throws Exception {
+        String[] data = new String[200];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = i + "\tv" + i;
+        }
+        input = Util.createInputFile("history", ".txt", data);
+        conf = new Configuration(false);
+        conf.set(PigConfiguration.PIG_STATS_HISTORY_DIR, folder.newFolder("history").getAbsolutePath());
+    }
+
+    @Test
+    public void testEstimate() throws Exception {
+        assertEquals(-1, HistoryReducerEstimator.estimate(null, 1000, 1000, 999));
+        Map<String, Long> stats = new HashMap<String, Long>();
+        stats.put(RuntimeStatsStore.INPUT_RECORDS, 10L);
+        assertEquals(-1, HistoryReducerEstimator.estimate(stats, 1000, 1000, 999));
+        stats.put(RuntimeStatsStore.SHUFFLE_BYTES, 10000L);
+        assertEquals(10, HistoryReducerEstimator.estimate(stats, 1000, 1000, 999));
+        stats.put(RuntimeStatsStore.INPUT_BYTES, 1000L);
+        assertEquals(20, HistoryReducerEstimator.estimate(stats, 2000, 1000, 999));
+        assertEquals(10, HistoryReducerEstimator.estimate(stats, -1, 1000, 999));
+        assertEquals(5, HistoryReducerEstimator.estimate(stats, 2000, 1000, 5));
+        assertEquals(1, HistoryReducerEstimator.estimate(stats, 1, 1000, 999));
+    }
+
+    @Test
+    public void testStore() throws Exception {
+        RuntimeStatsStore store = new RuntimeStatsStore(conf);
+        assertNull(store.get("script", "job"));
+        Map<String, Long> stats = new HashMap<String, Long>();
+        stats.put(RuntimeStatsStore.SHUFFLE_BYTES, 100L);
+        stats.put(RuntimeStatsStore.OUTPUT_BYTES, -1L);
+        store.put("script", "job", stats);
+        store.put("script", "job2", stats);
+        stats.put(RuntimeStatsStore.SHUFFLE_BYTES, 200L);
+        store.put("script", "job", stats);
+
+        Map<String, Long> recorded = new RuntimeStatsStore(conf).get("script", "job");
+        assertEquals(1, recorded.size());
+        assertEquals(200L, (long) recorded.get(RuntimeStatsStore.SHUFFLE_BYTES));
+        assertEquals(100L, (long) store.get("script", "job2").get(RuntimeStatsStore.SHUFFLE_BYTES));
+        assertNull(store.get("script2", "job"));
+    }
+
+    @Test
+    public void testHistory() throws Exception {
+        // The first run is estimated from the input size
+        Map<String, Long> first = run();
+        long inputBytes = first.get(RuntimeStatsStore.INPUT_BYTES);
+        assertEquals(input.length(), inputBytes);
+        assertEquals((long) Math.ceil(inputBytes / 2000.0), (long) first.get(RuntimeStatsStore.PARALLELISM));
+        assertEquals(1200L, (long) first.get(RuntimeStatsStore.SHUFFLE_RECORDS));
+        // The flatten makes the shuffle much larger than the input
+        assertTrue(first.get(RuntimeStatsStore.SHUFFLE_BYTES) > 4 * inputBytes);
+
+        // The second from the bytes shuffled by the first
+        Map<String, Long> second = run();
+        long parallelism = second.get(RuntimeStatsStore.PARALLELISM);
+        assertEquals(HistoryReducerEstimator.estimate(first, inputBytes, 2000, 999), parallelism);
+        assertTrue(parallelism > first.get(RuntimeStatsStore.PARALLELISM));
+    }
+
+    /**
+     * Runs a script whose only reducer has no combiner
+     *
+     * @return the statistics recorded for the reducer
+     */
+    private Map<String, Long> run() throws Exception {
+        // As in a new process, so that the script has the same signature
+        LogicalExpression.resetNextUid();
+        ExecType execType = Util.getLocalTestMode();
+        Properties props = new Properties();
+        props.setProperty(PigConfiguration.PIG_EXEC_REDUCER_ESTIMATOR, Util.isTezExecType(execType)
+                ? HistoryTezParallelismEstimator.class.getName() : HistoryReducerEstimator.class.getName());
+        props.setProperty(PigConfiguration.PIG_STATS_HISTORY_DIR, conf.get(PigConfiguration.PIG_STATS_HISTORY_DIR));
+        props.setProperty(PigReducerEstimator.BYTES_PER_REDUCER_PARAM, "2000");
+        PigServer pigServer = new PigServer(execType, props);
+        File output = new File(folder.getRoot(), "output");
+        Util.deleteDirectory(output);
+        pigServer.setBatchOn();
+        pigServer.registerQuery("A = LOAD '" + Util.encodeEscape(input.getAbsolutePath()) + "' AS (k:int, v:chararray);"
+                + "B = FOREACH A GENERATE FLATTEN(TOBAG(k, k + 1, k + 2, k + 3, k + 4, k + 5)) AS k, v;"
+                + "C = GROUP B BY k;"
+                + "D = FOREACH C GENERATE group, B;"
+                + "STORE D INTO '" + Util.encodeEscape(output.getAbsolutePath()) + "';");
+        assertEquals(JOB_STATUS.COMPLETED, pigServer.executeBatch().get(0).getStatus());
+        pigServer.shutdown();
+
+        File[] files = new File(conf.get(PigConfiguration.PIG_STATS_HISTORY_DIR)).listFiles();
+        assertEquals(1, files.length);
+        String scriptSignature = files[0].getName().replace(".properties", "");
+        Properties history = new Properties();
+        history.load(new StringReader(Util.readFile(files[0])));
+        String signature = null;
+        for (String key : history.stringPropertyNames()) {
+            if (key.endsWith("." + RuntimeStatsStore.PARALLELISM)) {
+                assertNull(signature);
+                signature = key.substring(0, key.lastIndexOf('.'));
+            }
+        }
+        assertNotNull(signature);
+        return new RuntimeStatsStore(conf).get(scriptSignature, signature);
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pig.test;
+
+import static org.apache.pig.builtin.mock.Storage.resetData;
+import static org.apache.pig.builtin.mock.Storage.tuple;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.hadoop.mapred.LocalJobRunner;
+import org.apache.pig.PigConfiguration;
+import org.apache.pig.PigServer;
+import org.apache.pig.backend.executionengine.ExecJob.JOB_STATUS;
+import org.apache.pig.backend.hadoop.executionengine.mapReduceLayer.plans.MROperPlan;
+import org.apache.pig.builtin.mock.Storage.Data;
+import org.apache.pig.data.Tuple;
+import org.junit.Assume;
+import org.junit.Test;
+
+public class TestHybridFRJoin {
+
+    /**
+     * @param memoryLimit bytes of the heap for the replicated inputs, or null
+     *  to disable the hybrid join
+     */
+    private static PigServer newPigServer(Long memoryLimit, boolean compact) throws Exception {
+        Properties props = new Properties();
+        if (memoryLimit != null) {
+            props.setProperty(PigConfiguration.PIG_JOIN_REPLICATED_HYBRID, "true");
+            // the tasks run in this JVM
+            props.setProperty(PigConfiguration.PIG_JOIN_REPLICATED_HYBRID_MEMUSAGE,
+                    Double.toString((double) memoryLimit / Runtime.getRuntime().maxMemory()));
+        }
+        props.setProperty(PigConfiguration.PIG_JOIN_REPLICATED_COMPACT, Boolean.toString(compact));
+        return new PigServer(Util.getLocalTestMode(), props);
+    }
+
+    private static Data registerJoinQuery(PigServer pigServer, String join) throws Exception {
+        Data data = resetData(pigServer);
+        List<Tuple> left = new ArrayList<Tuple>();
+        for (int i = 0; i < 2000; i++) {
+            left.add(tuple(i % 11 == 0 ? null : i % 300, "l" + i));
+        }
+        List<Tuple> right = new ArrayList<Tuple>();
+        List<Tuple> other = new ArrayList<Tuple>();
+        for (int i = 0; i < 1000; i++) {
+            right.add(tuple(i % 250, "r" + i, i * 1.5));
+            other.add(tuple(i % 350, (long) i));
+        }
+        data.set("left", left);
+        data.set("right", right);
+        data.set("other", other);
+        pigServer.registerQuery("A = LOAD 'left' USING mock.Storage() AS (k:int, v:chararray);");
+        pigServer.registerQuery("B = LOAD 'right' USING mock.Storage() AS (k:int, w:chararray, d:double);");
+        pigServer.registerQuery("C = LOAD 'other' USING mock.Storage() AS (k:int, l:long);");
+        pigServer.registerQuery("D = " + join + ";");
+        return data;
+    }
+
+    private static List<Tuple> runJoinQuery(Long memoryLimit, boolean compact, String join) throws Exception {
+        PigServer pigServer = newPigServer(memoryLimit, compact);
+        Data data = registerJoinQuery(pigServer, join);
+        pigServer.registerQuery("STORE D INTO 'output' USING mock.Storage();");
+        List<Tuple> output = new ArrayList<Tuple>(data.get("output"));
+        Collections.sort(output);
+        pigServer.shutdown();
+        return output;
+    }
+
+    private static void checkHybridJoin(String join) throws Exception {
+        List<Tuple> expected = runJoinQuery(null, false, join);
+        assertTrue(expected.size() > 2000);
+        // Small enough to spill most of the partitions, but large enough
+        // to load each of them
+        assertEquals(expected, runJoinQuery(50000L, false, join));
+        // Generous enough to keep every partition in memory
+        long memoryLimit = Runtime.getRuntime().maxMemory() / 2;
+        assertEquals(expected, runJoinQuery(memoryLimit, false, join));
+        assertEquals(expected, runJoinQuery(memoryLimit, true, join));
+    }
+
+    @Test
+    public void testInnerJoin() throws Exception {
+        checkHybridJoin("JOIN A BY k, B BY k USING 'replicated'");
+    }
+
+    @Test
+    public void testLeftOuterJoin() throws Exception {
+        checkHybridJoin("JOIN A BY k LEFT OUTER, B BY k USING 'replicated'");
+    }
+
+    @Test
+    public void testMultiWayJoin() throws Exception {
+        checkHybridJoin("JOIN A BY k, B BY k, C BY k USING 'replicated'");
+    }
+
+    @Test
+    public void testSpilledPartitionTooLarge() throws Exception {
+        Assume.assumeFalse(Util.isTezExecType(Util.getLocalTestMode()));
+        File logFile = Util.resetLog(LocalJobRunner.class, null);
+        // All the partitions are spilled, and none of them can be loaded
+        PigServer pigServer = newPigServer(1L, false);
+        pigServer.setBatchOn();
+        registerJoinQuery(pigServer, "JOIN A BY k, B BY k USING 'replicated'");
+        pigServer.registerQuery("STORE D INTO 'output' USING mock.Storage();");
+        assertEquals(JOB_STATUS.FAILED, pigServer.executeBatch().get(0).getStatus());
+        Util.checkLogFileMessage(logFile, new String[] { "ERROR 6016: Spilled partition 0 of the replicated join" },
+                true);
+        logFile.delete();
+    }
+
+    @Test
+    public void testEndOfAllInput() throws Exception {
+        Assume.assumeFalse(Util.isTezExecType(Util.getLocalTestMode()));
+        String query = "A = LOAD 'left' AS (k:int, v:chararray);"
+                + "B = LOAD 'right' AS (k:int, w:chararray);"
+                + "D = JOIN A BY k, B BY k USING 'replicated';"
+                + "STORE D INTO 'output';";
+        // Only a hybrid join is run again at the end of the input of the map
+        for (Long memoryLimit : new Long[] { null, 1000L }) {
+            PigServer pigServer = newPigServer(memoryLimit, false);
+            MROperPlan mrPlan = Util.buildMRPlanWithOptimizer(Util.buildPp(pigServer, query),
+                    pigServer.getPigContext());
+            assertEquals(memoryLimit != null, mrPlan.getLeaves().get(0).isEndOfAllInputSetInMap());
+        }
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pig.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.pig.PigConfiguration;
+import org.apache.pig.PigServer;
+import org.apache.pig.newplan.Operator;
+import org.apache.pig.newplan.logical.relational.LOForEach;
+import org.apache.pig.newplan.logical.relational.LOJoin;
+import org.apache.pig.newplan.logical.relational.LOStore;
+import org.apache.pig.newplan.logical.relational.LogicalPlan;
+import org.apache.pig.newplan.logical.relational.LogicalRelationalOperator;
+import org.apache.pig.newplan.logical.relational.LogicalSchema;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestJoinReorder {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String a;
+    private String b;
+    private String c;
+    private Properties props;
+
+    @Before
+    public void setUp() throws Exception {
+        // the statistics of the inputs are collected in mapreduce mode
+        Assume.assumeFalse(Util.isTezExecType(Util.getLocalTestMode()));
+        String[] data = new String[200];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (i % 10) + "\ta" + i;
+        }
+        a = store("a", data, "k:int, v:chararray");
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (i % 10) + "\t" + i;
+        }
+        b = store("b", data, "k:int, j:int");
+        data = new String[5];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = i + "\tc" + i;
+        }
+        c = store("c", data, "j:int, w:chararray");
+
+        props = new Properties();
+        props.setProperty(PigConfiguration.PIG_JOIN_REORDER, "true");
+    }
+
+    @Test
+    public void testChain() throws Exception {
+        String query = "A = LOAD '" + a + "';"
+                + "B = LOAD '" + b + "';"
+                + "C = LOAD '" + c + "';"
+                + "J1 = JOIN A BY k, B BY k;"
+                + "J2 = JOIN J1 BY B::j, C BY j;";
+        PigServer pigServer = new PigServer(Util.getLocalTestMode(), props);
+        LogicalPlan lp = optimize(pigServer, query + "STORE J2 INTO 'out';");
+        LOStore store = Util.getLogicalOperators(lp, LOStore.class).get(0);
+        Operator foreach = lp.getPredecessors(store).get(0);
+        assertTrue(foreach instanceof LOForEach);
+        LOJoin last = (LOJoin) lp.getPredecessors(foreach).get(0);
+        // B and C are joined first, and A is the largest input of the last join
+        assertEquals("A", Util.getAlias(lp.getPredecessors(last).get(1)));
+        LOJoin first = (LOJoin) lp.getPredecessors(last).get(0);
+        assertEquals("C", Util.getAlias(lp.getPredecessors(first).get(0)));
+        assertEquals("B", Util.getAlias(lp.getPredecessors(first).get(1)));
+        // the columns are in the order of the script
+        LogicalPlan original = optimize(new PigServer(Util.getLocalTestMode()), query + "STORE J2 INTO 'out';");
+        Operator join = original.getPredecessors(Util.getLogicalOperators(original, LOStore.class).get(0)).get(0);
+        LogicalSchema expectedSchema = ((LogicalRelationalOperator) join).getSchema();
+        LogicalSchema schema = ((LogicalRelationalOperator) foreach).getSchema();
+        assertEquals(expectedSchema.size(), schema.size());
+        for (int i = 0; i < schema.size(); i++) {
+            assertEquals(expectedSchema.getField(i).type, schema.getField(i).type);
+            assertTrue(schema.getField(i).alias, expectedSchema.getField(i).alias.endsWith(schema.getField(i).alias));
+        }
+        assertEquals("J1::B::j", schema.getField(3).alias);
+
+        List<String> expected = Util.getSortedResults(new PigServer(Util.getLocalTestMode()), query, "J2");
+        assertEquals(5 * 20, expected.size());
+        assertEquals(expected, Util.getSortedResults(new PigServer(Util.getLocalTestMode(), props), query, "J2"));
+    }
+
+    @Test
+    public void testLargestLast() throws Exception {
+        String query = "A = LOAD '" + a + "';"
+                + "C = LOAD '" + c + "';"
+                + "J = JOIN A BY k, C BY j;";
+        LogicalPlan lp = optimize(new PigServer(Util.getLocalTestMode(), props),
+                query + "STORE J INTO 'out';");
+        LOJoin join = Util.getLogicalOperators(lp, LOJoin.class).get(0);
+        assertEquals("C", Util.getAlias(lp.getPredecessors(join).get(0)));
+        assertEquals("A", Util.getAlias(lp.getPredecessors(join).get(1)));
+        assertTrue(lp.getSuccessors(join).get(0) instanceof LOForEach);
+
+        List<String> expected = Util.getSortedResults(new PigServer(Util.getLocalTestMode()), query, "J");
+        assertEquals(5 * 20, expected.size());
+        assertEquals(expected, Util.getSortedResults(new PigServer(Util.getLocalTestMode(), props), query, "J"));
+    }
+
+    @Test
+    public void testOuterJoin() throws Exception {
+        String query = "A = LOAD '" + a + "';"
+                + "B = LOAD '" + b + "';"
+                + "C = LOAD '" + c + "';"
+                + "J1 = JOIN A BY k LEFT OUTER, B BY k;"
+                + "J2 = JOIN J1 BY B::j, C BY j;";
+        LogicalPlan lp = optimize(new PigServer(Util.getLocalTestMode(), props),
+                query + "STORE J2 INTO 'out';");
+        // the outer join is kept as it is
+        for (LOJoin join : Util.getLogicalOperators(lp, LOJoin.class)) {
+            if (!join.getInnerFlags()[1]) {
+                assertEquals("A", Util.getAlias(lp.getPredecessors(join).get(0)));
+                assertEquals("B", Util.getAlias(lp.getPredecessors(join).get(1)));
+                assertEquals(2, lp.getPredecessors(join).size());
+            }
+        }
+        List<String> expected = Util.getSortedResults(new PigServer(Util.getLocalTestMode()), query, "J2");
+        assertEquals(expected, Util.getSortedResults(new PigServer(Util.getLocalTestMode(), props), query, "J2"));
+    }
+
+    @Test
+    public void testParallel() throws Exception {
+        String query = "A = LOAD '" + a + "';"
+                + "B = LOAD '" + b + "';"
+                + "C = LOAD '" + c + "';"
+                + "J1 = JOIN A BY k, B BY k PARALLEL 3;"
+                + "J2 = JOIN J1 BY B::j, C BY j PARALLEL 2;";
+        LogicalPlan lp = optimize(new PigServer(Util.getLocalTestMode(), props),
+                query + "STORE J2 INTO 'out';");
+        // the join with a PARALLEL of its own is kept as it is
+        List<LOJoin> joins = Util.getLogicalOperators(lp, LOJoin.class);
+        assertEquals(2, joins.size());
+        int j1 = joins.get(0).getAlias().equals("J1") ? 0 : 1;
+        LOJoin join = joins.get(j1);
+        assertEquals("J1", join.getAlias());
+        assertEquals(3, join.getRequestedParallelism());
+        assertEquals("A", Util.getAlias(lp.getPredecessors(join).get(0)));
+        assertEquals("B", Util.getAlias(lp.getPredecessors(join).get(1)));
+        assertEquals(2, joins.get(1 - j1).getRequestedParallelism());
+        List<String> expected = Util.getSortedResults(new PigServer(Util.getLocalTestMode()), query, "J2");
+        assertEquals(expected, Util.getSortedResults(new PigServer(Util.getLocalTestMode(), props), query, "J2"));
+    }
+
+    @Test
+    public void testHint() throws Exception {
+        String query = "A = LOAD '" + a + "';"
+                + "B = LOAD '" + b + "';"
+                + "C = LOAD '" + c + "';"
+                + "J1 = JOIN A BY k, B BY k USING 'hash';"
+                + "J2 = JOIN J1 BY B::j, C BY j USING 'hash';"
+                + "STORE J2 INTO 'out';";
+        LogicalPlan lp = optimize(new PigServer(Util.getLocalTestMode(), props), query);
+        assertTrue(Util.getLogicalOperators(lp, LOForEach.class).isEmpty());
+
+        // disabled by default
+        lp = optimize(new PigServer(Util.getLocalTestMode()), query.replace(" USING 'hash'", ""));
+        assertTrue(Util.getLogicalOperators(lp, LOForEach.class).isEmpty());
+        LOJoin join = Util.getLogicalOperators(lp, LOJoin.class).get(0);
+        assertFalse(lp.getPredecessors(join).get(0) instanceof LOJoin
+                && lp.getPredecessors(join).get(1) instanceof LOJoin);
+        assertEquals("J2", Util.getAlias(lp.getPredecessors(
+                Util.getLogicalOperators(lp, LOStore.class).get(0)).get(0)));
+    }
+
+    private String store(String name, String[] data, String schema) throws Exception {
+        File input = Util.createInputFile("join" + name, ".txt", data);
+        File output = new File(folder.getRoot(), name);
+        Properties p = new Properties();
+        p.setProperty(PigConfiguration.PIG_STORE_STATISTICS, "true");
+        PigServer pigServer = new PigServer(Util.getLocalTestMode(), p);
+        pigServer.setBatchOn();
+        pigServer.registerQuery("A = LOAD '" + Util.encodeEscape(input.getAbsolutePath()) + "' AS (" + schema + ");"
+                + "STORE A INTO '" + Util.encodeEscape(output.getAbsolutePath()) + "' USING PigStorage('\\t', '-schema');");
+        pigServer.executeBatch();
+        return Util.encodeEscape(output.getAbsolutePath());
+    }
+
+    private static LogicalPlan optimize(PigServer pigServer, String query) throws Exception {
+        LogicalPlan lp = Util.buildLp(pigServer, query);
+        lp.optimize(pigServer.getPigContext());
+        return lp;
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pig.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.pig.PigConfiguration;
+import org.apache.pig.PigServer;
+import org.apache.pig.newplan.Operator;
+import org.apache.pig.newplan.logical.optimizer.JoinStrategySelector;
+import org.apache.pig.newplan.logical.relational.LOForEach;
+import org.apache.pig.newplan.logical.relational.LOJoin;
+import org.apache.pig.newplan.logical.relational.LOJoin.JOINTYPE;
+import org.apache.pig.newplan.logical.relational.LogicalPlan;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestJoinStrategySelector {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String big;
+    private String small;
+    private Properties props;
+
+    @Before
+    public void setUp() throws Exception {
+        String[] data = new String[2000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (i % 100) + "\tb" + i;
+        }
+        File bigFile = Util.createInputFile("big", ".txt", data);
+        data = new String[20];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (i * 3) + "\ts" + i;
+        }
+        File smallFile = Util.createInputFile("small", ".txt", data);
+        big = Util.encodeEscape(bigFile.getAbsolutePath());
+        small = Util.encodeEscape(smallFile.getAbsolutePath());
+
+        props = new Properties();
+        props.setProperty(PigConfiguration.PIG_JOIN_AUTO, "true");
+        props.setProperty(PigConfiguration.PIG_JOIN_AUTO_REPLICATED_MAX_BYTES,
+                Long.toString((bigFile.length() + smallFile.length()) / 2));
+    }
+
+    @Test
+    public void testReplicated() throws Exception {
+        LogicalPlan lp = Util.buildLp(new PigServer(Util.getLocalTestMode(), props),
+                "A = LOAD '" + big + "' AS (k:int, v:chararray);"
+                + "B = LOAD '" + small + "' AS (k:int, v:chararray);"
+                + "J = JOIN A BY k, B BY k;"
+                + "STORE J INTO 'out';");
+        List<String> choices = new JoinStrategySelector(lp, props).selectStrategies();
+        assertEquals(1, choices.size());
+        assertTrue(choices.get(0), choices.get(0).startsWith("J: REPLICATED"));
+        LOJoin join = Util.getLogicalOperators(lp, LOJoin.class).get(0);
+        assertEquals(JOINTYPE.REPLICATED, join.getJoinType());
+        assertEquals("A", Util.getAlias(lp.getPredecessors(join).get(0)));
+        assertTrue(Util.getLogicalOperators(lp, LOForEach.class).isEmpty());
+    }
+
+    @Test
+    public void testSwappedInputs() throws Exception {
+        String query = "A = LOAD '" + small + "' AS (k:int, v:chararray);"
+                + "B = LOAD '" + big + "' AS (k:int, v:chararray);"
+                + "J = JOIN A BY k, B BY k;";
+        LogicalPlan lp = Util.buildLp(new PigServer(Util.getLocalTestMode(), props),
+                query + "STORE J INTO 'out';");
+        List<String> choices = new JoinStrategySelector(lp, props).selectStrategies();
+        assertEquals(1, choices.size());
+        assertTrue(choices.get(0), choices.get(0).startsWith("J: REPLICATED on the first input"));
+        LOJoin join = Util.getLogicalOperators(lp, LOJoin.class).get(0);
+        assertEquals(JOINTYPE.REPLICATED, join.getJoinType());
+        assertEquals("B", Util.getAlias(lp.getPredecessors(join).get(0)));
+        assertEquals("A", Util.getAlias(lp.getPredecessors(join).get(1)));
+        Operator foreach = lp.getSuccessors(join).get(0);
+        assertTrue(foreach instanceof LOForEach);
+        assertEquals("J", Util.getAlias(foreach));
+        assertEquals("A::k", ((LOForEach) foreach).getSchema().getField(0).alias);
+        assertEquals("B::v", ((LOForEach) foreach).getSchema().getField(3).alias);
+
+        // the columns are in the order of the script
+        List<String> expected = Util.getSortedResults(new PigServer(Util.getLocalTestMode()), query, "J");
+        assertEquals(expected, Util.getSortedResults(new PigServer(Util.getLocalTestMode(), props), query, "J"));
+        assertEquals(20 * 20, expected.size());
+    }
+
+    @Test
+    public void testHint() throws Exception {
+        LogicalPlan lp = Util.buildLp(new PigServer(Util.getLocalTestMode(), props),
+                "A = LOAD '" + big + "' AS (k:int, v:chararray);"
+                + "B = LOAD '" + small + "' AS (k:int, v:chararray);"
+                + "J = JOIN A BY k, B BY k USING 'hash';"
+                + "STORE J INTO 'out';");
+        assertTrue(new JoinStrategySelector(lp, props).selectStrategies().isEmpty());
+        LOJoin join = Util.getLogicalOperators(lp, LOJoin.class).get(0);
+        assertEquals(JOINTYPE.HASH, join.getJoinType());
+    }
+
+    @Test
+    public void testMerge() throws Exception {
+        String sortedBig = sort(big, "big");
+        String sortedSmall = sort(small, "small");
+        props.setProperty(PigConfiguration.PIG_JOIN_AUTO_REPLICATED_MAX_BYTES, "0");
+        String query = "A = LOAD '" + sortedBig + "' USING PigStorage('\\t');"
+                + "B = LOAD '" + sortedSmall + "' USING PigStorage('\\t');"
+                + "J = JOIN A BY k, B BY k;";
+        LogicalPlan lp = Util.buildLp(new PigServer(Util.getLocalTestMode(), props),
+                query + "STORE J INTO 'out';");
+        List<String> choices = new JoinStrategySelector(lp, props).selectStrategies();
+        assertEquals(1, choices.size());
+        assertTrue(choices.get(0), choices.get(0).startsWith("J: MERGE"));
+
+        // not sorted on the join key
+        lp = Util.buildLp(new PigServer(Util.getLocalTestMode(), props),
+                "A = LOAD '" + sortedBig + "' USING PigStorage('\\t');"
+                + "B = LOAD '" + sortedSmall + "' USING PigStorage('\\t');"
+                + "J = JOIN A BY v, B BY v;"
+                + "STORE J INTO 'out';");
+        choices = new JoinStrategySelector(lp, props).selectStrategies();
+        assertTrue(choices.get(0), choices.get(0).startsWith("J: HASH"));
+
+        List<String> expected = Util.getSortedResults(new PigServer(Util.getLocalTestMode()), query, "J");
+        assertEquals(expected, Util.getSortedResults(new PigServer(Util.getLocalTestMode(), props), query, "J"));
+        assertEquals(20 * 20, expected.size());
+    }
+
+    @Test
+    public void testUnknownSize() throws Exception {
+        LogicalPlan lp = Util.buildLp(new PigServer(Util.getLocalTestMode(), props),
+                "A = LOAD '" + big + "' AS (k:int, v:chararray);"
+                + "B = LOAD '" + Util.encodeEscape(new File(folder.getRoot(), "missing").getAbsolutePath())
+                + "' AS (k:int, v:chararray);"
+                + "J = JOIN A BY k, B BY k;"
+                + "STORE J INTO 'out';");
+        List<String> choices = new JoinStrategySelector(lp, props).selectStrategies();
+        assertEquals("J: HASH, the size of input 1 is unknown", choices.get(0));
+        LOJoin join = Util.getLogicalOperators(lp, LOJoin.class).get(0);
+        assertEquals(JOINTYPE.HASH, join.getJoinType());
+    }
+
+    @Test
+    public void testExplain() throws Exception {
+        PigServer pigServer = new PigServer(Util.getLocalTestMode(), props);
+        pigServer.registerQuery("A = LOAD '" + big + "' AS (k:int, v:chararray);");
+        pigServer.registerQuery("B = LOAD '" + small + "' AS (k:int, v:chararray);");
+        pigServer.registerQuery("J = JOIN A BY k, B BY k;");
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        pigServer.explain("J", new PrintStream(baos));
+        String explain = baos.toString();
+        assertTrue(explain, explain.contains("# Join Strategies"));
+        assertTrue(explain, explain.contains("J: REPLICATED"));
+        assertTrue(explain, explain.contains("FRJoin"));
+
+        // disabled by default
+        pigServer = new PigServer(Util.getLocalTestMode());
+        pigServer.registerQuery("A = LOAD '" + big + "' AS (k:int, v:chararray);");
+        pigServer.registerQuery("B = LOAD '" + small + "' AS (k:int, v:chararray);");
+        pigServer.registerQuery("J = JOIN A BY k, B BY k;");
+        baos = new ByteArrayOutputStream();
+        pigServer.explain("J", new PrintStream(baos));
+        explain = baos.toString();
+        assertTrue(explain, !explain.contains("# Join Strategies"));
+    }
+
+    /**
+     * Stores the input sorted on its first column, with its schema
+     */
+    private String sort(String input, String name) throws Exception {
+        File output = new File(folder.getRoot(), name);
+        PigServer pigServer = new PigServer(Util.getLocalTestMode());
+        pigServer.setBatchOn();
+        pigServer.registerQuery("A = LOAD '" + input + "' AS (k:int, v:chararray);"
+                + "O = ORDER A BY k;"
+                + "STORE O INTO '" + Util.encodeEscape(output.getAbsolutePath())
+                + "' USING PigStorage('\\t', '-schema');");
+        pigServer.executeBatch();
+        return Util.encodeEscape(output.getAbsolutePath());
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pig.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.pig.PigConfiguration;
+import org.apache.pig.PigServer;
+import org.apache.pig.data.BagFactory;
+import org.apache.pig.data.DataBag;
+import org.apache.pig.data.DataByteArray;
+import org.apache.pig.data.LazyBinSedesTuple;
+import org.apache.pig.data.Tuple;
+import org.apache.pig.data.TupleFactory;
+import org.apache.pig.impl.io.NullableTuple;
+import org.junit.Test;
+
+public class TestLazyBinSedesTuple {
+    private static final TupleFactory mTupleFactory = TupleFactory.getInstance();
+
+    private static Tuple createTuple() throws Exception {
+        Tuple t = mTupleFactory.newTuple(7);
+        t.set(0, 12);
+        t.set(1, "pig");
+        t.set(2, null);
+        t.set(3, 12L);
+        Map<String, Object> map = new HashMap<String, Object>();
+        map.put("key", 1.5D);
+        t.set(4, map);
+        DataBag bag = BagFactory.getInstance().newDefaultBag();
+        bag.add(mTupleFactory.newTuple("inner"));
+        t.set(5, bag);
+        t.set(6, new DataByteArray("bytes"));
+        return t;
+    }
+
+    private static byte[] serialize(Tuple t) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        t.write(new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+
+    private static Tuple readLazily(byte[] bytes) throws IOException {
+        DataInputBuffer in = new DataInputBuffer();
+        // surround the tuple with other bytes, as in a shuffle buffer
+        byte[] buf = new byte[bytes.length + 4];
+        System.arraycopy(bytes, 0, buf, 2, bytes.length);
+        in.reset(buf, 2, bytes.length);
+        Tuple t = LazyBinSedesTuple.read(in);
+        assertEquals(bytes.length + 2, in.getPosition());
+        return t;
+    }
+
+    @Test
+    public void testRead() throws Exception {
+        Tuple t = createTuple();
+        byte[] bytes = serialize(t);
+        Tuple lazy = readLazily(bytes);
+        assertTrue(lazy instanceof LazyBinSedesTuple);
+        assertEquals(7, lazy.size());
+        assertTrue(lazy.isNull(2));
+        assertFalse(lazy.isNull(1));
+        assertEquals("pig", lazy.get(1));
+        assertEquals(t, lazy);
+        assertEquals(lazy, t);
+        assertEquals(t.hashCode(), lazy.hashCode());
+        assertEquals(t.getAll(), lazy.getAll());
+    }
+
+    @Test
+    public void testWriteUnmodified() throws Exception {
+        byte[] bytes = serialize(createTuple());
+        Tuple lazy = readLazily(bytes);
+        assertArrayEquals(bytes, serialize(lazy));
+        // accessing immutable fields keeps the serialized form
+        lazy.get(0);
+        lazy.get(1);
+        assertArrayEquals(bytes, serialize(lazy));
+    }
+
+    @Test
+    public void testWriteModified() throws Exception {
+        Tuple t = createTuple();
+        Tuple lazy = readLazily(serialize(t));
+
+        // nested values may be modified in place
+        ((DataBag) lazy.get(5)).add(mTupleFactory.newTuple("added"));
+        ((DataBag) t.get(5)).add(mTupleFactory.newTuple("added"));
+        lazy.set(0, 13);
+        t.set(0, 13);
+        lazy.append("appended");
+        t.append("appended");
+
+        byte[] bytes = serialize(lazy);
+        assertArrayEquals(serialize(t), bytes);
+        Tuple read = readLazily(bytes);
+        assertEquals(t, read);
+    }
+
+    @Test
+    public void testSetField() throws Exception {
+        Tuple t = createTuple();
+        LazyBinSedesTuple lazy = (LazyBinSedesTuple) readLazily(serialize(t));
+        LazyBinSedesTuple stitched = lazy.newTuple(8);
+        stitched.set(0, "key");
+        for (int i = 0; i < 7; i++) {
+            stitched.setField(i + 1, lazy, i);
+        }
+        Tuple expected = mTupleFactory.newTuple(8);
+        expected.set(0, "key");
+        for (int i = 0; i < 7; i++) {
+            expected.set(i + 1, t.get(i));
+        }
+        assertEquals(expected, stitched);
+        assertArrayEquals(serialize(expected), serialize(stitched));
+
+        // the serialized form is only counted by the tuple which read it
+        char[] chars = new char[1000];
+        Arrays.fill(chars, 'x');
+        Tuple big = mTupleFactory.newTuple(2);
+        big.set(0, 1);
+        big.set(1, new String(chars));
+        byte[] bytes = serialize(big);
+        lazy = (LazyBinSedesTuple) readLazily(bytes);
+        LazyBinSedesTuple projected = lazy.newTuple(1);
+        projected.setField(0, lazy, 0);
+        assertTrue(lazy.getMemorySize() > bytes.length);
+        assertTrue(projected.getMemorySize() < bytes.length);
+    }
+
+    @Test
+    public void testReadFromStream() throws Exception {
+        Tuple t = createTuple();
+        byte[] bytes = serialize(t);
+        Tuple read = LazyBinSedesTuple.read(new DataInputStream(new ByteArrayInputStream(bytes)));
+        assertEquals(t, read);
+
+        LazyBinSedesTuple lazy = new LazyBinSedesTuple();
+        lazy.readFields(new DataInputStream(new ByteArrayInputStream(bytes)));
+        assertEquals(t, lazy);
+        assertArrayEquals(bytes, serialize(lazy));
+    }
+
+    @Test
+    public void testGroupWithLazyDeserialization() throws Exception {
+        Properties props = new Properties();
+        props.setProperty(PigConfiguration.PIG_LAZY_TUPLE_DESERIALIZATION, "true");
+        PigServer pigServer = new PigServer(Util.getLocalTestMode(), props);
+        try {
+            File input = Util.createInputFile("lazyDeserialization", "",
+                    new String[] { "a\t1\tx", "b\t2\ty", "a\t3\tz" });
+            pigServer.registerQuery("A = LOAD '" + Util.encodeEscape(input.getAbsolutePath())
+                    + "' AS (k:chararray, v:int, w:chararray);");
+            pigServer.registerQuery("B = GROUP A BY k;");
+            pigServer.registerQuery("C = FOREACH B GENERATE group, SUM(A.v), A;");
+            Iterator<Tuple> it = pigServer.openIterator("C");
+            Util.checkQueryOutputsAfterSort(it, Util.getTuplesFromConstantTupleStrings(new String[] {
+                    "('a',4L,{('a',1,'x'),('a',3,'z')})", "('b',2L,{('b',2,'y')})" }));
+        } finally {
+            NullableTuple.setLazyDeserialization(false);
+            pigServer.shutdown();
+        }
+    }
+}
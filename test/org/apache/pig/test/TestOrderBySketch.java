@@ -0,0 +1,235 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pig.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.pig.PigConfiguration;
+import org.apache.pig.PigServer;
+import org.apache.pig.backend.executionengine.ExecJob.JOB_STATUS;
+import org.apache.pig.backend.hadoop.executionengine.mapReduceLayer.MapReduceOper;
+import org.apache.pig.backend.hadoop.executionengine.mapReduceLayer.plans.MROperPlan;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.util.SortKeySketch;
+import org.apache.pig.backend.hadoop.executionengine.shims.HadoopShims;
+import org.apache.pig.backend.hadoop.executionengine.util.MapRedUtil;
+import org.apache.pig.data.Tuple;
+import org.apache.pig.impl.util.QuantileSketch;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestOrderBySketch {
+
+    private static final Comparator<Integer> ORDER = new Comparator<Integer>() {
+        @Override
+        public int compare(Integer i1, Integer i2) {
+            return i1.compareTo(i2);
+        }
+    };
+
+    private static File input;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void oneTimeSetUp() throws Exception {
+        String[] data = new String[2000];
+        for (int i = 0; i < data.length; i++) {
+            // a quarter of the rows have the key 0
+            data[i] = (i % 4 == 0 ? 0 : i % 300) + "\tv" + (i % 7);
+        }
+        input = Util.createInputFile("sketch", ".txt", data);
+    }
+
+    @Test
+    public void testQuantileSketch() throws Exception {
+        List<QuantileSketch<Integer>> sketches = new ArrayList<QuantileSketch<Integer>>();
+        for (int i = 0; i < 4; i++) {
+            sketches.add(new QuantileSketch<Integer>(64, ORDER));
+        }
+        for (int i = 0; i < 100000; i++) {
+            sketches.get(i % 4).add((i * 7919) % 100000);
+        }
+        QuantileSketch<Integer> sketch = sketches.get(0);
+        for (int i = 1; i < 4; i++) {
+            sketch.merge(sketches.get(i));
+        }
+        assertEquals(100000, sketch.getN());
+        assertTrue(sketch.getNumRetained() < 300);
+        List<Integer> sample = sketch.getSample(10);
+        assertEquals(10, sample.size());
+        for (int i = 0; i < 10; i++) {
+            // the item of rank (i + 0.5) / 10, within 1.7 / 64
+            assertEquals((i + 0.5) * 10000, sample.get(i), 100000 * 1.7 / 64);
+        }
+
+        QuantileSketch<Integer> small = new QuantileSketch<Integer>(64, ORDER);
+        for (int i = 3; i > 0; i--) {
+            small.add(i);
+        }
+        assertEquals(3, small.getSample(10).size());
+        assertEquals(1, (int) small.getSample(10).get(0));
+    }
+
+    @Test
+    public void testOrderBy() throws Exception {
+        Assume.assumeFalse(Util.isTezExecType(Util.getLocalTestMode()));
+        String query = "A = LOAD '" + Util.encodeEscape(input.getAbsolutePath()) + "' AS (k:int, v:chararray);"
+                + "B = FILTER A BY v != 'v1';"
+                + "C = ORDER B BY k DESC, v PARALLEL 4;";
+        List<String> expected = run(false, query, "C");
+        assertEquals(1714, expected.size());
+        assertEquals(expected, run(true, query, "C"));
+
+        // after a group
+        query = "A = LOAD '" + Util.encodeEscape(input.getAbsolutePath()) + "' AS (k:int, v:chararray);"
+                + "B = GROUP A BY k;"
+                + "C = FOREACH B GENERATE group, COUNT(A) AS c;"
+                + "D = ORDER C BY c, group DESC PARALLEL 3;";
+        expected = run(false, query, "D");
+        assertEquals(226, expected.size());
+        assertEquals(expected, run(true, query, "D"));
+
+        // on the whole tuple
+        query = "A = LOAD '" + Util.encodeEscape(input.getAbsolutePath()) + "' AS (k:int, v:chararray);"
+                + "B = DISTINCT A;"
+                + "C = ORDER B BY * PARALLEL 2;";
+        expected = run(false, query, "C");
+        assertEquals(expected, run(true, query, "C"));
+    }
+
+    @Test
+    public void testPlan() throws Exception {
+        Assume.assumeFalse(Util.isTezExecType(Util.getLocalTestMode()));
+        String query = "A = LOAD '" + Util.encodeEscape(input.getAbsolutePath()) + "' AS (k:int, v:chararray);"
+                + "B = GROUP A BY k;"
+                + "C = FOREACH B GENERATE group, COUNT(A) AS c;"
+                + "D = ORDER C BY c;"
+                + "STORE D INTO 'output';";
+        MROperPlan mrPlan = buildMRPlan(true, query);
+        assertEquals(2, mrPlan.size());
+        for (MapReduceOper mro : mrPlan) {
+            assertFalse(mro.isSampler());
+            if (mro.isGlobalSort()) {
+                assertNotNull(mro.getSortKeySketch());
+                assertNull(mro.getQuantFile());
+            }
+        }
+        assertEquals(3, buildMRPlan(false, query).size());
+
+        // the input is loaded directly by the sampling job instead
+        query = "A = LOAD '" + Util.encodeEscape(input.getAbsolutePath()) + "';"
+                + "B = ORDER A BY $0;"
+                + "STORE B INTO 'output';";
+        mrPlan = buildMRPlan(true, query);
+        assertEquals(2, mrPlan.size());
+        assertTrue(mrPlan.getRoots().get(0).isSampler());
+    }
+
+    @Test
+    public void testSideFiles() throws Exception {
+        Configuration conf = new Configuration(false);
+        String dir = folder.newFolder().getAbsolutePath();
+        SortKeySketch sortKeySketch = new SortKeySketch(dir, new int[] {0}, new boolean[] {true}, 64);
+        // a speculative attempt is not committed
+        String[] attempts = {"attempt_1_0001_m_000000_0", "attempt_1_0001_m_000000_1", "attempt_1_0001_m_000001_0"};
+        List<TaskAttemptContext> contexts = new ArrayList<TaskAttemptContext>();
+        for (int i = 0; i < attempts.length; i++) {
+            TaskAttemptContext context = HadoopShims.createTaskAttemptContext(conf, TaskAttemptID.forName(attempts[i]));
+            QuantileSketch<Tuple> sketch = sortKeySketch.newSketch();
+            for (int j = 0; j < 100; j++) {
+                sketch.add(sortKeySketch.getKey(Util.createTuple(new Integer[] {j})));
+            }
+            sortKeySketch.write(sketch, context);
+            assertTrue(MapRedUtil.hasTaskSideFile(dir, context));
+            contexts.add(context);
+        }
+        MapRedUtil.commitTaskSideFile(dir, contexts.get(0));
+        MapRedUtil.commitTaskSideFile(dir, contexts.get(2));
+        MapRedUtil.abortTaskSideFile(dir, contexts.get(1));
+        assertFalse(MapRedUtil.hasTaskSideFile(dir, contexts.get(1)));
+        // a truncated file is skipped
+        FileOutputStream out = new FileOutputStream(new File(dir, "task_1_0001_m_000002"));
+        out.write(new byte[] {(byte) 0xac, (byte) 0xed, 0, 5, 0x73});
+        out.close();
+
+        List<QuantileSketch<Tuple>> sketches = MapRedUtil.readTaskSideFiles(dir, conf);
+        assertEquals(2, sketches.size());
+        assertNotNull(sortKeySketch.getQuantiles(conf, 2));
+    }
+
+    private static MROperPlan buildMRPlan(boolean sketch, String query) throws Exception {
+        Properties props = new Properties();
+        props.setProperty(PigConfiguration.PIG_ORDER_SKETCH, String.valueOf(sketch));
+        PigServer pigServer = new PigServer(Util.getLocalTestMode(), props);
+        return Util.buildMRPlanWithOptimizer(Util.buildPp(pigServer, query), pigServer.getPigContext());
+    }
+
+    /**
+     * Stores the relation, and reads the parts of the output in order
+     */
+    private List<String> run(boolean sketch, String query, String alias) throws Exception {
+        Properties props = new Properties();
+        props.setProperty(PigConfiguration.PIG_ORDER_SKETCH, String.valueOf(sketch));
+        PigServer pigServer = new PigServer(Util.getLocalTestMode(), props);
+        File output = folder.newFolder();
+        output.delete();
+        pigServer.setBatchOn();
+        pigServer.registerQuery(query);
+        pigServer.registerQuery("STORE " + alias + " INTO '" + Util.encodeEscape(output.getAbsolutePath()) + "';");
+        assertEquals(JOB_STATUS.COMPLETED, pigServer.executeBatch().get(0).getStatus());
+        File[] parts = output.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith("part-");
+            }
+        });
+        Arrays.sort(parts);
+        List<String> result = new ArrayList<String>();
+        int nonEmptyParts = 0;
+        for (File part : parts) {
+            String content = Util.readFile(part);
+            if (content.length() > 0) {
+                result.addAll(Arrays.asList(content.split("\n")));
+                nonEmptyParts++;
+            }
+        }
+        // the rows are spread over the reducers
+        assertTrue(nonEmptyParts > 1);
+        return result;
+    }
+}
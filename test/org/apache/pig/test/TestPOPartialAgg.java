@@ -17,6 +17,7 @@
  */
 package org.apache.pig.test;
 
+import static org.apache.pig.builtin.mock.Storage.resetData;
 import static org.apache.pig.builtin.mock.Storage.tuple;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -24,7 +25,9 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Properties;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -33,6 +36,7 @@ import java.util.concurrent.Future;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.pig.FuncSpec;
 import org.apache.pig.PigConfiguration;
+import org.apache.pig.PigServer;
 import org.apache.pig.backend.executionengine.ExecException;
 import org.apache.pig.backend.hadoop.executionengine.mapReduceLayer.PigMapReduce;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.POStatus;
@@ -42,7 +46,13 @@ import org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOpe
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.expressionOperators.POUserFunc;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.plans.PhysicalPlan;
 import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators.POPartialAgg;
+import org.apache.pig.builtin.AVG;
+import org.apache.pig.builtin.COUNT;
+import org.apache.pig.builtin.DoubleMax;
+import org.apache.pig.builtin.IntMin;
 import org.apache.pig.builtin.IntSum;
+import org.apache.pig.builtin.LongAvg;
+import org.apache.pig.builtin.mock.Storage.Data;
 import org.apache.pig.data.DataType;
 import org.apache.pig.data.Tuple;
 import org.apache.pig.impl.plan.PlanException;
@@ -73,6 +83,8 @@ public class TestPOPartialAgg {
     @Before
     public void setUp() throws Exception {
         PigMapReduce.sJobConfInternal.set(new Configuration());
+        // most tests cover the buffering of the inputs
+        PigMapReduce.sJobConfInternal.get().setBoolean(PigConfiguration.PIG_EXEC_MAP_PARTAGG_HASH, false);
         createPOPartialPlan(1);
     }
 
@@ -81,6 +93,15 @@ public class TestPOPartialAgg {
     }
 
     private void createPOPartialPlan(int valueCount, boolean isGroupAll) throws PlanException {
+        String[] funcs = new String[valueCount];
+        for (int i = 0; i < valueCount; i++) {
+            funcs[i] = IntSum.Intermediate.class.getName();
+        }
+        createPOPartialPlan(isGroupAll, funcs);
+    }
+
+    private void createPOPartialPlan(boolean isGroupAll, String... funcs) throws PlanException {
+        int valueCount = funcs.length;
         parentPlan = new PhysicalPlan();
         partAggOp = new POPartialAgg(GenPhyOp.getOK(), isGroupAll);
         partAggOp.setParentPlan(parentPlan);
@@ -105,7 +126,7 @@ public class TestPOPartialAgg {
             // setup udf
             List<PhysicalOperator> udfInps = new ArrayList<PhysicalOperator>();
             udfInps.add(projVal1);
-            FuncSpec sumSpec = new FuncSpec(IntSum.Intermediate.class.getName());
+            FuncSpec sumSpec = new FuncSpec(funcs[i]);
             POUserFunc sumUdf = new POUserFunc(GenPhyOp.getOK(), -1, udfInps,
                     sumSpec);
             valPlan.add(sumUdf);
@@ -380,6 +401,122 @@ public class TestPOPartialAgg {
         assertEquals(POStatus.STATUS_EOP, res.returnStatus);
     }
 
+    private void enableHashTable() {
+        PigMapReduce.sJobConfInternal.get().setBoolean(PigConfiguration.PIG_EXEC_MAP_PARTAGG_HASH, true);
+    }
+
+    @Test
+    public void testHashMultiInput() throws Exception {
+        enableHashTable();
+        createPOPartialPlan(2);
+        String[] inputTups = { "(1,(1L),(2L))", "(2,(2L),(1L))", "(1,(2L),(null))", "(null,(2L),(1L))",
+                "(null,(3L),(1L))", "(3,(null),(null))" };
+        String[] outputTups = { "(1,(3L),(2L))", "(2,(2L),(1L))", "(null,(5L),(2L))", "(3,(null),(null))" };
+        checkInputAndOutput(inputTups, outputTups, false);
+    }
+
+    @Test
+    public void testHashAggregationStates() throws Exception {
+        enableHashTable();
+        createPOPartialPlan(false, COUNT.Intermediate.class.getName(), IntMin.Intermediate.class.getName(),
+                DoubleMax.Intermediate.class.getName(), AVG.Intermediate.class.getName(),
+                LongAvg.Intermediate.class.getName());
+        Tuple[] inputs = { tuple("a", tuple(1L), tuple(3), tuple(1.5), tuple(1.0, 1L), tuple(2L, 1L)),
+                tuple("b", tuple(0L), tuple((Object) null), tuple((Object) null), tuple(null, 0L), tuple(null, 0L)),
+                tuple("a", tuple(1L), tuple(-2), tuple(-0.5), tuple(3.0, 1L), tuple(4L, 1L)),
+                tuple("b", tuple(1L), tuple(7), tuple(2.0), tuple(null, 0L), tuple(5L, 1L)),
+                tuple("a", tuple(0L), tuple((Object) null), tuple((Object) null), tuple(null, 0L), tuple(null, 0L)) };
+        for (Tuple t : inputs) {
+            partAggOp.attachInput(t);
+            assertEquals(POStatus.STATUS_EOP, partAggOp.getNextTuple().returnStatus);
+        }
+        parentPlan.endOfAllInput = true;
+        List<Tuple> outputs = new ArrayList<Tuple>();
+        while (addResults(partAggOp.getNextTuple(), outputs)) {
+        }
+        List<Tuple> expected = new ArrayList<Tuple>();
+        expected.add(tuple("a", tuple(2L), tuple(-2), tuple(1.5), tuple(4.0, 2L), tuple(6L, 2L)));
+        expected.add(tuple("b", tuple(1L), tuple(7), tuple(2.0), tuple(null, 0L), tuple(5L, 1L)));
+        Util.checkQueryOutputsAfterSort(outputs, expected);
+    }
+
+    @Test
+    public void testHashLowReductionNotDisabled() throws Exception {
+        // A reduction of 3 disables buffering the inputs, but not the hash table
+        enableHashTable();
+        int numKeys = 3500;
+        int numInputs = numKeys * 3;
+        String[] inputTups = new String[numInputs];
+        for (int i = 0; i < numInputs; i++) {
+            inputTups[i] = "(" + (i % numKeys) + ",(1L))";
+        }
+        String[] outputTups = new String[numKeys];
+        for (int i = 0; i < numKeys; i++) {
+            outputTups[i] = "(" + i + ",(3L))";
+        }
+        checkInputAndOutput(inputTups, outputTups, false);
+    }
+
+    @Test
+    public void testHashMemorySpill() throws Exception {
+        // A spill emits the aggregated records, as they cannot be reduced further
+        enableHashTable();
+        Result res;
+        for (long i=1; i <= 15; i ++) {
+            partAggOp.attachInput(tuple(1, tuple(i)));
+            res = partAggOp.getNextTuple();
+            assertEquals(POStatus.STATUS_EOP, res.returnStatus);
+        }
+        Future<Long> spilled = executor.submit(new Spill(partAggOp));
+        Thread.sleep(100);
+        partAggOp.attachInput(tuple(2, tuple(-1L)));
+        assertFalse(spilled.isDone());
+        res = partAggOp.getNextTuple();
+        assertEquals(POStatus.STATUS_OK, res.returnStatus);
+        assertEquals(tuple(1, tuple(120L)), res.result);
+        res = partAggOp.getNextTuple();
+        assertEquals(POStatus.STATUS_EOP, res.returnStatus);
+        Thread.sleep(100);
+        assertTrue(spilled.isDone());
+        assertEquals(new Long(1), spilled.get());
+
+        parentPlan.endOfAllInput = true;
+        res = partAggOp.getNextTuple();
+        assertEquals(POStatus.STATUS_OK, res.returnStatus);
+        assertEquals(tuple(2, tuple(-1L)), res.result);
+        res = partAggOp.getNextTuple();
+        assertEquals(POStatus.STATUS_EOP, res.returnStatus);
+    }
+
+    private static List<Tuple> runGroupQuery(boolean useHashTable) throws Exception {
+        Properties props = new Properties();
+        props.setProperty(PigConfiguration.PIG_EXEC_MAP_PARTAGG, "true");
+        props.setProperty(PigConfiguration.PIG_EXEC_MAP_PARTAGG_HASH, Boolean.toString(useHashTable));
+        PigServer pigServer = new PigServer(Util.getLocalTestMode(), props);
+        Data data = resetData(pigServer);
+        List<Tuple> input = new ArrayList<Tuple>();
+        for (int i = 0; i < 1000; i++) {
+            input.add(tuple(i % 7 == 0 ? null : "k" + (i % 13), i % 5 == 0 ? null : i, i / 10.0));
+        }
+        data.set("input", input);
+        pigServer.registerQuery("A = LOAD 'input' USING mock.Storage() AS (k:chararray, i:int, d:double);");
+        pigServer.registerQuery("B = GROUP A BY k;");
+        pigServer.registerQuery("C = FOREACH B GENERATE group, SUM(A.i), COUNT(A.i), COUNT(A), AVG(A.d),"
+                + " MIN(A.i), MAX(A.d);");
+        pigServer.registerQuery("STORE C INTO 'output' USING mock.Storage();");
+        List<Tuple> output = new ArrayList<Tuple>(data.get("output"));
+        Collections.sort(output);
+        pigServer.shutdown();
+        return output;
+    }
+
+    @Test
+    public void testHashQuery() throws Exception {
+        List<Tuple> expected = runGroupQuery(false);
+        assertEquals(14, expected.size());
+        assertEquals(expected, runGroupQuery(true));
+    }
+
     private static class Spill implements Callable<Long> {
 
         private Spillable spillable;
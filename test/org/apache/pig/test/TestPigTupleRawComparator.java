@@ -23,6 +23,7 @@ import static org.junit.Assert.assertTrue;
 import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -33,13 +34,16 @@ import org.joda.time.DateTime;
 
 import org.apache.hadoop.io.RawComparator;
 import org.apache.hadoop.mapred.JobConf;
+import org.apache.pig.backend.hadoop.executionengine.mapReduceLayer.PigNormalizedKeyComparator;
 import org.apache.pig.backend.hadoop.executionengine.mapReduceLayer.PigTupleDefaultRawComparator;
 import org.apache.pig.backend.hadoop.executionengine.mapReduceLayer.PigTupleSortComparator;
 import org.apache.pig.data.DataBag;
 import org.apache.pig.data.DataByteArray;
 import org.apache.pig.data.DefaultDataBag;
+import org.apache.pig.data.NormalizedKeyEncoder;
 import org.apache.pig.data.Tuple;
 import org.apache.pig.data.TupleFactory;
+import org.apache.pig.impl.io.NullableNormalizedTuple;
 import org.apache.pig.impl.io.NullableTuple;
 import org.apache.pig.impl.util.ObjectSerializer;
 import org.junit.Before;
@@ -418,6 +422,51 @@ public class TestPigTupleRawComparator {
         assertTrue(res > 0);
     }
 
+    @Test
+    public void testNormalizedKeys() throws IOException {
+        Random rand = new Random(SEED);
+        Object[] values = new Object[] { null, -3, 0, 7, Integer.MIN_VALUE, -5l, 5l,
+                -0.5, 0.0, 1.5, Double.NEGATIVE_INFINITY, -1.5f, 2.5f, true, false, (byte) -2,
+                "", "a", "a\u0000", "ab", "\u00e9t\u00e9", "\uffff", new DateTime(-12L), new DateTime(12L),
+                new DataByteArray(new byte[] {}), new DataByteArray(new byte[] { 0, 1 }),
+                new DataByteArray(new byte[] { (byte) 0xff }), new BigInteger("-1000000000000"),
+                BigInteger.ZERO, BigInteger.ONE, new BigInteger("123456789012345678901234567890"),
+                tf.newTuple(Arrays.<Object> asList(1, "x")), tf.newTuple(Arrays.<Object> asList(1, null)) };
+        List<boolean[]> sortOrders = Arrays.asList(new boolean[] {true}, new boolean[] {false},
+                new boolean[] {true, false, true}, new boolean[] {false, true, false});
+        for (boolean[] sortOrder : sortOrders) {
+            JobConf jobConf = new JobConf();
+            jobConf.set("pig.sortOrder", ObjectSerializer.serialize(sortOrder));
+            comparator.setConf(jobConf);
+            PigNormalizedKeyComparator normalizedComparator = new PigNormalizedKeyComparator();
+            normalizedComparator.setConf(jobConf);
+            NormalizedKeyEncoder encoder = new NormalizedKeyEncoder(sortOrder);
+            for (int i = 0; i < TIMES / 10; i++) {
+                Tuple k1 = tf.newTuple(3);
+                Tuple k2 = tf.newTuple(3);
+                for (int j = 0; j < 3; j++) {
+                    k1.set(j, values[rand.nextInt(values.length)]);
+                    // keep some fields equal so the later fields get compared
+                    k2.set(j, rand.nextBoolean() ? k1.get(j) : values[rand.nextInt(values.length)]);
+                }
+                NullableTuple t1 = new NullableTuple(k1);
+                NullableTuple t2 = new NullableTuple(k2);
+                NullableNormalizedTuple n1 = new NullableNormalizedTuple(k1, encoder);
+                NullableNormalizedTuple n2 = new NullableNormalizedTuple(k2, encoder);
+                int expected = compareHelper(t1, t2, comparator);
+                assertEquals(k1 + " " + k2, Math.signum(expected),
+                        Math.signum(compareHelper(n1, n2, normalizedComparator)), 0);
+                assertEquals(k1 + " " + k2, Math.signum(expected),
+                        Math.signum(normalizedComparator.compare(n1, n2)), 0);
+            }
+            NullableNormalizedTuple nullKey = new NullableNormalizedTuple();
+            nullKey.setNull(true);
+            NullableNormalizedTuple key = new NullableNormalizedTuple(tf.newTuple(list.subList(0, 3)), encoder);
+            int res = compareHelper(nullKey, key, normalizedComparator);
+            assertEquals(sortOrder.length == 1 && !sortOrder[0] ? 1 : -1, Math.signum(res), 0);
+        }
+    }
+
     private Tuple getRandomTuple(Random rand) throws IOException {
         int pos = rand.nextInt(list.size());
         Tuple t = tf.newTuple(list);
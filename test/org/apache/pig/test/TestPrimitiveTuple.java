@@ -0,0 +1,203 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pig.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.pig.backend.executionengine.ExecException;
+import org.apache.pig.data.BinSedesTupleFactory;
+import org.apache.pig.data.DataByteArray;
+import org.apache.pig.data.DataType;
+import org.apache.pig.data.PrimitiveTuple;
+import org.apache.pig.data.PrimitiveTupleFactory;
+import org.apache.pig.data.Tuple;
+import org.apache.pig.data.TupleFactory;
+import org.junit.Test;
+
+public class TestPrimitiveTuple {
+    private static final TupleFactory primitiveFactory = new PrimitiveTupleFactory();
+    private static final TupleFactory binSedesFactory = new BinSedesTupleFactory();
+    private static final Random random = new Random(100L);
+
+    @Test
+    public void testGetSet() throws Exception {
+        Tuple t = primitiveFactory.newTuple(7);
+        for (int i = 0; i < t.size(); i++) {
+            assertTrue(t.isNull(i));
+            assertEquals(DataType.NULL, t.getType(i));
+        }
+        t.set(0, 12);
+        t.set(1, 12L);
+        t.set(2, 1.5F);
+        t.set(3, 2.5D);
+        t.set(4, true);
+        t.set(5, "pig");
+        t.set(6, new DataByteArray("bytes"));
+
+        assertEquals(Integer.valueOf(12), t.get(0));
+        assertEquals(Long.valueOf(12L), t.get(1));
+        assertEquals(Float.valueOf(1.5F), t.get(2));
+        assertEquals(Double.valueOf(2.5D), t.get(3));
+        assertEquals(Boolean.TRUE, t.get(4));
+        assertEquals("pig", t.get(5));
+        assertEquals(new DataByteArray("bytes"), t.get(6));
+        assertEquals(DataType.INTEGER, t.getType(0));
+        assertEquals(DataType.LONG, t.getType(1));
+        assertEquals(DataType.FLOAT, t.getType(2));
+        assertEquals(DataType.DOUBLE, t.getType(3));
+        assertEquals(DataType.BOOLEAN, t.getType(4));
+        assertEquals(DataType.CHARARRAY, t.getType(5));
+        assertEquals(DataType.BYTEARRAY, t.getType(6));
+        assertEquals("(12,12,1.5,2.5,true,pig,bytes)", t.toString());
+
+        // fields can change between primitive and non primitive values
+        t.set(0, "twelve");
+        t.set(5, 5);
+        t.set(4, null);
+        assertEquals("twelve", t.get(0));
+        assertEquals(Integer.valueOf(5), t.get(5));
+        assertNull(t.get(4));
+        assertTrue(t.isNull(4));
+        assertFalse(t.isNull(5));
+
+        try {
+            t.get(7);
+            fail("Expected an ExecException");
+        } catch (ExecException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testAppend() throws Exception {
+        Tuple t = primitiveFactory.newTuple();
+        List<Object> expected = new ArrayList<Object>();
+        for (int i = 0; i < 50; i++) {
+            Object o = randomValue();
+            t.append(o);
+            expected.add(o);
+        }
+        assertEquals(expected, t.getAll());
+        assertEquals(binSedesFactory.newTuple(expected), t);
+    }
+
+    /**
+     * PrimitiveTuples must be interchangeable with BinSedesTuples: same serialized
+     * form, hash code and ordering.
+     */
+    @Test
+    public void testSameAsBinSedesTuple() throws Exception {
+        for (int i = 0; i < 500; i++) {
+            List<Object> fields = randomFields();
+            Tuple primitive = primitiveFactory.newTuple(fields);
+            Tuple binSedes = binSedesFactory.newTuple(fields);
+
+            assertEquals(binSedes.hashCode(), primitive.hashCode());
+            assertEquals(0, primitive.compareTo(binSedes));
+            assertEquals(0, binSedes.compareTo(primitive));
+
+            byte[] primitiveBytes = serialize(primitive);
+            assertArrayEquals(serialize(binSedes), primitiveBytes);
+
+            Tuple read = new PrimitiveTuple();
+            read.readFields(new DataInputStream(new ByteArrayInputStream(primitiveBytes)));
+            assertEquals(binSedes, read);
+            assertEquals(fields, read.getAll());
+        }
+    }
+
+    @Test
+    public void testCompareTo() throws Exception {
+        for (int i = 0; i < 2000; i++) {
+            List<Object> fields1 = randomFields();
+            List<Object> fields2 = random.nextBoolean() ? new ArrayList<Object>(fields1) : randomFields();
+            if (fields1.size() == fields2.size() && !fields1.isEmpty()) {
+                fields2.set(fields2.size() - 1, randomValue());
+            }
+            int expected = Integer.signum(binSedesFactory.newTuple(fields1).compareTo(binSedesFactory.newTuple(fields2)));
+            Tuple t1 = primitiveFactory.newTuple(fields1);
+            Tuple t2 = primitiveFactory.newTuple(fields2);
+            assertEquals(fields1 + " vs " + fields2, expected, Integer.signum(t1.compareTo(t2)));
+            assertEquals(fields1 + " vs " + fields2, -expected, Integer.signum(t2.compareTo(t1)));
+        }
+    }
+
+    @Test
+    public void testMemorySize() throws Exception {
+        Tuple primitive = primitiveFactory.newTuple(40);
+        Tuple binSedes = binSedesFactory.newTuple(40);
+        for (int i = 0; i < 40; i++) {
+            Object o = i % 2 == 0 ? Long.valueOf(random.nextLong()) : Double.valueOf(random.nextDouble());
+            primitive.set(i, o);
+            binSedes.set(i, o);
+        }
+        assertTrue(primitive.getMemorySize() < binSedes.getMemorySize());
+    }
+
+    private static byte[] serialize(Tuple t) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        t.write(new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+
+    private static List<Object> randomFields() {
+        int size = random.nextInt(12);
+        List<Object> fields = new ArrayList<Object>(size);
+        for (int i = 0; i < size; i++) {
+            fields.add(randomValue());
+        }
+        return fields;
+    }
+
+    private static Object randomValue() {
+        switch (random.nextInt(9)) {
+        case 0:
+            return null;
+        case 1:
+            return random.nextInt(3) - 1;
+        case 2:
+            return random.nextBoolean() ? random.nextInt() : random.nextInt(300);
+        case 3:
+            return random.nextBoolean() ? random.nextLong() : Long.valueOf(random.nextInt(70000) - 35000);
+        case 4:
+            return random.nextInt(3) == 0 ? Float.NaN : random.nextFloat() - 0.5F;
+        case 5:
+            return random.nextInt(3) == 0 ? -0.0D : random.nextDouble() - 0.5D;
+        case 6:
+            return random.nextBoolean();
+        case 7:
+            return "s" + random.nextInt(5);
+        default:
+            return new DataByteArray(new byte[] { (byte) random.nextInt(3) });
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pig.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.pig.PigConfiguration;
+import org.apache.pig.PigServer;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.plans.PhysicalPlan;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators.POReplicatedCross;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.util.PlanHelper;
+import org.apache.pig.data.Tuple;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestReplicatedCross {
+
+    private static File small;
+    private static File large;
+
+    @BeforeClass
+    public static void oneTimeSetUp() throws Exception {
+        String[] smallData = new String[30];
+        for (int i = 0; i < smallData.length; i++) {
+            smallData[i] = i + "\ts" + i;
+        }
+        small = Util.createInputFile("small", ".txt", smallData);
+        String[] largeData = new String[500];
+        for (int i = 0; i < largeData.length; i++) {
+            largeData[i] = "l" + i + "\t" + (i * 0.5);
+        }
+        large = Util.createInputFile("large", ".txt", largeData);
+    }
+
+    /**
+     * @param memUsage fraction of the heap for a block of the replicated
+     *  input, or null not to replicate it
+     */
+    private static List<Tuple> runCross(String memUsage, String cross, int fragment) throws Exception {
+        Properties props = new Properties();
+        if (memUsage != null) {
+            props.setProperty(PigConfiguration.PIG_CROSS_REPLICATED, "true");
+            props.setProperty(PigConfiguration.PIG_CROSS_REPLICATED_MEMUSAGE, memUsage);
+        }
+        PigServer pigServer = new PigServer(Util.getLocalTestMode(), props);
+        String query = "S = LOAD '" + Util.encodeEscape(small.getAbsolutePath()) + "' AS (i:int, s:chararray);"
+                + "L = LOAD '" + Util.encodeEscape(large.getAbsolutePath()) + "' AS (l:chararray, d:double);"
+                + "F = FILTER L BY d != 3.0;"
+                + "C = " + cross + ";";
+        PhysicalPlan pp = Util.buildPp(pigServer, query + "STORE C INTO 'output';");
+        List<POReplicatedCross> crosses = PlanHelper.getPhysicalOperators(pp, POReplicatedCross.class);
+        assertEquals(memUsage == null ? 0 : 1, crosses.size());
+        if (memUsage != null) {
+            assertEquals(fragment, crosses.get(0).getFragment());
+        }
+
+        pigServer.registerQuery(query);
+        List<Tuple> result = new ArrayList<Tuple>();
+        Iterator<Tuple> it = pigServer.openIterator("C");
+        while (it.hasNext()) {
+            result.add(it.next());
+        }
+        Collections.sort(result);
+        pigServer.shutdown();
+        return result;
+    }
+
+    private static void checkCross(String cross, int fragment) throws Exception {
+        List<Tuple> expected = runCross(null, cross, fragment);
+        assertEquals(30 * 499, expected.size());
+        // In memory
+        assertEquals(expected, runCross("0.3", cross, fragment));
+        // Small blocks, depending on the heap
+        assertEquals(expected, runCross("0.00000001", cross, fragment));
+        // One tuple per block
+        assertEquals(expected, runCross("0.0000000001", cross, fragment));
+    }
+
+    @Test
+    public void testReplicateRight() throws Exception {
+        checkCross("CROSS F, S", 0);
+    }
+
+    @Test
+    public void testUnknownSize() throws Exception {
+        // GFCross is kept when the size of an input is unknown
+        String query = "S = LOAD '" + Util.encodeEscape(small.getAbsolutePath()) + "' AS (i:int, s:chararray);"
+                + "L = LOAD 'does_not_exist' AS (l:chararray, d:double);"
+                + "C = CROSS S, L;"
+                + "STORE C INTO 'output';";
+        assertEquals(0, getReplicatedCrosses(query, null).size());
+    }
+
+    @Test
+    public void testMaxBytes() throws Exception {
+        String query = "S = LOAD '" + Util.encodeEscape(small.getAbsolutePath()) + "' AS (i:int, s:chararray);"
+                + "L = LOAD '" + Util.encodeEscape(large.getAbsolutePath()) + "' AS (l:chararray, d:double);"
+                + "C = CROSS L, S;"
+                + "STORE C INTO 'output';";
+        assertEquals(1, getReplicatedCrosses(query, "1000000").size());
+        // GFCross is kept when the smaller input is larger than the maximum
+        assertEquals(0, getReplicatedCrosses(query, "10").size());
+    }
+
+    private static List<POReplicatedCross> getReplicatedCrosses(String query, String maxBytes) throws Exception {
+        Properties props = new Properties();
+        props.setProperty(PigConfiguration.PIG_CROSS_REPLICATED, "true");
+        if (maxBytes != null) {
+            props.setProperty(PigConfiguration.PIG_CROSS_REPLICATED_MAX_BYTES, maxBytes);
+        }
+        PigServer pigServer = new PigServer(Util.getLocalTestMode(), props);
+        PhysicalPlan pp = Util.buildPp(pigServer, query);
+        return PlanHelper.getPhysicalOperators(pp, POReplicatedCross.class);
+    }
+
+    @Test
+    public void testReplicateLeft() throws Exception {
+        checkCross("CROSS S, F", 1);
+        assertTrue(runCross("0.3", "CROSS S, F", 1).get(0).get(0) instanceof Integer);
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pig.test;
+
+import static org.apache.pig.builtin.mock.Storage.resetData;
+import static org.apache.pig.builtin.mock.Storage.tuple;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.pig.PigConfiguration;
+import org.apache.pig.PigServer;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.relationalOperators.ReplicatedJoinHashTable;
+import org.apache.pig.builtin.mock.Storage.Data;
+import org.apache.pig.data.DataByteArray;
+import org.apache.pig.data.LazyBinSedesTuple;
+import org.apache.pig.data.Tuple;
+import org.junit.Test;
+
+public class TestReplicatedJoinHashTable {
+
+    @Test
+    public void testProbe() throws Exception {
+        ReplicatedJoinHashTable table = new ReplicatedJoinHashTable();
+        int numKeys = 5000;
+        for (int i = 0; i < numKeys * 3; i++) {
+            int k = i % numKeys;
+            table.add(k, tuple(k, "v" + i, new DataByteArray("b" + i)));
+        }
+        table.add("a", tuple("a", 1L));
+        table.add(tuple(1, "x"), tuple(1, "x", 2.0));
+        table.finish();
+
+        assertEquals(numKeys + 2, table.size());
+        assertEquals(numKeys * 3 + 2, table.getNumRows());
+        for (int k = 0; k < numKeys; k++) {
+            List<Tuple> rows = table.get(k);
+            assertEquals(3, rows.size());
+            for (int j = 0; j < 3; j++) {
+                assertTrue(rows.get(j) instanceof LazyBinSedesTuple);
+                int i = k + j * numKeys;
+                assertEquals(tuple(k, "v" + i, new DataByteArray("b" + i)), rows.get(j));
+            }
+        }
+        assertEquals(Collections.singletonList(tuple("a", 1L)), table.get("a"));
+        assertEquals(Collections.singletonList(tuple(1, "x", 2.0)), table.get(tuple(1, "x")));
+        assertNull(table.get(numKeys));
+        assertNull(table.get(1L));
+        assertNull(table.get("b"));
+        assertNull(table.get(tuple(1, "y")));
+    }
+
+    @Test
+    public void testEntries() throws Exception {
+        ReplicatedJoinHashTable table = new ReplicatedJoinHashTable();
+        table.add("a", tuple("a", 1));
+        table.add("b", tuple("b", 2));
+        table.add("a", tuple("a", 3));
+        table.finish();
+
+        int numEntries = 0;
+        for (Map.Entry<Object, List<Tuple>> entry : table.entrySet()) {
+            assertEquals(table.get(entry.getKey()), entry.getValue());
+            numEntries++;
+        }
+        assertEquals(2, numEntries);
+    }
+
+    private static List<Tuple> runJoinQuery(boolean compact) throws Exception {
+        Properties props = new Properties();
+        props.setProperty(PigConfiguration.PIG_JOIN_REPLICATED_COMPACT, Boolean.toString(compact));
+        PigServer pigServer = new PigServer(Util.getLocalTestMode(), props);
+        Data data = resetData(pigServer);
+        List<Tuple> left = new ArrayList<Tuple>();
+        for (int i = 0; i < 500; i++) {
+            left.add(tuple(i % 7 == 0 ? null : i % 50, "l" + i));
+        }
+        List<Tuple> right = new ArrayList<Tuple>();
+        for (int i = 0; i < 100; i++) {
+            right.add(tuple(i % 40, "r" + i, i * 1.5));
+        }
+        data.set("left", left);
+        data.set("right", right);
+        pigServer.registerQuery("A = LOAD 'left' USING mock.Storage() AS (k:int, v:chararray);");
+        pigServer.registerQuery("B = LOAD 'right' USING mock.Storage() AS (k:int, w:chararray, d:double);");
+        pigServer.registerQuery("C = JOIN A BY k LEFT OUTER, B BY k USING 'replicated';");
+        pigServer.registerQuery("STORE C INTO 'output' USING mock.Storage();");
+        List<Tuple> output = new ArrayList<Tuple>(data.get("output"));
+        Collections.sort(output);
+        pigServer.shutdown();
+        return output;
+    }
+
+    @Test
+    public void testReplicatedJoin() throws Exception {
+        List<Tuple> expected = runJoinQuery(false);
+        assertTrue(expected.size() > 500);
+        assertEquals(expected, runJoinQuery(true));
+    }
+}
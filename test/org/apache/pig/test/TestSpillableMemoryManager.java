@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pig.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Iterator;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.pig.PigConfiguration;
+import org.apache.pig.data.DataBag;
+import org.apache.pig.data.DefaultDataBag;
+import org.apache.pig.data.InternalCachedBag;
+import org.apache.pig.data.Tuple;
+import org.apache.pig.data.TupleFactory;
+import org.apache.pig.impl.util.Spillable;
+import org.apache.pig.impl.util.SpillableMemoryManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestSpillableMemoryManager {
+
+    private static final long MB = 1024 * 1024;
+
+    private SpillableMemoryManager manager = SpillableMemoryManager.getInstance();
+
+    private static class TestSpillable implements Spillable {
+        long size;
+        int numSpills = 0;
+
+        TestSpillable(long size) {
+            this.size = size;
+        }
+
+        @Override
+        public long spill() {
+            numSpills++;
+            size = 0;
+            return 1;
+        }
+
+        @Override
+        public long getMemorySize() {
+            return size;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        SpillableMemoryManager.staticDataCleanup();
+        Configuration conf = new Configuration(false);
+        conf.setBoolean(PigConfiguration.PIG_SPILL_MEMORY_BUDGET_ENABLED, true);
+        // budget of roughly 5MB
+        conf.setFloat(PigConfiguration.PIG_SPILL_MEMORY_BUDGET_FRACTION,
+                (float) (5 * MB) / Runtime.getRuntime().maxMemory());
+        conf.setLong(PigConfiguration.PIG_SPILL_SIZE_THRESHOLD, 0);
+        manager.configure(conf);
+    }
+
+    @After
+    public void tearDown() {
+        Configuration conf = new Configuration(false);
+        manager.configure(conf);
+        SpillableMemoryManager.staticDataCleanup();
+    }
+
+    @Test
+    public void testSpillOnBudgetExceeded() {
+        assertTrue(manager.isMemoryBudgetEnabled());
+        TestSpillable small = new TestSpillable(1 * MB);
+        TestSpillable big = new TestSpillable(3 * MB);
+        manager.registerSpillable(small);
+        manager.registerSpillable(big);
+
+        assertFalse(manager.updateMemoryReservation(small, small.getMemorySize()));
+        assertFalse(manager.updateMemoryReservation(big, big.getMemorySize()));
+        assertEquals(0, small.numSpills);
+        assertEquals(0, big.numSpills);
+
+        // Exceeding the budget spills the biggest spillable synchronously
+        Object owner = new Object();
+        assertFalse(manager.updateMemoryReservation(owner, 2 * MB));
+        assertEquals(1, big.numSpills);
+        assertEquals(0, small.numSpills);
+
+        // Released reservations are not counted any more
+        manager.releaseMemoryReservation(owner);
+        assertFalse(manager.updateMemoryReservation(small, 3 * MB));
+        assertEquals(1, big.numSpills);
+    }
+
+    @Test
+    public void testBudgetStillExceeded() {
+        // Nothing can be spilled, the owner has to free memory itself
+        Object owner = new Object();
+        assertTrue(manager.updateMemoryReservation(owner, 6 * MB));
+        assertFalse(manager.updateMemoryReservation(owner, 2 * MB));
+    }
+
+    @Test
+    public void testDataBagReservations() throws Exception {
+        TupleFactory tf = TupleFactory.getInstance();
+        // Bags with the same contents hold separate reservations
+        DataBag bag1 = new DefaultDataBag();
+        DataBag bag2 = new DefaultDataBag();
+        bag1.add(tf.newTuple(1));
+        bag2.add(tf.newTuple(1));
+        assertFalse(manager.updateMemoryReservation(bag1, 3 * MB));
+        assertTrue(manager.updateMemoryReservation(bag2, 3 * MB));
+
+        // A bag keeps its reservation as its contents change
+        bag1.add(tf.newTuple(2));
+        assertTrue(manager.updateMemoryReservation(bag1, 3 * MB));
+        manager.releaseMemoryReservation(bag1);
+        manager.releaseMemoryReservation(bag2);
+        assertFalse(manager.updateMemoryReservation(new Object(), 4 * MB));
+
+        // Updating the reservation does not iterate over the bag
+        InternalCachedBag bag = new InternalCachedBag(1);
+        for (int i = 0; i < 3000; i++) {
+            bag.add(tf.newTuple(i));
+        }
+        int count = 0;
+        for (Iterator<Tuple> it = bag.iterator(); it.hasNext(); it.next()) {
+            count++;
+        }
+        assertEquals(3000, count);
+    }
+}
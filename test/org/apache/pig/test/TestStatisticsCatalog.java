@@ -0,0 +1,274 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pig.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Properties;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.pig.ExecType;
+import org.apache.pig.PigConfiguration;
+import org.apache.pig.PigServer;
+import org.apache.pig.ResourceStatistics;
+import org.apache.pig.ResourceStatistics.ResourceFieldStatistics;
+import org.apache.pig.backend.executionengine.ExecJob;
+import org.apache.pig.backend.executionengine.ExecJob.JOB_STATUS;
+import org.apache.pig.builtin.PigStorage;
+import org.apache.pig.data.Tuple;
+import org.apache.pig.data.TupleFactory;
+import org.apache.pig.impl.util.HyperLogLog;
+import org.apache.pig.impl.util.StatisticsCollector;
+import org.apache.pig.newplan.Operator;
+import org.apache.pig.newplan.logical.optimizer.CardinalityEstimator;
+import org.apache.pig.newplan.logical.relational.LOStore;
+import org.apache.pig.newplan.logical.relational.LogicalPlan;
+import org.apache.pig.newplan.logical.relational.LogicalRelationalOperator;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.hash.Hashing;
+
+public class TestStatisticsCatalog {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File input;
+
+    @Before
+    public void setUp() throws Exception {
+        String[] data = new String[200];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = i + "\tv" + (i % 20);
+        }
+        input = Util.createInputFile("statistics", ".txt", data);
+    }
+
+    @Test
+    public void testHyperLogLog() throws Exception {
+        HyperLogLog hll = new HyperLogLog(12);
+        HyperLogLog other = new HyperLogLog(12);
+        for (long i = 0; i < 100000; i++) {
+            long hash = Hashing.murmur3_128().hashLong(i).asLong();
+            hll.addHash(hash);
+            // half of the values are also in the other
+            other.addHash(Hashing.murmur3_128().hashLong(i + 50000).asLong());
+        }
+        assertEquals(100000, hll.estimate(), 5000);
+        hll.merge(other);
+        assertEquals(150000, hll.estimate(), 7500);
+
+        HyperLogLog small = new HyperLogLog(12);
+        for (long i = 0; i < 100; i++) {
+            small.addHash(Hashing.murmur3_128().hashLong(i % 10).asLong());
+        }
+        assertEquals(10, small.estimate());
+    }
+
+    @Test
+    public void testCollector() throws Exception {
+        StatisticsCollector collector = new StatisticsCollector();
+        StatisticsCollector other = new StatisticsCollector();
+        TupleFactory tf = TupleFactory.getInstance();
+        for (int i = 0; i < 100; i++) {
+            Tuple t = tf.newTuple(3);
+            t.set(0, i);
+            t.set(1, "v" + (i % 10));
+            // mixed types have no range
+            t.set(2, i % 2 == 0 ? (Object) i : (Object) ("" + i));
+            (i < 50 ? collector : other).add(t);
+        }
+        collector.merge(other);
+        ResourceStatistics stats = collector.toResourceStatistics(1000);
+        assertEquals(100L, (long) stats.getNumRecords());
+        assertEquals(10L, (long) stats.getAvgRecordSize());
+        ResourceFieldStatistics[] fields = stats.getFields();
+        assertEquals(3, fields.length);
+        assertEquals(100L, (long) fields[0].getNumDistinctValues());
+        assertEquals(0, fields[0].getMinValue());
+        assertEquals(99, fields[0].getMaxValue());
+        assertEquals(10L, (long) fields[1].getNumDistinctValues());
+        assertEquals("v0", fields[1].getMinValue());
+        assertEquals("v9", fields[1].getMaxValue());
+        assertNull(fields[2].getMinValue());
+        assertNull(fields[2].getMaxValue());
+    }
+
+    @Test
+    public void testStoreStatistics() throws Exception {
+        ExecType execType = Util.getLocalTestMode();
+        // statistics are only collected in mapreduce mode
+        Assume.assumeFalse(Util.isTezExecType(execType));
+        File output = new File(folder.getRoot(), "output");
+        store(output, true);
+
+        Configuration conf = new Configuration(false);
+        ResourceStatistics stats = new PigStorage().getStatistics(
+                output.getAbsolutePath(), new Job(conf));
+        assertNotNull(stats);
+        assertEquals(200L, (long) stats.getNumRecords());
+        assertTrue(stats.getSizeInBytes() > 0);
+        assertEquals(stats.getSizeInBytes() / 200, (long) stats.getAvgRecordSize());
+        ResourceFieldStatistics[] fields = stats.getFields();
+        assertEquals(2, fields.length);
+        assertEquals(200L, (long) fields[0].getNumDistinctValues());
+        assertEquals(0, fields[0].getMinValue());
+        assertEquals(199, fields[0].getMaxValue());
+        assertEquals(20L, (long) fields[1].getNumDistinctValues());
+        assertEquals("v0", fields[1].getMinValue());
+        assertEquals("v9", fields[1].getMaxValue());
+        // the statistics are not read as data
+        PigServer pigServer = new PigServer(execType);
+        pigServer.registerQuery("A = LOAD '" + Util.encodeEscape(output.getAbsolutePath()) + "' AS (k:int, v:chararray);");
+        int count = 0;
+        for (Iterator<Tuple> it = pigServer.openIterator("A"); it.hasNext(); it.next()) {
+            count++;
+        }
+        assertEquals(200, count);
+
+        File noStats = new File(folder.getRoot(), "nostats");
+        store(noStats, false);
+        assertFalse(new File(noStats, ".pig_stats").exists());
+        assertNull(new PigStorage().getStatistics(noStats.getAbsolutePath(), new Job(conf)));
+    }
+
+    @Test
+    public void testFailingStoreStatistics() throws Exception {
+        Assume.assumeFalse(Util.isTezExecType(Util.getLocalTestMode()));
+        File output = new File(folder.getRoot(), "output");
+        Properties props = new Properties();
+        props.setProperty(PigConfiguration.PIG_STORE_STATISTICS, "true");
+        PigServer pigServer = new PigServer(Util.getLocalTestMode(), props);
+        pigServer.setBatchOn();
+        pigServer.registerQuery("A = LOAD '" + Util.encodeEscape(input.getAbsolutePath()) + "' AS (k:int, v:chararray);"
+                + "STORE A INTO '" + Util.encodeEscape(output.getAbsolutePath()) + "' USING "
+                + FailingStatisticsStorage.class.getName() + "();");
+        // the statistics are advisory and do not fail the job
+        assertEquals(JOB_STATUS.COMPLETED, pigServer.executeBatch().get(0).getStatus());
+        assertEquals(200, Util.readOutput(pigServer.getPigContext(), output.getAbsolutePath()).length);
+    }
+
+    public static class FailingStatisticsStorage extends PigStorage {
+        @Override
+        public void storeStatistics(ResourceStatistics stats, String location, Job job) throws IOException {
+            throw new IOException("storeStatistics");
+        }
+    }
+
+    @Test
+    public void testMultiStoreStatistics() throws Exception {
+        Assume.assumeFalse(Util.isTezExecType(Util.getLocalTestMode()));
+        File all = new File(folder.getRoot(), "all");
+        File filtered = new File(folder.getRoot(), "filtered");
+        Properties props = new Properties();
+        props.setProperty(PigConfiguration.PIG_STORE_STATISTICS, "true");
+        PigServer pigServer = new PigServer(Util.getLocalTestMode(), props);
+        pigServer.setBatchOn();
+        pigServer.registerQuery("A = LOAD '" + Util.encodeEscape(input.getAbsolutePath()) + "' AS (k:int, v:chararray);"
+                + "F = FILTER A BY k < 50;"
+                + "STORE A INTO '" + Util.encodeEscape(all.getAbsolutePath()) + "';"
+                + "STORE F INTO '" + Util.encodeEscape(filtered.getAbsolutePath()) + "';");
+        for (ExecJob job : pigServer.executeBatch()) {
+            assertEquals(JOB_STATUS.COMPLETED, job.getStatus());
+        }
+
+        Configuration conf = new Configuration(false);
+        ResourceStatistics stats = new PigStorage().getStatistics(all.getAbsolutePath(), new Job(conf));
+        assertEquals(200L, (long) stats.getNumRecords());
+        stats = new PigStorage().getStatistics(filtered.getAbsolutePath(), new Job(conf));
+        assertEquals(50L, (long) stats.getNumRecords());
+        assertEquals(49, stats.getFields()[0].getMaxValue());
+    }
+
+    @Test
+    public void testCardinalityEstimator() throws Exception {
+        ExecType execType = Util.getLocalTestMode();
+        Assume.assumeFalse(Util.isTezExecType(execType));
+        File output = new File(folder.getRoot(), "output");
+        store(output, true);
+
+        String location = Util.encodeEscape(output.getAbsolutePath());
+        PigServer pigServer = new PigServer(execType);
+        LogicalPlan lp = Util.buildLp(pigServer, "A = LOAD '" + location + "' AS (k:int, v:chararray);"
+                + "B = LOAD '" + location + "' AS (k:int, v:chararray);"
+                + "F1 = FILTER A BY k < 50;"
+                + "F2 = FILTER A BY v == 'v3';"
+                + "F3 = FILTER A BY k >= 50 AND v != 'v3';"
+                + "G = GROUP A BY v;"
+                + "J = JOIN A BY v, B BY v;"
+                + "L = LIMIT J 10;"
+                + "U = UNION F1, F2;"
+                + "STORE F3 INTO 'f3'; STORE G INTO 'g'; STORE L INTO 'l'; STORE U INTO 'u';");
+        CardinalityEstimator estimator = new CardinalityEstimator(lp);
+        estimator.visit();
+
+        assertEquals(200, estimator.getRecords(find(lp, "A")));
+        assertTrue(estimator.getBytes(find(lp, "A")) > 0);
+        assertEquals(50, estimator.getRecords(find(lp, "F1")), 1);
+        assertEquals(10, estimator.getRecords(find(lp, "F2")));
+        assertEquals(150 * 19 / 20, estimator.getRecords(find(lp, "F3")), 1);
+        assertEquals(20, estimator.getRecords(find(lp, "G")));
+        assertEquals(200 * 200 / 20, estimator.getRecords(find(lp, "J")));
+        assertEquals(10, estimator.getRecords(find(lp, "L")));
+        assertEquals(estimator.getRecords(find(lp, "F1")) + 10, estimator.getRecords(find(lp, "U")));
+
+        // Without statistics, the sizes are estimated from the input size
+        lp = Util.buildLp(new PigServer(execType), "A = LOAD '" + Util.encodeEscape(input.getAbsolutePath())
+                + "' AS (k:int, v:chararray); F = FILTER A BY k == 3; STORE F INTO 'f';");
+        estimator = new CardinalityEstimator(lp);
+        estimator.visit();
+        long records = estimator.getRecords(find(lp, "A"));
+        assertEquals((long) Math.ceil(input.length() / 20.0), records);
+        assertEquals((long) Math.ceil(records * 0.1), estimator.getRecords(find(lp, "F")));
+    }
+
+    private void store(File output, boolean statistics) throws Exception {
+        Properties props = new Properties();
+        props.setProperty(PigConfiguration.PIG_STORE_STATISTICS, Boolean.toString(statistics));
+        PigServer pigServer = new PigServer(Util.getLocalTestMode(), props);
+        Util.deleteDirectory(output);
+        pigServer.setBatchOn();
+        pigServer.registerQuery("A = LOAD '" + Util.encodeEscape(input.getAbsolutePath()) + "' AS (k:int, v:chararray);"
+                + "STORE A INTO '" + Util.encodeEscape(output.getAbsolutePath()) + "';");
+        assertEquals(JOB_STATUS.COMPLETED, pigServer.executeBatch().get(0).getStatus());
+        pigServer.shutdown();
+    }
+
+    private static Operator find(LogicalPlan lp, String alias) {
+        Iterator<Operator> it = lp.getOperators();
+        while (it.hasNext()) {
+            Operator op = it.next();
+            if (!(op instanceof LOStore) && alias.equals(((LogicalRelationalOperator) op).getAlias())) {
+                return op;
+            }
+        }
+        throw new AssertionError("No operator " + alias);
+    }
+}
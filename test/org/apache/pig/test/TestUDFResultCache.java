@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.pig.test;
+
+import static org.apache.pig.builtin.mock.Storage.bag;
+import static org.apache.pig.builtin.mock.Storage.resetData;
+import static org.apache.pig.builtin.mock.Storage.tuple;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.pig.EvalFunc;
+import org.apache.pig.PigConfiguration;
+import org.apache.pig.PigServer;
+import org.apache.pig.backend.hadoop.executionengine.physicalLayer.util.UDFResultCache;
+import org.apache.pig.builtin.Nondeterministic;
+import org.apache.pig.builtin.mock.Storage.Data;
+import org.apache.pig.data.Tuple;
+import org.junit.Test;
+
+public class TestUDFResultCache {
+
+    private static final AtomicInteger numCalls = new AtomicInteger();
+
+    public static class CountingUpper extends EvalFunc<String> {
+        @Override
+        public String exec(Tuple input) throws IOException {
+            numCalls.incrementAndGet();
+            String s = (String) input.get(0);
+            return s == null ? null : s.toUpperCase();
+        }
+    }
+
+    @Nondeterministic
+    public static class NondeterministicUpper extends CountingUpper {
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        UDFResultCache cache = new UDFResultCache(2000);
+        assertSame(UDFResultCache.NOT_FOUND, cache.get(tuple("a")));
+        cache.put(tuple("a"), "A");
+        cache.put(tuple("n"), null);
+        assertEquals("A", cache.get(tuple("a")));
+        assertNull(cache.get(tuple("n")));
+        for (int i = 0; i < 100; i++) {
+            cache.put(tuple("k" + i), "v" + i);
+            // keep "a" the most recently used
+            assertEquals("A", cache.get(tuple("a")));
+        }
+        assertTrue(cache.size() < 100);
+        assertTrue(cache.getMemorySize() <= 2000);
+        assertEquals("A", cache.get(tuple("a")));
+        assertEquals("v99", cache.get(tuple("k99")));
+        assertSame(UDFResultCache.NOT_FOUND, cache.get(tuple("k0")));
+        assertSame(UDFResultCache.NOT_FOUND, cache.get(tuple("n")));
+        assertEquals(104, cache.takeHits());
+        assertEquals(3, cache.takeMisses());
+        assertEquals(0, cache.takeHits());
+
+        assertTrue(UDFResultCache.isCacheable(tuple("a", 1, tuple(2))));
+        assertFalse(UDFResultCache.isCacheable(tuple("a", bag(tuple(1)))));
+    }
+
+    private static List<Tuple> runQuery(Properties props, Class<?> udf) throws Exception {
+        PigServer pigServer = new PigServer(Util.getLocalTestMode(), props);
+        Data data = resetData(pigServer);
+        List<Tuple> input = new ArrayList<Tuple>();
+        for (int i = 0; i < 1000; i++) {
+            input.add(tuple(i % 100 == 0 ? null : "s" + (i % 20)));
+        }
+        data.set("input", input);
+        pigServer.registerQuery("A = LOAD 'input' USING mock.Storage() AS (s:chararray);");
+        pigServer.registerQuery("B = FOREACH A GENERATE " + udf.getName() + "(s);");
+        pigServer.registerQuery("STORE B INTO 'output' USING mock.Storage();");
+        List<Tuple> output = data.get("output");
+        assertEquals(input.size(), output.size());
+        for (int i = 0; i < input.size(); i++) {
+            String s = (String) input.get(i).get(0);
+            assertEquals(tuple(s == null ? null : s.toUpperCase()), output.get(i));
+        }
+        return output;
+    }
+
+    @Test
+    public void testCachedFunctions() throws Exception {
+        Properties props = new Properties();
+        props.setProperty(PigConfiguration.PIG_UDF_CACHE_FUNCTIONS, CountingUpper.class.getName());
+        numCalls.set(0);
+        runQuery(props, CountingUpper.class);
+        // 20 distinct strings and null
+        assertEquals(21, numCalls.get());
+
+        // Not listed
+        numCalls.set(0);
+        runQuery(props, NondeterministicUpper.class);
+        assertEquals(1000, numCalls.get());
+    }
+
+    @Test
+    public void testCacheAll() throws Exception {
+        Properties props = new Properties();
+        props.setProperty(PigConfiguration.PIG_UDF_CACHE, "true");
+        numCalls.set(0);
+        runQuery(props, CountingUpper.class);
+        assertEquals(21, numCalls.get());
+
+        numCalls.set(0);
+        runQuery(props, NondeterministicUpper.class);
+        assertEquals(1000, numCalls.get());
+
+        numCalls.set(0);
+        runQuery(new Properties(), CountingUpper.class);
+        assertEquals(1000, numCalls.get());
+    }
+}
@@ -45,6 +45,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.hadoop.conf.Configuration;
@@ -91,10 +92,12 @@ import org.apache.pig.impl.logicalLayer.FrontendException;
 import org.apache.pig.impl.logicalLayer.schema.Schema;
 import org.apache.pig.impl.logicalLayer.schema.Schema.FieldSchema;
 import org.apache.pig.impl.util.LogUtils;
+import org.apache.pig.newplan.Operator;
 import org.apache.pig.newplan.logical.optimizer.LogicalPlanPrinter;
 import org.apache.pig.newplan.logical.optimizer.SchemaResetter;
 import org.apache.pig.newplan.logical.optimizer.UidResetter;
 import org.apache.pig.newplan.logical.relational.LogToPhyTranslationVisitor;
+import org.apache.pig.newplan.logical.relational.LogicalRelationalOperator;
 import org.apache.pig.newplan.logical.relational.LogicalPlan;
 import org.apache.pig.newplan.logical.relational.LogicalSchema;
 import org.apache.pig.newplan.logical.relational.LogicalSchema.LogicalFieldSchema;
@@ -1399,6 +1402,66 @@ public class Util {
                 expectedResList, actualResList);
     }
 
+    /**
+     * Runs the queries, which load the input as A with the given schema and
+     * define R, once with each of the given properties, and checks that the
+     * tuples of R are the same every time.
+     *
+     * @return the tuples of R, sorted
+     */
+    public static List<Tuple> checkSameResults(File input, String schema, List<Properties> variants,
+            String... queries) throws Exception {
+        List<Tuple> expected = null;
+        for (Properties props : variants) {
+            PigServer pigServer = new PigServer(getLocalTestMode(), props);
+            List<Tuple> result = new ArrayList<Tuple>();
+            try {
+                pigServer.registerQuery("A = LOAD '" + encodeEscape(input.getAbsolutePath())
+                        + "' AS (" + schema + ");");
+                for (String query : queries) {
+                    pigServer.registerQuery(query);
+                }
+                Iterator<Tuple> it = pigServer.openIterator("R");
+                while (it.hasNext()) {
+                    result.add(it.next());
+                }
+            } finally {
+                pigServer.shutdown();
+            }
+            Collections.sort(result);
+            if (expected == null) {
+                expected = result;
+            } else {
+                assertEquals("Results with " + props, expected, result);
+            }
+        }
+        return expected;
+    }
+
+    /**
+     * Registers the query, and returns the tuples of the alias as strings,
+     * sorted
+     */
+    public static List<String> getSortedResults(PigServer pigServer, String query, String alias)
+            throws Exception {
+        pigServer.registerQuery(query);
+        List<String> result = new ArrayList<String>();
+        for (Iterator<Tuple> it = pigServer.openIterator(alias); it.hasNext();) {
+            result.add(it.next().toString());
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    public static <C extends LogicalRelationalOperator> List<C> getLogicalOperators(LogicalPlan lp,
+            Class<C> opClass) throws FrontendException {
+        return org.apache.pig.newplan.logical.Util.getLogicalRelationalOperators(lp, opClass);
+    }
+
+    public static String getAlias(Operator op) {
+        return ((LogicalRelationalOperator) op).getAlias();
+    }
+
     public static void assertParallelValues(long defaultParallel,
                                              long requestedParallel,
                                              long estimatedParallel,